@@ -2,6 +2,10 @@ package com.umsa.savepdf.config;
 
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 /**
  * Properties specific to Save PDF.
  * <p>
@@ -11,4 +15,1181 @@ import org.springframework.boot.context.properties.ConfigurationProperties;
 @ConfigurationProperties(prefix = "application", ignoreUnknownFields = false)
 public class ApplicationProperties {
 
+    private final Download download = new Download();
+
+    private final Upload upload = new Upload();
+
+    private final Storage storage = new Storage();
+
+    private final Thumbnail thumbnail = new Thumbnail();
+
+    private final Ingest ingest = new Ingest();
+
+    private final Search search = new Search();
+
+    private final RateLimit rateLimit = new RateLimit();
+
+    public Download getDownload() {
+        return download;
+    }
+
+    public Upload getUpload() {
+        return upload;
+    }
+
+    public Storage getStorage() {
+        return storage;
+    }
+
+    public Thumbnail getThumbnail() {
+        return thumbnail;
+    }
+
+    public Ingest getIngest() {
+        return ingest;
+    }
+
+    public Search getSearch() {
+        return search;
+    }
+
+    public RateLimit getRateLimit() {
+        return rateLimit;
+    }
+
+    public static class Download {
+
+        private Mode mode = Mode.TRANSFER;
+
+        private long mmapThreshold = 32L * 1024 * 1024;
+
+        private boolean nativeHandler = false;
+
+        private final Cache cache = new Cache();
+
+        private final Streaming streaming = new Streaming();
+
+        private final Merge merge = new Merge();
+
+        private final Signing signing = new Signing();
+
+        public Mode getMode() {
+            return mode;
+        }
+
+        public void setMode(Mode mode) {
+            this.mode = mode;
+        }
+
+        public long getMmapThreshold() {
+            return mmapThreshold;
+        }
+
+        public void setMmapThreshold(long mmapThreshold) {
+            this.mmapThreshold = mmapThreshold;
+        }
+
+        public boolean isNativeHandler() {
+            return nativeHandler;
+        }
+
+        public void setNativeHandler(boolean nativeHandler) {
+            this.nativeHandler = nativeHandler;
+        }
+
+        public Cache getCache() {
+            return cache;
+        }
+
+        public Streaming getStreaming() {
+            return streaming;
+        }
+
+        public Merge getMerge() {
+            return merge;
+        }
+
+        public Signing getSigning() {
+            return signing;
+        }
+
+        /**
+         * How the bytes of a stored PDF reach the servlet response.
+         */
+        public enum Mode {
+            /**
+             * Read the file through a heap buffer and write it to the response stream.
+             */
+            COPY,
+            /**
+             * Hand the file channel to the container, which lets Undertow use sendfile.
+             */
+            TRANSFER
+        }
+
+        public static class Cache {
+
+            private long maxBytes = 64L * 1024 * 1024;
+
+            private long maxObjectSize = 2L * 1024 * 1024;
+
+            public long getMaxBytes() {
+                return maxBytes;
+            }
+
+            public void setMaxBytes(long maxBytes) {
+                this.maxBytes = maxBytes;
+            }
+
+            public long getMaxObjectSize() {
+                return maxObjectSize;
+            }
+
+            public void setMaxObjectSize(long maxObjectSize) {
+                this.maxObjectSize = maxObjectSize;
+            }
+        }
+
+        public static class Streaming {
+
+            private int threads = 4;
+
+            private int queueCapacity = 16;
+
+            private long timeout = 600;
+
+            public int getThreads() {
+                return threads;
+            }
+
+            public void setThreads(int threads) {
+                this.threads = threads;
+            }
+
+            public int getQueueCapacity() {
+                return queueCapacity;
+            }
+
+            public void setQueueCapacity(int queueCapacity) {
+                this.queueCapacity = queueCapacity;
+            }
+
+            public long getTimeout() {
+                return timeout;
+            }
+
+            public void setTimeout(long timeout) {
+                this.timeout = timeout;
+            }
+        }
+
+        public static class Merge {
+
+            private int maxForms = 500;
+
+            public int getMaxForms() {
+                return maxForms;
+            }
+
+            public void setMaxForms(int maxForms) {
+                this.maxForms = maxForms;
+            }
+        }
+
+        public static class Signing {
+
+            private boolean required = false;
+
+            private String base64Secret;
+
+            private long ttl = 3600;
+
+            private int maxUrls = 10000;
+
+            public boolean isRequired() {
+                return required;
+            }
+
+            public void setRequired(boolean required) {
+                this.required = required;
+            }
+
+            public String getBase64Secret() {
+                return base64Secret;
+            }
+
+            public void setBase64Secret(String base64Secret) {
+                this.base64Secret = base64Secret;
+            }
+
+            public long getTtl() {
+                return ttl;
+            }
+
+            public void setTtl(long ttl) {
+                this.ttl = ttl;
+            }
+
+            public int getMaxUrls() {
+                return maxUrls;
+            }
+
+            public void setMaxUrls(int maxUrls) {
+                this.maxUrls = maxUrls;
+            }
+        }
+    }
+
+    public static class Upload {
+
+        private int bufferSize = 64 * 1024;
+
+        private long maxSize = 512L * 1024 * 1024;
+
+        private int batchThreads = 4;
+
+        private int batchMaxFiles = 500;
+
+        private final Resumable resumable = new Resumable();
+
+        private final Validation validation = new Validation();
+
+        private int registerMaxConcurrent = 16;
+
+        private long retryAfter = 5;
+
+        private long jobRetention = 60 * 60;
+
+        public int getBufferSize() {
+            return bufferSize;
+        }
+
+        public void setBufferSize(int bufferSize) {
+            this.bufferSize = bufferSize;
+        }
+
+        public long getMaxSize() {
+            return maxSize;
+        }
+
+        public void setMaxSize(long maxSize) {
+            this.maxSize = maxSize;
+        }
+
+        public int getBatchThreads() {
+            return batchThreads;
+        }
+
+        public void setBatchThreads(int batchThreads) {
+            this.batchThreads = batchThreads;
+        }
+
+        public int getBatchMaxFiles() {
+            return batchMaxFiles;
+        }
+
+        public void setBatchMaxFiles(int batchMaxFiles) {
+            this.batchMaxFiles = batchMaxFiles;
+        }
+
+        public Resumable getResumable() {
+            return resumable;
+        }
+
+        public Validation getValidation() {
+            return validation;
+        }
+
+        public int getRegisterMaxConcurrent() {
+            return registerMaxConcurrent;
+        }
+
+        public void setRegisterMaxConcurrent(int registerMaxConcurrent) {
+            this.registerMaxConcurrent = registerMaxConcurrent;
+        }
+
+        public long getRetryAfter() {
+            return retryAfter;
+        }
+
+        public void setRetryAfter(long retryAfter) {
+            this.retryAfter = retryAfter;
+        }
+
+        public long getJobRetention() {
+            return jobRetention;
+        }
+
+        public void setJobRetention(long jobRetention) {
+            this.jobRetention = jobRetention;
+        }
+
+        public static class Validation {
+
+            private boolean deep = false;
+
+            private int threads = 2;
+
+            private long timeout = 10;
+
+            private long maxMemory = 64L * 1024 * 1024;
+
+            public boolean isDeep() {
+                return deep;
+            }
+
+            public void setDeep(boolean deep) {
+                this.deep = deep;
+            }
+
+            public int getThreads() {
+                return threads;
+            }
+
+            public void setThreads(int threads) {
+                this.threads = threads;
+            }
+
+            public long getTimeout() {
+                return timeout;
+            }
+
+            public void setTimeout(long timeout) {
+                this.timeout = timeout;
+            }
+
+            public long getMaxMemory() {
+                return maxMemory;
+            }
+
+            public void setMaxMemory(long maxMemory) {
+                this.maxMemory = maxMemory;
+            }
+        }
+
+        public static class Resumable {
+
+            private String directory = System.getProperty("java.io.tmpdir") + "/savepdf-uploads";
+
+            private long expiration = 24 * 60 * 60;
+
+            public String getDirectory() {
+                return directory;
+            }
+
+            public void setDirectory(String directory) {
+                this.directory = directory;
+            }
+
+            public long getExpiration() {
+                return expiration;
+            }
+
+            public void setExpiration(long expiration) {
+                this.expiration = expiration;
+            }
+        }
+    }
+
+    public static class Storage {
+
+        private Backend backend = Backend.LOCAL;
+
+        private int migrationThreads = Runtime.getRuntime().availableProcessors();
+
+        private final Sharding sharding = new Sharding();
+
+        private final Scrub scrub = new Scrub();
+
+        private final Reconcile reconcile = new Reconcile();
+
+        private final Cold cold = new Cold();
+
+        private final Local local = new Local();
+
+        private final S3 s3 = new S3();
+
+        public Backend getBackend() {
+            return backend;
+        }
+
+        public void setBackend(Backend backend) {
+            this.backend = backend;
+        }
+
+        public int getMigrationThreads() {
+            return migrationThreads;
+        }
+
+        public void setMigrationThreads(int migrationThreads) {
+            this.migrationThreads = migrationThreads;
+        }
+
+        public Sharding getSharding() {
+            return sharding;
+        }
+
+        public Scrub getScrub() {
+            return scrub;
+        }
+
+        public Reconcile getReconcile() {
+            return reconcile;
+        }
+
+        public Cold getCold() {
+            return cold;
+        }
+
+        public Local getLocal() {
+            return local;
+        }
+
+        public S3 getS3() {
+            return s3;
+        }
+
+        /**
+         * Where the stored PDFs live.
+         */
+        public enum Backend {
+            /**
+             * Files below a directory of the node, which must be shared to run several instances.
+             */
+            LOCAL,
+            /**
+             * Objects in an S3-compatible bucket (AWS S3, MinIO...).
+             */
+            S3
+        }
+
+        public static class Sharding {
+
+            private boolean migrationEnabled = true;
+
+            private int batchSize = 200;
+
+            private long batchInterval = 1000;
+
+            public boolean isMigrationEnabled() {
+                return migrationEnabled;
+            }
+
+            public void setMigrationEnabled(boolean migrationEnabled) {
+                this.migrationEnabled = migrationEnabled;
+            }
+
+            public int getBatchSize() {
+                return batchSize;
+            }
+
+            public void setBatchSize(int batchSize) {
+                this.batchSize = batchSize;
+            }
+
+            public long getBatchInterval() {
+                return batchInterval;
+            }
+
+            public void setBatchInterval(long batchInterval) {
+                this.batchInterval = batchInterval;
+            }
+        }
+
+        public static class Scrub {
+
+            private boolean enabled = false;
+
+            private int threads = 2;
+
+            private double rate = 10;
+
+            private int batchSize = 100;
+
+            private long batchInterval = 1000;
+
+            private long passInterval = 7 * 24 * 60 * 60;
+
+            public boolean isEnabled() {
+                return enabled;
+            }
+
+            public void setEnabled(boolean enabled) {
+                this.enabled = enabled;
+            }
+
+            public int getThreads() {
+                return threads;
+            }
+
+            public void setThreads(int threads) {
+                this.threads = threads;
+            }
+
+            public double getRate() {
+                return rate;
+            }
+
+            public void setRate(double rate) {
+                this.rate = rate;
+            }
+
+            public int getBatchSize() {
+                return batchSize;
+            }
+
+            public void setBatchSize(int batchSize) {
+                this.batchSize = batchSize;
+            }
+
+            public long getBatchInterval() {
+                return batchInterval;
+            }
+
+            public void setBatchInterval(long batchInterval) {
+                this.batchInterval = batchInterval;
+            }
+
+            public long getPassInterval() {
+                return passInterval;
+            }
+
+            public void setPassInterval(long passInterval) {
+                this.passInterval = passInterval;
+            }
+        }
+
+        public static class Reconcile {
+
+            private boolean enabled = false;
+
+            private String cron = "0 30 3 * * ?";
+
+            private long gracePeriod = 24 * 60 * 60;
+
+            private Action action = Action.QUARANTINE;
+
+            private int reportLimit = 1000;
+
+            public boolean isEnabled() {
+                return enabled;
+            }
+
+            public void setEnabled(boolean enabled) {
+                this.enabled = enabled;
+            }
+
+            public String getCron() {
+                return cron;
+            }
+
+            public void setCron(String cron) {
+                this.cron = cron;
+            }
+
+            public long getGracePeriod() {
+                return gracePeriod;
+            }
+
+            public void setGracePeriod(long gracePeriod) {
+                this.gracePeriod = gracePeriod;
+            }
+
+            public Action getAction() {
+                return action;
+            }
+
+            public void setAction(Action action) {
+                this.action = action;
+            }
+
+            public int getReportLimit() {
+                return reportLimit;
+            }
+
+            public void setReportLimit(int reportLimit) {
+                this.reportLimit = reportLimit;
+            }
+
+            /**
+             * What happens to the objects no file needs anymore.
+             */
+            public enum Action {
+                /**
+                 * Move them below {@code .quarantine/} in the storage, where they are no longer served.
+                 */
+                QUARANTINE,
+                /**
+                 * Remove them.
+                 */
+                DELETE
+            }
+        }
+
+        public static class Cold {
+
+            private boolean enabled = false;
+
+            private String directory = System.getProperty("user.home") + "/.umsa/cold";
+
+            private int afterDays = 30;
+
+            private String cron = "0 0 4 * * ?";
+
+            private int batchSize = 200;
+
+            private long segmentSize = 1024L * 1024 * 1024;
+
+            private int indexCapacity = 65536;
+
+            private Compression compression = Compression.ZSTD;
+
+            private int compressionLevel = 3;
+
+            private boolean promoteOnRead = false;
+
+            private long accessFlushInterval = 60000;
+
+            public boolean isEnabled() {
+                return enabled;
+            }
+
+            public void setEnabled(boolean enabled) {
+                this.enabled = enabled;
+            }
+
+            public String getDirectory() {
+                return directory;
+            }
+
+            public void setDirectory(String directory) {
+                this.directory = directory;
+            }
+
+            public int getAfterDays() {
+                return afterDays;
+            }
+
+            public void setAfterDays(int afterDays) {
+                this.afterDays = afterDays;
+            }
+
+            public String getCron() {
+                return cron;
+            }
+
+            public void setCron(String cron) {
+                this.cron = cron;
+            }
+
+            public int getBatchSize() {
+                return batchSize;
+            }
+
+            public void setBatchSize(int batchSize) {
+                this.batchSize = batchSize;
+            }
+
+            public long getSegmentSize() {
+                return segmentSize;
+            }
+
+            public void setSegmentSize(long segmentSize) {
+                this.segmentSize = segmentSize;
+            }
+
+            public int getIndexCapacity() {
+                return indexCapacity;
+            }
+
+            public void setIndexCapacity(int indexCapacity) {
+                this.indexCapacity = indexCapacity;
+            }
+
+            public Compression getCompression() {
+                return compression;
+            }
+
+            public void setCompression(Compression compression) {
+                this.compression = compression;
+            }
+
+            public int getCompressionLevel() {
+                return compressionLevel;
+            }
+
+            public void setCompressionLevel(int compressionLevel) {
+                this.compressionLevel = compressionLevel;
+            }
+
+            public boolean isPromoteOnRead() {
+                return promoteOnRead;
+            }
+
+            public void setPromoteOnRead(boolean promoteOnRead) {
+                this.promoteOnRead = promoteOnRead;
+            }
+
+            public long getAccessFlushInterval() {
+                return accessFlushInterval;
+            }
+
+            public void setAccessFlushInterval(long accessFlushInterval) {
+                this.accessFlushInterval = accessFlushInterval;
+            }
+
+            /**
+             * How the PDFs are stored in the cold segments.
+             */
+            public enum Compression {
+                /**
+                 * As they are, for PDFs whose streams are already compressed.
+                 */
+                NONE,
+                /**
+                 * Compressed with zstd, each PDF kept raw when it does not get smaller.
+                 */
+                ZSTD
+            }
+        }
+
+        public static class Local {
+
+            private String root = System.getProperty("user.home") + "/.umsa/forms";
+
+            private Durability durability = Durability.GROUP;
+
+            private long groupCommitInterval = 0;
+
+            private int groupCommitThreads = 4;
+
+            public String getRoot() {
+                return root;
+            }
+
+            public void setRoot(String root) {
+                this.root = root;
+            }
+
+            public Durability getDurability() {
+                return durability;
+            }
+
+            public void setDurability(Durability durability) {
+                this.durability = durability;
+            }
+
+            public long getGroupCommitInterval() {
+                return groupCommitInterval;
+            }
+
+            public void setGroupCommitInterval(long groupCommitInterval) {
+                this.groupCommitInterval = groupCommitInterval;
+            }
+
+            public int getGroupCommitThreads() {
+                return groupCommitThreads;
+            }
+
+            public void setGroupCommitThreads(int groupCommitThreads) {
+                this.groupCommitThreads = groupCommitThreads;
+            }
+
+            /**
+             * When the stored files are flushed to the disk.
+             */
+            public enum Durability {
+                /**
+                 * When the operating system writes its page cache back: a crash may lose the last seconds of uploads.
+                 */
+                NONE,
+                /**
+                 * Before the upload completes, by a thread flushing the files of all the uploads of an interval at once.
+                 */
+                GROUP,
+                /**
+                 * Before the upload completes, by the uploading thread.
+                 */
+                PER_FILE
+            }
+        }
+
+        public static class S3 {
+
+            private String endpoint;
+
+            private String region = "us-east-1";
+
+            private String bucket = "savepdf";
+
+            private String accessKey;
+
+            private String secretKey;
+
+            private boolean pathStyleAccess = true;
+
+            private int partSize = 8 * 1024 * 1024;
+
+            public String getEndpoint() {
+                return endpoint;
+            }
+
+            public void setEndpoint(String endpoint) {
+                this.endpoint = endpoint;
+            }
+
+            public String getRegion() {
+                return region;
+            }
+
+            public void setRegion(String region) {
+                this.region = region;
+            }
+
+            public String getBucket() {
+                return bucket;
+            }
+
+            public void setBucket(String bucket) {
+                this.bucket = bucket;
+            }
+
+            public String getAccessKey() {
+                return accessKey;
+            }
+
+            public void setAccessKey(String accessKey) {
+                this.accessKey = accessKey;
+            }
+
+            public String getSecretKey() {
+                return secretKey;
+            }
+
+            public void setSecretKey(String secretKey) {
+                this.secretKey = secretKey;
+            }
+
+            public boolean isPathStyleAccess() {
+                return pathStyleAccess;
+            }
+
+            public void setPathStyleAccess(boolean pathStyleAccess) {
+                this.pathStyleAccess = pathStyleAccess;
+            }
+
+            public int getPartSize() {
+                return partSize;
+            }
+
+            public void setPartSize(int partSize) {
+                this.partSize = partSize;
+            }
+        }
+    }
+
+    public static class Thumbnail {
+
+        private List<Integer> widths = new ArrayList<>(Arrays.asList(120, 240, 480));
+
+        private int threads = 2;
+
+        private int queueCapacity = 1000;
+
+        public List<Integer> getWidths() {
+            return widths;
+        }
+
+        public void setWidths(List<Integer> widths) {
+            this.widths = widths;
+        }
+
+        public int getThreads() {
+            return threads;
+        }
+
+        public void setThreads(int threads) {
+            this.threads = threads;
+        }
+
+        public int getQueueCapacity() {
+            return queueCapacity;
+        }
+
+        public void setQueueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+        }
+    }
+
+    public static class Ingest {
+
+        private int threads = 2;
+
+        private int queueCapacity = 500;
+
+        private final Qpdf qpdf = new Qpdf();
+
+        private boolean linearize = true;
+
+        private final Optimize optimize = new Optimize();
+
+        public int getThreads() {
+            return threads;
+        }
+
+        public void setThreads(int threads) {
+            this.threads = threads;
+        }
+
+        public int getQueueCapacity() {
+            return queueCapacity;
+        }
+
+        public void setQueueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+        }
+
+        public Qpdf getQpdf() {
+            return qpdf;
+        }
+
+        public boolean isLinearize() {
+            return linearize;
+        }
+
+        public void setLinearize(boolean linearize) {
+            this.linearize = linearize;
+        }
+
+        public Optimize getOptimize() {
+            return optimize;
+        }
+
+        public static class Optimize {
+
+            private boolean enabled = false;
+
+            private int maxDpi = 150;
+
+            private float jpegQuality = 0.8f;
+
+            public boolean isEnabled() {
+                return enabled;
+            }
+
+            public void setEnabled(boolean enabled) {
+                this.enabled = enabled;
+            }
+
+            public int getMaxDpi() {
+                return maxDpi;
+            }
+
+            public void setMaxDpi(int maxDpi) {
+                this.maxDpi = maxDpi;
+            }
+
+            public float getJpegQuality() {
+                return jpegQuality;
+            }
+
+            public void setJpegQuality(float jpegQuality) {
+                this.jpegQuality = jpegQuality;
+            }
+        }
+
+        public static class Qpdf {
+
+            private String path = "qpdf";
+
+            private long timeout = 120;
+
+            public String getPath() {
+                return path;
+            }
+
+            public void setPath(String path) {
+                this.path = path;
+            }
+
+            public long getTimeout() {
+                return timeout;
+            }
+
+            public void setTimeout(long timeout) {
+                this.timeout = timeout;
+            }
+        }
+    }
+
+    public static class Search {
+
+        private String directory = System.getProperty("user.home") + "/.umsa/index";
+
+        private int threads = 1;
+
+        private int queueCapacity = 1000;
+
+        private int rebuildThreads = 4;
+
+        private int maxChars = 1_000_000;
+
+        private long commitInterval = 60_000;
+
+        public String getDirectory() {
+            return directory;
+        }
+
+        public void setDirectory(String directory) {
+            this.directory = directory;
+        }
+
+        public int getThreads() {
+            return threads;
+        }
+
+        public void setThreads(int threads) {
+            this.threads = threads;
+        }
+
+        public int getQueueCapacity() {
+            return queueCapacity;
+        }
+
+        public void setQueueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+        }
+
+        public int getRebuildThreads() {
+            return rebuildThreads;
+        }
+
+        public void setRebuildThreads(int rebuildThreads) {
+            this.rebuildThreads = rebuildThreads;
+        }
+
+        public int getMaxChars() {
+            return maxChars;
+        }
+
+        public void setMaxChars(int maxChars) {
+            this.maxChars = maxChars;
+        }
+
+        public long getCommitInterval() {
+            return commitInterval;
+        }
+
+        public void setCommitInterval(long commitInterval) {
+            this.commitInterval = commitInterval;
+        }
+    }
+
+    public static class RateLimit {
+
+        private boolean enabled = false;
+
+        private Mode mode = Mode.LOCAL;
+
+        private long sweepInterval = 60_000;
+
+        private int maxTaggedPrincipals = 100;
+
+        private final Limit upload = new Limit(5, 50, 4);
+
+        private final Limit download = new Limit(20, 100, 16);
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public Mode getMode() {
+            return mode;
+        }
+
+        public void setMode(Mode mode) {
+            this.mode = mode;
+        }
+
+        public long getSweepInterval() {
+            return sweepInterval;
+        }
+
+        public void setSweepInterval(long sweepInterval) {
+            this.sweepInterval = sweepInterval;
+        }
+
+        public int getMaxTaggedPrincipals() {
+            return maxTaggedPrincipals;
+        }
+
+        public void setMaxTaggedPrincipals(int maxTaggedPrincipals) {
+            this.maxTaggedPrincipals = maxTaggedPrincipals;
+        }
+
+        public Limit getUpload() {
+            return upload;
+        }
+
+        public Limit getDownload() {
+            return download;
+        }
+
+        /**
+         * Where the buckets of the principals live.
+         */
+        public enum Mode {
+            /**
+             * In the memory of each instance, which limits the requests it receives.
+             */
+            LOCAL,
+            /**
+             * In the {@code rate_limit_bucket} table of the PostgreSQL database, shared by all the instances.
+             */
+            SHARED
+        }
+
+        public static class Limit {
+
+            private double rate;
+
+            private int burst;
+
+            private int maxConcurrent;
+
+            public Limit(double rate, int burst, int maxConcurrent) {
+                this.rate = rate;
+                this.burst = burst;
+                this.maxConcurrent = maxConcurrent;
+            }
+
+            public double getRate() {
+                return rate;
+            }
+
+            public void setRate(double rate) {
+                this.rate = rate;
+            }
+
+            public int getBurst() {
+                return burst;
+            }
+
+            public void setBurst(int burst) {
+                this.burst = burst;
+            }
+
+            public int getMaxConcurrent() {
+                return maxConcurrent;
+            }
+
+            public void setMaxConcurrent(int maxConcurrent) {
+                this.maxConcurrent = maxConcurrent;
+            }
+        }
+    }
 }
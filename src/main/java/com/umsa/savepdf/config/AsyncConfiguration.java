@@ -14,6 +14,7 @@ import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
 import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
 
 @Configuration
 @EnableAsync
@@ -40,6 +41,95 @@ public class AsyncConfiguration implements AsyncConfigurer {
         return new ExceptionHandlingAsyncTaskExecutor(executor);
     }
 
+    /**
+     * Executor storing the PDFs of batch uploads. Its queue is as short as its pool, and a full executor runs the task
+     * in the submitting request thread, which throttles large batches instead of queuing them.
+     */
+    @Bean(name = "uploadExecutor")
+    public ThreadPoolTaskExecutor uploadExecutor(ApplicationProperties applicationProperties) {
+        log.debug("Creating Upload Task Executor");
+        int threads = applicationProperties.getUpload().getBatchThreads();
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(threads);
+        executor.setThreadNamePrefix("save-pdf-upload-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        return executor;
+    }
+
+    /**
+     * Executor rewriting the stored PDFs, see {@link com.umsa.savepdf.service.PdfIngestService}.
+     */
+    @Bean(name = "ingestExecutor")
+    public ThreadPoolTaskExecutor ingestExecutor(ApplicationProperties applicationProperties) {
+        return pipelineExecutor("ingest", applicationProperties.getIngest().getThreads(),
+            applicationProperties.getIngest().getQueueCapacity());
+    }
+
+    /**
+     * Executor rendering the thumbnails of the stored PDFs, see {@link com.umsa.savepdf.service.ThumbnailService}.
+     */
+    @Bean(name = "thumbnailExecutor")
+    public ThreadPoolTaskExecutor thumbnailExecutor(ApplicationProperties applicationProperties) {
+        return pipelineExecutor("thumbnail", applicationProperties.getThumbnail().getThreads(),
+            applicationProperties.getThumbnail().getQueueCapacity());
+    }
+
+    /**
+     * Executor parsing the uploaded PDFs when their deep validation is enabled, see
+     * {@link com.umsa.savepdf.service.PdfValidationService}.
+     */
+    @Bean(name = "validationExecutor")
+    public ThreadPoolTaskExecutor validationExecutor(ApplicationProperties applicationProperties) {
+        int threads = applicationProperties.getUpload().getValidation().getThreads();
+        return pipelineExecutor("validation", threads, threads);
+    }
+
+    /**
+     * Executor indexing the text of the saved forms, see {@link com.umsa.savepdf.service.FormSearchService}.
+     */
+    @Bean(name = "searchExecutor")
+    public ThreadPoolTaskExecutor searchExecutor(ApplicationProperties applicationProperties) {
+        return pipelineExecutor("search", applicationProperties.getSearch().getThreads(),
+            applicationProperties.getSearch().getQueueCapacity());
+    }
+
+    /**
+     * Executor writing the asynchronous MVC responses, such as the merged PDFs of
+     * {@link com.umsa.savepdf.service.FormMergeService}, so they do not hold an Undertow worker. When its queue is full,
+     * requests are refused with {@code 503 (Service Unavailable)}.
+     */
+    @Bean(name = "streamingExecutor")
+    public ThreadPoolTaskExecutor streamingExecutor(ApplicationProperties applicationProperties) {
+        return pipelineExecutor("streaming", applicationProperties.getDownload().getStreaming().getThreads(),
+            applicationProperties.getDownload().getStreaming().getQueueCapacity());
+    }
+
+    /**
+     * Executor re-reading the stored PDFs, see {@link com.umsa.savepdf.service.IntegrityScrubService}. Its queue holds
+     * one batch.
+     */
+    @Bean(name = "scrubExecutor")
+    public ThreadPoolTaskExecutor scrubExecutor(ApplicationProperties applicationProperties) {
+        return pipelineExecutor("scrub", applicationProperties.getStorage().getScrub().getThreads(),
+            applicationProperties.getStorage().getScrub().getBatchSize());
+    }
+
+    /**
+     * Create a fixed-size executor whose bounded queue rejects the tasks beyond its capacity.
+     */
+    private ThreadPoolTaskExecutor pipelineExecutor(String stage, int threads, int queueCapacity) {
+        log.debug("Creating {} Task Executor", stage);
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("save-pdf-" + stage + "-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        return executor;
+    }
+
     @Override
     public AsyncUncaughtExceptionHandler getAsyncUncaughtExceptionHandler() {
         return new SimpleAsyncUncaughtExceptionHandler();
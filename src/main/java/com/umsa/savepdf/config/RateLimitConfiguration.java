@@ -0,0 +1,36 @@
+package com.umsa.savepdf.config;
+
+import com.umsa.savepdf.service.ratelimit.BucketStore;
+import com.umsa.savepdf.service.ratelimit.JdbcBucketStore;
+import com.umsa.savepdf.service.ratelimit.LocalBucketStore;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Configuration of the {@link BucketStore} of the rate limiter, selected with {@code application.rate-limit.mode}.
+ */
+@Configuration
+public class RateLimitConfiguration {
+
+    private final Logger log = LoggerFactory.getLogger(RateLimitConfiguration.class);
+
+    private final ApplicationProperties applicationProperties;
+
+    public RateLimitConfiguration(ApplicationProperties applicationProperties) {
+        this.applicationProperties = applicationProperties;
+    }
+
+    @Bean
+    public BucketStore bucketStore(ObjectProvider<JdbcTemplate> jdbcTemplate) {
+        if (applicationProperties.getRateLimit().getMode() == ApplicationProperties.RateLimit.Mode.SHARED) {
+            log.debug("Sharing the rate limits of the instances in the database");
+            return new JdbcBucketStore(jdbcTemplate.getObject(), new LocalBucketStore());
+        }
+        return new LocalBucketStore();
+    }
+}
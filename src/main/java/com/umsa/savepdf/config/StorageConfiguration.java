@@ -0,0 +1,107 @@
+package com.umsa.savepdf.config;
+
+import com.umsa.savepdf.service.storage.ColdSegmentStore;
+import com.umsa.savepdf.service.storage.FileSyncer;
+import com.umsa.savepdf.service.storage.GroupCommitFileSyncer;
+import com.umsa.savepdf.service.storage.LocalFileSystemStorageBackend;
+import com.umsa.savepdf.service.storage.S3StorageBackend;
+import com.umsa.savepdf.service.storage.StorageBackend;
+import com.umsa.savepdf.service.storage.TieredStorageBackend;
+
+import com.amazonaws.auth.AWSStaticCredentialsProvider;
+import com.amazonaws.auth.BasicAWSCredentials;
+import com.amazonaws.auth.DefaultAWSCredentialsProviderChain;
+import com.amazonaws.client.builder.AwsClientBuilder;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.AmazonS3ClientBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+
+/**
+ * Configuration of the {@link StorageBackend} holding the PDFs, selected with {@code application.storage.backend}, and
+ * backed by a cold tier when {@code application.storage.cold.enabled} is set. The segments of the cold tier live on
+ * the local disk of the instance, so the cold tier is refused with the S3 backend, whose instances share one bucket.
+ */
+@Configuration
+public class StorageConfiguration {
+
+    private final Logger log = LoggerFactory.getLogger(StorageConfiguration.class);
+
+    private final ApplicationProperties applicationProperties;
+
+    public StorageConfiguration(ApplicationProperties applicationProperties) {
+        this.applicationProperties = applicationProperties;
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "application.storage.backend", havingValue = "local", matchIfMissing = true)
+    public FileSyncer fileSyncer() {
+        ApplicationProperties.Storage.Local properties = applicationProperties.getStorage().getLocal();
+        log.debug("Syncing stored files : {}", properties.getDurability());
+        switch (properties.getDurability()) {
+            case GROUP:
+                return new GroupCommitFileSyncer(properties.getGroupCommitInterval(), properties.getGroupCommitThreads());
+            case PER_FILE:
+                return FileSyncer.PER_FILE;
+            default:
+                return FileSyncer.NONE;
+        }
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "application.storage.backend", havingValue = "local", matchIfMissing = true)
+    public StorageBackend localStorageBackend(FileSyncer fileSyncer) throws IOException {
+        String root = applicationProperties.getStorage().getLocal().getRoot();
+        log.debug("Storing PDFs in directory {}", root);
+        return tiered(new LocalFileSystemStorageBackend(Paths.get(root), fileSyncer));
+    }
+
+    @Bean(destroyMethod = "shutdown")
+    @ConditionalOnProperty(name = "application.storage.backend", havingValue = "s3")
+    public AmazonS3 amazonS3() {
+        ApplicationProperties.Storage.S3 properties = applicationProperties.getStorage().getS3();
+        AmazonS3ClientBuilder builder = AmazonS3ClientBuilder.standard()
+            .withPathStyleAccessEnabled(properties.isPathStyleAccess());
+        if (StringUtils.hasText(properties.getEndpoint())) {
+            builder.withEndpointConfiguration(new AwsClientBuilder.EndpointConfiguration(properties.getEndpoint(), properties.getRegion()));
+        } else {
+            builder.withRegion(properties.getRegion());
+        }
+        if (StringUtils.hasText(properties.getAccessKey())) {
+            builder.withCredentials(new AWSStaticCredentialsProvider(
+                new BasicAWSCredentials(properties.getAccessKey(), properties.getSecretKey())));
+        } else {
+            builder.withCredentials(DefaultAWSCredentialsProviderChain.getInstance());
+        }
+        return builder.build();
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "application.storage.backend", havingValue = "s3")
+    public StorageBackend s3StorageBackend(AmazonS3 amazonS3) throws IOException {
+        ApplicationProperties.Storage.S3 properties = applicationProperties.getStorage().getS3();
+        if (applicationProperties.getStorage().getCold().isEnabled()) {
+            throw new IllegalStateException("application.storage.cold.enabled requires application.storage.backend: local, "
+                + "the cold segments would be local to each instance sharing bucket " + properties.getBucket());
+        }
+        log.debug("Storing PDFs in bucket {}", properties.getBucket());
+        return tiered(new S3StorageBackend(amazonS3, properties.getBucket(), properties.getPartSize()));
+    }
+
+    private StorageBackend tiered(StorageBackend storageBackend) throws IOException {
+        ApplicationProperties.Storage.Cold properties = applicationProperties.getStorage().getCold();
+        if (!properties.isEnabled()) {
+            return storageBackend;
+        }
+        log.debug("Moving cold PDFs to directory {}", properties.getDirectory());
+        return new TieredStorageBackend(storageBackend, new ColdSegmentStore(Paths.get(properties.getDirectory()),
+            properties.getSegmentSize(), properties.getIndexCapacity()));
+    }
+}
@@ -1,8 +1,22 @@
 package com.umsa.savepdf.config;
 
+import com.umsa.savepdf.security.jwt.TokenProvider;
+import com.umsa.savepdf.service.ColdTierService;
+import com.umsa.savepdf.service.DownloadUrlSigner;
+import com.umsa.savepdf.service.PdfStorageService;
+import com.umsa.savepdf.service.RateLimitService;
+import com.umsa.savepdf.service.storage.LocalFileSystemStorageBackend;
+import com.umsa.savepdf.service.storage.StorageBackend;
+import com.umsa.savepdf.service.storage.TieredStorageBackend;
+import com.umsa.savepdf.web.undertow.PdfDownloadHandler;
+import com.umsa.savepdf.web.undertow.RateLimitHandler;
+
 import io.github.jhipster.config.JHipsterProperties;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.web.embedded.undertow.UndertowServletWebServerFactory;
 import org.springframework.boot.web.server.*;
 import org.springframework.boot.web.servlet.ServletContextInitializer;
 import org.springframework.boot.web.servlet.server.ConfigurableServletWebServerFactory;
@@ -11,18 +25,29 @@ import org.springframework.context.annotation.Configuration;
 import org.springframework.core.env.Environment;
 import org.springframework.core.env.Profiles;
 import org.springframework.http.MediaType;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
 import org.springframework.web.filter.CorsFilter;
+import org.springframework.web.multipart.MultipartResolver;
+import org.springframework.web.multipart.support.StandardServletMultipartResolver;
+import org.springframework.web.servlet.DispatcherServlet;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import org.springframework.web.util.UrlPathHelper;
 
 import javax.servlet.*;
+import javax.servlet.http.HttpServletRequest;
 import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Configuration of web application with Servlet 3.0 APIs.
  */
 @Configuration
-public class WebConfigurer implements ServletContextInitializer, WebServerFactoryCustomizer<WebServerFactory> {
+public class WebConfigurer implements ServletContextInitializer, WebServerFactoryCustomizer<WebServerFactory>, WebMvcConfigurer {
+
+    private static final String STREAMED_MULTIPART_PATH = "/api/files/upload/batch";
 
     private final Logger log = LoggerFactory.getLogger(WebConfigurer.class);
 
@@ -30,9 +55,34 @@ public class WebConfigurer implements ServletContextInitializer, WebServerFactor
 
     private final JHipsterProperties jHipsterProperties;
 
-    public WebConfigurer(Environment env, JHipsterProperties jHipsterProperties) {
+    private final ApplicationProperties applicationProperties;
+
+    private final ThreadPoolTaskExecutor streamingExecutor;
+
+    private final ObjectProvider<PdfStorageService> pdfStorageService;
+
+    private final ObjectProvider<DownloadUrlSigner> downloadUrlSigner;
+
+    private final ObjectProvider<ColdTierService> coldTierService;
+
+    private final ObjectProvider<RateLimitService> rateLimitService;
+
+    private final ObjectProvider<TokenProvider> tokenProvider;
+
+    public WebConfigurer(Environment env, JHipsterProperties jHipsterProperties, ApplicationProperties applicationProperties,
+                         @Qualifier("streamingExecutor") ThreadPoolTaskExecutor streamingExecutor,
+                         ObjectProvider<PdfStorageService> pdfStorageService, ObjectProvider<DownloadUrlSigner> downloadUrlSigner,
+                         ObjectProvider<ColdTierService> coldTierService, ObjectProvider<RateLimitService> rateLimitService,
+                         ObjectProvider<TokenProvider> tokenProvider) {
         this.env = env;
         this.jHipsterProperties = jHipsterProperties;
+        this.applicationProperties = applicationProperties;
+        this.streamingExecutor = streamingExecutor;
+        this.pdfStorageService = pdfStorageService;
+        this.downloadUrlSigner = downloadUrlSigner;
+        this.coldTierService = coldTierService;
+        this.rateLimitService = rateLimitService;
+        this.tokenProvider = tokenProvider;
     }
 
     @Override
@@ -49,6 +99,8 @@ public class WebConfigurer implements ServletContextInitializer, WebServerFactor
     @Override
     public void customize(WebServerFactory server) {
         setMimeMappings(server);
+        setPdfDownloadHandler(server);
+        setRateLimitHandler(server);
     }
 
     private void setMimeMappings(WebServerFactory server) {
@@ -63,6 +115,74 @@ public class WebConfigurer implements ServletContextInitializer, WebServerFactor
         }
     }
 
+    /**
+     * Serve the PDFs of a local storage from an Undertow handler, ahead of the servlet container, when
+     * {@code application.download.native-handler} is set. With a cold tier, the handler serves the PDFs still in the
+     * local storage.
+     */
+    private void setPdfDownloadHandler(WebServerFactory server) {
+        if (!applicationProperties.getDownload().isNativeHandler() || !(server instanceof UndertowServletWebServerFactory)) {
+            return;
+        }
+        PdfStorageService storageService = pdfStorageService.getObject();
+        StorageBackend backend = storageService.getStorageBackend();
+        if (backend instanceof TieredStorageBackend) {
+            backend = ((TieredStorageBackend) backend).getHot();
+        }
+        if (!(backend instanceof LocalFileSystemStorageBackend)) {
+            log.warn("The native PDF download handler needs a local storage, PDFs are served by Spring MVC");
+            return;
+        }
+        LocalFileSystemStorageBackend storageBackend = (LocalFileSystemStorageBackend) backend;
+        DownloadUrlSigner signer = downloadUrlSigner.getObject();
+        ColdTierService coldTier = coldTierService.getObject();
+        log.debug("Registering the native PDF download handler for {}", storageBackend.getRoot());
+        ((UndertowServletWebServerFactory) server).addDeploymentInfoCustomizers(deploymentInfo ->
+            deploymentInfo.addOuterHandlerChainWrapper(next -> new PdfDownloadHandler(storageService, storageBackend, signer, coldTier, next)));
+    }
+
+    /**
+     * Limit the uploads and downloads of each principal from an Undertow handler wrapping the others, when
+     * {@code application.rate-limit.enabled} is set, so the downloads served natively are limited too.
+     */
+    private void setRateLimitHandler(WebServerFactory server) {
+        if (!applicationProperties.getRateLimit().isEnabled() || !(server instanceof UndertowServletWebServerFactory)) {
+            return;
+        }
+        RateLimitService limiter = rateLimitService.getObject();
+        TokenProvider tokens = tokenProvider.getObject();
+        log.debug("Registering the rate limiter, {} buckets", applicationProperties.getRateLimit().getMode());
+        ((UndertowServletWebServerFactory) server).addDeploymentInfoCustomizers(deploymentInfo ->
+            deploymentInfo.addOuterHandlerChainWrapper(next -> new RateLimitHandler(limiter, tokens, next)));
+    }
+
+    /**
+     * Run the asynchronous responses (streamed bodies, callables) on the bounded {@code streamingExecutor}.
+     */
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.setTaskExecutor(streamingExecutor);
+        configurer.setDefaultTimeout(TimeUnit.SECONDS.toMillis(applicationProperties.getDownload().getStreaming().getTimeout()));
+    }
+
+    /**
+     * Resolve the multipart requests when their parts are first read, so an upload can be refused before, except the
+     * batch uploads: their parts are streamed by {@link com.umsa.savepdf.web.rest.FileController} instead of being
+     * spooled to disk first.
+     */
+    @Bean(name = DispatcherServlet.MULTIPART_RESOLVER_BEAN_NAME)
+    public MultipartResolver multipartResolver() {
+        UrlPathHelper urlPathHelper = new UrlPathHelper();
+        StandardServletMultipartResolver multipartResolver = new StandardServletMultipartResolver() {
+            @Override
+            public boolean isMultipart(HttpServletRequest request) {
+                return !STREAMED_MULTIPART_PATH.equals(urlPathHelper.getPathWithinApplication(request)) && super.isMultipart(request);
+            }
+        };
+        multipartResolver.setResolveLazily(true);
+        return multipartResolver;
+    }
+
     @Bean
     public CorsFilter corsFilter() {
         UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
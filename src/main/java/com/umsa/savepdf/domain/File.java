@@ -5,6 +5,8 @@ import javax.persistence.*;
 import java.io.Serializable;
 import java.time.Instant;
 
+import com.umsa.savepdf.domain.enumeration.FormType;
+
 /**
  * A File.
  */
@@ -37,6 +39,31 @@ public class File implements Serializable {
     @Column(name = "last_modified_date")
     private Instant lastModifiedDate;
 
+    @Column(name = "sha_256", length = 64)
+    private String sha256;
+
+    @Column(name = "size")
+    private Long size;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "type")
+    private FormType type;
+
+    @Column(name = "linearized")
+    private Boolean linearized;
+
+    @Column(name = "optimized_size")
+    private Long optimizedSize;
+
+    @Column(name = "crc_32")
+    private Long crc32;
+
+    @Column(name = "web_crc_32")
+    private Long webCrc32;
+
+    @Column(name = "last_accessed_date")
+    private Instant lastAccessedDate;
+
     // jhipster-needle-entity-add-field - JHipster will add fields here, do not remove
     public Long getId() {
         return id;
@@ -123,6 +150,110 @@ public class File implements Serializable {
     public void setLastModifiedDate(Instant lastModifiedDate) {
         this.lastModifiedDate = lastModifiedDate;
     }
+
+    public String getSha256() {
+        return sha256;
+    }
+
+    public File sha256(String sha256) {
+        this.sha256 = sha256;
+        return this;
+    }
+
+    public void setSha256(String sha256) {
+        this.sha256 = sha256;
+    }
+
+    public Long getSize() {
+        return size;
+    }
+
+    public File size(Long size) {
+        this.size = size;
+        return this;
+    }
+
+    public void setSize(Long size) {
+        this.size = size;
+    }
+
+    public FormType getType() {
+        return type;
+    }
+
+    public File type(FormType type) {
+        this.type = type;
+        return this;
+    }
+
+    public void setType(FormType type) {
+        this.type = type;
+    }
+
+    public Boolean isLinearized() {
+        return linearized;
+    }
+
+    public File linearized(Boolean linearized) {
+        this.linearized = linearized;
+        return this;
+    }
+
+    public void setLinearized(Boolean linearized) {
+        this.linearized = linearized;
+    }
+
+    public Long getOptimizedSize() {
+        return optimizedSize;
+    }
+
+    public File optimizedSize(Long optimizedSize) {
+        this.optimizedSize = optimizedSize;
+        return this;
+    }
+
+    public void setOptimizedSize(Long optimizedSize) {
+        this.optimizedSize = optimizedSize;
+    }
+
+    public Long getCrc32() {
+        return crc32;
+    }
+
+    public File crc32(Long crc32) {
+        this.crc32 = crc32;
+        return this;
+    }
+
+    public void setCrc32(Long crc32) {
+        this.crc32 = crc32;
+    }
+
+    public Long getWebCrc32() {
+        return webCrc32;
+    }
+
+    public File webCrc32(Long webCrc32) {
+        this.webCrc32 = webCrc32;
+        return this;
+    }
+
+    public void setWebCrc32(Long webCrc32) {
+        this.webCrc32 = webCrc32;
+    }
+
+    public Instant getLastAccessedDate() {
+        return lastAccessedDate;
+    }
+
+    public File lastAccessedDate(Instant lastAccessedDate) {
+        this.lastAccessedDate = lastAccessedDate;
+        return this;
+    }
+
+    public void setLastAccessedDate(Instant lastAccessedDate) {
+        this.lastAccessedDate = lastAccessedDate;
+    }
     // jhipster-needle-entity-add-getters-setters - JHipster will add getters and setters here, do not remove
 
     @Override
@@ -151,6 +282,14 @@ public class File implements Serializable {
             ", createdDate='" + getCreatedDate() + "'" +
             ", lastModifiedBy='" + getLastModifiedBy() + "'" +
             ", lastModifiedDate='" + getLastModifiedDate() + "'" +
+            ", sha256='" + getSha256() + "'" +
+            ", size=" + getSize() +
+            ", type='" + getType() + "'" +
+            ", linearized='" + isLinearized() + "'" +
+            ", optimizedSize=" + getOptimizedSize() +
+            ", crc32=" + getCrc32() +
+            ", webCrc32=" + getWebCrc32() +
+            ", lastAccessedDate='" + getLastAccessedDate() + "'" +
             "}";
     }
 }
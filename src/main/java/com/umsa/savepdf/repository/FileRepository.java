@@ -1,9 +1,18 @@
 package com.umsa.savepdf.repository;
 
 import com.umsa.savepdf.domain.File;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.*;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
 
 /**
  * Spring Data  repository for the File entity.
@@ -12,4 +21,80 @@ import org.springframework.stereotype.Repository;
 @Repository
 public interface FileRepository extends JpaRepository<File, Long> {
 
+    long countBySha256(String sha256);
+
+    /**
+     * The files still downloaded from a legacy location.
+     *
+     * @return the id and the URL of each file.
+     */
+    @Query("select file.id, file.url from File file where file.sha256 is null and file.url like '%/get-pdf/%'")
+    List<Object[]> findLegacyIdAndUrl();
+
+    @Query("select distinct file.sha256 from File file where file.sha256 is not null order by file.sha256")
+    Slice<String> findDistinctSha256(Pageable pageable);
+
+    /**
+     * The digests of the stored PDFs, in order, read from a database cursor: the caller must hold a transaction open
+     * while it reads the stream, and close it.
+     */
+    @QueryHints(@QueryHint(name = org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("select distinct file.sha256 from File file where file.sha256 is not null order by file.sha256")
+    Stream<String> streamDistinctSha256();
+
+    @Modifying
+    @Query("update File file set file.url = :url where file.sha256 = :sha256")
+    int updateUrlBySha256(@Param("sha256") String sha256, @Param("url") String url);
+
+    @Modifying
+    @Query("update File file set file.linearized = :linearized where file.sha256 = :sha256")
+    int updateLinearizedBySha256(@Param("sha256") String sha256, @Param("linearized") Boolean linearized);
+
+    @Modifying
+    @Query("update File file set file.optimizedSize = :optimizedSize where file.sha256 = :sha256")
+    int updateOptimizedSizeBySha256(@Param("sha256") String sha256, @Param("optimizedSize") Long optimizedSize);
+
+    @Modifying
+    @Query("update File file set file.crc32 = :crc32 where file.sha256 = :sha256")
+    int updateCrc32BySha256(@Param("sha256") String sha256, @Param("crc32") Long crc32);
+
+    @Query("select distinct file.crc32 from File file where file.sha256 = :sha256 and file.crc32 is not null")
+    List<Long> findDistinctCrc32BySha256(@Param("sha256") String sha256);
+
+    @Modifying
+    @Query("update File file set file.webCrc32 = :webCrc32 where file.sha256 = :sha256")
+    int updateWebCrc32BySha256(@Param("sha256") String sha256, @Param("webCrc32") Long webCrc32);
+
+    /**
+     * Record the CRC-32 of the web rendition of a PDF on the files sharing it that do not have it yet.
+     */
+    @Modifying
+    @Query("update File file set file.webCrc32 = :webCrc32 where file.sha256 = :sha256 and file.webCrc32 is null")
+    int updateMissingWebCrc32BySha256(@Param("sha256") String sha256, @Param("webCrc32") Long webCrc32);
+
+    @Query("select distinct file.webCrc32 from File file where file.sha256 = :sha256 and file.webCrc32 is not null")
+    List<Long> findDistinctWebCrc32BySha256(@Param("sha256") String sha256);
+
+    /**
+     * The digests of the stored PDFs after a digest, in order, read from the index on the digests.
+     */
+    @Query("select distinct file.sha256 from File file where file.sha256 > :after order by file.sha256")
+    List<String> findDistinctSha256After(@Param("after") String after, Pageable pageable);
+
+    @Query("select distinct file.sha256 from File file where file.sha256 in :sha256s")
+    List<String> findDistinctSha256In(@Param("sha256s") Collection<String> sha256s);
+
+    @Query("select min(file.createdDate) from File file where file.sha256 = :sha256")
+    Instant findFirstCreatedDateBySha256(@Param("sha256") String sha256);
+
+    @Modifying
+    @Query("update File file set file.lastAccessedDate = :lastAccessedDate where file.sha256 in :sha256s")
+    int updateLastAccessedDateBySha256In(@Param("sha256s") Collection<String> sha256s, @Param("lastAccessedDate") Instant lastAccessedDate);
+
+    /**
+     * The stored PDFs after a digest none of whose files was downloaded, or created when never downloaded, since a date.
+     */
+    @Query("select file.sha256 from File file where file.sha256 is not null and file.sha256 > :after group by file.sha256 "
+        + "having max(coalesce(file.lastAccessedDate, file.createdDate)) < :before order by file.sha256")
+    List<String> findSha256NotAccessedSince(@Param("before") Instant before, @Param("after") String after, Pageable pageable);
 }
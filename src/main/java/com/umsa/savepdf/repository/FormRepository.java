@@ -1,15 +1,21 @@
 package com.umsa.savepdf.repository;
 
 import com.umsa.savepdf.domain.Form;
+import com.umsa.savepdf.domain.enumeration.FormType;
 import org.springframework.data.jpa.repository.*;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+
 
 /**
  * Spring Data  repository for the Form entity.
  */
 @SuppressWarnings("unused")
 @Repository
-public interface FormRepository extends JpaRepository<Form, Long> {
+public interface FormRepository extends JpaRepository<Form, Long>, JpaSpecificationExecutor<Form> {
+
+    long countByTypeAndTypeId(FormType type, Integer typeId);
 
+    List<Form> findAllByTypeAndTypeIdOrderByCreatedDateAscIdAsc(FormType type, Integer typeId);
 }
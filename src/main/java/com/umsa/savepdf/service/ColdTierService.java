@@ -0,0 +1,305 @@
+package com.umsa.savepdf.service;
+
+import com.umsa.savepdf.config.ApplicationProperties;
+import com.umsa.savepdf.repository.FileRepository;
+import com.umsa.savepdf.service.storage.ColdSegmentStore;
+import com.umsa.savepdf.service.storage.StorageBackend;
+import com.umsa.savepdf.service.storage.StorageObject;
+import com.umsa.savepdf.service.storage.TieredStorageBackend;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Service moving the PDFs nobody downloads anymore to the cold tier of a {@link TieredStorageBackend}, when
+ * {@code application.storage.cold.enabled} is set.
+ * <p>
+ * Downloads are recorded in memory and written as the {@code lastAccessedDate} of the files every
+ * {@code application.storage.cold.access-flush-interval} milliseconds, one update per batch of PDFs rather than one
+ * per download. Every {@code application.storage.cold.cron}, the PDFs none of whose files was downloaded (or created,
+ * when never downloaded) for {@code application.storage.cold.after-days} days are appended to the cold segments, then
+ * removed from the storage. Their thumbnails stay, as they are small and shown in every listing. A cold PDF keeps its
+ * size and modification time, so its downloads keep their validators.
+ * <p>
+ * With {@code application.storage.cold.promote-on-read}, downloading a cold PDF copies it back to the storage, on the
+ * {@code taskExecutor}, until it turns cold again.
+ */
+@Service
+public class ColdTierService {
+
+    private final Logger log = LoggerFactory.getLogger(ColdTierService.class);
+
+    private static final int UPDATE_CHUNK_SIZE = 500;
+
+    private final PdfStorageService pdfStorageService;
+
+    private final FileRepository fileRepository;
+
+    private final ApplicationProperties applicationProperties;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final Executor taskExecutor;
+
+    private final Clock clock;
+
+    private final Set<String> accessed = ConcurrentHashMap.newKeySet();
+
+    private final Set<String> promoting = ConcurrentHashMap.newKeySet();
+
+    private final Counter demotedCounter;
+
+    private final Counter promotedCounter;
+
+    private final Counter demotedBytesCounter;
+
+    @Autowired
+    public ColdTierService(PdfStorageService pdfStorageService, FileRepository fileRepository,
+                           ApplicationProperties applicationProperties, PlatformTransactionManager transactionManager,
+                           @Qualifier("taskExecutor") Executor taskExecutor, MeterRegistry meterRegistry) {
+        this(pdfStorageService, fileRepository, applicationProperties, transactionManager, taskExecutor, meterRegistry,
+            Clock.systemUTC());
+    }
+
+    ColdTierService(PdfStorageService pdfStorageService, FileRepository fileRepository,
+                    ApplicationProperties applicationProperties, PlatformTransactionManager transactionManager,
+                    Executor taskExecutor, MeterRegistry meterRegistry, Clock clock) {
+        this.pdfStorageService = pdfStorageService;
+        this.fileRepository = fileRepository;
+        this.applicationProperties = applicationProperties;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.taskExecutor = taskExecutor;
+        this.clock = clock;
+        this.demotedCounter = Counter.builder("savepdf.cold.pdfs")
+            .description("Stored PDFs moved between the storage and the cold tier")
+            .tag("direction", "demoted")
+            .register(meterRegistry);
+        this.promotedCounter = Counter.builder("savepdf.cold.pdfs")
+            .description("Stored PDFs moved between the storage and the cold tier")
+            .tag("direction", "promoted")
+            .register(meterRegistry);
+        this.demotedBytesCounter = Counter.builder("savepdf.cold.bytes")
+            .description("Bytes of stored PDFs moved to the cold tier")
+            .baseUnit("bytes")
+            .register(meterRegistry);
+        tiered().ifPresent(tiered -> Gauge.builder("savepdf.cold.stored", tiered.getCold(), ColdSegmentStore::count)
+            .description("PDFs held by the cold tier")
+            .register(meterRegistry));
+    }
+
+    /**
+     * Record the download of a content-addressed PDF, and bring it back from the cold tier if it is configured so.
+     *
+     * @param sha256 the digest of the PDF.
+     */
+    public void accessed(String sha256) {
+        Optional<TieredStorageBackend> tiered = tiered();
+        if (!tiered.isPresent()) {
+            return;
+        }
+        accessed.add(sha256);
+        if (applicationProperties.getStorage().getCold().isPromoteOnRead() && tiered.get().getCold().find(sha256).isPresent()) {
+            promote(sha256);
+        }
+    }
+
+    /**
+     * Write the recorded downloads to the files.
+     */
+    @Scheduled(initialDelayString = "${application.storage.cold.access-flush-interval:60000}",
+        fixedDelayString = "${application.storage.cold.access-flush-interval:60000}")
+    public void flushAccesses() {
+        if (accessed.isEmpty()) {
+            return;
+        }
+        Instant now = clock.instant();
+        List<String> chunk = new ArrayList<>(UPDATE_CHUNK_SIZE);
+        for (String sha256 : accessed) {
+            accessed.remove(sha256);
+            chunk.add(sha256);
+            if (chunk.size() == UPDATE_CHUNK_SIZE) {
+                updateLastAccessedDate(chunk, now);
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            updateLastAccessedDate(chunk, now);
+        }
+    }
+
+    private void updateLastAccessedDate(List<String> sha256s, Instant lastAccessedDate) {
+        transactionTemplate.execute(status -> fileRepository.updateLastAccessedDateBySha256In(sha256s, lastAccessedDate));
+    }
+
+    /**
+     * Move the PDFs no longer downloaded to the cold tier, if it is enabled.
+     */
+    @Scheduled(cron = "${application.storage.cold.cron:0 0 4 * * ?}")
+    public void demoteScheduled() {
+        if (!tiered().isPresent()) {
+            return;
+        }
+        log.info("Moved {} PDFs to the cold tier", demote());
+    }
+
+    /**
+     * Move the PDFs no longer downloaded to the cold tier, by batches of their digests.
+     *
+     * @return the number of PDFs moved.
+     */
+    public long demote() {
+        flushAccesses();
+        ApplicationProperties.Storage.Cold cold = applicationProperties.getStorage().getCold();
+        Instant before = clock.instant().minus(Duration.ofDays(cold.getAfterDays()));
+        long demoted = 0;
+        String after = "";
+        while (true) {
+            List<String> page = fileRepository.findSha256NotAccessedSince(before, after, PageRequest.of(0, cold.getBatchSize()));
+            for (String sha256 : page) {
+                try {
+                    if (demote(sha256)) {
+                        demoted++;
+                    }
+                } catch (IOException e) {
+                    log.warn("Could not move PDF {} to the cold tier : {}", sha256, e.getMessage());
+                }
+            }
+            if (page.size() < cold.getBatchSize()) {
+                return demoted;
+            }
+            after = page.get(page.size() - 1);
+        }
+    }
+
+    /**
+     * Move a PDF to the cold tier, unless it was downloaded since its files were read.
+     *
+     * @param sha256 the digest of the PDF.
+     * @return {@code true} if the PDF was moved, {@code false} if it is not in the storage.
+     * @throws IOException if the PDF cannot be copied or removed.
+     */
+    boolean demote(String sha256) throws IOException {
+        TieredStorageBackend tiered = tiered().orElseThrow(() -> new IllegalStateException("The cold tier is disabled"));
+        StorageBackend hot = tiered.getHot();
+        ApplicationProperties.Storage.Cold cold = applicationProperties.getStorage().getCold();
+        synchronized (pdfStorageService.lock(sha256)) {
+            if (accessed.contains(sha256)) {
+                return false;
+            }
+            Optional<StorageObject> pdf = hot.stat(pdfStorageService.key(sha256));
+            if (!pdf.isPresent() && !pdfStorageService.isSharded()) {
+                pdf = hot.stat(pdfStorageService.flatKey(sha256));
+            }
+            if (!pdf.isPresent()) {
+                return false;
+            }
+            String key = pdf.get().getKey();
+            Optional<ColdSegmentStore.Entry> entry = tiered.getCold().find(sha256);
+            if (!entry.isPresent() || entry.get().getSize() != pdf.get().getSize()) {
+                ColdSegmentStore.Codec codec = cold.getCompression() == ApplicationProperties.Storage.Cold.Compression.ZSTD
+                    ? ColdSegmentStore.Codec.ZSTD
+                    : ColdSegmentStore.Codec.RAW;
+                entry = Optional.of(tiered.getCold().append(sha256, () -> hot.read(key), pdf.get().getSize(),
+                    pdf.get().getLastModified(), codec, cold.getCompressionLevel()));
+            }
+            hot.delete(key);
+            log.debug("Moved PDF {} to the cold tier : {}", sha256, entry.get());
+            demotedCounter.increment();
+            demotedBytesCounter.increment(pdf.get().getSize());
+            return true;
+        }
+    }
+
+    /**
+     * Copy a cold PDF back to the storage, in the background, unless it is already being copied.
+     */
+    private void promote(String sha256) {
+        if (!promoting.add(sha256)) {
+            return;
+        }
+        try {
+            taskExecutor.execute(() -> {
+                try {
+                    promoteNow(sha256);
+                } catch (IOException e) {
+                    log.warn("Could not bring PDF {} back from the cold tier : {}", sha256, e.getMessage());
+                } finally {
+                    promoting.remove(sha256);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            promoting.remove(sha256);
+        }
+    }
+
+    /**
+     * Copy a cold PDF back to the storage, then remove it from the cold tier.
+     *
+     * @param sha256 the digest of the PDF.
+     * @return {@code true} if the PDF was in the cold tier.
+     * @throws IOException if the PDF cannot be copied.
+     */
+    boolean promoteNow(String sha256) throws IOException {
+        Optional<TieredStorageBackend> tiered = tiered();
+        if (!tiered.isPresent()) {
+            return false;
+        }
+        StorageBackend hot = tiered.get().getHot();
+        synchronized (pdfStorageService.lock(sha256)) {
+            Optional<ColdSegmentStore.Entry> entry = tiered.get().getCold().find(sha256);
+            if (!entry.isPresent()) {
+                return false;
+            }
+            String key = pdfStorageService.key(sha256);
+            if (!hot.stat(key).isPresent()) {
+                String staging = pdfStorageService.stagingKey();
+                boolean staged = false;
+                try (InputStream in = tiered.get().getCold().open(entry.get()); OutputStream out = hot.write(staging)) {
+                    IOUtils.copyLarge(in, out);
+                    staged = true;
+                } finally {
+                    if (!staged) {
+                        hot.delete(staging);
+                    }
+                }
+                hot.move(staging, key);
+            }
+            tiered.get().getCold().remove(sha256);
+            log.debug("Brought PDF {} back from the cold tier", sha256);
+            promotedCounter.increment();
+            return true;
+        }
+    }
+
+    private Optional<TieredStorageBackend> tiered() {
+        StorageBackend storageBackend = pdfStorageService.getStorageBackend();
+        return storageBackend instanceof TieredStorageBackend
+            ? Optional.of((TieredStorageBackend) storageBackend)
+            : Optional.empty();
+    }
+}
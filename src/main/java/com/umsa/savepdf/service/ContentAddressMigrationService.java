@@ -0,0 +1,228 @@
+package com.umsa.savepdf.service;
+
+import com.umsa.savepdf.config.ApplicationProperties;
+import com.umsa.savepdf.domain.File;
+import com.umsa.savepdf.domain.enumeration.FormType;
+import com.umsa.savepdf.repository.FileRepository;
+import com.umsa.savepdf.service.dto.StorageMigrationReportDTO;
+import com.umsa.savepdf.service.storage.StorageBackend;
+import com.umsa.savepdf.service.util.DigestUtil;
+import com.umsa.savepdf.web.rest.errors.BadRequestAlertException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Service moving the PDFs of the legacy, type-based directories ({@code ~/.umsa/forms/students/}...) into the
+ * content-addressed storage.
+ * <p>
+ * Files are hashed in parallel. The first copy of some content becomes the stored PDF through a hard link, and the
+ * other copies are replaced by hard links to it, so their disk space is reclaimed while the legacy URLs keep working.
+ * The {@link File} entities pointing at legacy URLs are moved to the content-addressed URL, and given the type of
+ * their legacy directory. Their URLs are read once, before hashing starts.
+ * <p>
+ * Hard links need the files on a local file system, so the migration requires the local {@link StorageBackend}.
+ */
+@Service
+public class ContentAddressMigrationService {
+
+    private final Logger log = LoggerFactory.getLogger(ContentAddressMigrationService.class);
+
+    private static final String ENTITY_NAME = "storage";
+
+    private static final String LEGACY_PATH = "/get-pdf/";
+
+    private static final String LEGACY_LOCATION = "&url=";
+
+    private static final Map<String, FormType> LEGACY_TYPES = new HashMap<>();
+
+    static {
+        LEGACY_TYPES.put("students/", FormType.STUDENT);
+        LEGACY_TYPES.put("teacher/", FormType.TEACHER);
+        LEGACY_TYPES.put("professional/", FormType.PROFESSIONAL);
+    }
+
+    private final PdfStorageService pdfStorageService;
+
+    private final FileRepository fileRepository;
+
+    private final ApplicationProperties applicationProperties;
+
+    private final TransactionTemplate transactionTemplate;
+
+    public ContentAddressMigrationService(PdfStorageService pdfStorageService, FileRepository fileRepository,
+                                          ApplicationProperties applicationProperties, PlatformTransactionManager transactionManager) {
+        this.pdfStorageService = pdfStorageService;
+        this.fileRepository = fileRepository;
+        this.applicationProperties = applicationProperties;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Migrate every legacy PDF. Running it again only re-hashes the files, which are already collapsed.
+     *
+     * @return the migration report.
+     * @throws IOException if the legacy directories cannot be listed.
+     * @throws BadRequestAlertException if the PDFs are not stored on the local file system.
+     * @throws InterruptedException if interrupted while waiting for the hashing threads.
+     */
+    public StorageMigrationReportDTO migrate() throws IOException, InterruptedException {
+        log.info("Migrating legacy PDFs to the content-addressed storage");
+        StorageMigrationReportDTO report = new StorageMigrationReportDTO();
+        StorageBackend storageBackend = pdfStorageService.getStorageBackend();
+        Path forms = storageBackend.localPath("")
+            .orElseThrow(() -> new BadRequestAlertException("La migración requiere el almacenamiento local", ENTITY_NAME, "storageNotLocal"));
+        if (!Files.isDirectory(forms)) {
+            return report;
+        }
+        Path contentAddressed = forms.resolve(PdfStorageService.CONTENT_ADDRESSED_PREFIX);
+        Files.createDirectories(contentAddressed);
+        List<Path> directories = new ArrayList<>();
+        directories.add(forms);
+        try (DirectoryStream<Path> children = Files.newDirectoryStream(forms, Files::isDirectory)) {
+            for (Path child : children) {
+                if (!child.equals(contentAddressed)) {
+                    directories.add(child);
+                }
+            }
+        }
+
+        Map<String, List<Long>> legacyFiles = legacyFiles();
+        int threads = applicationProperties.getStorage().getMigrationThreads();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(threads * 4), new ThreadPoolExecutor.CallerRunsPolicy());
+        try {
+            for (Path directory : directories) {
+                String location = directory.equals(forms) ? PdfStorageService.FORMS_LOCATION
+                    : PdfStorageService.FORMS_LOCATION + forms.relativize(directory) + "/";
+                try (DirectoryStream<Path> pdfs = Files.newDirectoryStream(directory, "*.pdf")) {
+                    for (Path pdf : pdfs) {
+                        if (Files.isRegularFile(pdf)) {
+                            executor.execute(() -> migrate(storageBackend, pdf, location, legacyFiles, report));
+                        }
+                    }
+                }
+            }
+        } finally {
+            executor.shutdown();
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        }
+        log.info("Migrated legacy PDFs to the content-addressed storage : {}", report);
+        return report;
+    }
+
+    private void migrate(StorageBackend storageBackend, Path pdf, String location, Map<String, List<Long>> legacyFiles,
+                         StorageMigrationReportDTO report) {
+        report.scanned();
+        try {
+            String sha256 = hash(pdf);
+            long size = Files.size(pdf);
+            Path stored = storageBackend.localPath(pdfStorageService.key(sha256)).get();
+            synchronized (pdfStorageService.lock(sha256)) {
+                if (!Files.exists(stored)) {
+                    Files.createDirectories(stored.getParent());
+                    link(stored, pdf);
+                    report.stored();
+                } else if (!Files.isSameFile(stored, pdf)) {
+                    Path link = pdf.resolveSibling(".link-" + UUID.randomUUID());
+                    Files.createLink(link, stored);
+                    Files.move(link, pdf, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                    report.deduplicated(size);
+                }
+            }
+            List<Long> ids = legacyFiles.getOrDefault(location + pdf.getFileName(), Collections.emptyList());
+            report.updatedFiles(updateFiles(ids, location, sha256, size));
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not migrate PDF {} : {}", pdf, e.getMessage());
+            report.failed();
+        }
+    }
+
+    /**
+     * Read the files downloaded from a legacy location.
+     *
+     * @return the ids of the files, by legacy location followed by file name.
+     */
+    private Map<String, List<Long>> legacyFiles() {
+        Map<String, List<Long>> legacyFiles = new HashMap<>();
+        for (Object[] row : fileRepository.findLegacyIdAndUrl()) {
+            String url = (String) row[1];
+            int name = url.indexOf(LEGACY_PATH) + LEGACY_PATH.length();
+            int query = url.indexOf('?', name);
+            int location = url.lastIndexOf(LEGACY_LOCATION);
+            if (query != -1 && location > query) {
+                String key = url.substring(location + LEGACY_LOCATION.length()) + url.substring(name, query);
+                legacyFiles.computeIfAbsent(key, k -> new ArrayList<>()).add((Long) row[0]);
+            }
+        }
+        return legacyFiles;
+    }
+
+    /**
+     * Point the files downloaded from a legacy location to the content-addressed URL.
+     */
+    private long updateFiles(List<Long> ids, String location, String sha256, long size) {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        String url = pdfStorageService.downloadUrl(sha256);
+        FormType type = LEGACY_TYPES.get(location.substring(PdfStorageService.FORMS_LOCATION.length()));
+        Long updated = transactionTemplate.execute(status -> {
+            long count = 0;
+            for (File file : fileRepository.findAllById(ids)) {
+                file.url(url).sha256(sha256).size(size).lastModifiedDate(Instant.now());
+                if (file.getType() == null) {
+                    file.setType(type);
+                }
+                count++;
+            }
+            return count;
+        });
+        return updated != null ? updated : 0;
+    }
+
+    private void link(Path stored, Path pdf) throws IOException {
+        try {
+            Files.createLink(stored, pdf);
+        } catch (UnsupportedOperationException | FileSystemException e) {
+            log.debug("Hard links not available for {}, copying it : {}", pdf, e.getMessage());
+            Path staging = stored.resolveSibling(".copy-" + UUID.randomUUID());
+            Files.copy(pdf, staging);
+            Files.move(staging, stored, StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+
+    private String hash(Path pdf) throws IOException {
+        MessageDigest digest = DigestUtil.sha256();
+        byte[] buffer = new byte[applicationProperties.getUpload().getBufferSize()];
+        try (InputStream in = Files.newInputStream(pdf)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return DigestUtil.toHex(digest.digest());
+    }
+}
@@ -0,0 +1,214 @@
+package com.umsa.savepdf.service;
+
+import com.umsa.savepdf.config.ApplicationProperties;
+import com.umsa.savepdf.service.dto.SignedUrlDTO;
+
+import io.github.jhipster.config.JHipsterProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+import org.springframework.web.util.UriComponents;
+import org.springframework.web.util.UriComponentsBuilder;
+import org.springframework.web.util.UriUtils;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Signer of the download URLs of the stored PDFs, served by {@link com.umsa.savepdf.web.rest.PdfController}.
+ * <p>
+ * A signed URL carries its expiry, in epoch seconds, and an HMAC-SHA256 of its file name, {@code homeEntity},
+ * {@code url} and expiry, so it is checked from the request alone, without a database or token lookup. The expiry is
+ * rounded up to the minute, so the URLs of a PDF minted within the same minute are identical and cached as one.
+ * <p>
+ * A signed response must not outlive its URL nor reach another user through a shared cache, so it is served with
+ * {@link #cacheControl(String)} instead of the immutable caching of the unsigned content-addressed downloads.
+ */
+@Service
+public class DownloadUrlSigner {
+
+    public static final String EXPIRES_PARAM = "expires";
+
+    public static final String SIGNATURE_PARAM = "signature";
+
+    private static final String ALGORITHM = "HmacSHA256";
+
+    private static final byte[] KEY_CONTEXT = "savepdf-download-url".getBytes(StandardCharsets.UTF_8);
+
+    private final ApplicationProperties applicationProperties;
+
+    private final SecretKeySpec key;
+
+    private final ThreadLocal<Mac> macs;
+
+    private final Clock clock;
+
+    private final Counter unsignedCounter;
+
+    private final Counter expiredCounter;
+
+    private final Counter invalidCounter;
+
+    @Autowired
+    public DownloadUrlSigner(ApplicationProperties applicationProperties, JHipsterProperties jHipsterProperties, MeterRegistry meterRegistry) {
+        this(applicationProperties, jHipsterProperties, meterRegistry, Clock.systemUTC());
+    }
+
+    DownloadUrlSigner(ApplicationProperties applicationProperties, JHipsterProperties jHipsterProperties, MeterRegistry meterRegistry, Clock clock) {
+        this.applicationProperties = applicationProperties;
+        this.clock = clock;
+        this.key = new SecretKeySpec(keyBytes(applicationProperties, jHipsterProperties), ALGORITHM);
+        this.macs = ThreadLocal.withInitial(() -> {
+            try {
+                Mac mac = Mac.getInstance(ALGORITHM);
+                mac.init(key);
+                return mac;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("Cannot sign the download URLs", e);
+            }
+        });
+        this.unsignedCounter = rejectedCounter(meterRegistry, "unsigned");
+        this.expiredCounter = rejectedCounter(meterRegistry, "expired");
+        this.invalidCounter = rejectedCounter(meterRegistry, "invalid");
+    }
+
+    private static Counter rejectedCounter(MeterRegistry meterRegistry, String reason) {
+        return Counter.builder("savepdf.download.rejected")
+            .description("Download URLs refused because of their signature")
+            .tag("reason", reason)
+            .register(meterRegistry);
+    }
+
+    /**
+     * The key is {@code application.download.signing.base64-secret}, or else derived from the JWT secret, which every
+     * instance already shares, so that a download URL cannot be used as a token nor a token as a download URL.
+     */
+    private static byte[] keyBytes(ApplicationProperties applicationProperties, JHipsterProperties jHipsterProperties) {
+        String base64Secret = applicationProperties.getDownload().getSigning().getBase64Secret();
+        if (!StringUtils.isEmpty(base64Secret)) {
+            return Base64.getDecoder().decode(base64Secret);
+        }
+        JHipsterProperties.Security.Authentication.Jwt jwt = jHipsterProperties.getSecurity().getAuthentication().getJwt();
+        byte[] jwtSecret = !StringUtils.isEmpty(jwt.getSecret())
+            ? jwt.getSecret().getBytes(StandardCharsets.UTF_8)
+            : Base64.getDecoder().decode(jwt.getBase64Secret());
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(new SecretKeySpec(jwtSecret, ALGORITHM));
+            return mac.doFinal(KEY_CONTEXT);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Cannot derive the key of the download URLs", e);
+        }
+    }
+
+    /**
+     * Sign a download URL, valid for {@code application.download.signing.ttl} seconds.
+     *
+     * @param url the download URL, as built by {@link PdfStorageService#downloadUrl(String)}.
+     * @return the signed URL, or empty if the URL is not a download URL.
+     */
+    public Optional<SignedUrlDTO> sign(String url) {
+        if (url == null) {
+            return Optional.empty();
+        }
+        UriComponents components = UriComponentsBuilder.fromUriString(url).build();
+        List<String> segments = components.getPathSegments();
+        String homeEntity = components.getQueryParams().getFirst("homeEntity");
+        String location = components.getQueryParams().getFirst("url");
+        if (segments.isEmpty() || homeEntity == null || location == null) {
+            return Optional.empty();
+        }
+        long ttl = applicationProperties.getDownload().getSigning().getTtl();
+        long expires = (clock.instant().getEpochSecond() + ttl + 59) / 60 * 60;
+        String signature = signature(decode(segments.get(segments.size() - 1)), decode(homeEntity), decode(location), expires);
+        String signed = url + (url.indexOf('?') < 0 ? "?" : "&") + EXPIRES_PARAM + "=" + expires + "&" + SIGNATURE_PARAM + "=" + signature;
+        return Optional.of(new SignedUrlDTO(signed, Instant.ofEpochSecond(expires)));
+    }
+
+    /**
+     * Check the signature of a download request, in constant time.
+     *
+     * @param filename the file name of the PDF.
+     * @param homeEntity the {@code homeEntity} parameter.
+     * @param url the {@code url} parameter.
+     * @param expires the {@code expires} parameter, if any.
+     * @param signature the {@code signature} parameter, if any.
+     * @return {@code true} if the signature is valid and not expired, or missing while signatures are not required.
+     */
+    public boolean verify(String filename, String homeEntity, String url, String expires, String signature) {
+        if (expires == null && signature == null) {
+            if (applicationProperties.getDownload().getSigning().isRequired()) {
+                unsignedCounter.increment();
+                return false;
+            }
+            return true;
+        }
+        long expiry;
+        byte[] actual;
+        try {
+            expiry = Long.parseLong(expires);
+            actual = Base64.getUrlDecoder().decode(signature == null ? "" : signature);
+        } catch (IllegalArgumentException e) {
+            invalidCounter.increment();
+            return false;
+        }
+        if (!MessageDigest.isEqual(mac(filename, homeEntity, url, expiry), actual)) {
+            invalidCounter.increment();
+            return false;
+        }
+        if (clock.instant().getEpochSecond() > expiry) {
+            expiredCounter.increment();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Get the {@code Cache-Control} of a verified download: private, and fresh only until the URL expires.
+     *
+     * @param expires the {@code expires} parameter, if any.
+     * @return the {@code Cache-Control} value, or empty if the download is not signed.
+     */
+    public Optional<String> cacheControl(String expires) {
+        if (expires == null) {
+            return Optional.empty();
+        }
+        long maxAge = Math.max(0, Long.parseLong(expires) - clock.instant().getEpochSecond());
+        return Optional.of(CacheControl.maxAge(maxAge, TimeUnit.SECONDS).cachePrivate().getHeaderValue());
+    }
+
+    private String signature(String filename, String homeEntity, String url, long expires) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(mac(filename, homeEntity, url, expires));
+    }
+
+    private byte[] mac(String filename, String homeEntity, String url, long expires) {
+        Mac mac = macs.get();
+        update(mac, filename);
+        update(mac, homeEntity);
+        update(mac, url);
+        return mac.doFinal(Long.toString(expires).getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static void update(Mac mac, String value) {
+        if (value != null) {
+            mac.update(value.getBytes(StandardCharsets.UTF_8));
+        }
+        mac.update((byte) '\n');
+    }
+
+    private static String decode(String value) {
+        return UriUtils.decode(value, StandardCharsets.UTF_8);
+    }
+}
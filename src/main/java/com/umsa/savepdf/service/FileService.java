@@ -1,8 +1,12 @@
 package com.umsa.savepdf.service;
 
+import com.umsa.savepdf.config.Constants;
 import com.umsa.savepdf.domain.File;
+import com.umsa.savepdf.domain.enumeration.FormType;
 import com.umsa.savepdf.repository.FileRepository;
+import com.umsa.savepdf.security.SecurityUtils;
 import com.umsa.savepdf.service.dto.FileDTO;
+import com.umsa.savepdf.service.dto.SignedUrlDTO;
 import com.umsa.savepdf.service.mapper.FileMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -10,9 +14,19 @@ import org.slf4j.LoggerFactory;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 /**
  * Service Implementation for managing {@link File}.
@@ -23,17 +37,116 @@ public class FileService {
 
     private final Logger log = LoggerFactory.getLogger(FileService.class);
 
+    private static final int PUBLISH_ATTEMPTS = 3;
+
+    /**
+     * Milliseconds before the second attempt to publish a PDF, growing with each attempt.
+     */
+    private static final long PUBLISH_RETRY_DELAY = 200;
+
     private final FileRepository fileRepository;
 
     private final FileMapper fileMapper;
 
-    public FileService(FileRepository fileRepository, FileMapper fileMapper) {
+    private final PdfStorageService pdfStorageService;
+
+    private final DownloadUrlSigner downloadUrlSigner;
+
+    private final TransactionTemplate referenceCheckTemplate;
+
+    private final TransactionTemplate compensationTemplate;
+
+    public FileService(FileRepository fileRepository, FileMapper fileMapper, PdfStorageService pdfStorageService,
+                       DownloadUrlSigner downloadUrlSigner, PlatformTransactionManager transactionManager) {
         this.fileRepository = fileRepository;
         this.fileMapper = fileMapper;
+        this.pdfStorageService = pdfStorageService;
+        this.downloadUrlSigner = downloadUrlSigner;
+        this.referenceCheckTemplate = new TransactionTemplate(transactionManager);
+        this.referenceCheckTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.referenceCheckTemplate.setReadOnly(true);
+        this.compensationTemplate = new TransactionTemplate(transactionManager);
+        this.compensationTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
     }
 
     /**
-     * Save a file.
+     * Register a staged PDF as a new file. The PDF is published once the file is committed, and discarded if the
+     * transaction rolls back. A PDF that cannot be published removes the file again and fails the registration. Its
+     * post-processing is left to the {@link UploadPipelineService}.
+     *
+     * @param storedPdf the staged PDF.
+     * @param name the name of the file, usually the original file name of the upload.
+     * @param type the form type of the PDF.
+     * @return the persisted entity.
+     * @throws UncheckedIOException if the PDF cannot be published.
+     */
+    public FileDTO register(StoredPdf storedPdf, String name, FormType type) {
+        log.debug("Request to register File for : {}", storedPdf);
+        Instant now = Instant.now();
+        String login = SecurityUtils.getCurrentUserLogin().orElse(Constants.SYSTEM_ACCOUNT);
+        File file = new File()
+            .name(name != null ? name : storedPdf.getName())
+            .url(pdfStorageService.downloadUrl(storedPdf))
+            .sha256(storedPdf.getSha256())
+            .size(storedPdf.getSize())
+            .crc32(storedPdf.getCrc32())
+            .type(type)
+            .createdBy(login)
+            .createdDate(now)
+            .lastModifiedBy(login)
+            .lastModifiedDate(now);
+        file = fileRepository.save(file);
+        Long id = file.getId();
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit() {
+                publish(storedPdf, id);
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    pdfStorageService.discard(storedPdf);
+                }
+            }
+        });
+        return fileMapper.toDto(file);
+    }
+
+    /**
+     * Publish the PDF of a committed file, retrying a few times. When it still fails, the file is removed again and
+     * the upload fails, rather than leaving a file without its PDF.
+     */
+    private void publish(StoredPdf storedPdf, Long id) {
+        IOException failure = null;
+        for (int attempt = 1; attempt <= PUBLISH_ATTEMPTS; attempt++) {
+            try {
+                pdfStorageService.publish(storedPdf);
+                return;
+            } catch (IOException e) {
+                log.warn("Could not publish stored PDF {} (attempt {}/{}) : {}", storedPdf, attempt, PUBLISH_ATTEMPTS, e.getMessage());
+                failure = e;
+            }
+            try {
+                Thread.sleep(PUBLISH_RETRY_DELAY * attempt);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        log.error("Could not publish stored PDF {}, removing File {}", storedPdf, id, failure);
+        compensationTemplate.execute(status -> {
+            fileRepository.deleteById(id);
+            return null;
+        });
+        pdfStorageService.discard(storedPdf);
+        throw new UncheckedIOException("Could not store the uploaded PDF", failure != null ? failure
+            : new IOException("Interrupted while publishing the uploaded PDF"));
+    }
+
+    /**
+     * Save a file. The fields describing its stored PDF are only set by {@link #register(StoredPdf, String, FormType)}
+     * and the ingest stages, so they are kept from the saved entity, as is the URL of a content-addressed file.
      *
      * @param fileDTO the entity to save.
      * @return the persisted entity.
@@ -41,6 +154,17 @@ public class FileService {
     public FileDTO save(FileDTO fileDTO) {
         log.debug("Request to save File : {}", fileDTO);
         File file = fileMapper.toEntity(fileDTO);
+        File saved = Optional.ofNullable(file.getId()).flatMap(fileRepository::findById).orElseGet(File::new);
+        file.setSha256(saved.getSha256());
+        file.setSize(saved.getSize());
+        file.setCrc32(saved.getCrc32());
+        file.setWebCrc32(saved.getWebCrc32());
+        file.setLinearized(saved.isLinearized());
+        file.setOptimizedSize(saved.getOptimizedSize());
+        file.setLastAccessedDate(saved.getLastAccessedDate());
+        if (saved.getSha256() != null) {
+            file.setUrl(saved.getUrl());
+        }
         file = fileRepository.save(file);
         return fileMapper.toDto(file);
     }
@@ -72,6 +196,25 @@ public class FileService {
             .map(fileMapper::toDto);
     }
 
+    /**
+     * Sign the download URLs of files, in one query.
+     *
+     * @param ids the ids of the files.
+     * @return the signed URLs of the files found, in no particular order.
+     */
+    @Transactional(readOnly = true)
+    public List<SignedUrlDTO> signDownloadUrls(List<Long> ids) {
+        log.debug("Request to sign the download URLs of {} Files", ids.size());
+        return fileRepository.findAllById(ids).stream()
+            .map(file -> downloadUrlSigner.sign(file.getUrl()).map(signedUrl -> {
+                signedUrl.setFileId(file.getId());
+                return signedUrl;
+            }))
+            .filter(Optional::isPresent)
+            .map(Optional::get)
+            .collect(Collectors.toList());
+    }
+
     /**
      * Delete the file by id.
      *
@@ -79,6 +222,28 @@ public class FileService {
      */
     public void delete(Long id) {
         log.debug("Request to delete File : {}", id);
-        fileRepository.deleteById(id);
+        fileRepository.findById(id).ifPresent(file -> {
+            fileRepository.delete(file);
+            if (file.getSha256() != null) {
+                releaseAfterCommit(file.getSha256());
+            }
+        });
+    }
+
+    /**
+     * Once the current transaction commits, remove the stored PDF if no other file references it.
+     */
+    private void releaseAfterCommit(String sha256) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit() {
+                try {
+                    pdfStorageService.release(sha256,
+                        () -> referenceCheckTemplate.execute(status -> fileRepository.countBySha256(sha256) == 0));
+                } catch (IOException e) {
+                    log.warn("Could not remove unreferenced PDF {} : {}", sha256, e.getMessage());
+                }
+            }
+        });
     }
 }
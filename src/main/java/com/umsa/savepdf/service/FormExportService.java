@@ -0,0 +1,291 @@
+package com.umsa.savepdf.service;
+
+import com.umsa.savepdf.domain.File;
+import com.umsa.savepdf.domain.Form;
+import com.umsa.savepdf.domain.Form_;
+import com.umsa.savepdf.domain.enumeration.FormType;
+import com.umsa.savepdf.repository.FormRepository;
+import com.umsa.savepdf.service.storage.StorageBackend;
+import com.umsa.savepdf.service.storage.StorageObject;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.stereotype.Service;
+
+import javax.persistence.criteria.JoinType;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Service exporting the PDFs of the {@link Form}s matching a type and created date range as a ZIP archive, with a
+ * {@code manifest.csv} of the forms and their files.
+ * <p>
+ * The archive is written straight to the response: the forms are read by pages of {@value #PAGE_SIZE}, and each PDF is
+ * copied from the storage through one buffer into a stored entry, which needs its CRC before its data. The CRC recorded
+ * for a content-addressed PDF is used as is, the stored PDF never changing. The legacy PDFs are read twice, first for
+ * their CRC: the second read is opened before the entry is started and only used if the PDF still has the size and
+ * modification time it had for the first one, so a PDF replaced meanwhile is left out rather than written with a
+ * wrong CRC. The PDFs are not recompressed, and entries or archives beyond 4 GB use the ZIP64 format. Only the forms
+ * whose PDF is missing are kept in memory, to be flagged in the manifest.
+ * <p>
+ * The manifest values starting with {@code =}, {@code +}, {@code -} or {@code @} are prefixed with a quote, so a
+ * spreadsheet opening it does not evaluate a form or file name as a formula. The export latency is published as
+ * {@code savepdf.forms.export}.
+ */
+@Service
+public class FormExportService {
+
+    private final Logger log = LoggerFactory.getLogger(FormExportService.class);
+
+    public static final String MANIFEST = "manifest.csv";
+
+    static final int PAGE_SIZE = 200;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final String[] MANIFEST_HEADER = {"form_id", "form_name", "type", "type_id", "created_by", "created_date",
+        "file_id", "file_name", "sha256", "size", "entry"};
+
+    private final FormRepository formRepository;
+
+    private final PdfStorageService pdfStorageService;
+
+    private final Timer exportTimer;
+
+    public FormExportService(FormRepository formRepository, PdfStorageService pdfStorageService, MeterRegistry meterRegistry) {
+        this.formRepository = formRepository;
+        this.pdfStorageService = pdfStorageService;
+        this.exportTimer = Timer.builder("savepdf.forms.export")
+            .description("Time to export the PDFs of the forms as a ZIP archive")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Write the ZIP archive of the forms matching the filters.
+     *
+     * @param type the type of the forms, every type when {@code null}.
+     * @param from the earliest created date, if any.
+     * @param to the latest created date, if any.
+     * @param out the stream the archive is written to.
+     * @throws IOException if a PDF cannot be read, or the archive cannot be written.
+     */
+    public void export(FormType type, Instant from, Instant to, OutputStream out) throws IOException {
+        long start = System.nanoTime();
+        Specification<Form> filter = filter(type, from, to);
+        Set<Long> missing = new HashSet<>();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        ZipOutputStream zip = new ZipOutputStream(out);
+        try {
+            // The manifest only lists the forms exported, not the ones created meanwhile.
+            Long last = forEach(filter, form -> {
+                Optional<StorageObject> pdf = find(form.getFile());
+                if (!pdf.isPresent()) {
+                    log.warn("PDF of form {} is missing from the storage, leaving it out of the export", form.getId());
+                    missing.add(form.getId());
+                } else if (!writePdf(zip, entryName(form), pdf.get(), recordedCrc32(form.getFile(), pdf.get()), buffer)) {
+                    log.warn("PDF of form {} changed while being exported, leaving it out of the export", form.getId());
+                    missing.add(form.getId());
+                }
+            });
+            zip.putNextEntry(new ZipEntry(MANIFEST));
+            Writer manifest = new BufferedWriter(new OutputStreamWriter(zip, StandardCharsets.UTF_8));
+            writeRow(manifest, MANIFEST_HEADER);
+            if (last != null) {
+                forEach(filter.and((root, query, cb) -> cb.lessThanOrEqualTo(root.get(Form_.id), last)),
+                    form -> writeRow(manifest, manifestRow(form, missing.contains(form.getId()) ? null : entryName(form))));
+            }
+            manifest.flush();
+            zip.closeEntry();
+            zip.finish();
+            log.debug("Exported the forms of type {} from {} to {}, {} PDFs missing", type, from, to, missing.size());
+        } finally {
+            exportTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private static Specification<Form> filter(FormType type, Instant from, Instant to) {
+        Specification<Form> filter = Specification.where((root, query, cb) -> {
+            // Load the files with their forms, except in the count queries.
+            if (!Long.class.equals(query.getResultType())) {
+                root.fetch(Form_.file, JoinType.LEFT);
+            }
+            return null;
+        });
+        if (type != null) {
+            filter = filter.and((root, query, cb) -> cb.equal(root.get(Form_.type), type));
+        }
+        if (from != null) {
+            filter = filter.and((root, query, cb) -> cb.greaterThanOrEqualTo(root.get(Form_.createdDate), from));
+        }
+        if (to != null) {
+            filter = filter.and((root, query, cb) -> cb.lessThanOrEqualTo(root.get(Form_.createdDate), to));
+        }
+        return filter;
+    }
+
+    /**
+     * Run an action on every form matching a filter, by id, a page at a time.
+     *
+     * @return the id of the last form, or {@code null} if none matched.
+     */
+    private Long forEach(Specification<Form> filter, FormAction action) throws IOException {
+        Long last = null;
+        List<Form> page;
+        do {
+            Long after = last;
+            Specification<Form> next = after == null ? filter : filter.and((root, query, cb) -> cb.greaterThan(root.get(Form_.id), after));
+            page = formRepository.findAll(next, PageRequest.of(0, PAGE_SIZE, Sort.by(Form_.ID))).getContent();
+            for (Form form : page) {
+                action.accept(form);
+                last = form.getId();
+            }
+        } while (page.size() == PAGE_SIZE);
+        return last;
+    }
+
+    private Optional<StorageObject> find(File file) throws IOException {
+        if (file == null) {
+            return Optional.empty();
+        }
+        if (file.getSha256() != null) {
+            return pdfStorageService.find(file.getSha256());
+        }
+        return pdfStorageService.find(PdfStorageService.HOME_ENTITY, file.getUrl(), file.getName());
+    }
+
+    /**
+     * The CRC recorded for a content-addressed PDF, if it has one and the stored PDF has the recorded size.
+     */
+    private static Long recordedCrc32(File file, StorageObject pdf) {
+        if (file.getSha256() == null || file.getCrc32() == null || file.getSize() == null || file.getSize() != pdf.getSize()) {
+            return null;
+        }
+        return file.getCrc32();
+    }
+
+    /**
+     * Write a PDF as a stored entry. Without a recorded CRC, the PDF is read a first time for its CRC.
+     *
+     * @param crc32 the CRC recorded for the PDF, if any: a stored PDF not matching it fails the archive.
+     * @return {@code false} if the PDF was modified or removed since it was found, in which case no entry is written.
+     */
+    private boolean writePdf(ZipOutputStream zip, String name, StorageObject pdf, Long crc32, byte[] buffer) throws IOException {
+        StorageBackend storageBackend = pdfStorageService.getStorageBackend();
+        long size = pdf.getSize();
+        try {
+            if (crc32 == null) {
+                CRC32 crc = new CRC32();
+                size = 0;
+                try (InputStream in = storageBackend.read(pdf.getKey())) {
+                    for (int read = in.read(buffer); read != -1; read = in.read(buffer)) {
+                        crc.update(buffer, 0, read);
+                        size += read;
+                    }
+                }
+                crc32 = crc.getValue();
+            }
+            try (InputStream in = storageBackend.read(pdf.getKey())) {
+                Optional<StorageObject> current = storageBackend.stat(pdf.getKey());
+                if (size != pdf.getSize() || !current.isPresent() || current.get().getSize() != pdf.getSize()
+                    || !Objects.equals(current.get().getLastModified(), pdf.getLastModified())) {
+                    return false;
+                }
+                ZipEntry entry = new ZipEntry(name);
+                entry.setMethod(ZipEntry.STORED);
+                entry.setSize(size);
+                entry.setCompressedSize(size);
+                entry.setCrc(crc32);
+                if (pdf.getLastModified() != null) {
+                    entry.setTime(pdf.getLastModified().toEpochMilli());
+                }
+                zip.putNextEntry(entry);
+                for (int read = in.read(buffer); read != -1; read = in.read(buffer)) {
+                    zip.write(buffer, 0, read);
+                }
+            }
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+        zip.closeEntry();
+        return true;
+    }
+
+    /**
+     * The path of a PDF in the archive: {@code <type>/<form id>-<file name>}.
+     */
+    static String entryName(Form form) {
+        String type = form.getType() == null ? "none" : form.getType().name().toLowerCase();
+        String name = form.getFile() == null || form.getFile().getName() == null ? "form.pdf" : form.getFile().getName();
+        name = name.replaceAll("[^A-Za-z0-9._-]", "_");
+        if (!name.toLowerCase().endsWith(".pdf")) {
+            name += ".pdf";
+        }
+        return type + "/" + form.getId() + "-" + name;
+    }
+
+    private static String[] manifestRow(Form form, String entry) {
+        File file = form.getFile();
+        return new String[] {
+            String.valueOf(form.getId()), form.getName(), form.getType() == null ? null : form.getType().name(),
+            form.getTypeId() == null ? null : form.getTypeId().toString(), form.getCreatedBy(),
+            form.getCreatedDate() == null ? null : form.getCreatedDate().toString(),
+            file == null || file.getId() == null ? null : file.getId().toString(), file == null ? null : file.getName(),
+            file == null ? null : file.getSha256(), file == null || file.getSize() == null ? null : file.getSize().toString(),
+            entry
+        };
+    }
+
+    /**
+     * Write a CSV row, as in RFC 4180: the values holding a comma, a quote or a line break are quoted. The values a
+     * spreadsheet would take for a formula are prefixed with a quote.
+     */
+    private static void writeRow(Writer writer, String[] values) throws IOException {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            String value = values[i];
+            if (value == null) {
+                continue;
+            }
+            if (!value.isEmpty() && "=+-@".indexOf(value.charAt(0)) >= 0) {
+                value = "'" + value;
+            }
+            if (value.indexOf(',') >= 0 || value.indexOf('"') >= 0 || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0) {
+                writer.write('"');
+                writer.write(value.replace("\"", "\"\""));
+                writer.write('"');
+            } else {
+                writer.write(value);
+            }
+        }
+        writer.write("\r\n");
+    }
+
+    @FunctionalInterface
+    private interface FormAction {
+
+        void accept(Form form) throws IOException;
+    }
+}
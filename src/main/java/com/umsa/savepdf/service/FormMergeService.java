@@ -0,0 +1,156 @@
+package com.umsa.savepdf.service;
+
+import com.umsa.savepdf.config.ApplicationProperties;
+import com.umsa.savepdf.domain.Form;
+import com.umsa.savepdf.domain.enumeration.FormType;
+import com.umsa.savepdf.repository.FormRepository;
+import com.umsa.savepdf.service.storage.StorageObject;
+import com.umsa.savepdf.web.rest.errors.BadRequestAlertException;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.pdfbox.io.IOUtils;
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.multipdf.PDFMergerUtility;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Service merging the PDFs of a set of {@link Form}s into one document, such as every form of a student.
+ * <p>
+ * The forms are selected in the request thread, then merged while the result is streamed, on the
+ * {@code streamingExecutor}. The merged document and the PDFs being merged are buffered in temporary files rather than
+ * on the heap, but the pages appended to the merged document read their content from their source until it is saved,
+ * so every source stays open, with its parsed objects and its temporary file, until then: the memory and file handles
+ * of a merge grow with its number of PDFs, which {@code application.download.merge.max-forms} bounds.
+ * The merge latency is published as {@code savepdf.forms.merge}.
+ */
+@Service
+@Transactional(readOnly = true)
+public class FormMergeService {
+
+    private final Logger log = LoggerFactory.getLogger(FormMergeService.class);
+
+    private static final String ENTITY_NAME = "form";
+
+    private final FormRepository formRepository;
+
+    private final PdfStorageService pdfStorageService;
+
+    private final ApplicationProperties applicationProperties;
+
+    private final Timer mergeTimer;
+
+    public FormMergeService(FormRepository formRepository, PdfStorageService pdfStorageService,
+                            ApplicationProperties applicationProperties, MeterRegistry meterRegistry) {
+        this.formRepository = formRepository;
+        this.pdfStorageService = pdfStorageService;
+        this.applicationProperties = applicationProperties;
+        this.mergeTimer = Timer.builder("savepdf.forms.merge")
+            .description("Time to merge and stream the PDFs of a set of forms")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Select the PDFs to merge, either of the given forms, in the given order, or of every form of a type id, by
+     * created date. The forms without a PDF are left out.
+     *
+     * @param ids the ids of the forms.
+     * @param type the type of the forms, when no id is given.
+     * @param typeId the type id of the forms, when no id is given.
+     * @return the digests of the PDFs to merge.
+     * @throws BadRequestAlertException if the selection is missing or has too many forms.
+     * @throws NoSuchElementException if none of the selected forms has a PDF.
+     */
+    public List<String> select(List<Long> ids, FormType type, Integer typeId) {
+        log.debug("Request to select the PDFs of Forms {} or of type {} {}", ids, type, typeId);
+        int maxForms = applicationProperties.getDownload().getMerge().getMaxForms();
+        List<Form> forms;
+        if (ids != null && !ids.isEmpty()) {
+            checkSize(ids.size(), maxForms);
+            Map<Long, Form> found = formRepository.findAllById(ids).stream()
+                .collect(Collectors.toMap(Form::getId, Function.identity()));
+            forms = ids.stream().map(found::get).filter(Objects::nonNull).collect(Collectors.toList());
+        } else if (type != null && typeId != null) {
+            checkSize(formRepository.countByTypeAndTypeId(type, typeId), maxForms);
+            forms = formRepository.findAllByTypeAndTypeIdOrderByCreatedDateAscIdAsc(type, typeId);
+        } else {
+            throw new BadRequestAlertException("Select the forms by id, or by type and type id", ENTITY_NAME, "mergeSelection");
+        }
+        List<String> pdfs = forms.stream()
+            .filter(form -> form.getFile() != null && form.getFile().getSha256() != null)
+            .map(form -> form.getFile().getSha256())
+            .collect(Collectors.toList());
+        if (pdfs.isEmpty()) {
+            throw new NoSuchElementException("None of the selected forms has a PDF");
+        }
+        return pdfs;
+    }
+
+    private static void checkSize(long size, int maxForms) {
+        if (size > maxForms) {
+            throw new BadRequestAlertException("At most " + maxForms + " forms can be merged", ENTITY_NAME, "tooManyForms");
+        }
+    }
+
+    /**
+     * Merge PDFs into one document. The PDFs missing from the storage or that cannot be read are left out, but a PDF
+     * that cannot be appended aborts the merge, as it may have left part of its pages in the merged document.
+     *
+     * @param pdfs the digests of the PDFs, in the order of their pages in the merged document.
+     * @param out the stream the merged document is written to, untouched if the merge is aborted.
+     * @throws IOException if none of the PDFs can be read, one of them cannot be appended, or the merged document
+     * cannot be written.
+     */
+    public void merge(List<String> pdfs, OutputStream out) throws IOException {
+        long start = System.nanoTime();
+        // The pages appended to the merged document still read their content from their source until it is saved.
+        List<PDDocument> sources = new ArrayList<>(pdfs.size());
+        try (PDDocument destination = new PDDocument(MemoryUsageSetting.setupTempFileOnly())) {
+            PDFMergerUtility merger = new PDFMergerUtility();
+            for (String sha256 : pdfs) {
+                Optional<StorageObject> pdf = pdfStorageService.find(sha256);
+                if (!pdf.isPresent()) {
+                    log.warn("PDF {} is missing from the storage, leaving it out of the merge", sha256);
+                    continue;
+                }
+                PDDocument source;
+                try {
+                    source = pdfStorageService.load(pdf.get());
+                } catch (IOException e) {
+                    log.warn("PDF {} cannot be read, leaving it out of the merge : {}", sha256, e.getMessage());
+                    continue;
+                }
+                sources.add(source);
+                try {
+                    merger.appendDocument(destination, source);
+                } catch (IOException | RuntimeException e) {
+                    throw new IOException("PDF " + sha256 + " cannot be appended, aborting the merge", e);
+                }
+            }
+            if (destination.getNumberOfPages() == 0) {
+                throw new IOException("None of the " + pdfs.size() + " PDFs could be merged");
+            }
+            destination.save(out);
+            log.debug("Merged {} of {} PDFs into {} pages", sources.size(), pdfs.size(), destination.getNumberOfPages());
+        } finally {
+            sources.forEach(IOUtils::closeQuietly);
+            mergeTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+}
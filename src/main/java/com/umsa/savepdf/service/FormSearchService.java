@@ -0,0 +1,459 @@
+package com.umsa.savepdf.service;
+
+import com.umsa.savepdf.config.ApplicationProperties;
+import com.umsa.savepdf.domain.File;
+import com.umsa.savepdf.domain.Form;
+import com.umsa.savepdf.domain.enumeration.FormType;
+import com.umsa.savepdf.repository.FormRepository;
+import com.umsa.savepdf.service.dto.FormDTO;
+import com.umsa.savepdf.service.mapper.FormMapper;
+import com.umsa.savepdf.service.storage.StorageObject;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.IntPoint;
+import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.queryparser.classic.MultiFieldQueryParser;
+import org.apache.lucene.queryparser.classic.ParseException;
+import org.apache.lucene.queryparser.classic.QueryParser;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.TotalHits;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.Bits;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Service indexing the text of the PDF of each {@link Form} in an embedded Lucene index, for full-text search.
+ * <p>
+ * The index lives in {@code application.search.directory}, on local disk, and holds one document per form with its
+ * name, the text extracted from its PDF by PDFBox (up to {@code application.search.max-chars} characters), its
+ * {@link FormType}, {@code typeId} and created date. It is kept up to date by {@link FormService}: saved forms are
+ * re-indexed on the bounded {@code searchExecutor}, off the request thread, and deleted forms are removed once the
+ * deletion is committed. Changes are searchable right away and committed to disk every
+ * {@code application.search.commit-interval} milliseconds.
+ * <p>
+ * The index only holds the form ids: search results are read from the database, so they are never stale. Forms
+ * missed by the incremental updates, when the queue is full or before the index existed, are indexed by
+ * {@link #rebuild()}.
+ * <p>
+ * The extraction latency is published as {@code savepdf.search.extract}, the indexed forms as
+ * {@code savepdf.search.documents} and the forms skipped because the queue was full as {@code savepdf.search.rejected}.
+ */
+@Service
+public class FormSearchService {
+
+    private final Logger log = LoggerFactory.getLogger(FormSearchService.class);
+
+    static final String FIELD_ID = "id";
+
+    static final String FIELD_NAME = "name";
+
+    static final String FIELD_CONTENT = "content";
+
+    static final String FIELD_TYPE = "type";
+
+    static final String FIELD_TYPE_ID = "typeId";
+
+    static final String FIELD_CREATED_DATE = "createdDate";
+
+    private static final int REBUILD_PAGE_SIZE = 500;
+
+    private static final int LOCK_STRIPES = 64;
+
+    private final FormRepository formRepository;
+
+    private final FormMapper formMapper;
+
+    private final PdfStorageService pdfStorageService;
+
+    private final ApplicationProperties applicationProperties;
+
+    private final ThreadPoolTaskExecutor executor;
+
+    private final Analyzer analyzer = new StandardAnalyzer();
+
+    private final Directory directory;
+
+    private final IndexWriter writer;
+
+    private final SearcherManager searcherManager;
+
+    private final Object[] locks = new Object[LOCK_STRIPES];
+
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+
+    private final Timer extractTimer;
+
+    private final Counter rejectedCounter;
+
+    public FormSearchService(FormRepository formRepository, FormMapper formMapper, PdfStorageService pdfStorageService,
+                             ApplicationProperties applicationProperties, @Qualifier("searchExecutor") ThreadPoolTaskExecutor executor,
+                             MeterRegistry meterRegistry) throws IOException {
+        this.formRepository = formRepository;
+        this.formMapper = formMapper;
+        this.pdfStorageService = pdfStorageService;
+        this.applicationProperties = applicationProperties;
+        this.executor = executor;
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new Object();
+        }
+        Path path = Paths.get(applicationProperties.getSearch().getDirectory());
+        Files.createDirectories(path);
+        this.directory = FSDirectory.open(path);
+        this.writer = new IndexWriter(directory, new IndexWriterConfig(analyzer)
+            .setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND));
+        this.searcherManager = new SearcherManager(writer, null);
+        this.extractTimer = Timer.builder("savepdf.search.extract")
+            .description("Time to extract the text of a PDF")
+            .register(meterRegistry);
+        this.rejectedCounter = Counter.builder("savepdf.search.rejected")
+            .description("Saved forms left to the next rebuild because the queue was full")
+            .register(meterRegistry);
+        Gauge.builder("savepdf.search.documents", writer, w -> w.getDocStats().numDocs)
+            .description("Forms in the search index")
+            .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        searcherManager.close();
+        writer.close();
+        directory.close();
+    }
+
+    /**
+     * Commit the changes to the index, so they survive a restart.
+     */
+    @Scheduled(initialDelayString = "${application.search.commit-interval:60000}",
+        fixedDelayString = "${application.search.commit-interval:60000}")
+    public void commit() {
+        if (!writer.hasUncommittedChanges()) {
+            return;
+        }
+        try {
+            writer.commit();
+        } catch (IOException e) {
+            log.warn("Could not commit the search index : {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Queue the indexing of a saved form.
+     *
+     * @param formId the id of the form.
+     */
+    public void schedule(Long formId) {
+        try {
+            executor.execute(() -> indexQuietly(formId));
+        } catch (RejectedExecutionException e) {
+            log.debug("Search queue full, leaving form {} to the next rebuild", formId);
+            rejectedCounter.increment();
+        }
+    }
+
+    private void indexQuietly(Long formId) {
+        try {
+            index(formId);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not index form {} : {}", formId, e.getMessage());
+        }
+    }
+
+    /**
+     * Index a form in the calling thread, or remove it from the index if it does not exist anymore.
+     *
+     * @param formId the id of the form.
+     * @throws IOException if the PDF cannot be read or the index cannot be written.
+     */
+    public void index(Long formId) throws IOException {
+        Optional<Form> form = formRepository.findById(formId);
+        if (!form.isPresent()) {
+            delete(formId);
+            return;
+        }
+        Document document = toDocument(form.get(), extract(form.get().getFile()));
+        synchronized (lock(formId)) {
+            // The form may have been deleted while its text was extracted.
+            if (formRepository.existsById(formId)) {
+                writer.updateDocument(new Term(FIELD_ID, formId.toString()), document);
+            } else {
+                writer.deleteDocuments(new Term(FIELD_ID, formId.toString()));
+            }
+        }
+        searcherManager.maybeRefresh();
+        log.debug("Indexed form {}", formId);
+    }
+
+    /**
+     * Remove a form from the index.
+     *
+     * @param formId the id of the form.
+     * @throws IOException if the index cannot be written.
+     */
+    public void delete(Long formId) throws IOException {
+        synchronized (lock(formId)) {
+            writer.deleteDocuments(new Term(FIELD_ID, formId.toString()));
+        }
+        searcherManager.maybeRefresh();
+    }
+
+    /**
+     * Search the forms.
+     *
+     * @param query the words to find in the name or the PDF of the forms, in the Lucene query syntax; every form matches when blank.
+     * @param type the type of the forms, or {@code null} for any.
+     * @param typeId the type id of the forms, or {@code null} for any.
+     * @param from the earliest created date, or {@code null}.
+     * @param to the latest created date, or {@code null}.
+     * @param pageable the pagination information, results are sorted by relevance, or by created date without query.
+     * @return the page of forms.
+     * @throws IOException if the index cannot be read.
+     */
+    public Page<FormDTO> search(String query, FormType type, Integer typeId, Instant from, Instant to, Pageable pageable) throws IOException {
+        BooleanQuery.Builder builder = new BooleanQuery.Builder();
+        boolean text = query != null && !query.trim().isEmpty();
+        builder.add(text ? parse(query) : new MatchAllDocsQuery(), BooleanClause.Occur.MUST);
+        if (type != null) {
+            builder.add(new TermQuery(new Term(FIELD_TYPE, type.name())), BooleanClause.Occur.FILTER);
+        }
+        if (typeId != null) {
+            builder.add(IntPoint.newExactQuery(FIELD_TYPE_ID, typeId), BooleanClause.Occur.FILTER);
+        }
+        if (from != null || to != null) {
+            builder.add(LongPoint.newRangeQuery(FIELD_CREATED_DATE, from != null ? from.toEpochMilli() : Long.MIN_VALUE,
+                to != null ? to.toEpochMilli() : Long.MAX_VALUE), BooleanClause.Occur.FILTER);
+        }
+        Query luceneQuery = builder.build();
+        int offset = (int) Math.min(pageable.getOffset(), Integer.MAX_VALUE - pageable.getPageSize());
+        int end = offset + pageable.getPageSize();
+        List<Long> ids = new ArrayList<>(pageable.getPageSize());
+        long total;
+        IndexSearcher searcher = searcherManager.acquire();
+        try {
+            TopDocs topDocs = text
+                ? searcher.search(luceneQuery, end)
+                : searcher.search(luceneQuery, end, new Sort(new SortField(FIELD_CREATED_DATE, SortField.Type.LONG, true)));
+            for (int i = offset; i < topDocs.scoreDocs.length; i++) {
+                ScoreDoc scoreDoc = topDocs.scoreDocs[i];
+                ids.add(Long.valueOf(searcher.doc(scoreDoc.doc).get(FIELD_ID)));
+            }
+            total = topDocs.totalHits.relation == TotalHits.Relation.EQUAL_TO
+                ? topDocs.totalHits.value
+                : searcher.count(luceneQuery);
+        } finally {
+            searcherManager.release(searcher);
+        }
+        Map<Long, Form> forms = formRepository.findAllById(ids).stream()
+            .collect(Collectors.toMap(Form::getId, Function.identity()));
+        List<FormDTO> content = ids.stream()
+            .map(forms::get)
+            .filter(Objects::nonNull)
+            .map(formMapper::toDto)
+            .collect(Collectors.toList());
+        return new PageImpl<>(content, pageable, total);
+    }
+
+    /**
+     * Re-index every form in the background, on {@code application.search.rebuild-threads} workers, then remove the
+     * forms deleted meanwhile. The index stays searchable during the rebuild.
+     */
+    @Async
+    public void rebuild() {
+        if (!rebuilding.compareAndSet(false, true)) {
+            log.info("The search index is already being rebuilt");
+            return;
+        }
+        int threads = applicationProperties.getSearch().getRebuildThreads();
+        ThreadPoolExecutor rebuildExecutor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(threads), new ThreadPoolExecutor.CallerRunsPolicy());
+        try {
+            log.info("Rebuilding the search index");
+            long start = System.nanoTime();
+            Set<String> indexed = ConcurrentHashMap.newKeySet();
+            // a stable order, else the pages may overlap and skip forms
+            Page<Form> page = formRepository.findAll(PageRequest.of(0, REBUILD_PAGE_SIZE, org.springframework.data.domain.Sort.by("id")));
+            while (true) {
+                for (Form form : page) {
+                    indexed.add(form.getId().toString());
+                    rebuildExecutor.execute(() -> indexQuietly(form.getId()));
+                }
+                if (!page.hasNext()) {
+                    break;
+                }
+                page = formRepository.findAll(page.nextPageable());
+            }
+            rebuildExecutor.shutdown();
+            rebuildExecutor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            int removed = removeStale(indexed);
+            writer.commit();
+            searcherManager.maybeRefresh();
+            log.info("Rebuilt the search index of {} forms, removed {} deleted forms, in {} ms", indexed.size(), removed,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } catch (IOException | RuntimeException e) {
+            log.error("Could not rebuild the search index", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            rebuildExecutor.shutdownNow();
+            rebuilding.set(false);
+        }
+    }
+
+    /**
+     * @return {@code true} while {@link #rebuild()} runs.
+     */
+    public boolean isRebuilding() {
+        return rebuilding.get();
+    }
+
+    /**
+     * Remove the indexed forms that were not found by a rebuild.
+     */
+    private int removeStale(Set<String> indexed) throws IOException {
+        searcherManager.maybeRefreshBlocking();
+        List<String> stale = new ArrayList<>();
+        IndexSearcher searcher = searcherManager.acquire();
+        try {
+            for (LeafReaderContext context : searcher.getIndexReader().leaves()) {
+                LeafReader reader = context.reader();
+                Bits liveDocs = reader.getLiveDocs();
+                for (int doc = 0; doc < reader.maxDoc(); doc++) {
+                    if (liveDocs == null || liveDocs.get(doc)) {
+                        String id = reader.document(doc).get(FIELD_ID);
+                        if (!indexed.contains(id)) {
+                            stale.add(id);
+                        }
+                    }
+                }
+            }
+        } finally {
+            searcherManager.release(searcher);
+        }
+        for (String id : stale) {
+            index(Long.valueOf(id));
+        }
+        return stale.size();
+    }
+
+    private Query parse(String query) {
+        MultiFieldQueryParser parser = new MultiFieldQueryParser(new String[] { FIELD_NAME, FIELD_CONTENT }, analyzer);
+        parser.setDefaultOperator(QueryParser.Operator.AND);
+        try {
+            return parser.parse(query);
+        } catch (ParseException e) {
+            try {
+                return parser.parse(QueryParser.escape(query));
+            } catch (ParseException escaped) {
+                return new MatchAllDocsQuery();
+            }
+        }
+    }
+
+    private static Document toDocument(Form form, String content) {
+        Document document = new Document();
+        document.add(new StringField(FIELD_ID, form.getId().toString(), Field.Store.YES));
+        if (form.getName() != null) {
+            document.add(new TextField(FIELD_NAME, form.getName(), Field.Store.NO));
+        }
+        document.add(new TextField(FIELD_CONTENT, content, Field.Store.NO));
+        if (form.getType() != null) {
+            document.add(new StringField(FIELD_TYPE, form.getType().name(), Field.Store.NO));
+        }
+        if (form.getTypeId() != null) {
+            document.add(new IntPoint(FIELD_TYPE_ID, form.getTypeId()));
+        }
+        long createdDate = form.getCreatedDate() != null ? form.getCreatedDate().toEpochMilli() : 0L;
+        document.add(new LongPoint(FIELD_CREATED_DATE, createdDate));
+        document.add(new NumericDocValuesField(FIELD_CREATED_DATE, createdDate));
+        return document;
+    }
+
+    /**
+     * Extract the text of the PDF of a form, page by page until {@code application.search.max-chars} characters.
+     */
+    private String extract(File file) throws IOException {
+        if (file == null || file.getSha256() == null) {
+            return "";
+        }
+        Optional<StorageObject> pdf = pdfStorageService.find(file.getSha256());
+        if (!pdf.isPresent()) {
+            return "";
+        }
+        int maxChars = applicationProperties.getSearch().getMaxChars();
+        long start = System.nanoTime();
+        try (PDDocument document = pdfStorageService.load(pdf.get())) {
+            PDFTextStripper stripper = new PDFTextStripper();
+            StringBuilder text = new StringBuilder();
+            for (int page = 1; page <= document.getNumberOfPages() && text.length() < maxChars; page++) {
+                stripper.setStartPage(page);
+                stripper.setEndPage(page);
+                text.append(stripper.getText(document));
+            }
+            return text.length() > maxChars ? text.substring(0, maxChars) : text.toString();
+        } finally {
+            extractTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private Object lock(Long formId) {
+        return locks[(int) Math.floorMod(formId, (long) LOCK_STRIPES)];
+    }
+}
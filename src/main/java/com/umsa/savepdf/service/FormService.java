@@ -1,6 +1,7 @@
 package com.umsa.savepdf.service;
 
 import com.umsa.savepdf.domain.Form;
+import com.umsa.savepdf.domain.enumeration.FormType;
 import com.umsa.savepdf.repository.FormRepository;
 import com.umsa.savepdf.service.dto.FormDTO;
 import com.umsa.savepdf.service.mapper.FormMapper;
@@ -11,7 +12,11 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.io.IOException;
+import java.time.Instant;
 import java.util.Optional;
 
 /**
@@ -27,13 +32,16 @@ public class FormService {
 
     private final FormMapper formMapper;
 
-    public FormService(FormRepository formRepository, FormMapper formMapper) {
+    private final FormSearchService formSearchService;
+
+    public FormService(FormRepository formRepository, FormMapper formMapper, FormSearchService formSearchService) {
         this.formRepository = formRepository;
         this.formMapper = formMapper;
+        this.formSearchService = formSearchService;
     }
 
     /**
-     * Save a form.
+     * Save a form. It is re-indexed for search in the background once the transaction commits.
      *
      * @param formDTO the entity to save.
      * @return the persisted entity.
@@ -42,6 +50,13 @@ public class FormService {
         log.debug("Request to save Form : {}", formDTO);
         Form form = formMapper.toEntity(formDTO);
         form = formRepository.save(form);
+        Long id = form.getId();
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit() {
+                formSearchService.schedule(id);
+            }
+        });
         return formMapper.toDto(form);
     }
 
@@ -73,12 +88,40 @@ public class FormService {
     }
 
     /**
-     * Delete the form by id.
+     * Search the forms by the text of their name and PDF.
+     *
+     * @param query the words to find, in the Lucene query syntax; every form matches when blank.
+     * @param type the type of the forms, or {@code null} for any.
+     * @param typeId the type id of the forms, or {@code null} for any.
+     * @param from the earliest created date, or {@code null}.
+     * @param to the latest created date, or {@code null}.
+     * @param pageable the pagination information.
+     * @return the list of entities.
+     * @throws IOException if the search index cannot be read.
+     */
+    @Transactional(readOnly = true)
+    public Page<FormDTO> search(String query, FormType type, Integer typeId, Instant from, Instant to, Pageable pageable) throws IOException {
+        log.debug("Request to search for a page of Forms for query {}", query);
+        return formSearchService.search(query, type, typeId, from, to, pageable);
+    }
+
+    /**
+     * Delete the form by id. It is removed from the search index once the transaction commits.
      *
      * @param id the id of the entity.
      */
     public void delete(Long id) {
         log.debug("Request to delete Form : {}", id);
         formRepository.deleteById(id);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit() {
+                try {
+                    formSearchService.delete(id);
+                } catch (IOException e) {
+                    log.warn("Could not remove form {} from the search index : {}", id, e.getMessage());
+                }
+            }
+        });
     }
 }
@@ -0,0 +1,404 @@
+package com.umsa.savepdf.service;
+
+import com.umsa.savepdf.config.ApplicationProperties;
+import com.umsa.savepdf.config.Constants;
+import com.umsa.savepdf.repository.FileRepository;
+import com.umsa.savepdf.service.storage.StorageBackend;
+import com.umsa.savepdf.service.storage.StorageObject;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.actuate.audit.AuditEvent;
+import org.springframework.boot.actuate.audit.AuditEventRepository;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.zip.CRC32;
+
+/**
+ * Service re-reading the stored PDFs in the background and checking them against the CRC-32 recorded on their
+ * {@link com.umsa.savepdf.domain.File}s, so that a PDF corrupted on its storage is found before a user downloads it.
+ * <p>
+ * The PDFs are scrubbed by batches of {@code application.storage.scrub.batch-size} every
+ * {@code application.storage.scrub.batch-interval} milliseconds, in the order of their digest, on the
+ * {@code scrubExecutor}. Its workers share a read rate of {@code application.storage.scrub.rate} MB/s, which leaves
+ * the I/O to the downloads. The position of the pass is saved in the storage after every batch, so a restart resumes
+ * it, and the next pass starts {@code application.storage.scrub.pass-interval} seconds after the previous one.
+ * <p>
+ * A PDF matches when its CRC-32 is one recorded on its files. The files are then aligned on the stored CRC-32, and the
+ * PDFs stored before the checksums get theirs recorded on their first scrub. A PDF that does not match is read again
+ * before it is reported, in case it was released and uploaded again meanwhile. The web rendition of a PDF, which the
+ * downloads serve, is checked the same way against the CRC-32 recorded by the ingest.
+ * <p>
+ * Corrupted and missing PDFs are reported as {@value #CORRUPTED_EVENT} and {@value #MISSING_EVENT} audit events. The
+ * scrubbed PDFs are counted by result in {@code savepdf.scrub.pdfs}, and the bytes read in {@code savepdf.scrub.bytes}.
+ */
+@Service
+public class IntegrityScrubService {
+
+    private final Logger log = LoggerFactory.getLogger(IntegrityScrubService.class);
+
+    public static final String CORRUPTED_EVENT = "PDF_CORRUPTED";
+
+    public static final String MISSING_EVENT = "PDF_MISSING";
+
+    /**
+     * Storage key of the position of the current pass.
+     */
+    static final String CURSOR_KEY = ".scrub-cursor";
+
+    /**
+     * A PDF is published once its file is committed, so a file younger than this may not have its PDF yet.
+     */
+    private static final Duration MISSING_GRACE = Duration.ofMinutes(1);
+
+    private static final Pattern DIGEST = Pattern.compile("[0-9a-f]{64}");
+
+    /**
+     * The outcome of the scrub of a PDF.
+     */
+    enum Result {
+        VERIFIED, RECORDED, CORRUPTED, MISSING, FAILED
+    }
+
+    private final PdfStorageService pdfStorageService;
+
+    private final FileRepository fileRepository;
+
+    private final AuditEventRepository auditEventRepository;
+
+    private final ApplicationProperties applicationProperties;
+
+    private final ThreadPoolTaskExecutor scrubExecutor;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final Clock clock;
+
+    private final Throttle throttle;
+
+    private final Counter bytesCounter;
+
+    private final Map<Result, Counter> resultCounters = new EnumMap<>(Result.class);
+
+    @Autowired
+    public IntegrityScrubService(PdfStorageService pdfStorageService, FileRepository fileRepository,
+                                 AuditEventRepository auditEventRepository, ApplicationProperties applicationProperties,
+                                 @Qualifier("scrubExecutor") ThreadPoolTaskExecutor scrubExecutor,
+                                 PlatformTransactionManager transactionManager, MeterRegistry meterRegistry) {
+        this(pdfStorageService, fileRepository, auditEventRepository, applicationProperties, scrubExecutor, transactionManager,
+            meterRegistry, Clock.systemUTC());
+    }
+
+    IntegrityScrubService(PdfStorageService pdfStorageService, FileRepository fileRepository,
+                          AuditEventRepository auditEventRepository, ApplicationProperties applicationProperties,
+                          ThreadPoolTaskExecutor scrubExecutor, PlatformTransactionManager transactionManager,
+                          MeterRegistry meterRegistry, Clock clock) {
+        this.pdfStorageService = pdfStorageService;
+        this.fileRepository = fileRepository;
+        this.auditEventRepository = auditEventRepository;
+        this.applicationProperties = applicationProperties;
+        this.scrubExecutor = scrubExecutor;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.clock = clock;
+        this.throttle = new Throttle(applicationProperties.getStorage().getScrub().getRate());
+        this.bytesCounter = Counter.builder("savepdf.scrub.bytes")
+            .description("Bytes of stored PDFs read by the integrity scrubber")
+            .baseUnit("bytes")
+            .register(meterRegistry);
+        for (Result result : Result.values()) {
+            resultCounters.put(result, Counter.builder("savepdf.scrub.pdfs")
+                .description("Stored PDFs checked by the integrity scrubber")
+                .tag("result", result.name().toLowerCase())
+                .register(meterRegistry));
+        }
+    }
+
+    /**
+     * Scrub the next batch of stored PDFs, if the scrubber is enabled.
+     */
+    @Scheduled(initialDelayString = "${application.storage.scrub.batch-interval:1000}",
+        fixedDelayString = "${application.storage.scrub.batch-interval:1000}")
+    public void scrubScheduled() {
+        if (!applicationProperties.getStorage().getScrub().isEnabled()) {
+            return;
+        }
+        try {
+            scrubBatch();
+        } catch (IOException e) {
+            log.warn("Could not scrub the stored PDFs : {}", e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Scrub the next batch of stored PDFs, when a pass is running or due, and save the position of the pass.
+     *
+     * @return the number of PDFs scrubbed.
+     * @throws IOException if the position of the pass cannot be read or saved.
+     * @throws InterruptedException if interrupted while waiting for the workers.
+     */
+    public int scrubBatch() throws IOException, InterruptedException {
+        ApplicationProperties.Storage.Scrub scrub = applicationProperties.getStorage().getScrub();
+        Cursor cursor = readCursor();
+        Instant now = clock.instant();
+        if (cursor.after.isEmpty()) {
+            if (cursor.passStarted != null && now.isBefore(cursor.passStarted.plusSeconds(scrub.getPassInterval()))) {
+                return 0;
+            }
+            log.info("Starting to scrub the stored PDFs");
+            cursor.passStarted = now;
+        }
+        List<String> pdfs = fileRepository.findDistinctSha256After(cursor.after, PageRequest.of(0, scrub.getBatchSize()));
+        List<Future<Result>> results = new ArrayList<>(pdfs.size());
+        for (String sha256 : pdfs) {
+            results.add(scrubExecutor.submit(() -> scrub(sha256)));
+        }
+        for (Future<Result> result : results) {
+            try {
+                resultCounters.get(result.get()).increment();
+            } catch (ExecutionException e) {
+                log.warn("Could not scrub a stored PDF : {}", e.getCause().getMessage());
+                resultCounters.get(Result.FAILED).increment();
+            }
+        }
+        if (!pdfs.isEmpty()) {
+            cursor.after = pdfs.get(pdfs.size() - 1);
+        }
+        if (pdfs.size() < scrub.getBatchSize()) {
+            log.info("Scrubbed every stored PDF, the pass started at {}", cursor.passStarted);
+            cursor.after = "";
+        }
+        writeCursor(cursor);
+        return pdfs.size();
+    }
+
+    /**
+     * Check a stored PDF, and its web rendition if it has one, against the CRC-32s recorded on its files.
+     *
+     * @param sha256 the digest of the PDF.
+     * @return the outcome, the one of the rendition when the PDF itself matches.
+     */
+    Result scrub(String sha256) {
+        try {
+            Result result = scrubPdf(sha256);
+            if (result != Result.VERIFIED && result != Result.RECORDED) {
+                return result;
+            }
+            Result rendition = scrubWebRendition(sha256);
+            return rendition == Result.VERIFIED ? result : rendition;
+        } catch (IOException e) {
+            log.warn("Could not scrub PDF {} : {}", sha256, e.getMessage());
+            return Result.FAILED;
+        }
+    }
+
+    private Result scrubPdf(String sha256) throws IOException {
+        List<Long> recorded = fileRepository.findDistinctCrc32BySha256(sha256);
+        Optional<StorageObject> pdf = pdfStorageService.find(sha256);
+        Long actual = pdf.isPresent() ? crc32(pdf.get()) : null;
+        if (actual != null && (recorded.isEmpty() || recorded.contains(actual))) {
+            return align(sha256, recorded, actual);
+        }
+        // Read it again, it may have been released and uploaded again meanwhile.
+        recorded = fileRepository.findDistinctCrc32BySha256(sha256);
+        pdf = pdfStorageService.find(sha256);
+        actual = pdf.isPresent() ? crc32(pdf.get()) : null;
+        if (actual == null) {
+            return missing(sha256);
+        }
+        if (!recorded.isEmpty() && !recorded.contains(actual)) {
+            return corrupted(sha256, pdf.get(), recorded, actual);
+        }
+        return align(sha256, recorded, actual);
+    }
+
+    /**
+     * Check the web rendition of a PDF, which is never rewritten, against the CRC-32 recorded on its files.
+     */
+    private Result scrubWebRendition(String sha256) throws IOException {
+        Optional<StorageObject> rendition = pdfStorageService.findWebRendition(sha256);
+        if (!rendition.isPresent()) {
+            return Result.VERIFIED;
+        }
+        List<Long> recorded = fileRepository.findDistinctWebCrc32BySha256(sha256);
+        long actual = crc32(rendition.get());
+        if (!recorded.isEmpty() && !recorded.contains(actual)) {
+            return corrupted(sha256, rendition.get(), recorded, actual);
+        }
+        // Files uploaded after the rendition was stored do not have its CRC-32 yet.
+        int updated = recorded.size() > 1
+            ? transactionTemplate.execute(status -> fileRepository.updateWebCrc32BySha256(sha256, actual))
+            : transactionTemplate.execute(status -> fileRepository.updateMissingWebCrc32BySha256(sha256, actual));
+        return recorded.isEmpty() && updated > 0 ? Result.RECORDED : Result.VERIFIED;
+    }
+
+    /**
+     * Record the CRC-32 of a matching PDF on every file sharing it.
+     */
+    private Result align(String sha256, List<Long> recorded, long actual) {
+        if (recorded.size() == 1) {
+            return Result.VERIFIED;
+        }
+        log.debug("Recording the CRC-32 of PDF {}", sha256);
+        transactionTemplate.execute(status -> fileRepository.updateCrc32BySha256(sha256, actual));
+        return recorded.isEmpty() ? Result.RECORDED : Result.VERIFIED;
+    }
+
+    private Result corrupted(String sha256, StorageObject pdf, List<Long> recorded, long actual) {
+        log.error("Stored PDF {} is corrupted : CRC-32 {} instead of {}", pdf.getKey(), Long.toHexString(actual),
+            recorded.stream().map(Long::toHexString).collect(Collectors.joining(", ")));
+        Map<String, Object> data = new HashMap<>();
+        data.put("sha256", sha256);
+        data.put("key", pdf.getKey());
+        data.put("size", pdf.getSize());
+        data.put("expected", recorded.stream().map(Long::toHexString).collect(Collectors.joining(",")));
+        data.put("actual", Long.toHexString(actual));
+        auditEventRepository.add(new AuditEvent(Constants.SYSTEM_ACCOUNT, CORRUPTED_EVENT, data));
+        return Result.CORRUPTED;
+    }
+
+    private Result missing(String sha256) {
+        Instant firstCreated = fileRepository.findFirstCreatedDateBySha256(sha256);
+        if (fileRepository.countBySha256(sha256) == 0
+            || (firstCreated != null && firstCreated.isAfter(clock.instant().minus(MISSING_GRACE)))) {
+            return Result.VERIFIED;
+        }
+        log.error("Stored PDF {} is missing", sha256);
+        Map<String, Object> data = new HashMap<>();
+        data.put("sha256", sha256);
+        data.put("key", pdfStorageService.key(sha256));
+        auditEventRepository.add(new AuditEvent(Constants.SYSTEM_ACCOUNT, MISSING_EVENT, data));
+        return Result.MISSING;
+    }
+
+    private long crc32(StorageObject pdf) throws IOException {
+        CRC32 crc = new CRC32();
+        byte[] buffer = new byte[applicationProperties.getUpload().getBufferSize()];
+        try (InputStream in = pdfStorageService.getStorageBackend().read(pdf.getKey())) {
+            for (int read = in.read(buffer); read != -1; read = in.read(buffer)) {
+                throttle.acquire(read);
+                crc.update(buffer, 0, read);
+                bytesCounter.increment(read);
+            }
+        }
+        return crc.getValue();
+    }
+
+    private Cursor readCursor() throws IOException {
+        StorageBackend storageBackend = pdfStorageService.getStorageBackend();
+        Cursor cursor = new Cursor();
+        if (!storageBackend.stat(CURSOR_KEY).isPresent()) {
+            return cursor;
+        }
+        Properties properties = new Properties();
+        try (InputStream in = storageBackend.read(CURSOR_KEY)) {
+            properties.load(in);
+        }
+        try {
+            cursor.after = properties.getProperty("after", "");
+            if (!cursor.after.isEmpty() && !DIGEST.matcher(cursor.after).matches()) {
+                throw new IllegalArgumentException("not a digest: " + cursor.after);
+            }
+            String passStarted = properties.getProperty("passStarted");
+            cursor.passStarted = passStarted == null ? null : Instant.parse(passStarted);
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            log.warn("Ignoring the invalid scrub cursor : {}", e.getMessage());
+            return new Cursor();
+        }
+        return cursor;
+    }
+
+    /**
+     * Save the position of the pass, through a staged copy so that a crash never leaves half of it.
+     */
+    private void writeCursor(Cursor cursor) throws IOException {
+        StorageBackend storageBackend = pdfStorageService.getStorageBackend();
+        Properties properties = new Properties();
+        properties.setProperty("after", cursor.after);
+        if (cursor.passStarted != null) {
+            properties.setProperty("passStarted", cursor.passStarted.toString());
+        }
+        String staging = pdfStorageService.stagingKey();
+        try (OutputStream out = storageBackend.write(staging)) {
+            properties.store(out, "Position of the integrity scrubber");
+        }
+        storageBackend.move(staging, CURSOR_KEY);
+    }
+
+    /**
+     * The position of a pass: the digest of the last PDF scrubbed, empty between passes.
+     */
+    private static class Cursor {
+
+        private String after = "";
+
+        private Instant passStarted;
+    }
+
+    /**
+     * Spaces the reads of the workers so that together they stay under a rate.
+     */
+    private static class Throttle {
+
+        private final double nanosPerByte;
+
+        private long next = System.nanoTime();
+
+        Throttle(double megabytesPerSecond) {
+            this.nanosPerByte = megabytesPerSecond > 0 ? 1e9 / (megabytesPerSecond * 1024 * 1024) : 0;
+        }
+
+        /**
+         * Wait for the turn of bytes already read. An idle scrubber does not build up a burst.
+         */
+        void acquire(int bytes) throws InterruptedIOException {
+            if (nanosPerByte == 0) {
+                return;
+            }
+            long wait;
+            synchronized (this) {
+                long now = System.nanoTime();
+                long start = Math.max(next, now);
+                next = start + (long) (bytes * nanosPerByte);
+                wait = start - now;
+            }
+            if (wait > 0) {
+                try {
+                    Thread.sleep(wait / 1_000_000, (int) (wait % 1_000_000));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while scrubbing");
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package com.umsa.savepdf.service;
+
+import com.umsa.savepdf.service.util.MappedBufferUtil;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Service sharing read-only memory mappings of local files between concurrent readers.
+ * <p>
+ * A file is mapped by its first reader and unmapped as soon as its last reader releases it, instead of whenever the
+ * garbage collector finds the buffer, so the address space and page cache of large PDFs are given back
+ * deterministically. A modified file (new size or modification time) gets a new mapping.
+ */
+@Service
+public class MappedFileService {
+
+    private final Logger log = LoggerFactory.getLogger(MappedFileService.class);
+
+    private final ConcurrentMap<MappingKey, MappedFile> mappings = new ConcurrentHashMap<>();
+
+    private final AtomicLong mappedBytes = new AtomicLong();
+
+    public MappedFileService(MeterRegistry meterRegistry) {
+        Gauge.builder("savepdf.download.mapped.bytes", mappedBytes, AtomicLong::get)
+            .description("Bytes of stored PDFs currently memory-mapped")
+            .baseUnit("bytes")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Get a mapping of a whole file, mapping it if no other reader holds it.
+     *
+     * @param path the file, at most 2 GB.
+     * @param size the size of the file.
+     * @param lastModified the modification time of the file, in milliseconds.
+     * @return the mapping, to be released once the reader is done with it.
+     * @throws IOException if the file cannot be mapped.
+     */
+    public Mapping acquire(Path path, long size, long lastModified) throws IOException {
+        MappingKey key = new MappingKey(path, size, lastModified);
+        try {
+            MappedFile mappedFile = mappings.compute(key, (k, existing) -> {
+                if (existing != null) {
+                    existing.readers++;
+                    return existing;
+                }
+                MappedFile mapped = new MappedFile(map(path, size));
+                mapped.readers = 1;
+                mappedBytes.addAndGet(size);
+                log.debug("Mapped {} ({} bytes)", path, size);
+                return mapped;
+            });
+            return new Mapping(key, mappedFile.buffer);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private void release(MappingKey key) {
+        MappedFile[] unmapped = new MappedFile[1];
+        mappings.computeIfPresent(key, (k, existing) -> {
+            if (--existing.readers > 0) {
+                return existing;
+            }
+            unmapped[0] = existing;
+            return null;
+        });
+        if (unmapped[0] != null) {
+            MappedBufferUtil.unmap(unmapped[0].buffer);
+            mappedBytes.addAndGet(-key.size);
+            log.debug("Unmapped {}", key.path);
+        }
+    }
+
+    private static MappedByteBuffer map(Path path, long size) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * A reader's hold on a mapped file. The buffer must not be used once the mapping is closed.
+     */
+    public final class Mapping implements AutoCloseable {
+
+        private final MappingKey key;
+
+        private final ByteBuffer buffer;
+
+        private boolean closed;
+
+        private Mapping(MappingKey key, ByteBuffer buffer) {
+            this.key = key;
+            this.buffer = buffer.asReadOnlyBuffer();
+        }
+
+        /**
+         * @return a read-only view of the whole file, private to this reader.
+         */
+        public ByteBuffer buffer() {
+            return buffer;
+        }
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                release(key);
+            }
+        }
+    }
+
+    private static final class MappedFile {
+
+        private final MappedByteBuffer buffer;
+
+        private int readers;
+
+        MappedFile(MappedByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+    }
+
+    private static final class MappingKey {
+
+        private final Path path;
+
+        private final long size;
+
+        private final long lastModified;
+
+        MappingKey(Path path, long size, long lastModified) {
+            this.path = path;
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof MappingKey)) {
+                return false;
+            }
+            MappingKey other = (MappingKey) o;
+            return size == other.size && lastModified == other.lastModified && path.equals(other.path);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(path, size, lastModified);
+        }
+    }
+}
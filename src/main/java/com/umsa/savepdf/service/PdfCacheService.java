@@ -0,0 +1,217 @@
+package com.umsa.savepdf.service;
+
+import com.umsa.savepdf.config.ApplicationProperties;
+import com.umsa.savepdf.service.storage.StorageBackend;
+import com.umsa.savepdf.service.storage.StorageObject;
+import com.umsa.savepdf.service.util.MappedBufferUtil;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Optional;
+
+/**
+ * Service keeping the content of the most downloaded PDFs in memory.
+ * <p>
+ * The bytes are held off-heap in direct buffers, so they neither count against the heap nor get copied by Undertow
+ * when written, and the cache is bounded by their total size. Readers hold a {@link Lease} on an entry, the way
+ * {@link MappedFileService} counts the readers of a mapping: an evicted PDF is freed as soon as its last download
+ * completes instead of whenever the garbage collector finds the buffer. Caffeine's W-TinyLFU policy only admits a PDF
+ * when it is requested more often than the one it would evict, so a burst of one-off downloads does not flush the
+ * current semester templates. An entry is only used while the size and modification time of the stored object match
+ * the ones it was loaded with.
+ * <p>
+ * The cache is published as the {@code pdf} cache metrics ({@code cache_gets}, {@code cache_evictions}...), with
+ * {@code savepdf.download.cache.bytes} and {@code savepdf.download.cache.hit.ratio} gauges.
+ */
+@Service
+public class PdfCacheService {
+
+    private final Logger log = LoggerFactory.getLogger(PdfCacheService.class);
+
+    private static final String CACHE_NAME = "pdf";
+
+    private final StorageBackend storageBackend;
+
+    private final long maxBytes;
+
+    private final long maxObjectSize;
+
+    private final Cache<String, CachedPdf> cache;
+
+    public PdfCacheService(ApplicationProperties applicationProperties, StorageBackend storageBackend, MeterRegistry meterRegistry) {
+        this.storageBackend = storageBackend;
+        this.maxBytes = applicationProperties.getDownload().getCache().getMaxBytes();
+        this.maxObjectSize = Math.min(applicationProperties.getDownload().getCache().getMaxObjectSize(), Integer.MAX_VALUE);
+        this.cache = Caffeine.newBuilder()
+            .maximumWeight(maxBytes)
+            .weigher((String key, CachedPdf pdf) -> Math.max(1, pdf.content.capacity()))
+            // keep the weighted size exact for the gauge: maintenance is cheap next to reading a PDF
+            .executor(Runnable::run)
+            .removalListener((String key, CachedPdf pdf, RemovalCause cause) -> {
+                if (pdf != null) {
+                    pdf.evict();
+                }
+            })
+            .recordStats()
+            .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+        Gauge.builder("savepdf.download.cache.bytes", cache, c -> c.policy().eviction()
+            .map(eviction -> eviction.weightedSize().orElse(0L))
+            .orElse(0L))
+            .description("Bytes of PDF content held by the download cache")
+            .baseUnit("bytes")
+            .register(meterRegistry);
+        Gauge.builder("savepdf.download.cache.hit.ratio", cache, c -> c.stats().hitRate())
+            .description("Ratio of downloads answered from the cache")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Get the content of a stored object, loading it into the cache when it is small enough.
+     *
+     * @param object the stored object, as it is now.
+     * @return a lease on the whole content, to be closed once it is sent, or empty if the object is not cached.
+     * @throws IOException if the object cannot be read.
+     */
+    public Optional<Lease> get(StorageObject object) throws IOException {
+        if (maxBytes <= 0 || object.getSize() > maxObjectSize) {
+            return Optional.empty();
+        }
+        CachedPdf cached = cache.asMap().get(object.getKey());
+        if (cached != null && !cached.matches(object)) {
+            log.debug("Cached PDF {} changed, reloading it", object.getKey());
+            cache.asMap().remove(object.getKey(), cached);
+        }
+        try {
+            cached = cache.get(object.getKey(), key -> load(object));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        if (cached == null || !cached.matches(object) || !cached.retain()) {
+            return Optional.empty();
+        }
+        return Optional.of(new Lease(cached));
+    }
+
+    /**
+     * Drop the cached content of a stored object.
+     *
+     * @param key the storage key of the object.
+     */
+    public void evict(String key) {
+        cache.invalidate(key);
+    }
+
+    private CachedPdf load(StorageObject object) {
+        ByteBuffer content = ByteBuffer.allocateDirect((int) object.getSize());
+        try (InputStream in = storageBackend.read(object.getKey());
+             ReadableByteChannel channel = Channels.newChannel(in)) {
+            while (content.hasRemaining() && channel.read(content) != -1) {
+                // fill the buffer
+            }
+            if (content.hasRemaining() || in.read() != -1) {
+                log.debug("PDF {} changed while being cached", object.getKey());
+                MappedBufferUtil.free(content);
+                return null;
+            }
+        } catch (IOException e) {
+            MappedBufferUtil.free(content);
+            throw new UncheckedIOException(e);
+        }
+        content.flip();
+        return new CachedPdf(content, object);
+    }
+
+    /**
+     * A reader's hold on cached content. The buffer must not be used once the lease is closed.
+     */
+    public static final class Lease implements AutoCloseable {
+
+        private final CachedPdf pdf;
+
+        private final ByteBuffer buffer;
+
+        private boolean closed;
+
+        private Lease(CachedPdf pdf) {
+            this.pdf = pdf;
+            this.buffer = pdf.content.asReadOnlyBuffer();
+        }
+
+        /**
+         * @return a read-only view of the whole content, private to this reader.
+         */
+        public ByteBuffer buffer() {
+            return buffer;
+        }
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                pdf.release();
+            }
+        }
+    }
+
+    private static final class CachedPdf {
+
+        private final ByteBuffer content;
+
+        private final long lastModified;
+
+        private int readers;
+
+        private boolean evicted;
+
+        private boolean freed;
+
+        CachedPdf(ByteBuffer content, StorageObject object) {
+            this.content = content;
+            this.lastModified = object.getLastModified().toEpochMilli();
+        }
+
+        boolean matches(StorageObject object) {
+            return content.capacity() == object.getSize() && lastModified == object.getLastModified().toEpochMilli();
+        }
+
+        synchronized boolean retain() {
+            if (freed) {
+                return false;
+            }
+            readers++;
+            return true;
+        }
+
+        synchronized void release() {
+            readers--;
+            freeIfUnused();
+        }
+
+        synchronized void evict() {
+            evicted = true;
+            freeIfUnused();
+        }
+
+        private void freeIfUnused() {
+            if (evicted && readers == 0 && !freed) {
+                freed = true;
+                MappedBufferUtil.free(content);
+            }
+        }
+    }
+}
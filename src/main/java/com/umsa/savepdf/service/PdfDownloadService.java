@@ -0,0 +1,406 @@
+package com.umsa.savepdf.service;
+
+import com.umsa.savepdf.config.ApplicationProperties;
+import com.umsa.savepdf.service.storage.StorageBackend;
+import com.umsa.savepdf.service.storage.StorageObject;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.undertow.servlet.spec.ServletOutputStreamImpl;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.stereotype.Service;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.util.StringUtils;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Service writing stored PDF files to HTTP responses.
+ * <p>
+ * Supports conditional requests ({@code If-None-Match}, {@code If-Modified-Since}) and byte ranges as defined by
+ * RFC 7233, so viewers can fetch only the pages they display and repeat views are answered without reading the file.
+ * <p>
+ * Hot PDFs are sent from the direct buffers of the {@link PdfCacheService}. Large objects of a local {@link StorageBackend} are sent
+ * from a memory mapping shared with the other readers ({@link MappedFileService}), so ranges are slices of the mapping,
+ * and the smaller ones from their file channel with the configured download mode. Remote objects are copied from
+ * ranged reads of the backend.
+ */
+@Service
+public class PdfDownloadService {
+
+    private final Logger log = LoggerFactory.getLogger(PdfDownloadService.class);
+
+    private static final String BYTES_METRIC = "savepdf.download.bytes";
+
+    private static final String CRLF = "\r\n";
+
+    /**
+     * Requests asking for more ranges than this get the whole content, as a client needing so many parts of a PDF is
+     * better served by a single transfer.
+     */
+    private static final int MAX_RANGES = 16;
+
+    private final ApplicationProperties applicationProperties;
+
+    private final StorageBackend storageBackend;
+
+    private final PdfCacheService pdfCacheService;
+
+    private final MappedFileService mappedFileService;
+
+    private final Counter copiedBytes;
+
+    private final Counter transferredBytes;
+
+    private final Counter cachedBytes;
+
+    private final Counter mappedBytes;
+
+    public PdfDownloadService(ApplicationProperties applicationProperties, StorageBackend storageBackend,
+                              PdfCacheService pdfCacheService, MappedFileService mappedFileService, MeterRegistry meterRegistry) {
+        this.applicationProperties = applicationProperties;
+        this.storageBackend = storageBackend;
+        this.pdfCacheService = pdfCacheService;
+        this.mappedFileService = mappedFileService;
+        this.copiedBytes = bytesCounter(meterRegistry, ApplicationProperties.Download.Mode.COPY.name());
+        this.transferredBytes = bytesCounter(meterRegistry, ApplicationProperties.Download.Mode.TRANSFER.name());
+        this.cachedBytes = bytesCounter(meterRegistry, "cache");
+        this.mappedBytes = bytesCounter(meterRegistry, "mmap");
+    }
+
+    /**
+     * Answer a GET for a stored object: {@code 304 (Not Modified)} when the client copy is current,
+     * {@code 206 (Partial Content)} for satisfiable {@code Range} requests, and the whole content otherwise.
+     * <p>
+     * The content type of the response must already be set, it is reused for the parts of multi-range responses.
+     *
+     * @param object the stored object to send.
+     * @param request the current request.
+     * @param response the response to write to.
+     * @throws IOException if the object cannot be read or the client goes away.
+     */
+    public void send(StorageObject object, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String key = object.getKey();
+        long lastModified = object.getLastModified().toEpochMilli();
+        long length = object.getSize();
+        String etag = "\"" + Long.toHexString(length) + "-" + Long.toHexString(lastModified) + "\"";
+        if (new ServletWebRequest(request, response).checkNotModified(etag, lastModified)) {
+            log.debug("PDF {} not modified", key);
+            return;
+        }
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+
+        List<HttpRange> ranges = requestedRanges(request, etag, lastModified);
+        if (ranges.size() > MAX_RANGES) {
+            log.debug("Ignoring the {} ranges requested for PDF {}", ranges.size(), key);
+            ranges = new ArrayList<>();
+        }
+        try (Content content = open(object)) {
+            long size = content.size();
+            if (ranges.isEmpty()) {
+                response.setContentLengthLong(size);
+                content.write(0, size, response.getOutputStream());
+                return;
+            }
+            long[][] regions;
+            try {
+                regions = toRegions(ranges, size);
+            } catch (IllegalArgumentException e) {
+                log.debug("Unsatisfiable range for PDF {} : {}", key, e.getMessage());
+                response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + size);
+                return;
+            }
+            response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+            if (regions.length == 1) {
+                long start = regions[0][0];
+                long end = regions[0][1];
+                response.setHeader(HttpHeaders.CONTENT_RANGE, contentRange(start, end, size));
+                response.setContentLengthLong(end - start + 1);
+                content.write(start, end - start + 1, response.getOutputStream());
+            } else {
+                writeMultipart(content, regions, size, response);
+            }
+        }
+    }
+
+    /**
+     * Parse the {@code Range} header, ignoring it when an {@code If-Range} precondition no longer matches.
+     */
+    private List<HttpRange> requestedRanges(HttpServletRequest request, String etag, long lastModified) {
+        String range = request.getHeader(HttpHeaders.RANGE);
+        if (!StringUtils.hasText(range)) {
+            return new ArrayList<>();
+        }
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (StringUtils.hasText(ifRange)) {
+            if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+                if (!ifRange.equals(etag)) {
+                    return new ArrayList<>();
+                }
+            } else {
+                try {
+                    if (request.getDateHeader(HttpHeaders.IF_RANGE) / 1000 != lastModified / 1000) {
+                        return new ArrayList<>();
+                    }
+                } catch (IllegalArgumentException e) {
+                    return new ArrayList<>();
+                }
+            }
+        }
+        try {
+            return HttpRange.parseRanges(range);
+        } catch (IllegalArgumentException e) {
+            log.debug("Ignoring invalid Range header '{}' : {}", range, e.getMessage());
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * Resolve the requested ranges against the file size, dropping the unsatisfiable ones, then sort them and merge
+     * the overlapping or adjacent ones, so no byte is sent twice and the parts never add up to more than the file.
+     *
+     * @throws IllegalArgumentException if none of the ranges can be satisfied.
+     */
+    private static long[][] toRegions(List<HttpRange> ranges, long size) {
+        List<long[]> regions = new ArrayList<>(ranges.size());
+        for (HttpRange range : ranges) {
+            long start = range.getRangeStart(size);
+            long end = range.getRangeEnd(size);
+            if (start < size && start <= end) {
+                regions.add(new long[] { start, end });
+            }
+        }
+        if (regions.isEmpty()) {
+            throw new IllegalArgumentException("No satisfiable range in " + ranges);
+        }
+        regions.sort(Comparator.comparingLong(region -> region[0]));
+        List<long[]> merged = new ArrayList<>(regions.size());
+        long[] last = null;
+        for (long[] region : regions) {
+            if (last != null && region[0] <= last[1] + 1) {
+                last[1] = Math.max(last[1], region[1]);
+            } else {
+                last = region;
+                merged.add(region);
+            }
+        }
+        return merged.toArray(new long[0][]);
+    }
+
+    private void writeMultipart(Content content, long[][] regions, long size, HttpServletResponse response) throws IOException {
+        String boundary = MimeTypeUtils.generateMultipartBoundaryString();
+        String partType = response.getContentType();
+        byte[][] partHeaders = new byte[regions.length][];
+        byte[] closing = (CRLF + "--" + boundary + "--" + CRLF).getBytes(StandardCharsets.US_ASCII);
+        long contentLength = closing.length;
+        for (int i = 0; i < regions.length; i++) {
+            StringBuilder header = new StringBuilder(CRLF).append("--").append(boundary).append(CRLF);
+            if (partType != null) {
+                header.append(HttpHeaders.CONTENT_TYPE).append(": ").append(partType).append(CRLF);
+            }
+            header.append(HttpHeaders.CONTENT_RANGE).append(": ").append(contentRange(regions[i][0], regions[i][1], size))
+                .append(CRLF).append(CRLF);
+            partHeaders[i] = header.toString().getBytes(StandardCharsets.US_ASCII);
+            contentLength += partHeaders[i].length + regions[i][1] - regions[i][0] + 1;
+        }
+        response.setContentType("multipart/byteranges; boundary=" + boundary);
+        response.setContentLengthLong(contentLength);
+        ServletOutputStream out = response.getOutputStream();
+        for (int i = 0; i < regions.length; i++) {
+            out.write(partHeaders[i]);
+            content.write(regions[i][0], regions[i][1] - regions[i][0] + 1, out);
+        }
+        out.write(closing);
+    }
+
+    private static String contentRange(long start, long end, long size) {
+        return "bytes " + start + "-" + end + "/" + size;
+    }
+
+    private Content open(StorageObject object) throws IOException {
+        Optional<PdfCacheService.Lease> cached = pdfCacheService.get(object);
+        if (cached.isPresent()) {
+            PdfCacheService.Lease lease = cached.get();
+            return new BufferContent(lease.buffer(), cachedBytes, lease::close);
+        }
+        Optional<Path> path = storageBackend.localPath(object.getKey());
+        long mmapThreshold = applicationProperties.getDownload().getMmapThreshold();
+        if (path.isPresent() && mmapThreshold > 0 && object.getSize() >= mmapThreshold && object.getSize() <= Integer.MAX_VALUE) {
+            MappedFileService.Mapping mapping = mappedFileService.acquire(path.get(), object.getSize(),
+                object.getLastModified().toEpochMilli());
+            return new BufferContent(mapping.buffer(), mappedBytes, mapping::close);
+        }
+        if (path.isPresent()) {
+            return new FileContent(FileChannel.open(path.get(), StandardOpenOption.READ));
+        }
+        return new RemoteContent(object);
+    }
+
+    /**
+     * The bytes of the object being sent.
+     */
+    private interface Content extends Closeable {
+
+        long size() throws IOException;
+
+        void write(long position, long count, ServletOutputStream out) throws IOException;
+
+        @Override
+        default void close() throws IOException {
+        }
+    }
+
+    /**
+     * Content held in memory (cached or mapped), written from slices of its buffer.
+     */
+    private static class BufferContent implements Content {
+
+        private final ByteBuffer buffer;
+
+        private final Counter bytes;
+
+        private final Runnable release;
+
+        BufferContent(ByteBuffer buffer, Counter bytes, Runnable release) {
+            this.buffer = buffer;
+            this.bytes = bytes;
+            this.release = release;
+        }
+
+        @Override
+        public long size() {
+            return buffer.capacity();
+        }
+
+        @Override
+        public void write(long position, long count, ServletOutputStream out) throws IOException {
+            ByteBuffer slice = buffer.duplicate();
+            slice.position((int) position).limit((int) (position + count));
+            if (out instanceof ServletOutputStreamImpl) {
+                ((ServletOutputStreamImpl) out).write(slice);
+            } else {
+                WritableByteChannel target = Channels.newChannel(out);
+                while (slice.hasRemaining()) {
+                    target.write(slice);
+                }
+            }
+            bytes.increment(count);
+        }
+
+        @Override
+        public void close() {
+            release.run();
+        }
+    }
+
+    /**
+     * Content of a local file, written with the configured download mode.
+     */
+    private class FileContent implements Content {
+
+        private final FileChannel channel;
+
+        FileContent(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public long size() throws IOException {
+            return channel.size();
+        }
+
+        @Override
+        public void write(long position, long count, ServletOutputStream out) throws IOException {
+            if (applicationProperties.getDownload().getMode() == ApplicationProperties.Download.Mode.TRANSFER) {
+                transfer(channel, position, count, out);
+                transferredBytes.increment(count);
+            } else {
+                channel.position(position);
+                copiedBytes.increment(IOUtils.copyLarge(Channels.newInputStream(channel), out, 0, count));
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    /**
+     * Content of a remote object, copied from a ranged read per region.
+     */
+    private class RemoteContent implements Content {
+
+        private final StorageObject object;
+
+        RemoteContent(StorageObject object) {
+            this.object = object;
+        }
+
+        @Override
+        public long size() {
+            return object.getSize();
+        }
+
+        @Override
+        public void write(long position, long count, ServletOutputStream out) throws IOException {
+            try (InputStream in = storageBackend.read(object.getKey(), position, count)) {
+                copiedBytes.increment(IOUtils.copyLarge(in, out, new byte[applicationProperties.getUpload().getBufferSize()]));
+            }
+        }
+    }
+
+    /**
+     * Undertow can send a {@link FileChannel} with sendfile, so the bytes never enter the JVM heap. It always sends
+     * up to the end of the file, so other regions (and other containers, like the mock responses of the tests) get a
+     * plain channel transfer.
+     */
+    private void transfer(FileChannel channel, long position, long count, ServletOutputStream out) throws IOException {
+        if (out instanceof ServletOutputStreamImpl && position + count == channel.size()) {
+            channel.position(position);
+            ((ServletOutputStreamImpl) out).transferFrom(channel);
+            return;
+        }
+        WritableByteChannel target = Channels.newChannel(out);
+        long written = 0;
+        while (written < count) {
+            long transferred = channel.transferTo(position + written, count - written, target);
+            if (transferred == 0 && position + written >= channel.size()) {
+                throw new EOFException("The file was truncated to " + channel.size() + " bytes while " + count
+                    + " bytes were sent from " + position);
+            }
+            written += transferred;
+        }
+    }
+
+    private static Counter bytesCounter(MeterRegistry meterRegistry, String mode) {
+        return Counter.builder(BYTES_METRIC)
+            .description("Bytes of stored PDFs written to clients")
+            .baseUnit("bytes")
+            .tag("mode", mode.toLowerCase())
+            .register(meterRegistry);
+    }
+}
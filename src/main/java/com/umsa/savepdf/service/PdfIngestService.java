@@ -0,0 +1,327 @@
+package com.umsa.savepdf.service;
+
+import com.umsa.savepdf.config.ApplicationProperties;
+import com.umsa.savepdf.repository.FileRepository;
+import com.umsa.savepdf.service.storage.StorageBackend;
+import com.umsa.savepdf.service.storage.StorageObject;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Service rewriting the stored PDFs once they are uploaded, so they are cheaper to serve.
+ * <p>
+ * When {@code application.ingest.optimize.enabled}, PDFs are first shrunk by {@link PdfOptimizer} and qpdf object
+ * streams, and the served size is recorded on the {@link com.umsa.savepdf.domain.File}s sharing the PDF. This saves
+ * download bandwidth, not disk: the smaller rewrite is stored in addition to the upload, see below.
+ * <p>
+ * PDFs not linearized ("fast web view") are rewritten by {@link QpdfService}: with byte serving, a viewer then shows
+ * the first page after a few hundred KB instead of the whole file. The result is recorded on every
+ * {@link com.umsa.savepdf.domain.File} sharing the PDF.
+ * <p>
+ * A rewrite is checked (linearization dictionary, same number of pages) before it is stored as the web rendition of
+ * the PDF, see {@link PdfStorageService#publishWebRendition(String, String)}, and the URL of the files is moved to the
+ * rendition, whose CRC-32 is recorded for the {@link IntegrityScrubService}. A PDF is rewritten at most once: the files
+ * of a later upload of the same content are moved to the existing rendition.
+ * <p>
+ * The uploaded PDF is kept under its digest even once the rewrite is verified. The digest is the identity of the
+ * content: without the bytes it designates, later uploads of the same PDF would no longer be deduplicated, the URLs
+ * already handed out would break, and the downsampled rewrite would be the only copy left of the scan.
+ * <p>
+ * The stages run on the bounded {@code ingestExecutor}, as a stage of the {@link UploadPipelineService}. When its queue
+ * is full, uploads are stored as received. The rewrite latencies are published as {@code savepdf.ingest.optimize} and
+ * {@code savepdf.ingest.linearize}.
+ */
+@Service
+public class PdfIngestService {
+
+    private final Logger log = LoggerFactory.getLogger(PdfIngestService.class);
+
+    /**
+     * The linearization dictionary is the first object of a linearized PDF, within its first 1024 bytes.
+     */
+    private static final int LINEARIZATION_WINDOW = 1024;
+
+    private static final String LINEARIZED_MARKER = "/Linearized";
+
+    private final PdfStorageService pdfStorageService;
+
+    private final QpdfService qpdfService;
+
+    private final FileRepository fileRepository;
+
+    private final ApplicationProperties applicationProperties;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final Timer optimizeTimer;
+
+    private final Timer linearizeTimer;
+
+    public PdfIngestService(PdfStorageService pdfStorageService, QpdfService qpdfService, FileRepository fileRepository,
+                            ApplicationProperties applicationProperties, PlatformTransactionManager transactionManager,
+                            MeterRegistry meterRegistry) {
+        this.pdfStorageService = pdfStorageService;
+        this.qpdfService = qpdfService;
+        this.fileRepository = fileRepository;
+        this.applicationProperties = applicationProperties;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.optimizeTimer = Timer.builder("savepdf.ingest.optimize")
+            .description("Time to optimize a PDF")
+            .register(meterRegistry);
+        this.linearizeTimer = Timer.builder("savepdf.ingest.linearize")
+            .description("Time to linearize a PDF")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Run the ingest stages of a PDF, in the calling thread.
+     *
+     * @param sha256 the digest of the PDF.
+     * @throws IOException if the PDF cannot be read or replaced.
+     */
+    public void ingest(String sha256) throws IOException {
+        if (applicationProperties.getIngest().getOptimize().isEnabled()) {
+            optimize(sha256);
+        }
+        if (applicationProperties.getIngest().isLinearize()) {
+            linearize(sha256);
+        }
+    }
+
+    /**
+     * Shrink a stored PDF with {@link PdfOptimizer}, then compress its objects into object streams with qpdf, also
+     * linearizing it when enabled. The result becomes the web rendition only when it is smaller, and the size of the
+     * served PDF is recorded.
+     *
+     * @param sha256 the digest of the PDF.
+     * @return {@code true} if the PDF was rewritten.
+     * @throws IOException if the PDF cannot be read or replaced.
+     */
+    public boolean optimize(String sha256) throws IOException {
+        StorageBackend storageBackend = pdfStorageService.getStorageBackend();
+        Optional<StorageObject> stored = pdfStorageService.find(sha256);
+        if (!stored.isPresent()) {
+            return false;
+        }
+        StorageObject pdf = stored.get();
+        Optional<StorageObject> rendition = pdfStorageService.findWebRendition(sha256);
+        if (rendition.isPresent()) {
+            recordWebRendition(sha256, null, rendition.get().getSize(), null);
+            return false;
+        }
+        ApplicationProperties.Ingest.Optimize optimize = applicationProperties.getIngest().getOptimize();
+        long start = System.nanoTime();
+        Path directory = Files.createTempDirectory("savepdf-ingest");
+        try {
+            Path in = localCopy(storageBackend, pdf, directory);
+            int pages = rewritablePages(in);
+            Path out = directory.resolve("optimized.pdf");
+            if (pages < 0 || !PdfOptimizer.optimize(in, out, optimize.getMaxDpi(), optimize.getJpegQuality())) {
+                log.debug("PDF {} is encrypted or signed, storing it as received", sha256);
+                return false;
+            }
+            boolean linearize = false;
+            if (qpdfService.isAvailable()) {
+                Path compressed = directory.resolve("compressed.pdf");
+                linearize = applicationProperties.getIngest().isLinearize();
+                qpdfService.rewrite(out, compressed, linearize
+                    ? new String[] {"--object-streams=generate", "--compress-streams=y", "--linearize"}
+                    : new String[] {"--object-streams=generate", "--compress-streams=y"});
+                out = compressed;
+            }
+            verify(out, pages, linearize);
+            long size = Files.size(out);
+            if (size >= pdf.getSize()) {
+                log.debug("Optimized PDF {} is not smaller, keeping the original", sha256);
+                recordOptimizedSize(sha256, pdf.getSize());
+                return false;
+            }
+            CRC32 crc = new CRC32();
+            if (!publish(sha256, out, crc)) {
+                return false;
+            }
+            recordWebRendition(sha256, linearize ? Boolean.TRUE : null, size, crc.getValue());
+            log.debug("Optimized PDF {} from {} to {} bytes", sha256, pdf.getSize(), size);
+            return true;
+        } finally {
+            FileUtils.deleteQuietly(directory.toFile());
+            optimizeTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Linearize a stored PDF, unless it or its web rendition already is, and record whether the served PDF is.
+     *
+     * @param sha256 the digest of the PDF.
+     * @return {@code true} if the PDF was rewritten.
+     * @throws IOException if the PDF cannot be read or replaced.
+     */
+    public boolean linearize(String sha256) throws IOException {
+        StorageBackend storageBackend = pdfStorageService.getStorageBackend();
+        Optional<StorageObject> stored = pdfStorageService.find(sha256);
+        if (!stored.isPresent()) {
+            return false;
+        }
+        Optional<StorageObject> rendition = pdfStorageService.findWebRendition(sha256);
+        if (rendition.isPresent()) {
+            recordWebRendition(sha256, isLinearized(storageBackend, rendition.get().getKey()), null, null);
+            return false;
+        }
+        StorageObject pdf = stored.get();
+        if (isLinearized(storageBackend, pdf.getKey())) {
+            recordLinearized(sha256, true);
+            return false;
+        }
+        if (!qpdfService.isAvailable()) {
+            recordLinearized(sha256, false);
+            return false;
+        }
+        long start = System.nanoTime();
+        Path directory = Files.createTempDirectory("savepdf-ingest");
+        CRC32 crc = new CRC32();
+        try {
+            Path in = localCopy(storageBackend, pdf, directory);
+            int pages = rewritablePages(in);
+            if (pages < 0) {
+                log.debug("PDF {} is signed, storing it as received", sha256);
+                recordLinearized(sha256, false);
+                return false;
+            }
+            Path out = directory.resolve("linearized.pdf");
+            qpdfService.rewrite(in, out, "--linearize");
+            verify(out, pages, true);
+            if (!publish(sha256, out, crc)) {
+                return false;
+            }
+        } finally {
+            FileUtils.deleteQuietly(directory.toFile());
+            linearizeTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+        recordWebRendition(sha256, true, null, crc.getValue());
+        log.debug("Linearized PDF {}", sha256);
+        return true;
+    }
+
+    /**
+     * Store the rewrite of a PDF as its web rendition, computing its CRC-32 on the way.
+     */
+    private boolean publish(String sha256, Path rewritten, CRC32 crc) throws IOException {
+        String staging = pdfStorageService.stagingKey();
+        try (OutputStream out = new CheckedOutputStream(pdfStorageService.getStorageBackend().write(staging), crc)) {
+            Files.copy(rewritten, out);
+        } catch (IOException e) {
+            pdfStorageService.getStorageBackend().delete(staging);
+            throw e;
+        }
+        return pdfStorageService.publishWebRendition(sha256, staging);
+    }
+
+    /**
+     * Point the files sharing a PDF to its web rendition, and record what it is. Also run for a rendition stored by an
+     * earlier upload of the same content, so the files uploaded since then move to it too.
+     */
+    private void recordWebRendition(String sha256, Boolean linearized, Long optimizedSize, Long webCrc32) {
+        transactionTemplate.execute(status -> {
+            fileRepository.updateUrlBySha256(sha256, pdfStorageService.webRenditionUrl(sha256));
+            if (linearized != null) {
+                fileRepository.updateLinearizedBySha256(sha256, linearized);
+            }
+            if (optimizedSize != null) {
+                fileRepository.updateOptimizedSizeBySha256(sha256, optimizedSize);
+            }
+            if (webCrc32 != null) {
+                fileRepository.updateWebCrc32BySha256(sha256, webCrc32);
+            }
+            return null;
+        });
+    }
+
+    private void recordLinearized(String sha256, boolean linearized) {
+        transactionTemplate.execute(status -> fileRepository.updateLinearizedBySha256(sha256, linearized));
+    }
+
+    private void recordOptimizedSize(String sha256, long optimizedSize) {
+        transactionTemplate.execute(status -> fileRepository.updateOptimizedSizeBySha256(sha256, optimizedSize));
+    }
+
+    private static boolean isLinearized(StorageBackend storageBackend, String key) throws IOException {
+        try (InputStream in = storageBackend.read(key, 0, LINEARIZATION_WINDOW)) {
+            return isLinearized(in);
+        }
+    }
+
+    /**
+     * @param in the beginning of a PDF.
+     * @return {@code true} if the PDF starts with a linearization dictionary.
+     * @throws IOException if the PDF cannot be read.
+     */
+    static boolean isLinearized(InputStream in) throws IOException {
+        byte[] head = new byte[LINEARIZATION_WINDOW];
+        int length = IOUtils.read(in, head);
+        return new String(head, 0, length, StandardCharsets.ISO_8859_1).contains(LINEARIZED_MARKER);
+    }
+
+    /**
+     * Get a local file of a stored PDF, qpdf only reading files: the stored one itself, or a copy in a directory.
+     */
+    private static Path localCopy(StorageBackend storageBackend, StorageObject pdf, Path directory) throws IOException {
+        Optional<Path> path = storageBackend.localPath(pdf.getKey());
+        if (path.isPresent()) {
+            return path.get();
+        }
+        Path copy = directory.resolve("original.pdf");
+        try (InputStream in = storageBackend.read(pdf.getKey())) {
+            Files.copy(in, copy, StandardCopyOption.REPLACE_EXISTING);
+        }
+        return copy;
+    }
+
+    /**
+     * @return the number of pages of a PDF, or -1 if it is signed: a rewrite would invalidate its signatures.
+     */
+    private static int rewritablePages(Path pdf) throws IOException {
+        try (PDDocument document = PDDocument.load(pdf.toFile(), MemoryUsageSetting.setupTempFileOnly())) {
+            return document.getSignatureDictionaries().isEmpty() ? document.getNumberOfPages() : -1;
+        }
+    }
+
+    /**
+     * Check that a rewrite is a PDF with the pages of the original, linearized when expected.
+     */
+    private static void verify(Path rewritten, int pages, boolean linearized) throws IOException {
+        if (linearized) {
+            try (InputStream in = Files.newInputStream(rewritten)) {
+                if (!isLinearized(in)) {
+                    throw new IOException("Rewritten PDF is not linearized");
+                }
+            }
+        }
+        try (PDDocument document = PDDocument.load(rewritten.toFile(), MemoryUsageSetting.setupTempFileOnly())) {
+            if (document.getNumberOfPages() != pages) {
+                throw new IOException("Rewritten PDF has " + document.getNumberOfPages() + " pages instead of " + pages);
+            }
+        }
+    }
+}
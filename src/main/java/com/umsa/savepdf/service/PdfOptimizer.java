@@ -0,0 +1,246 @@
+package com.umsa.savepdf.service;
+
+import com.umsa.savepdf.service.util.DigestUtil;
+
+import org.apache.pdfbox.cos.COSArray;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSObject;
+import org.apache.pdfbox.cos.COSStream;
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDResources;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.common.PDStream;
+import org.apache.pdfbox.pdmodel.graphics.form.PDFormXObject;
+import org.apache.pdfbox.pdmodel.graphics.image.JPEGFactory;
+import org.apache.pdfbox.pdmodel.graphics.image.LosslessFactory;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Shrinks the images and fonts of a PDF with Apache PDFBox, for {@link PdfIngestService}.
+ * <p>
+ * Images sharper than the maximum resolution are downsampled and re-encoded the way they were (JPEG or Flate), and
+ * identical image and embedded font streams are stored once. The resolution of an image is estimated as if it covered
+ * its page, which is the case of scans and never overestimates it. Encrypted and signed PDFs are left alone, a rewrite
+ * would drop their encryption or invalidate their signatures.
+ */
+final class PdfOptimizer {
+
+    private static final Logger log = LoggerFactory.getLogger(PdfOptimizer.class);
+
+    private static final float POINTS_PER_INCH = 72;
+
+    private static final COSName[] FONT_FILES = {COSName.FONT_FILE, COSName.FONT_FILE2, COSName.FONT_FILE3};
+
+    private final PDDocument document;
+
+    private final int maxDpi;
+
+    private final float jpegQuality;
+
+    private final Map<String, COSStream> streamsByDigest = new HashMap<>();
+
+    private final Map<COSStream, COSStream> images = new IdentityHashMap<>();
+
+    private final Set<COSDictionary> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    private PdfOptimizer(PDDocument document, int maxDpi, float jpegQuality) {
+        this.document = document;
+        this.maxDpi = maxDpi;
+        this.jpegQuality = jpegQuality;
+    }
+
+    /**
+     * Write an optimized copy of a PDF.
+     *
+     * @param in the PDF to read.
+     * @param out the file to write.
+     * @param maxDpi the resolution above which images are downsampled.
+     * @param jpegQuality the quality of the re-encoded JPEG images, from 0 to 1.
+     * @return {@code false} if the PDF cannot be rewritten, in which case nothing is written.
+     * @throws IOException if the PDF cannot be read or written.
+     */
+    static boolean optimize(Path in, Path out, int maxDpi, float jpegQuality) throws IOException {
+        try (PDDocument document = PDDocument.load(in.toFile(), MemoryUsageSetting.setupTempFileOnly())) {
+            if (document.isEncrypted() || !document.getSignatureDictionaries().isEmpty()) {
+                return false;
+            }
+            PdfOptimizer optimizer = new PdfOptimizer(document, maxDpi, jpegQuality);
+            for (PDPage page : document.getPages()) {
+                PDRectangle box = page.getMediaBox();
+                optimizer.optimize(page.getResources(), Math.max(box.getWidth(), box.getHeight()) / POINTS_PER_INCH);
+            }
+            document.save(out.toFile());
+            return true;
+        }
+    }
+
+    private void optimize(PDResources resources, float pageInches) throws IOException {
+        if (resources == null || !visited.add(resources.getCOSObject())) {
+            return;
+        }
+        COSBase xObjects = resources.getCOSObject().getDictionaryObject(COSName.XOBJECT);
+        if (xObjects instanceof COSDictionary) {
+            COSDictionary dictionary = (COSDictionary) xObjects;
+            for (COSName name : new ArrayList<>(dictionary.keySet())) {
+                COSBase xObject = dictionary.getDictionaryObject(name);
+                if (!(xObject instanceof COSStream)) {
+                    continue;
+                }
+                COSStream stream = (COSStream) xObject;
+                if (COSName.IMAGE.equals(stream.getCOSName(COSName.SUBTYPE))) {
+                    dictionary.setItem(name, image(stream, pageInches));
+                } else if (COSName.FORM.equals(stream.getCOSName(COSName.SUBTYPE))) {
+                    optimize(new PDFormXObject(stream).getResources(), pageInches);
+                }
+            }
+        }
+        COSBase fonts = resources.getCOSObject().getDictionaryObject(COSName.FONT);
+        if (fonts instanceof COSDictionary) {
+            for (COSBase font : ((COSDictionary) fonts).getValues()) {
+                font = dereference(font);
+                if (!(font instanceof COSDictionary)) {
+                    continue;
+                }
+                fontFiles((COSDictionary) font);
+                COSBase descendants = ((COSDictionary) font).getDictionaryObject(COSName.DESCENDANT_FONTS);
+                if (descendants instanceof COSArray) {
+                    for (COSBase descendant : (COSArray) descendants) {
+                        descendant = dereference(descendant);
+                        if (descendant instanceof COSDictionary) {
+                            fontFiles((COSDictionary) descendant);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private void fontFiles(COSDictionary font) throws IOException {
+        COSBase descriptor = font.getDictionaryObject(COSName.FONT_DESC);
+        if (!(descriptor instanceof COSDictionary)) {
+            return;
+        }
+        for (COSName key : FONT_FILES) {
+            COSBase fontFile = ((COSDictionary) descriptor).getDictionaryObject(key);
+            if (fontFile instanceof COSStream) {
+                ((COSDictionary) descriptor).setItem(key, deduplicate((COSStream) fontFile));
+            }
+        }
+    }
+
+    private COSStream image(COSStream stream, float pageInches) throws IOException {
+        COSStream optimized = images.get(stream);
+        if (optimized == null) {
+            optimized = deduplicate(downsample(stream, pageInches));
+            images.put(stream, optimized);
+        }
+        return optimized;
+    }
+
+    /**
+     * Downsample an image to the maximum resolution, when it is an 8-bit color or gray image sharper than it and the
+     * result is smaller. Its soft mask is kept as is.
+     */
+    private COSStream downsample(COSStream stream, float pageInches) {
+        try {
+            PDImageXObject image = new PDImageXObject(new PDStream(stream), null);
+            float dpi = Math.max(image.getWidth(), image.getHeight()) / pageInches;
+            if (dpi <= maxDpi || image.isStencil() || image.getBitsPerComponent() != 8
+                || stream.getDictionaryObject(COSName.MASK) != null) {
+                return stream;
+            }
+            int subsampling = Math.max(1, (int) (dpi / maxDpi));
+            BufferedImage source = image.getImage(null, subsampling);
+            float scale = maxDpi / (dpi / subsampling);
+            int width = Math.max(1, Math.round(source.getWidth() * scale));
+            int height = Math.max(1, Math.round(source.getHeight() * scale));
+            boolean gray = source.getColorModel().getNumColorComponents() == 1;
+            BufferedImage scaled = new BufferedImage(width, height, gray ? BufferedImage.TYPE_BYTE_GRAY : BufferedImage.TYPE_INT_RGB);
+            Graphics2D graphics = scaled.createGraphics();
+            try {
+                graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+                graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                graphics.drawImage(source, 0, 0, width, height, null);
+            } finally {
+                graphics.dispose();
+            }
+            boolean jpeg = image.getStream().getFilters().contains(COSName.DCT_DECODE);
+            PDImageXObject downsampled = jpeg
+                ? JPEGFactory.createFromImage(document, scaled, jpegQuality)
+                : LosslessFactory.createFromImage(document, scaled);
+            COSStream result = downsampled.getCOSObject();
+            if (result.getLength() >= stream.getLength()) {
+                return stream;
+            }
+            COSBase softMask = stream.getItem(COSName.SMASK);
+            if (softMask != null) {
+                result.setItem(COSName.SMASK, softMask);
+            }
+            log.debug("Downsampled {}x{} image at {} dpi to {}x{}", image.getWidth(), image.getHeight(), Math.round(dpi), width, height);
+            return result;
+        } catch (IOException | RuntimeException e) {
+            log.debug("Could not downsample image : {}", e.getMessage());
+            return stream;
+        }
+    }
+
+    /**
+     * @return the first stream seen with the same dictionary and encoded content.
+     */
+    private COSStream deduplicate(COSStream stream) throws IOException {
+        MessageDigest digest = DigestUtil.sha256();
+        digest.update(describe(stream).getBytes(StandardCharsets.UTF_8));
+        try (InputStream in = new DigestInputStream(stream.createRawInputStream(), digest)) {
+            byte[] buffer = new byte[8192];
+            while (in.read(buffer) != -1) {
+                // digest the content
+            }
+        }
+        COSStream first = streamsByDigest.putIfAbsent(DigestUtil.toHex(digest.digest()), stream);
+        return first != null ? first : stream;
+    }
+
+    /**
+     * Describe the entries of a stream dictionary, the indirect ones by reference, so streams are only considered
+     * identical when they are decoded the same way.
+     */
+    private static String describe(COSStream stream) {
+        Map<String, String> entries = new TreeMap<>();
+        for (Map.Entry<COSName, COSBase> entry : stream.entrySet()) {
+            if (!COSName.LENGTH.equals(entry.getKey())) {
+                COSBase value = entry.getValue();
+                entries.put(entry.getKey().getName(), value instanceof COSObject
+                    ? ((COSObject) value).getObjectNumber() + " " + ((COSObject) value).getGenerationNumber() + " R"
+                    : String.valueOf(value));
+            }
+        }
+        return entries.toString();
+    }
+
+    private static COSBase dereference(COSBase base) {
+        return base instanceof COSObject ? ((COSObject) base).getObject() : base;
+    }
+}
@@ -0,0 +1,487 @@
+package com.umsa.savepdf.service;
+
+import com.umsa.savepdf.config.ApplicationProperties;
+import com.umsa.savepdf.service.storage.StorageBackend;
+import com.umsa.savepdf.service.storage.StorageObject;
+import com.umsa.savepdf.service.util.DigestUtil;
+import com.umsa.savepdf.web.rest.errors.BadRequestAlertException;
+
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.BooleanSupplier;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+/**
+ * Service writing uploaded PDFs to the content-addressed area of the {@link StorageBackend}.
+ * <p>
+ * Uploads are streamed in a single pass through a fixed-size buffer: the bytes go to a staging object next to their
+ * final location while the size and the SHA-256 digest are computed, so the heap used per upload does not depend on
+ * the file size. A PDF is then stored under its digest, which makes identical uploads share the same object and the
+ * download URLs immutable.
+ * <p>
+ * A staged PDF only becomes visible once {@link #publish(StoredPdf)} is called, after the {@link com.umsa.savepdf.domain.File}
+ * referencing it is committed, and a stored PDF is only removed by {@link #release(String, BooleanSupplier)}
+ * once no {@code File} references it anymore. Both run under a lock striped by digest, so a concurrent upload of the
+ * same content on this instance cannot lose its object to a release. The lock, like the migrations and the cold tier
+ * moves taking it, is held in memory: only one instance of the application may write to a storage, even a bucket.
+ * <p>
+ * Storage keys are relative to the forms directory of the download URLs ({@code ~/.umsa/forms/}), so the URLs
+ * already handed out keep working whatever the backend. Content-addressed PDFs are sharded by the first two bytes of
+ * their digest ({@code sha256/ab/cd/abcd....pdf}), which keeps every directory below a few hundred entries. PDFs
+ * stored before sharding are read from the flat {@code sha256/} directory until {@link ShardMigrationService} has
+ * moved them.
+ * <p>
+ * The content stored under a digest never changes. The rewrites of the ingest stages (linearized, optimized...) are
+ * stored once as the web rendition of the PDF, next to it ({@code sha256/ab/cd/abcd....web.pdf}), and removed with it.
+ */
+@Service
+public class PdfStorageService {
+
+    private final Logger log = LoggerFactory.getLogger(PdfStorageService.class);
+
+    private static final String ENTITY_NAME = "file";
+
+    public static final String HOME_ENTITY = "user.home";
+
+    public static final String FORMS_LOCATION = "/.umsa/forms/";
+
+    public static final String CONTENT_ADDRESSED_PREFIX = "sha256/";
+
+    public static final String CONTENT_ADDRESSED_LOCATION = FORMS_LOCATION + CONTENT_ADDRESSED_PREFIX;
+
+    public static final String EXTENSION = ".pdf";
+
+    public static final String WEB_EXTENSION = ".web" + EXTENSION;
+
+    static final String STAGING_PREFIX = ".upload-";
+
+    static final String QUARANTINE_PREFIX = ".quarantine/";
+
+    static final Pattern CONTENT_ADDRESSED_NAME = Pattern.compile("[0-9a-f]{64}\\" + EXTENSION);
+
+    static final Pattern WEB_RENDITION_NAME = Pattern.compile("[0-9a-f]{64}\\.web\\" + EXTENSION);
+
+    private final Object[] locks = new Object[64];
+
+    private volatile boolean sharded;
+
+    private final ApplicationProperties applicationProperties;
+
+    private final StorageBackend storageBackend;
+
+    public PdfStorageService(ApplicationProperties applicationProperties, StorageBackend storageBackend) {
+        this.applicationProperties = applicationProperties;
+        this.storageBackend = storageBackend;
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    /**
+     * Stage a PDF read from a stream. Its structure is checked by a {@link PdfStreamValidator} on the way, so a file
+     * that is not a PDF, or a truncated one, never leaves the staging area.
+     *
+     * @param in the PDF content, read until its end but not closed.
+     * @return the staged PDF, to be published or discarded.
+     * @throws BadRequestAlertException if the content is too large or not a complete PDF.
+     * @throws IOException if the PDF cannot be read or written.
+     */
+    public StoredPdf write(InputStream in) throws IOException {
+        String staging = stagingKey();
+
+        MessageDigest digest = DigestUtil.sha256();
+        CRC32 crc = new CRC32();
+        PdfStreamValidator validator = new PdfStreamValidator();
+        long maxSize = applicationProperties.getUpload().getMaxSize();
+        byte[] buffer = new byte[applicationProperties.getUpload().getBufferSize()];
+        long size = 0;
+        boolean staged = false;
+        try (OutputStream out = storageBackend.write(staging)) {
+            try {
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    size += read;
+                    if (size > maxSize) {
+                        throw new BadRequestAlertException("El archivo supera el tamaño máximo permitido", ENTITY_NAME, "fileTooLarge");
+                    }
+                    validator.update(buffer, 0, read);
+                    digest.update(buffer, 0, read);
+                    crc.update(buffer, 0, read);
+                    out.write(buffer, 0, read);
+                }
+                validator.finish();
+            } catch (IOException | RuntimeException e) {
+                // too large, not a PDF or the client went away: the staged object is deleted, not uploaded or synced
+                StorageBackend.abandon(out);
+                throw e;
+            }
+            staged = true;
+        } finally {
+            if (!staged) {
+                storageBackend.delete(staging);
+            }
+        }
+        String sha256 = DigestUtil.toHex(digest.digest());
+        StoredPdf storedPdf = new StoredPdf(sha256 + EXTENSION, CONTENT_ADDRESSED_LOCATION, size, sha256, crc.getValue(), staging);
+        log.debug("Staged PDF : {}", storedPdf);
+        return storedPdf;
+    }
+
+    /**
+     * Make a staged PDF available under its digest. When the same content is already stored, the staged copy is
+     * dropped.
+     *
+     * @param storedPdf the staged PDF.
+     * @throws IOException if the staged object cannot be moved.
+     */
+    public void publish(StoredPdf storedPdf) throws IOException {
+        String target = key(storedPdf.getSha256());
+        synchronized (lock(storedPdf.getSha256())) {
+            if (storageBackend.stat(target).isPresent()
+                || (!sharded && storageBackend.stat(flatKey(storedPdf.getSha256())).isPresent())) {
+                log.debug("PDF {} already stored, dropping duplicate upload", storedPdf.getSha256());
+                storageBackend.delete(storedPdf.getStaging());
+            } else {
+                storageBackend.move(storedPdf.getStaging(), target);
+            }
+        }
+    }
+
+    /**
+     * Store a rewritten version of a stored PDF (linearized, optimized...) as its web rendition. The PDF itself is left
+     * as uploaded, and a rendition is never replaced, so both download URLs keep designating the same bytes.
+     *
+     * @param sha256 the digest of the PDF.
+     * @param staging the key of the staged rewritten content, see {@link #stagingKey()}.
+     * @return {@code false} if the PDF was removed or already has a rendition, in which case the staged content is dropped.
+     * @throws IOException if the staged object cannot be moved.
+     */
+    public boolean publishWebRendition(String sha256, String staging) throws IOException {
+        synchronized (lock(sha256)) {
+            if (!find(sha256).isPresent() || findWebRendition(sha256).isPresent()) {
+                log.debug("PDF {} removed or already rewritten, dropping the rewrite", sha256);
+                storageBackend.delete(staging);
+                return false;
+            }
+            storageBackend.move(staging, webRenditionKey(sha256));
+            return true;
+        }
+    }
+
+    /**
+     * Find the web rendition of a content-addressed PDF.
+     *
+     * @param sha256 the digest of the PDF.
+     * @return the stored rendition, or empty if the PDF has none.
+     * @throws IOException if the storage cannot be reached.
+     */
+    public Optional<StorageObject> findWebRendition(String sha256) throws IOException {
+        return storageBackend.stat(webRenditionKey(sha256));
+    }
+
+    /**
+     * Drop a staged PDF that will not be published.
+     *
+     * @param storedPdf the staged PDF.
+     */
+    public void discard(StoredPdf storedPdf) {
+        try {
+            storageBackend.delete(storedPdf.getStaging());
+        } catch (IOException e) {
+            log.warn("Could not remove staged PDF {} : {}", storedPdf.getStaging(), e.getMessage());
+        }
+    }
+
+    /**
+     * Remove a stored PDF if it is no longer referenced.
+     *
+     * @param sha256 the digest of the PDF.
+     * @param unreferenced checks, under the lock of the digest, that no {@code File} references the PDF anymore.
+     * @return {@code true} if the PDF was removed.
+     * @throws IOException if the object cannot be removed.
+     */
+    public boolean release(String sha256, BooleanSupplier unreferenced) throws IOException {
+        return remove(sha256, unreferenced, false);
+    }
+
+    /**
+     * Move a stored PDF to the quarantine area if it is no longer referenced, where it is kept but no longer served.
+     * Its thumbnails and web rendition, which can be rendered again, are removed.
+     *
+     * @param sha256 the digest of the PDF.
+     * @param unreferenced checks, under the lock of the digest, that no {@code File} references the PDF anymore.
+     * @return {@code true} if the PDF was moved.
+     * @throws IOException if the object cannot be moved.
+     * @see #quarantineKey(String)
+     */
+    public boolean quarantine(String sha256, BooleanSupplier unreferenced) throws IOException {
+        return remove(sha256, unreferenced, true);
+    }
+
+    private boolean remove(String sha256, BooleanSupplier unreferenced, boolean quarantine) throws IOException {
+        synchronized (lock(sha256)) {
+            if (!unreferenced.getAsBoolean()) {
+                return false;
+            }
+            log.debug("{} unreferenced PDF {}", quarantine ? "Quarantining" : "Removing", sha256);
+            boolean removed = remove(key(sha256), quarantine);
+            if (!sharded) {
+                removed |= remove(flatKey(sha256), quarantine);
+            }
+            for (int width : applicationProperties.getThumbnail().getWidths()) {
+                storageBackend.delete(thumbnailKey(sha256, width));
+            }
+            storageBackend.delete(webRenditionKey(sha256));
+            return removed;
+        }
+    }
+
+    private boolean remove(String key, boolean quarantine) throws IOException {
+        if (!quarantine) {
+            return storageBackend.delete(key);
+        }
+        if (!storageBackend.stat(key).isPresent()) {
+            return false;
+        }
+        storageBackend.move(key, quarantineKey(key));
+        return true;
+    }
+
+    /**
+     * Build the download URL of a stored PDF, served by {@link com.umsa.savepdf.web.rest.PdfController}.
+     *
+     * @param storedPdf the stored PDF.
+     * @return the download URL.
+     */
+    public String downloadUrl(StoredPdf storedPdf) {
+        return downloadUrl(storedPdf.getName(), storedPdf.getLocation());
+    }
+
+    /**
+     * Build the download URL of a content-addressed PDF.
+     *
+     * @param sha256 the digest of the PDF.
+     * @return the download URL.
+     */
+    public String downloadUrl(String sha256) {
+        return downloadUrl(sha256 + EXTENSION, CONTENT_ADDRESSED_LOCATION);
+    }
+
+    /**
+     * Build the download URL of the web rendition of a content-addressed PDF.
+     *
+     * @param sha256 the digest of the PDF.
+     * @return the download URL.
+     * @see #publishWebRendition(String, String)
+     */
+    public String webRenditionUrl(String sha256) {
+        return downloadUrl(sha256 + WEB_EXTENSION, CONTENT_ADDRESSED_LOCATION);
+    }
+
+    private static String downloadUrl(String name, String location) {
+        return "http://localhost:8080" + "/pdf/" + "file" + "/get-pdf/" + name + "?homeEntity=" + HOME_ENTITY
+            + "&url=" + location;
+    }
+
+    /**
+     * Check whether a download location holds content-addressed PDFs, whose content never changes.
+     *
+     * @param homeEntity the system property of the base directory.
+     * @param url the location below the base directory.
+     * @return {@code true} if the location is the content-addressed directory.
+     */
+    public boolean isContentAddressed(String homeEntity, String url) {
+        return HOME_ENTITY.equals(homeEntity) && CONTENT_ADDRESSED_LOCATION.equals(url);
+    }
+
+    /**
+     * Find a stored PDF from the parameters of its download URL.
+     *
+     * @param homeEntity the system property of the base directory.
+     * @param url the location below the base directory.
+     * @param filename the file name of the PDF.
+     * @return the stored object, or empty if there is none.
+     * @throws IOException if the storage cannot be reached.
+     * @see #key(String, String, String)
+     */
+    public Optional<StorageObject> find(String homeEntity, String url, String filename) throws IOException {
+        Optional<String> key = key(homeEntity, url, filename);
+        if (!key.isPresent()) {
+            return Optional.empty();
+        }
+        if (isContentAddressed(homeEntity, url) && CONTENT_ADDRESSED_NAME.matcher(filename).matches()) {
+            return find(filename.substring(0, filename.length() - EXTENSION.length()));
+        }
+        return storageBackend.stat(key.get());
+    }
+
+    /**
+     * Find a content-addressed PDF, in its shard or, until the sharding migration completes, in the flat directory.
+     *
+     * @param sha256 the digest of the PDF.
+     * @return the stored object, or empty if there is none.
+     * @throws IOException if the storage cannot be reached.
+     */
+    public Optional<StorageObject> find(String sha256) throws IOException {
+        Optional<StorageObject> object = storageBackend.stat(key(sha256));
+        if (!object.isPresent() && !sharded) {
+            return storageBackend.stat(flatKey(sha256));
+        }
+        return object;
+    }
+
+    /**
+     * Load a stored PDF, from its local file when there is one so PDFBox reads only the parts it needs.
+     *
+     * @param pdf the stored PDF.
+     * @return the document, buffered in temporary files rather than on the heap.
+     * @throws IOException if the PDF cannot be read or parsed.
+     */
+    public PDDocument load(StorageObject pdf) throws IOException {
+        return load(pdf.getKey(), MemoryUsageSetting.setupTempFileOnly());
+    }
+
+    /**
+     * Load a staged PDF, before it is published.
+     *
+     * @param storedPdf the staged PDF.
+     * @param memoryUsageSetting how much PDFBox may buffer on the heap and in temporary files.
+     * @return the document.
+     * @throws IOException if the PDF cannot be read or parsed.
+     */
+    PDDocument load(StoredPdf storedPdf, MemoryUsageSetting memoryUsageSetting) throws IOException {
+        return load(storedPdf.getStaging(), memoryUsageSetting);
+    }
+
+    private PDDocument load(String key, MemoryUsageSetting memoryUsageSetting) throws IOException {
+        Optional<Path> path = storageBackend.localPath(key);
+        if (path.isPresent()) {
+            return PDDocument.load(path.get().toFile(), memoryUsageSetting);
+        }
+        try (InputStream in = storageBackend.read(key)) {
+            return PDDocument.load(in, memoryUsageSetting);
+        }
+    }
+
+    /**
+     * Resolve the storage key of a PDF from the parameters of its download URL. Hidden files and directories, such as
+     * the staged uploads and the quarantine, are never designated.
+     *
+     * @param homeEntity the system property of the base directory, only {@value #HOME_ENTITY} is served.
+     * @param url the location below the base directory, within {@value #FORMS_LOCATION}.
+     * @param filename the file name of the PDF.
+     * @return the storage key, or empty if the parameters do not designate a stored PDF.
+     */
+    public Optional<String> key(String homeEntity, String url, String filename) {
+        if (!HOME_ENTITY.equals(homeEntity) || url == null || !url.startsWith(FORMS_LOCATION) || filename == null) {
+            return Optional.empty();
+        }
+        if (isContentAddressed(homeEntity, url)) {
+            if (WEB_RENDITION_NAME.matcher(filename).matches()) {
+                return Optional.of(webRenditionKey(filename.substring(0, filename.length() - WEB_EXTENSION.length())));
+            }
+            return CONTENT_ADDRESSED_NAME.matcher(filename).matches()
+                ? Optional.of(key(filename.substring(0, filename.length() - EXTENSION.length())))
+                : Optional.empty();
+        }
+        String directory = url.substring(FORMS_LOCATION.length());
+        if (!directory.isEmpty() && !directory.endsWith("/")) {
+            directory += "/";
+        }
+        String key = directory + filename;
+        for (String segment : key.split("/", -1)) {
+            if (segment.isEmpty() || segment.startsWith(".") || segment.contains("\\")) {
+                return Optional.empty();
+            }
+        }
+        return Optional.of(key);
+    }
+
+    /**
+     * @param sha256 the digest of a PDF.
+     * @return the storage key of the PDF in its shard of the content-addressed area.
+     */
+    public String key(String sha256) {
+        return CONTENT_ADDRESSED_PREFIX + sha256.substring(0, 2) + "/" + sha256.substring(2, 4) + "/" + sha256 + EXTENSION;
+    }
+
+    /**
+     * @param sha256 the digest of a PDF.
+     * @param width the width of the thumbnail, in pixels.
+     * @return the storage key of the PNG thumbnail of the first page, next to the PDF.
+     */
+    public String thumbnailKey(String sha256, int width) {
+        String key = key(sha256);
+        return key.substring(0, key.length() - EXTENSION.length()) + ".w" + width + ".png";
+    }
+
+    /**
+     * @param sha256 the digest of a PDF.
+     * @return the storage key of the web rendition of the PDF, next to it.
+     */
+    public String webRenditionKey(String sha256) {
+        String key = key(sha256);
+        return key.substring(0, key.length() - EXTENSION.length()) + WEB_EXTENSION;
+    }
+
+    /**
+     * @return a new key to stage content at, next to the content-addressed PDFs.
+     */
+    public String stagingKey() {
+        return CONTENT_ADDRESSED_PREFIX + STAGING_PREFIX + UUID.randomUUID();
+    }
+
+    /**
+     * @param key the storage key of an object.
+     * @return the key the object is moved to when quarantined, below a hidden directory that downloads never reach.
+     */
+    public String quarantineKey(String key) {
+        return QUARANTINE_PREFIX + key;
+    }
+
+    /**
+     * @param sha256 the digest of a PDF.
+     * @return the storage key the PDF had before sharding.
+     */
+    String flatKey(String sha256) {
+        return CONTENT_ADDRESSED_PREFIX + sha256 + EXTENSION;
+    }
+
+    /**
+     * Stop looking for PDFs in the flat content-addressed directory, once it no longer holds any.
+     */
+    void shardingMigrated() {
+        sharded = true;
+    }
+
+    boolean isSharded() {
+        return sharded;
+    }
+
+    public StorageBackend getStorageBackend() {
+        return storageBackend;
+    }
+
+    /**
+     * Lock an object shared by every operation on the same digest, within this instance. Nothing serializes them
+     * across instances, which is why a storage is written by a single instance.
+     *
+     * @param sha256 the digest.
+     * @return the lock.
+     */
+    Object lock(String sha256) {
+        return locks[Math.floorMod(sha256.hashCode(), locks.length)];
+    }
+}
@@ -0,0 +1,100 @@
+package com.umsa.savepdf.service;
+
+import com.umsa.savepdf.web.rest.errors.BadRequestAlertException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Structural checks of a PDF made while its bytes stream in, in constant memory: the {@code %PDF-} header must be
+ * within the first kilobyte, as readers require, and the last kilobyte must hold a {@code startxref} pointing inside
+ * the file followed by {@code %%EOF}, which a truncated upload lacks.
+ * <p>
+ * The header is checked as soon as the first kilobyte is received, so a renamed image or archive is rejected before
+ * the rest of it is even read. The body is not parsed, see {@link PdfValidationService} for that.
+ */
+final class PdfStreamValidator {
+
+    private static final String ENTITY_NAME = "file";
+
+    static final int WINDOW = 1024;
+
+    private static final byte[] HEADER = "%PDF-".getBytes(StandardCharsets.US_ASCII);
+
+    private static final Pattern TRAILER = Pattern.compile("startxref\\s+(\\d{1,18})\\s+%%EOF");
+
+    private final byte[] head = new byte[WINDOW];
+
+    private int headLength;
+
+    private boolean header;
+
+    private final byte[] tail = new byte[WINDOW];
+
+    private long size;
+
+    /**
+     * Check the next bytes of the PDF.
+     *
+     * @throws BadRequestAlertException if the first kilobyte has no {@code %PDF-} header.
+     */
+    void update(byte[] bytes, int offset, int length) {
+        if (headLength < WINDOW) {
+            int copied = Math.min(length, WINDOW - headLength);
+            System.arraycopy(bytes, offset, head, headLength, copied);
+            headLength += copied;
+            if (!header) {
+                header = indexOf(head, headLength, HEADER) >= 0;
+                if (!header && headLength == WINDOW) {
+                    throw invalidHeader();
+                }
+            }
+        }
+        if (length >= WINDOW) {
+            System.arraycopy(bytes, offset + length - WINDOW, tail, 0, WINDOW);
+        } else {
+            System.arraycopy(tail, length, tail, 0, WINDOW - length);
+            System.arraycopy(bytes, offset, tail, WINDOW - length, length);
+        }
+        size += length;
+    }
+
+    /**
+     * Check the end of the PDF, once every byte was given to {@link #update}.
+     *
+     * @throws BadRequestAlertException if the PDF has no header or is truncated.
+     */
+    void finish() {
+        if (!header) {
+            throw invalidHeader();
+        }
+        int tailLength = (int) Math.min(size, WINDOW);
+        String trailer = new String(tail, WINDOW - tailLength, tailLength, StandardCharsets.ISO_8859_1);
+        Matcher matcher = TRAILER.matcher(trailer);
+        long startxref = -1;
+        while (matcher.find()) {
+            startxref = Long.parseLong(matcher.group(1));
+        }
+        if (startxref < 0 || startxref >= size) {
+            throw new BadRequestAlertException("El archivo PDF está incompleto o dañado", ENTITY_NAME, "truncatedPdf");
+        }
+    }
+
+    private static BadRequestAlertException invalidHeader() {
+        return new BadRequestAlertException("El archivo no es un PDF", ENTITY_NAME, "invalidPdf");
+    }
+
+    private static int indexOf(byte[] bytes, int length, byte[] pattern) {
+        outer:
+        for (int i = 0; i <= length - pattern.length; i++) {
+            for (int j = 0; j < pattern.length; j++) {
+                if (bytes[i + j] != pattern[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+}
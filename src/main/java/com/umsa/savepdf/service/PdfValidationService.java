@@ -0,0 +1,128 @@
+package com.umsa.savepdf.service;
+
+import com.umsa.savepdf.config.ApplicationProperties;
+import com.umsa.savepdf.web.rest.errors.BadRequestAlertException;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.encryption.InvalidPasswordException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Service parsing the staged PDFs with PDFBox before they are registered, when {@code application.upload.validation.deep}
+ * is enabled, to reject the PDFs whose header and trailer look fine but whose pages cannot be read.
+ * <p>
+ * The parse runs on the bounded {@code validationExecutor} with at most {@code application.upload.validation.max-memory}
+ * bytes of heap, and the upload waits for it at most {@code application.upload.validation.timeout} seconds. A PDF still
+ * being parsed after that, or arriving while every worker is busy, is accepted on the strength of the streaming checks
+ * of {@link PdfStreamValidator}. The parse latency is published as {@code savepdf.upload.validate}, the skipped
+ * validations as {@code savepdf.upload.validate.skipped}.
+ */
+@Service
+public class PdfValidationService {
+
+    private final Logger log = LoggerFactory.getLogger(PdfValidationService.class);
+
+    private static final String ENTITY_NAME = "file";
+
+    private final PdfStorageService pdfStorageService;
+
+    private final ApplicationProperties applicationProperties;
+
+    private final ThreadPoolTaskExecutor executor;
+
+    private final Timer validateTimer;
+
+    private final Counter busyCounter;
+
+    private final Counter timeoutCounter;
+
+    public PdfValidationService(PdfStorageService pdfStorageService, ApplicationProperties applicationProperties,
+                                @Qualifier("validationExecutor") ThreadPoolTaskExecutor executor, MeterRegistry meterRegistry) {
+        this.pdfStorageService = pdfStorageService;
+        this.applicationProperties = applicationProperties;
+        this.executor = executor;
+        this.validateTimer = Timer.builder("savepdf.upload.validate")
+            .description("Time to parse an uploaded PDF")
+            .register(meterRegistry);
+        this.busyCounter = Counter.builder("savepdf.upload.validate.skipped")
+            .description("Uploaded PDFs accepted without parsing them")
+            .tag("reason", "busy")
+            .register(meterRegistry);
+        this.timeoutCounter = Counter.builder("savepdf.upload.validate.skipped")
+            .description("Uploaded PDFs accepted without parsing them")
+            .tag("reason", "timeout")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Parse a staged PDF, if the deep validation is enabled. The staged PDF is discarded when it is rejected.
+     *
+     * @param storedPdf the staged PDF.
+     * @throws BadRequestAlertException if the PDF cannot be parsed or has no page.
+     */
+    public void validate(StoredPdf storedPdf) {
+        if (!applicationProperties.getUpload().getValidation().isDeep()) {
+            return;
+        }
+        Future<?> parse;
+        try {
+            parse = executor.submit(() -> {
+                parse(storedPdf);
+                return null;
+            });
+        } catch (RejectedExecutionException e) {
+            log.debug("Validation queue full, accepting PDF {} unparsed", storedPdf);
+            busyCounter.increment();
+            return;
+        }
+        try {
+            parse.get(applicationProperties.getUpload().getValidation().getTimeout(), TimeUnit.SECONDS);
+        } catch (TimeoutException e) {
+            log.debug("PDF {} still being parsed, accepting it", storedPdf);
+            timeoutCounter.increment();
+            parse.cancel(true);
+        } catch (ExecutionException e) {
+            log.debug("Rejecting PDF {} : {}", storedPdf, e.getCause().getMessage());
+            pdfStorageService.discard(storedPdf);
+            throw new BadRequestAlertException("El archivo PDF está dañado", ENTITY_NAME, "corruptPdf");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void parse(StoredPdf storedPdf) throws IOException {
+        long start = System.nanoTime();
+        MemoryUsageSetting memoryUsageSetting = MemoryUsageSetting.setupMixed(applicationProperties.getUpload().getValidation().getMaxMemory());
+        try (PDDocument document = pdfStorageService.load(storedPdf, memoryUsageSetting)) {
+            int pages = 0;
+            for (PDPage page : document.getPages()) {
+                page.getMediaBox();
+                page.getResources();
+                pages++;
+            }
+            if (pages == 0) {
+                throw new IOException("The PDF has no page");
+            }
+        } catch (InvalidPasswordException e) {
+            log.debug("PDF {} is encrypted, its pages are only checked by the viewer", storedPdf);
+        } finally {
+            validateTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.umsa.savepdf.service;
+
+import com.umsa.savepdf.config.ApplicationProperties;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Service running the <a href="https://qpdf.sourceforge.io">qpdf</a> command-line tool, which rewrites the structure
+ * of PDFs (linearization, object streams) without touching their content.
+ * <p>
+ * The executable is {@code application.ingest.qpdf.path}. When it cannot be run, {@link #isAvailable()} is
+ * {@code false} and the stages needing it are skipped.
+ */
+@Service
+public class QpdfService {
+
+    private final Logger log = LoggerFactory.getLogger(QpdfService.class);
+
+    /**
+     * Exit code of a run that succeeded with warnings, its output is written.
+     */
+    private static final int EXIT_WARNINGS = 3;
+
+    private final ApplicationProperties applicationProperties;
+
+    private volatile Boolean available;
+
+    public QpdfService(ApplicationProperties applicationProperties) {
+        this.applicationProperties = applicationProperties;
+    }
+
+    /**
+     * @return {@code true} if the qpdf executable can be run, checked once.
+     */
+    public boolean isAvailable() {
+        if (available == null) {
+            try {
+                available = run("--version") == 0;
+            } catch (IOException e) {
+                log.warn("qpdf cannot be run ({}), PDFs will be stored as uploaded", e.getMessage());
+                available = false;
+            }
+        }
+        return available;
+    }
+
+    /**
+     * Rewrite a PDF with qpdf.
+     *
+     * @param in the PDF to read.
+     * @param out the file to write.
+     * @param options the qpdf options, such as {@code --linearize}.
+     * @throws IOException if qpdf cannot be run, fails or times out.
+     */
+    public void rewrite(Path in, Path out, String... options) throws IOException {
+        List<String> arguments = new ArrayList<>(Arrays.asList(options));
+        arguments.add(in.toString());
+        arguments.add(out.toString());
+        int exitCode = run(arguments.toArray(new String[0]));
+        if (exitCode != 0 && exitCode != EXIT_WARNINGS) {
+            throw new IOException("qpdf exited with code " + exitCode);
+        }
+    }
+
+    private int run(String... arguments) throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(applicationProperties.getIngest().getQpdf().getPath());
+        command.addAll(Arrays.asList(arguments));
+        Path output = Files.createTempFile("savepdf-qpdf", ".log");
+        try {
+            Process process = new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(output.toFile())
+                .start();
+            try {
+                if (!process.waitFor(applicationProperties.getIngest().getQpdf().getTimeout(), TimeUnit.SECONDS)) {
+                    throw new IOException("qpdf timed out");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for qpdf", e);
+            } finally {
+                process.destroyForcibly();
+            }
+            if (process.exitValue() != 0 && log.isDebugEnabled()) {
+                log.debug("qpdf {} exited with code {} : {}", arguments, process.exitValue(),
+                    new String(Files.readAllBytes(output), StandardCharsets.UTF_8).trim());
+            }
+            return process.exitValue();
+        } finally {
+            Files.deleteIfExists(output);
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package com.umsa.savepdf.service;
+
+import com.umsa.savepdf.config.ApplicationProperties;
+import com.umsa.savepdf.service.ratelimit.BucketStore;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Service limiting the uploads and downloads of each principal, when {@code application.rate-limit.enabled} is set.
+ * <p>
+ * A principal is a user, for the requests bearing a token, else the address of the client. Each endpoint class has
+ * its own limits: a token bucket of {@code burst} requests refilled with {@code rate} requests per second, held by a
+ * {@link BucketStore}, and at most {@code max-concurrent} requests running at once. The running requests are counted
+ * by each instance, even with shared buckets, as they end with the connection holding them. A rejected request gets
+ * the seconds after which it may be retried, and is counted by {@code savepdf.ratelimit.throttled}, tagged with the
+ * login of the user, or {@code anonymous} for the clients without a token. Only the first
+ * {@code application.rate-limit.max-tagged-principals} users throttled get a tag of their own, the next ones share
+ * {@code other}, so that the number of counters stays bounded whatever the number of users.
+ */
+@Service
+public class RateLimitService {
+
+    private final Logger log = LoggerFactory.getLogger(RateLimitService.class);
+
+    private static final String ANONYMOUS = "anonymous";
+
+    private static final String OTHER = "other";
+
+    private static final Permit UNLIMITED = new Permit(null, null, 0);
+
+    private final ApplicationProperties applicationProperties;
+
+    private final BucketStore bucketStore;
+
+    private final MeterRegistry meterRegistry;
+
+    private final ConcurrentMap<String, Integer> running = new ConcurrentHashMap<>();
+
+    private final Set<String> taggedPrincipals = ConcurrentHashMap.newKeySet();
+
+    public RateLimitService(ApplicationProperties applicationProperties, BucketStore bucketStore, MeterRegistry meterRegistry) {
+        this.applicationProperties = applicationProperties;
+        this.bucketStore = bucketStore;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * The classes of requests, which have their own limits.
+     */
+    public enum Endpoint {
+        /**
+         * The requests writing below {@code /api/files/upload}.
+         */
+        UPLOAD,
+        /**
+         * The downloads of {@code /pdf/**}.
+         */
+        DOWNLOAD
+    }
+
+    /**
+     * Let a request in, or not.
+     *
+     * @param endpoint the class of the request.
+     * @param login the login of the user, or {@code null} for a client without a token.
+     * @param address the address of the client.
+     * @return the permit of the request, to release once it is answered, or a rejection.
+     */
+    public Permit acquire(Endpoint endpoint, String login, String address) {
+        if (!applicationProperties.getRateLimit().isEnabled()) {
+            return UNLIMITED;
+        }
+        ApplicationProperties.RateLimit.Limit limit = limit(endpoint);
+        String key = endpoint.name().toLowerCase() + (login != null ? ":user:" + login : ":ip:" + address);
+        if (limit.getRate() > 0) {
+            long interval = (long) (TimeUnit.SECONDS.toNanos(1) / limit.getRate());
+            long wait = bucketStore.acquire(key, interval, interval * (Math.max(1, limit.getBurst()) - 1));
+            if (wait > 0) {
+                return reject(endpoint, "rate", login, key, (wait + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+            }
+        }
+        int maxConcurrent = limit.getMaxConcurrent();
+        if (maxConcurrent <= 0) {
+            return UNLIMITED;
+        }
+        boolean[] admitted = new boolean[1];
+        running.compute(key, (k, count) -> {
+            int current = count == null ? 0 : count;
+            if (current >= maxConcurrent) {
+                return count;
+            }
+            admitted[0] = true;
+            return current + 1;
+        });
+        if (!admitted[0]) {
+            return reject(endpoint, "concurrency", login, key, 1);
+        }
+        return new Permit(this, key, 0);
+    }
+
+    /**
+     * Whether {@link #acquire} may block, and must not run on an IO thread.
+     *
+     * @return {@code true} if the buckets are shared through the database.
+     */
+    public boolean isBlocking() {
+        return applicationProperties.getRateLimit().getMode() == ApplicationProperties.RateLimit.Mode.SHARED;
+    }
+
+    /**
+     * Drop the buckets of the principals which have been quiet long enough to be allowed a full burst again.
+     */
+    @Scheduled(initialDelayString = "${application.rate-limit.sweep-interval:60000}",
+        fixedDelayString = "${application.rate-limit.sweep-interval:60000}")
+    public void evict() {
+        if (!applicationProperties.getRateLimit().isEnabled()) {
+            return;
+        }
+        bucketStore.evict();
+    }
+
+    private ApplicationProperties.RateLimit.Limit limit(Endpoint endpoint) {
+        return endpoint == Endpoint.UPLOAD ? applicationProperties.getRateLimit().getUpload()
+            : applicationProperties.getRateLimit().getDownload();
+    }
+
+    private Permit reject(Endpoint endpoint, String reason, String login, String key, long retryAfter) {
+        log.debug("Throttled {} request of {} ({}), retry after {} s", endpoint, key, reason, retryAfter);
+        Counter.builder("savepdf.ratelimit.throttled")
+            .description("Requests rejected by the rate limiter")
+            .tag("endpoint", endpoint.name().toLowerCase())
+            .tag("reason", reason)
+            .tag("principal", principalTag(login))
+            .register(meterRegistry)
+            .increment();
+        return new Permit(null, null, retryAfter);
+    }
+
+    private String principalTag(String login) {
+        if (login == null) {
+            return ANONYMOUS;
+        }
+        if (taggedPrincipals.size() < applicationProperties.getRateLimit().getMaxTaggedPrincipals()) {
+            taggedPrincipals.add(login);
+        }
+        return taggedPrincipals.contains(login) ? login : OTHER;
+    }
+
+    private void release(String key) {
+        running.computeIfPresent(key, (k, count) -> count > 1 ? count - 1 : null);
+    }
+
+    /**
+     * The answer of the rate limiter to a request.
+     */
+    public static final class Permit {
+
+        private final RateLimitService rateLimitService;
+
+        private final String key;
+
+        private final long retryAfter;
+
+        private Permit(RateLimitService rateLimitService, String key, long retryAfter) {
+            this.rateLimitService = rateLimitService;
+            this.key = key;
+            this.retryAfter = retryAfter;
+        }
+
+        public boolean isGranted() {
+            return retryAfter == 0;
+        }
+
+        /**
+         * Get the delay to put in the {@code Retry-After} header of a rejection.
+         *
+         * @return the seconds after which the request may be retried, or {@code 0} if it was let in.
+         */
+        public long getRetryAfter() {
+            return retryAfter;
+        }
+
+        /**
+         * Let another request of the principal run, once this one is answered.
+         */
+        public void release() {
+            if (rateLimitService != null) {
+                rateLimitService.release(key);
+            }
+        }
+    }
+}
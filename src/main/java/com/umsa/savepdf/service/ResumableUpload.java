@@ -0,0 +1,79 @@
+package com.umsa.savepdf.service;
+
+import com.umsa.savepdf.domain.enumeration.FormType;
+
+/**
+ * A resumable upload, kept by {@link ResumableUploadService}.
+ */
+public class ResumableUpload {
+
+    private final String id;
+
+    private final long length;
+
+    private final String filename;
+
+    private final FormType type;
+
+    private final String owner;
+
+    private final long offset;
+
+    public ResumableUpload(String id, long length, String filename, FormType type, String owner, long offset) {
+        this.id = id;
+        this.length = length;
+        this.filename = filename;
+        this.type = type;
+        this.owner = owner;
+        this.offset = offset;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * @return the size of the whole PDF.
+     */
+    public long getLength() {
+        return length;
+    }
+
+    public String getFilename() {
+        return filename;
+    }
+
+    public FormType getType() {
+        return type;
+    }
+
+    /**
+     * @return the login of the user who created the upload.
+     */
+    public String getOwner() {
+        return owner;
+    }
+
+    /**
+     * @return the number of bytes received, where the next chunk starts.
+     */
+    public long getOffset() {
+        return offset;
+    }
+
+    public boolean isComplete() {
+        return offset == length;
+    }
+
+    @Override
+    public String toString() {
+        return "ResumableUpload{" +
+            "id='" + id + "'" +
+            ", length=" + length +
+            ", filename='" + filename + "'" +
+            ", type='" + type + "'" +
+            ", owner='" + owner + "'" +
+            ", offset=" + offset +
+            "}";
+    }
+}
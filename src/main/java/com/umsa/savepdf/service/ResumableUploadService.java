@@ -0,0 +1,241 @@
+package com.umsa.savepdf.service;
+
+import com.umsa.savepdf.config.ApplicationProperties;
+import com.umsa.savepdf.config.Constants;
+import com.umsa.savepdf.domain.enumeration.FormType;
+import com.umsa.savepdf.security.SecurityUtils;
+import com.umsa.savepdf.web.rest.errors.BadRequestAlertException;
+import com.umsa.savepdf.web.rest.errors.UploadConflictException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.NoSuchElementException;
+import java.util.Properties;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Service keeping the state of resumable uploads, sent in chunks that can be retried after a network failure.
+ * <p>
+ * Each upload is a local file the chunks are appended to, whose size is the offset the client resumes from, and a
+ * properties file describing it. Both live in {@code application.upload.resumable.directory}, whatever the storage
+ * backend: the PDF only goes to the storage, through {@link PdfStorageService}, once it is complete. Uploads are only
+ * visible to the user who created them, and removed once they have not received a chunk for
+ * {@code application.upload.resumable.expiration} seconds.
+ */
+@Service
+public class ResumableUploadService {
+
+    private final Logger log = LoggerFactory.getLogger(ResumableUploadService.class);
+
+    private static final String ENTITY_NAME = "file";
+
+    private static final Pattern UPLOAD_ID = Pattern.compile("[0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}");
+
+    private static final String DATA_EXTENSION = ".part";
+
+    private static final String INFO_EXTENSION = ".info";
+
+    private final ApplicationProperties applicationProperties;
+
+    private final Path directory;
+
+    private final Set<String> busy = ConcurrentHashMap.newKeySet();
+
+    public ResumableUploadService(ApplicationProperties applicationProperties) {
+        this.applicationProperties = applicationProperties;
+        this.directory = Paths.get(applicationProperties.getUpload().getResumable().getDirectory());
+    }
+
+    /**
+     * Start a resumable upload.
+     *
+     * @param length the size of the whole PDF.
+     * @param filename the original file name.
+     * @param type the form type of the PDF.
+     * @return the new upload, with no bytes received.
+     * @throws IOException if the upload cannot be written.
+     */
+    public ResumableUpload create(long length, String filename, FormType type) throws IOException {
+        if (length <= 0 || length > applicationProperties.getUpload().getMaxSize()) {
+            throw new BadRequestAlertException("El archivo supera el tamaño máximo permitido", ENTITY_NAME, "fileTooLarge");
+        }
+        ResumableUpload upload = new ResumableUpload(UUID.randomUUID().toString(), length, filename, type,
+            SecurityUtils.getCurrentUserLogin().orElse(Constants.SYSTEM_ACCOUNT), 0);
+        Files.createDirectories(directory);
+        Files.createFile(data(upload.getId()));
+        Properties info = new Properties();
+        info.setProperty("length", Long.toString(length));
+        info.setProperty("filename", filename);
+        info.setProperty("type", type.name());
+        info.setProperty("owner", upload.getOwner());
+        try (Writer out = Files.newBufferedWriter(info(upload.getId()), StandardCharsets.UTF_8)) {
+            info.store(out, null);
+        }
+        log.debug("Created resumable upload {}", upload);
+        return upload;
+    }
+
+    /**
+     * Get a resumable upload of the current user.
+     *
+     * @param id the id of the upload.
+     * @return the upload, with the number of bytes received.
+     * @throws NoSuchElementException if the current user has no such upload.
+     * @throws IOException if the upload cannot be read.
+     */
+    public ResumableUpload get(String id) throws IOException {
+        if (!UPLOAD_ID.matcher(id).matches()) {
+            throw new NoSuchElementException();
+        }
+        Properties info = new Properties();
+        try (Reader in = Files.newBufferedReader(info(id), StandardCharsets.UTF_8)) {
+            info.load(in);
+        } catch (NoSuchFileException e) {
+            throw new NoSuchElementException();
+        }
+        String owner = info.getProperty("owner");
+        if (!owner.equals(SecurityUtils.getCurrentUserLogin().orElse(Constants.SYSTEM_ACCOUNT))) {
+            throw new NoSuchElementException();
+        }
+        long offset;
+        try {
+            offset = Files.size(data(id));
+        } catch (NoSuchFileException e) {
+            throw new NoSuchElementException();
+        }
+        return new ResumableUpload(id, Long.parseLong(info.getProperty("length")), info.getProperty("filename"),
+            type(info.getProperty("type")), owner, offset);
+    }
+
+    /**
+     * Parse the type of an upload, or {@code null} if its info file lacks a valid one.
+     */
+    private static FormType type(String type) {
+        try {
+            return type == null ? null : FormType.valueOf(type);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Append a chunk to a resumable upload. The bytes received before a failure to read the chunk are kept, the
+     * client resumes from the offset of the upload.
+     *
+     * @param id the id of the upload.
+     * @param offset the offset of the chunk, which must be the number of bytes received.
+     * @param in the chunk.
+     * @return the number of bytes received.
+     * @throws UploadConflictException if the offset is not the number of bytes received, or a chunk is being received.
+     * @throws IOException if the chunk cannot be read or written.
+     */
+    public long append(String id, long offset, InputStream in) throws IOException {
+        ResumableUpload upload = get(id);
+        if (!busy.add(id)) {
+            throw new UploadConflictException("A chunk of upload " + id + " is already being received");
+        }
+        try (FileChannel channel = FileChannel.open(data(id), StandardOpenOption.WRITE)) {
+            if (channel.size() != offset) {
+                throw new UploadConflictException("Upload " + id + " is at offset " + channel.size() + ", not " + offset);
+            }
+            channel.position(offset);
+            long remaining = upload.getLength() - offset;
+            byte[] buffer = new byte[applicationProperties.getUpload().getBufferSize()];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                if (read > remaining) {
+                    channel.truncate(offset);
+                    throw new BadRequestAlertException("El fragmento supera el tamaño declarado", ENTITY_NAME, "chunkTooLarge");
+                }
+                ByteBuffer chunk = ByteBuffer.wrap(buffer, 0, read);
+                while (chunk.hasRemaining()) {
+                    channel.write(chunk);
+                }
+                remaining -= read;
+            }
+            return channel.size();
+        } finally {
+            busy.remove(id);
+        }
+    }
+
+    /**
+     * Open a complete resumable upload.
+     *
+     * @param upload the upload.
+     * @return the content of the upload.
+     * @throws UploadConflictException if the upload is not complete.
+     * @throws IOException if the upload cannot be read.
+     */
+    public InputStream open(ResumableUpload upload) throws IOException {
+        if (!upload.isComplete()) {
+            throw new UploadConflictException("Upload " + upload.getId() + " only received " + upload.getOffset()
+                + " of " + upload.getLength() + " bytes");
+        }
+        return Files.newInputStream(data(upload.getId()));
+    }
+
+    /**
+     * Remove a resumable upload.
+     *
+     * @param id the id of the upload.
+     * @throws IOException if the upload cannot be removed.
+     */
+    public void delete(String id) throws IOException {
+        Files.deleteIfExists(info(id));
+        Files.deleteIfExists(data(id));
+    }
+
+    /**
+     * Remove the uploads that did not receive a chunk for the expiration delay, every hour.
+     */
+    @Scheduled(fixedDelay = 60 * 60 * 1000)
+    public void removeExpired() {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        Instant expired = Instant.now().minusSeconds(applicationProperties.getUpload().getResumable().getExpiration());
+        try (DirectoryStream<Path> infos = Files.newDirectoryStream(directory, "*" + INFO_EXTENSION)) {
+            for (Path info : infos) {
+                String name = info.getFileName().toString();
+                String id = name.substring(0, name.length() - INFO_EXTENSION.length());
+                Path data = data(id);
+                Path lastWritten = Files.exists(data) ? data : info;
+                if (!busy.contains(id) && Files.getLastModifiedTime(lastWritten).toInstant().isBefore(expired)) {
+                    log.debug("Removing expired resumable upload {}", id);
+                    delete(id);
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Could not remove expired resumable uploads : {}", e.getMessage());
+        }
+    }
+
+    private Path data(String id) {
+        return directory.resolve(id + DATA_EXTENSION);
+    }
+
+    private Path info(String id) {
+        return directory.resolve(id + INFO_EXTENSION);
+    }
+}
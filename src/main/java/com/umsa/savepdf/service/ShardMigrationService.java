@@ -0,0 +1,104 @@
+package com.umsa.savepdf.service;
+
+import com.umsa.savepdf.config.ApplicationProperties;
+import com.umsa.savepdf.service.storage.StorageBackend;
+import com.umsa.savepdf.service.storage.StorageObject;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.NoSuchFileException;
+import java.util.List;
+
+/**
+ * Service moving the PDFs stored before sharding, in the flat {@code sha256/} directory, to their shard.
+ * <p>
+ * The PDFs are moved in batches of {@code application.storage.sharding.batch-size} every
+ * {@code application.storage.sharding.batch-interval} milliseconds, which bounds the I/O taken from the downloads.
+ * Until the flat directory is empty, {@link PdfStorageService} keeps serving the PDFs from both locations.
+ * <p>
+ * The batches walk the flat directory in key order from a cursor, which moves past every key listed, so the other
+ * files of the directory and the PDFs which could not be moved do not take the place of the next PDFs. The migration
+ * is finished once a walk of the whole directory finds no PDF left to move; a walk which found some is started over.
+ */
+@Service
+public class ShardMigrationService {
+
+    private final Logger log = LoggerFactory.getLogger(ShardMigrationService.class);
+
+    private final PdfStorageService pdfStorageService;
+
+    private final ApplicationProperties applicationProperties;
+
+    private String cursor;
+
+    private int walkPending;
+
+    public ShardMigrationService(PdfStorageService pdfStorageService, ApplicationProperties applicationProperties) {
+        this.pdfStorageService = pdfStorageService;
+        this.applicationProperties = applicationProperties;
+    }
+
+    /**
+     * Move the next batch of flat PDFs, if the migration is enabled and not finished yet.
+     */
+    @Scheduled(initialDelayString = "${application.storage.sharding.batch-interval:1000}",
+        fixedDelayString = "${application.storage.sharding.batch-interval:1000}")
+    public void migrateScheduled() {
+        if (!applicationProperties.getStorage().getSharding().isMigrationEnabled() || pdfStorageService.isSharded()) {
+            return;
+        }
+        try {
+            migrateBatch();
+        } catch (IOException e) {
+            log.warn("Could not move stored PDFs to their shard : {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Move one batch of flat PDFs to their shard.
+     *
+     * @return the number of PDFs moved.
+     * @throws IOException if the flat directory cannot be listed.
+     */
+    public synchronized int migrateBatch() throws IOException {
+        StorageBackend storageBackend = pdfStorageService.getStorageBackend();
+        int batchSize = applicationProperties.getStorage().getSharding().getBatchSize();
+        List<StorageObject> objects = storageBackend.list(PdfStorageService.CONTENT_ADDRESSED_PREFIX, cursor, batchSize);
+        int moved = 0;
+        for (StorageObject object : objects) {
+            cursor = object.getKey();
+            String name = object.getKey().substring(PdfStorageService.CONTENT_ADDRESSED_PREFIX.length());
+            if (!PdfStorageService.CONTENT_ADDRESSED_NAME.matcher(name).matches()) {
+                continue;
+            }
+            walkPending++;
+            String sha256 = name.substring(0, name.indexOf('.'));
+            synchronized (pdfStorageService.lock(sha256)) {
+                try {
+                    storageBackend.move(object.getKey(), pdfStorageService.key(sha256));
+                    moved++;
+                } catch (NoSuchFileException e) {
+                    log.debug("PDF {} already moved", object.getKey());
+                } catch (IOException e) {
+                    log.warn("Could not move PDF {} to its shard : {}", object.getKey(), e.getMessage());
+                }
+            }
+        }
+        if (objects.size() < batchSize) {
+            if (walkPending == 0) {
+                log.info("Every stored PDF is in its shard");
+                pdfStorageService.shardingMigrated();
+            }
+            cursor = null;
+            walkPending = 0;
+        }
+        if (moved > 0) {
+            log.debug("Moved {} stored PDFs to their shard", moved);
+        }
+        return moved;
+    }
+}
@@ -0,0 +1,329 @@
+package com.umsa.savepdf.service;
+
+import com.umsa.savepdf.config.ApplicationProperties;
+import com.umsa.savepdf.repository.FileRepository;
+import com.umsa.savepdf.service.dto.StorageReconciliationReportDTO;
+import com.umsa.savepdf.service.storage.ColdSegmentStore;
+import com.umsa.savepdf.service.storage.StorageBackend;
+import com.umsa.savepdf.service.storage.StorageObject;
+import com.umsa.savepdf.service.storage.TieredStorageBackend;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Service reconciling the content-addressed storage with the {@link com.umsa.savepdf.domain.File} table.
+ * <p>
+ * A stored PDF outlives its last file when its release fails or the instance stops between the commit and the
+ * release, and an upload stays staged when the instance stops before it is registered. Both leak disk, so every
+ * {@code application.storage.reconcile.cron} the storage is walked in key order and merged with the digests of the
+ * files, read in the same order from a database cursor: memory stays bounded by a directory and a fetch, whatever the
+ * size of either side. The orphans older than {@code application.storage.reconcile.grace-period} seconds are then
+ * quarantined or removed, depending on {@code application.storage.reconcile.action}. A PDF is only released under its
+ * lock, once no file references it, so an upload of the same content meanwhile keeps it.
+ * <p>
+ * PDFs referenced by files but absent from the storage are reported, as they cannot be recovered from here. The PDFs
+ * of the flat directory and of the cold tier are not part of the merge, so a digest is looked up before it is reported.
+ * The cold tier is then walked on its own, its digests checked against the files by batches, so that its orphans are
+ * found as well.
+ */
+@Service
+public class StorageReconciliationService {
+
+    private final Logger log = LoggerFactory.getLogger(StorageReconciliationService.class);
+
+    private static final int COLD_BATCH_SIZE = 500;
+
+    private final PdfStorageService pdfStorageService;
+
+    private final FileRepository fileRepository;
+
+    private final ApplicationProperties applicationProperties;
+
+    private final TransactionTemplate cursorTemplate;
+
+    private final TransactionTemplate referenceCheckTemplate;
+
+    private final Clock clock;
+
+    @Autowired
+    public StorageReconciliationService(PdfStorageService pdfStorageService, FileRepository fileRepository,
+                                        ApplicationProperties applicationProperties, PlatformTransactionManager transactionManager) {
+        this(pdfStorageService, fileRepository, applicationProperties, transactionManager, Clock.systemUTC());
+    }
+
+    StorageReconciliationService(PdfStorageService pdfStorageService, FileRepository fileRepository,
+                                 ApplicationProperties applicationProperties, PlatformTransactionManager transactionManager,
+                                 Clock clock) {
+        this.pdfStorageService = pdfStorageService;
+        this.fileRepository = fileRepository;
+        this.applicationProperties = applicationProperties;
+        this.cursorTemplate = new TransactionTemplate(transactionManager);
+        this.cursorTemplate.setReadOnly(true);
+        this.referenceCheckTemplate = new TransactionTemplate(transactionManager);
+        this.referenceCheckTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.referenceCheckTemplate.setReadOnly(true);
+        this.clock = clock;
+    }
+
+    /**
+     * Quarantine or remove the orphans, if the reconciliation is enabled.
+     */
+    @Scheduled(cron = "${application.storage.reconcile.cron:0 30 3 * * ?}")
+    public void reconcileScheduled() {
+        if (!applicationProperties.getStorage().getReconcile().isEnabled()) {
+            return;
+        }
+        try {
+            log.info("Reconciled the storage : {}", reconcile(false));
+        } catch (IOException e) {
+            log.warn("Could not reconcile the storage : {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Walk the content-addressed storage and find the objects no file needs anymore.
+     *
+     * @param dryRun {@code true} to only report the orphans, {@code false} to quarantine or remove them.
+     * @return the report.
+     * @throws IOException if the storage cannot be walked.
+     */
+    public StorageReconciliationReportDTO reconcile(boolean dryRun) throws IOException {
+        ApplicationProperties.Storage.Reconcile reconcile = applicationProperties.getStorage().getReconcile();
+        StorageReconciliationReportDTO report = new StorageReconciliationReportDTO(dryRun, reconcile.getReportLimit());
+        Instant cutoff = clock.instant().minusSeconds(reconcile.getGracePeriod());
+        try {
+            cursorTemplate.execute(status -> {
+                try (Stream<String> referenced = fileRepository.streamDistinctSha256()) {
+                    Merge merge = new Merge(referenced.iterator(), report, cutoff);
+                    StorageBackend storageBackend = pdfStorageService.getStorageBackend();
+                    storageBackend.walk(PdfStorageService.CONTENT_ADDRESSED_PREFIX, merge::visit);
+                    merge.finish();
+                    if (storageBackend instanceof TieredStorageBackend) {
+                        merge.visitCold(((TieredStorageBackend) storageBackend).getCold());
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return null;
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return report;
+    }
+
+    /**
+     * Sorted merge of the stored objects with the referenced digests. The objects of a digest (the PDF and its
+     * thumbnails) are consecutive in the walk, so they are handled together once the next digest shows up.
+     */
+    private class Merge {
+
+        private final Iterator<String> referenced;
+
+        private final StorageReconciliationReportDTO report;
+
+        private final Instant cutoff;
+
+        private String nextReferenced;
+
+        private String sha256;
+
+        private boolean groupReferenced;
+
+        private final List<String> groupKeys = new ArrayList<>();
+
+        private long groupBytes;
+
+        private Instant groupLastModified;
+
+        Merge(Iterator<String> referenced, StorageReconciliationReportDTO report, Instant cutoff) {
+            this.referenced = referenced;
+            this.report = report;
+            this.cutoff = cutoff;
+            this.nextReferenced = referenced.hasNext() ? referenced.next() : null;
+        }
+
+        void visit(StorageObject object) throws IOException {
+            report.scanned();
+            String path = object.getKey().substring(PdfStorageService.CONTENT_ADDRESSED_PREFIX.length());
+            if (path.indexOf('/') < 0) {
+                visitTopLevel(object, path);
+                return;
+            }
+            String name = path.substring(path.lastIndexOf('/') + 1);
+            int dot = name.indexOf('.');
+            if (dot < 0 || !PdfStorageService.CONTENT_ADDRESSED_NAME.matcher(name.substring(0, dot) + ".pdf").matches()) {
+                return;
+            }
+            String digest = name.substring(0, dot);
+            if (!digest.equals(sha256)) {
+                endGroup();
+                startGroup(digest);
+            }
+            groupKeys.add(object.getKey());
+            groupBytes += object.getSize();
+            if (groupLastModified == null || object.getLastModified().isAfter(groupLastModified)) {
+                groupLastModified = object.getLastModified();
+            }
+        }
+
+        void finish() throws IOException {
+            endGroup();
+            while (nextReferenced != null) {
+                missing(nextReferenced);
+                nextReferenced = referenced.hasNext() ? referenced.next() : null;
+            }
+        }
+
+        /**
+         * Staged uploads, and the PDFs stored before sharding, which sit among the shards in the walk.
+         */
+        private void visitTopLevel(StorageObject object, String name) throws IOException {
+            if (name.startsWith(PdfStorageService.STAGING_PREFIX)) {
+                if (object.getLastModified().isBefore(cutoff)) {
+                    report.staleUpload(object.getKey(), object.getSize());
+                    if (!report.isDryRun()) {
+                        removeStaged(object.getKey());
+                    }
+                }
+            } else if (PdfStorageService.CONTENT_ADDRESSED_NAME.matcher(name).matches()) {
+                String digest = name.substring(0, name.indexOf('.'));
+                if (fileRepository.countBySha256(digest) > 0) {
+                    report.referenced();
+                } else {
+                    orphan(digest, object.getLastModified(), object.getSize(), Collections.singletonList(object.getKey()));
+                }
+            }
+        }
+
+        /**
+         * The PDFs of the cold tier, which the walk does not cover, checked against the files a batch at a time.
+         */
+        void visitCold(ColdSegmentStore cold) throws IOException {
+            List<ColdSegmentStore.Entry> batch = new ArrayList<>(COLD_BATCH_SIZE);
+            cold.walk(entry -> {
+                batch.add(entry);
+                if (batch.size() == COLD_BATCH_SIZE) {
+                    visitCold(batch);
+                }
+            });
+            visitCold(batch);
+        }
+
+        private void visitCold(List<ColdSegmentStore.Entry> batch) {
+            if (batch.isEmpty()) {
+                return;
+            }
+            Set<String> referencedBatch = new HashSet<>(fileRepository.findDistinctSha256In(
+                batch.stream().map(ColdSegmentStore.Entry::getSha256).collect(Collectors.toList())));
+            for (ColdSegmentStore.Entry entry : batch) {
+                report.scanned();
+                if (referencedBatch.contains(entry.getSha256())) {
+                    report.referenced();
+                } else {
+                    orphan(entry.getSha256(), entry.getLastModified(), entry.getSize(),
+                        Collections.singletonList(pdfStorageService.key(entry.getSha256())));
+                }
+            }
+            batch.clear();
+        }
+
+        private void startGroup(String digest) throws IOException {
+            while (nextReferenced != null && nextReferenced.compareTo(digest) < 0) {
+                missing(nextReferenced);
+                nextReferenced = referenced.hasNext() ? referenced.next() : null;
+            }
+            groupReferenced = digest.equals(nextReferenced);
+            if (groupReferenced) {
+                nextReferenced = referenced.hasNext() ? referenced.next() : null;
+            }
+            sha256 = digest;
+            groupKeys.clear();
+            groupBytes = 0;
+            groupLastModified = null;
+        }
+
+        private void endGroup() throws IOException {
+            if (sha256 == null) {
+                return;
+            }
+            if (groupReferenced) {
+                report.referenced();
+            } else {
+                orphan(sha256, groupLastModified, groupBytes, groupKeys);
+            }
+            sha256 = null;
+        }
+
+        private void orphan(String digest, Instant lastModified, long bytes, List<String> keys) {
+            if (!lastModified.isBefore(cutoff)) {
+                report.recentOrphan();
+                return;
+            }
+            report.orphan(keys, bytes);
+            if (!report.isDryRun()) {
+                release(digest);
+            }
+        }
+
+        private void missing(String digest) throws IOException {
+            if (!pdfStorageService.find(digest).isPresent()) {
+                report.missing(digest);
+            }
+        }
+
+        private void release(String digest) {
+            BooleanSupplier unreferenced = () -> Boolean.TRUE.equals(
+                referenceCheckTemplate.execute(status -> fileRepository.countBySha256(digest) == 0));
+            try {
+                boolean released = applicationProperties.getStorage().getReconcile().getAction()
+                    == ApplicationProperties.Storage.Reconcile.Action.DELETE
+                    ? pdfStorageService.release(digest, unreferenced)
+                    : pdfStorageService.quarantine(digest, unreferenced);
+                if (released) {
+                    report.removed();
+                }
+            } catch (IOException e) {
+                log.warn("Could not release orphan PDF {} : {}", digest, e.getMessage());
+                report.failed();
+            }
+        }
+
+        private void removeStaged(String key) {
+            StorageBackend storageBackend = pdfStorageService.getStorageBackend();
+            try {
+                if (applicationProperties.getStorage().getReconcile().getAction()
+                    == ApplicationProperties.Storage.Reconcile.Action.DELETE) {
+                    storageBackend.delete(key);
+                } else {
+                    storageBackend.move(key, pdfStorageService.quarantineKey(key));
+                }
+                report.removed();
+            } catch (IOException e) {
+                log.warn("Could not release stale upload {} : {}", key, e.getMessage());
+                report.failed();
+            }
+        }
+    }
+}
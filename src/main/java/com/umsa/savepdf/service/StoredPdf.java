@@ -0,0 +1,78 @@
+package com.umsa.savepdf.service;
+
+/**
+ * A PDF written to the storage by {@link PdfStorageService}.
+ */
+public class StoredPdf {
+
+    private final String name;
+
+    private final String location;
+
+    private final long size;
+
+    private final String sha256;
+
+    private final long crc32;
+
+    private final String staging;
+
+    public StoredPdf(String name, String location, long size, String sha256, long crc32, String staging) {
+        this.name = name;
+        this.location = location;
+        this.size = size;
+        this.sha256 = sha256;
+        this.crc32 = crc32;
+        this.staging = staging;
+    }
+
+    /**
+     * @return the file name of the stored PDF.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the directory holding the PDF, relative to the user home (for example {@code /.umsa/forms/sha256/}).
+     */
+    public String getLocation() {
+        return location;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * @return the lowercase hexadecimal SHA-256 digest of the stored bytes.
+     */
+    public String getSha256() {
+        return sha256;
+    }
+
+    /**
+     * @return the CRC-32 of the stored bytes, checked by the {@link IntegrityScrubService}.
+     */
+    public long getCrc32() {
+        return crc32;
+    }
+
+    /**
+     * @return the storage key of the staged copy holding the PDF until it is published.
+     */
+    String getStaging() {
+        return staging;
+    }
+
+    @Override
+    public String toString() {
+        return "StoredPdf{" +
+            "name='" + name + "'" +
+            ", location='" + location + "'" +
+            ", size=" + size +
+            ", sha256='" + sha256 + "'" +
+            ", crc32=" + crc32 +
+            "}";
+    }
+}
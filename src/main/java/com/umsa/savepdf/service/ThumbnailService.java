@@ -0,0 +1,173 @@
+package com.umsa.savepdf.service;
+
+import com.umsa.savepdf.config.ApplicationProperties;
+import com.umsa.savepdf.repository.FileRepository;
+import com.umsa.savepdf.service.storage.StorageBackend;
+import com.umsa.savepdf.service.storage.StorageObject;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.rendering.ImageType;
+import org.apache.pdfbox.rendering.PDFRenderer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Service rendering PNG thumbnails of the first page of the stored PDFs, with Apache PDFBox.
+ * <p>
+ * Renders run on the bounded {@code thumbnailExecutor}, as the last stage of the {@link UploadPipelineService}.
+ * When its queue is full, the ingest worker of the upload renders them itself. Each configured width is
+ * stored next to the PDF, under its digest, so the thumbnails are as immutable as the PDF and removed with it. A
+ * thumbnail is written to a staging key and moved into place, so a failed render never leaves a truncated PNG to be
+ * served and cached.
+ * <p>
+ * The render latency is published as {@code savepdf.thumbnail.render}.
+ */
+@Service
+public class ThumbnailService {
+
+    private final Logger log = LoggerFactory.getLogger(ThumbnailService.class);
+
+    private static final int BACKFILL_PAGE_SIZE = 500;
+
+    private final PdfStorageService pdfStorageService;
+
+    private final FileRepository fileRepository;
+
+    private final ApplicationProperties applicationProperties;
+
+    private final ThreadPoolTaskExecutor executor;
+
+    private final Timer renderTimer;
+
+    public ThumbnailService(PdfStorageService pdfStorageService, FileRepository fileRepository,
+                            ApplicationProperties applicationProperties, @Qualifier("thumbnailExecutor") ThreadPoolTaskExecutor executor,
+                            MeterRegistry meterRegistry) {
+        this.pdfStorageService = pdfStorageService;
+        this.fileRepository = fileRepository;
+        this.applicationProperties = applicationProperties;
+        this.executor = executor;
+        this.renderTimer = Timer.builder("savepdf.thumbnail.render")
+            .description("Time to render the thumbnails of a PDF")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Render the missing thumbnails of every stored PDF, in the background. When the queue is full, the backfill thread
+     * renders them itself, which throttles the backfill to the speed of the workers.
+     */
+    @Async
+    public void backfill() {
+        log.info("Backfilling PDF thumbnails");
+        long count = 0;
+        Slice<String> page = fileRepository.findDistinctSha256(PageRequest.of(0, BACKFILL_PAGE_SIZE));
+        while (true) {
+            for (String sha256 : page) {
+                try {
+                    executor.execute(() -> renderQuietly(sha256));
+                } catch (RejectedExecutionException e) {
+                    renderQuietly(sha256);
+                }
+                count++;
+            }
+            if (!page.hasNext()) {
+                break;
+            }
+            page = fileRepository.findDistinctSha256(page.nextPageable());
+        }
+        log.info("Backfilled thumbnails of {} PDFs", count);
+    }
+
+    /**
+     * Find the stored thumbnail closest to a width: the smallest configured one at least as wide, or the widest.
+     *
+     * @param sha256 the digest of the PDF.
+     * @param width the requested width, in pixels.
+     * @return the stored thumbnail, or empty if it is not rendered (yet).
+     * @throws IOException if the storage cannot be reached.
+     */
+    public Optional<StorageObject> find(String sha256, int width) throws IOException {
+        List<Integer> widths = new ArrayList<>(applicationProperties.getThumbnail().getWidths());
+        if (widths.isEmpty()) {
+            return Optional.empty();
+        }
+        Collections.sort(widths);
+        int best = widths.stream().filter(candidate -> candidate >= width).findFirst().orElse(widths.get(widths.size() - 1));
+        return pdfStorageService.getStorageBackend().stat(pdfStorageService.thumbnailKey(sha256, best));
+    }
+
+    private void renderQuietly(String sha256) {
+        try {
+            render(sha256);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not render thumbnails of PDF {} : {}", sha256, e.getMessage());
+        }
+    }
+
+    /**
+     * Render the missing thumbnails of a PDF, in the calling thread.
+     *
+     * @param sha256 the digest of the PDF.
+     * @return {@code true} if thumbnails were rendered.
+     * @throws IOException if the PDF cannot be read or rendered.
+     */
+    public boolean render(String sha256) throws IOException {
+        StorageBackend storageBackend = pdfStorageService.getStorageBackend();
+        boolean missing = false;
+        for (int width : applicationProperties.getThumbnail().getWidths()) {
+            missing |= !storageBackend.stat(pdfStorageService.thumbnailKey(sha256, width)).isPresent();
+        }
+        Optional<StorageObject> pdf = pdfStorageService.find(sha256);
+        if (!missing || !pdf.isPresent()) {
+            return false;
+        }
+        long start = System.nanoTime();
+        try (PDDocument document = pdfStorageService.load(pdf.get())) {
+            if (document.getNumberOfPages() == 0) {
+                return false;
+            }
+            PDPage page = document.getPage(0);
+            float pageWidth = page.getRotation() % 180 == 0 ? page.getCropBox().getWidth() : page.getCropBox().getHeight();
+            PDFRenderer renderer = new PDFRenderer(document);
+            for (int width : applicationProperties.getThumbnail().getWidths()) {
+                BufferedImage image = renderer.renderImage(0, width / pageWidth, ImageType.RGB);
+                String staging = pdfStorageService.stagingKey();
+                boolean stored = false;
+                try {
+                    try (OutputStream out = storageBackend.write(staging)) {
+                        ImageIO.write(image, "png", out);
+                    }
+                    storageBackend.move(staging, pdfStorageService.thumbnailKey(sha256, width));
+                    stored = true;
+                } finally {
+                    if (!stored) {
+                        storageBackend.delete(staging);
+                    }
+                }
+            }
+        } finally {
+            renderTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+        log.debug("Rendered thumbnails of PDF {}", sha256);
+        return true;
+    }
+}
@@ -0,0 +1,258 @@
+package com.umsa.savepdf.service;
+
+import com.umsa.savepdf.config.ApplicationProperties;
+import com.umsa.savepdf.config.Constants;
+import com.umsa.savepdf.domain.enumeration.FormType;
+import com.umsa.savepdf.security.SecurityUtils;
+import com.umsa.savepdf.service.dto.FileDTO;
+import com.umsa.savepdf.service.dto.SignedUrlDTO;
+import com.umsa.savepdf.service.dto.UploadJobDTO;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Service running the stages of an upload once its bytes are staged: {@code register} (the
+ * {@link com.umsa.savepdf.domain.File} and the publication of the PDF), {@code ingest} ({@link PdfIngestService}) and
+ * {@code thumbnails} ({@link ThumbnailService}).
+ * <p>
+ * The {@code register} stage runs in the request thread, so an upload is committed before it is answered and a
+ * restart never loses an accepted upload; at most {@code application.upload.register-max-concurrent} uploads register
+ * at once. The later stages run on their own bounded executors, defined in
+ * {@link com.umsa.savepdf.config.AsyncConfiguration}. Uploads are refused for the client to retry later, with
+ * {@link #hasCapacity()} before their body is read, while the registrations or the ingest queue are full. A stage
+ * whose queue still fills up runs in the thread of the stage before it, which slows the pipeline down instead of
+ * skipping the stage; only a restart loses the queued stages, which leaves the PDF served as received until the
+ * thumbnails backfill. The progress of each upload is kept as an {@link UploadJobDTO} for
+ * {@code application.upload.job-retention} seconds.
+ * <p>
+ * The queue depths are published as {@code savepdf.upload.queue}, the stage latencies as {@code savepdf.upload.stage}
+ * and the tasks that found their queue full as {@code savepdf.upload.rejected}, all tagged by stage.
+ */
+@Service
+public class UploadPipelineService {
+
+    private final Logger log = LoggerFactory.getLogger(UploadPipelineService.class);
+
+    public static final String STAGE_REGISTER = "register";
+
+    public static final String STAGE_INGEST = "ingest";
+
+    public static final String STAGE_THUMBNAILS = "thumbnails";
+
+    private final FileService fileService;
+
+    private final PdfStorageService pdfStorageService;
+
+    private final PdfIngestService pdfIngestService;
+
+    private final ThumbnailService thumbnailService;
+
+    private final DownloadUrlSigner downloadUrlSigner;
+
+    private final Semaphore registrations;
+
+    private final ThreadPoolTaskExecutor ingestExecutor;
+
+    private final ThreadPoolTaskExecutor thumbnailExecutor;
+
+    private final Cache<String, UploadJobDTO> jobs;
+
+    private final Map<String, Timer> stageTimers = new HashMap<>();
+
+    private final Map<String, Counter> rejectedCounters = new HashMap<>();
+
+    public UploadPipelineService(FileService fileService, PdfStorageService pdfStorageService, PdfIngestService pdfIngestService,
+                                 ThumbnailService thumbnailService, DownloadUrlSigner downloadUrlSigner,
+                                 ApplicationProperties applicationProperties,
+                                 @Qualifier("ingestExecutor") ThreadPoolTaskExecutor ingestExecutor,
+                                 @Qualifier("thumbnailExecutor") ThreadPoolTaskExecutor thumbnailExecutor,
+                                 MeterRegistry meterRegistry) {
+        this.fileService = fileService;
+        this.pdfStorageService = pdfStorageService;
+        this.pdfIngestService = pdfIngestService;
+        this.thumbnailService = thumbnailService;
+        this.downloadUrlSigner = downloadUrlSigner;
+        this.registrations = new Semaphore(applicationProperties.getUpload().getRegisterMaxConcurrent());
+        this.ingestExecutor = ingestExecutor;
+        this.thumbnailExecutor = thumbnailExecutor;
+        this.jobs = Caffeine.newBuilder()
+            .expireAfterWrite(applicationProperties.getUpload().getJobRetention(), TimeUnit.SECONDS)
+            .build();
+        monitor(meterRegistry, STAGE_REGISTER);
+        monitor(meterRegistry, STAGE_INGEST, ingestExecutor);
+        monitor(meterRegistry, STAGE_THUMBNAILS, thumbnailExecutor);
+    }
+
+    private void monitor(MeterRegistry meterRegistry, String stage, ThreadPoolTaskExecutor executor) {
+        Gauge.builder("savepdf.upload.queue", executor, e -> e.getThreadPoolExecutor().getQueue().size())
+            .description("Uploads waiting for a stage")
+            .tag("stage", stage)
+            .register(meterRegistry);
+        monitor(meterRegistry, stage);
+    }
+
+    private void monitor(MeterRegistry meterRegistry, String stage) {
+        stageTimers.put(stage, Timer.builder("savepdf.upload.stage")
+            .description("Time to run a stage of an upload")
+            .tag("stage", stage)
+            .register(meterRegistry));
+        rejectedCounters.put(stage, Counter.builder("savepdf.upload.rejected")
+            .description("Uploads refused or running a stage in the caller because its queue was full")
+            .tag("stage", stage)
+            .register(meterRegistry));
+    }
+
+    /**
+     * Check that an upload can be accepted, before its body is read.
+     *
+     * @return {@code false} if too many uploads are registering or the ingest queue is full.
+     */
+    public boolean hasCapacity() {
+        if (registrations.availablePermits() > 0 && ingestExecutor.getThreadPoolExecutor().getQueue().remainingCapacity() > 0) {
+            return true;
+        }
+        log.debug("Upload pipeline full, refusing upload");
+        rejectedCounters.get(STAGE_REGISTER).increment();
+        return false;
+    }
+
+    /**
+     * Register a staged PDF in the calling thread, then queue its later stages.
+     *
+     * @param storedPdf the staged PDF, discarded if the upload is refused or cannot be registered.
+     * @param filename the name of the file.
+     * @param type the form type of the PDF.
+     * @return the job following the later stages, or empty if too many uploads are registering.
+     */
+    public Optional<UploadJobDTO> submit(StoredPdf storedPdf, String filename, FormType type) {
+        if (!registrations.tryAcquire()) {
+            log.debug("Too many uploads registering, refusing upload {}", storedPdf);
+            rejectedCounters.get(STAGE_REGISTER).increment();
+            pdfStorageService.discard(storedPdf);
+            return Optional.empty();
+        }
+        UploadJobDTO job = newJob(storedPdf, filename);
+        job.stage(STAGE_REGISTER, UploadJobDTO.Status.RUNNING);
+        long start = System.nanoTime();
+        try {
+            job.registered(fileService.register(storedPdf, filename, type).getId());
+        } catch (RuntimeException e) {
+            pdfStorageService.discard(storedPdf);
+            throw e;
+        } finally {
+            registrations.release();
+            stageTimers.get(STAGE_REGISTER).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+        jobs.put(job.getId(), job);
+        postProcess(job);
+        return Optional.of(job);
+    }
+
+    /**
+     * Register a staged PDF in the calling thread, then queue its later stages.
+     *
+     * @param storedPdf the staged PDF, discarded if it cannot be registered.
+     * @param filename the name of the file.
+     * @param type the form type of the PDF.
+     * @return the registered file.
+     */
+    public FileDTO register(StoredPdf storedPdf, String filename, FormType type) {
+        UploadJobDTO job = newJob(storedPdf, filename);
+        FileDTO file;
+        try {
+            file = fileService.register(storedPdf, filename, type);
+        } catch (RuntimeException e) {
+            pdfStorageService.discard(storedPdf);
+            throw e;
+        }
+        job.registered(file.getId());
+        jobs.put(job.getId(), job);
+        postProcess(job);
+        return file;
+    }
+
+    /**
+     * Get an upload job of the current user.
+     *
+     * @param id the id of the job.
+     * @return the job, or empty if the current user has no such job (anymore).
+     */
+    public Optional<UploadJobDTO> getJob(String id) {
+        String login = SecurityUtils.getCurrentUserLogin().orElse(Constants.SYSTEM_ACCOUNT);
+        return Optional.ofNullable(jobs.getIfPresent(id))
+            .filter(job -> job.getOwner().equals(login));
+    }
+
+    private UploadJobDTO newJob(StoredPdf storedPdf, String filename) {
+        String url = pdfStorageService.downloadUrl(storedPdf);
+        return new UploadJobDTO(UUID.randomUUID().toString(), filename, storedPdf.getSha256(),
+            downloadUrlSigner.sign(url).map(SignedUrlDTO::getUrl).orElse(url),
+            SecurityUtils.getCurrentUserLogin().orElse(Constants.SYSTEM_ACCOUNT));
+    }
+
+    private void postProcess(UploadJobDTO job) {
+        String sha256 = job.getSha256();
+        next(job, STAGE_INGEST, ingestExecutor, () -> pdfIngestService.ingest(sha256),
+            () -> next(job, STAGE_THUMBNAILS, thumbnailExecutor, () -> thumbnailService.render(sha256),
+                () -> job.stage(STAGE_THUMBNAILS, UploadJobDTO.Status.COMPLETED)));
+    }
+
+    /**
+     * Queue a stage, then continue with the next one whether it succeeds or fails. When the queue is full, the stage
+     * runs in the calling thread.
+     */
+    private void next(UploadJobDTO job, String stage, ThreadPoolTaskExecutor executor, Stage work, Runnable then) {
+        job.stage(stage, UploadJobDTO.Status.QUEUED);
+        Runnable task = () -> {
+            run(job, stage, work);
+            then.run();
+        };
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            log.debug("{} queue full, running stage in the caller for upload {}", stage, job.getId());
+            rejectedCounters.get(stage).increment();
+            task.run();
+        }
+    }
+
+    private boolean run(UploadJobDTO job, String stage, Stage work) {
+        job.stage(stage, UploadJobDTO.Status.RUNNING);
+        long start = System.nanoTime();
+        try {
+            work.run();
+            return true;
+        } catch (IOException | RuntimeException e) {
+            log.warn("Stage {} of upload {} failed : {}", stage, job.getId(), e.getMessage());
+            job.error("Stage " + stage + " failed: " + e.getMessage());
+            return false;
+        } finally {
+            stageTimers.get(stage).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @FunctionalInterface
+    private interface Stage {
+
+        void run() throws IOException;
+    }
+}
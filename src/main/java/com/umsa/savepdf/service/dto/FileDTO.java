@@ -2,6 +2,7 @@ package com.umsa.savepdf.service.dto;
 import java.time.Instant;
 import java.io.Serializable;
 import java.util.Objects;
+import com.umsa.savepdf.domain.enumeration.FormType;
 
 /**
  * A DTO for the {@link com.umsa.savepdf.domain.File} entity.
@@ -22,6 +23,22 @@ public class FileDTO implements Serializable {
 
     private Instant lastModifiedDate;
 
+    private String sha256;
+
+    private Long size;
+
+    private FormType type;
+
+    private Boolean linearized;
+
+    private Long optimizedSize;
+
+    private Long crc32;
+
+    private Long webCrc32;
+
+    private Instant lastAccessedDate;
+
 
     public Long getId() {
         return id;
@@ -79,6 +96,70 @@ public class FileDTO implements Serializable {
         this.lastModifiedDate = lastModifiedDate;
     }
 
+    public String getSha256() {
+        return sha256;
+    }
+
+    public void setSha256(String sha256) {
+        this.sha256 = sha256;
+    }
+
+    public Long getSize() {
+        return size;
+    }
+
+    public void setSize(Long size) {
+        this.size = size;
+    }
+
+    public FormType getType() {
+        return type;
+    }
+
+    public void setType(FormType type) {
+        this.type = type;
+    }
+
+    public Boolean isLinearized() {
+        return linearized;
+    }
+
+    public void setLinearized(Boolean linearized) {
+        this.linearized = linearized;
+    }
+
+    public Long getOptimizedSize() {
+        return optimizedSize;
+    }
+
+    public void setOptimizedSize(Long optimizedSize) {
+        this.optimizedSize = optimizedSize;
+    }
+
+    public Long getCrc32() {
+        return crc32;
+    }
+
+    public void setCrc32(Long crc32) {
+        this.crc32 = crc32;
+    }
+
+    public Long getWebCrc32() {
+        return webCrc32;
+    }
+
+    public void setWebCrc32(Long webCrc32) {
+        this.webCrc32 = webCrc32;
+    }
+
+    public Instant getLastAccessedDate() {
+        return lastAccessedDate;
+    }
+
+    public void setLastAccessedDate(Instant lastAccessedDate) {
+        this.lastAccessedDate = lastAccessedDate;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) {
@@ -110,6 +191,14 @@ public class FileDTO implements Serializable {
             ", createdDate='" + getCreatedDate() + "'" +
             ", lastModifiedBy='" + getLastModifiedBy() + "'" +
             ", lastModifiedDate='" + getLastModifiedDate() + "'" +
+            ", sha256='" + getSha256() + "'" +
+            ", size=" + getSize() +
+            ", type='" + getType() + "'" +
+            ", linearized='" + isLinearized() + "'" +
+            ", optimizedSize=" + getOptimizedSize() +
+            ", crc32=" + getCrc32() +
+            ", webCrc32=" + getWebCrc32() +
+            ", lastAccessedDate='" + getLastAccessedDate() + "'" +
             "}";
     }
 }
@@ -0,0 +1,59 @@
+package com.umsa.savepdf.service.dto;
+
+import java.io.Serializable;
+import java.time.Instant;
+
+/**
+ * A DTO for a signed download URL of a {@link com.umsa.savepdf.domain.File}.
+ */
+public class SignedUrlDTO implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private Long fileId;
+
+    private String url;
+
+    private Instant expires;
+
+    public SignedUrlDTO() {
+    }
+
+    public SignedUrlDTO(String url, Instant expires) {
+        this.url = url;
+        this.expires = expires;
+    }
+
+    public Long getFileId() {
+        return fileId;
+    }
+
+    public void setFileId(Long fileId) {
+        this.fileId = fileId;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public void setUrl(String url) {
+        this.url = url;
+    }
+
+    public Instant getExpires() {
+        return expires;
+    }
+
+    public void setExpires(Instant expires) {
+        this.expires = expires;
+    }
+
+    @Override
+    public String toString() {
+        return "SignedUrlDTO{" +
+            "fileId=" + getFileId() +
+            ", url='" + getUrl() + "'" +
+            ", expires='" + getExpires() + "'" +
+            "}";
+    }
+}
@@ -0,0 +1,79 @@
+package com.umsa.savepdf.service.dto;
+
+import java.io.Serializable;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A DTO reporting the outcome of a storage migration.
+ */
+public class StorageMigrationReportDTO implements Serializable {
+
+    private final AtomicLong scanned = new AtomicLong();
+
+    private final AtomicLong stored = new AtomicLong();
+
+    private final AtomicLong deduplicated = new AtomicLong();
+
+    private final AtomicLong reclaimedBytes = new AtomicLong();
+
+    private final AtomicLong updatedFiles = new AtomicLong();
+
+    private final AtomicLong failed = new AtomicLong();
+
+    public long getScanned() {
+        return scanned.get();
+    }
+
+    public void scanned() {
+        scanned.incrementAndGet();
+    }
+
+    public long getStored() {
+        return stored.get();
+    }
+
+    public void stored() {
+        stored.incrementAndGet();
+    }
+
+    public long getDeduplicated() {
+        return deduplicated.get();
+    }
+
+    public void deduplicated(long size) {
+        deduplicated.incrementAndGet();
+        reclaimedBytes.addAndGet(size);
+    }
+
+    public long getReclaimedBytes() {
+        return reclaimedBytes.get();
+    }
+
+    public long getUpdatedFiles() {
+        return updatedFiles.get();
+    }
+
+    public void updatedFiles(long count) {
+        updatedFiles.addAndGet(count);
+    }
+
+    public long getFailed() {
+        return failed.get();
+    }
+
+    public void failed() {
+        failed.incrementAndGet();
+    }
+
+    @Override
+    public String toString() {
+        return "StorageMigrationReportDTO{" +
+            "scanned=" + getScanned() +
+            ", stored=" + getStored() +
+            ", deduplicated=" + getDeduplicated() +
+            ", reclaimedBytes=" + getReclaimedBytes() +
+            ", updatedFiles=" + getUpdatedFiles() +
+            ", failed=" + getFailed() +
+            "}";
+    }
+}
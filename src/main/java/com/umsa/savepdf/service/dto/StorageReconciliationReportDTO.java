@@ -0,0 +1,174 @@
+package com.umsa.savepdf.service.dto;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A DTO reporting the objects of the storage and the {@link com.umsa.savepdf.domain.File}s which no longer match.
+ * <p>
+ * The counts cover the whole storage, while the keys and digests listed stop at the report limit.
+ */
+public class StorageReconciliationReportDTO implements Serializable {
+
+    private final boolean dryRun;
+
+    private final int limit;
+
+    private long scannedObjects;
+
+    private long referencedPdfs;
+
+    private long orphanPdfs;
+
+    private long orphanBytes;
+
+    private long recentOrphans;
+
+    private long staleUploads;
+
+    private long missingPdfs;
+
+    private long removed;
+
+    private long failed;
+
+    private final List<String> orphanKeys = new ArrayList<>();
+
+    private final List<String> missingSha256 = new ArrayList<>();
+
+    public StorageReconciliationReportDTO(boolean dryRun, int limit) {
+        this.dryRun = dryRun;
+        this.limit = limit;
+    }
+
+    /**
+     * @return {@code true} if the orphans were only reported, not quarantined or removed.
+     */
+    public boolean isDryRun() {
+        return dryRun;
+    }
+
+    public long getScannedObjects() {
+        return scannedObjects;
+    }
+
+    public void scanned() {
+        scannedObjects++;
+    }
+
+    public long getReferencedPdfs() {
+        return referencedPdfs;
+    }
+
+    public void referenced() {
+        referencedPdfs++;
+    }
+
+    /**
+     * @return the number of stored PDFs no file references, with their thumbnails, past the grace period.
+     */
+    public long getOrphanPdfs() {
+        return orphanPdfs;
+    }
+
+    public void orphan(List<String> keys, long bytes) {
+        orphanPdfs++;
+        orphanBytes += bytes;
+        keys.forEach(this::orphanKey);
+    }
+
+    /**
+     * @return the size of the orphans and stale uploads, in bytes.
+     */
+    public long getOrphanBytes() {
+        return orphanBytes;
+    }
+
+    /**
+     * @return the number of orphans left alone because they are younger than the grace period.
+     */
+    public long getRecentOrphans() {
+        return recentOrphans;
+    }
+
+    public void recentOrphan() {
+        recentOrphans++;
+    }
+
+    /**
+     * @return the number of uploads staged but never published, past the grace period.
+     */
+    public long getStaleUploads() {
+        return staleUploads;
+    }
+
+    public void staleUpload(String key, long bytes) {
+        staleUploads++;
+        orphanBytes += bytes;
+        orphanKey(key);
+    }
+
+    /**
+     * @return the number of PDFs referenced by files but absent from the storage.
+     */
+    public long getMissingPdfs() {
+        return missingPdfs;
+    }
+
+    public void missing(String sha256) {
+        missingPdfs++;
+        if (missingSha256.size() < limit) {
+            missingSha256.add(sha256);
+        }
+    }
+
+    /**
+     * @return the number of orphans and stale uploads quarantined or removed.
+     */
+    public long getRemoved() {
+        return removed;
+    }
+
+    public void removed() {
+        removed++;
+    }
+
+    public long getFailed() {
+        return failed;
+    }
+
+    public void failed() {
+        failed++;
+    }
+
+    public List<String> getOrphanKeys() {
+        return orphanKeys;
+    }
+
+    public List<String> getMissingSha256() {
+        return missingSha256;
+    }
+
+    private void orphanKey(String key) {
+        if (orphanKeys.size() < limit) {
+            orphanKeys.add(key);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "StorageReconciliationReportDTO{" +
+            "dryRun=" + isDryRun() +
+            ", scannedObjects=" + getScannedObjects() +
+            ", referencedPdfs=" + getReferencedPdfs() +
+            ", orphanPdfs=" + getOrphanPdfs() +
+            ", orphanBytes=" + getOrphanBytes() +
+            ", recentOrphans=" + getRecentOrphans() +
+            ", staleUploads=" + getStaleUploads() +
+            ", missingPdfs=" + getMissingPdfs() +
+            ", removed=" + getRemoved() +
+            ", failed=" + getFailed() +
+            "}";
+    }
+}
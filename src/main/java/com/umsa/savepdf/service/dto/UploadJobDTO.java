@@ -0,0 +1,130 @@
+package com.umsa.savepdf.service.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import java.io.Serializable;
+import java.time.Instant;
+
+/**
+ * A DTO following an upload through the {@link com.umsa.savepdf.service.UploadPipelineService}.
+ */
+public class UploadJobDTO implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    public enum Status {
+        QUEUED, RUNNING, COMPLETED, FAILED
+    }
+
+    private final String id;
+
+    private final String filename;
+
+    private final String sha256;
+
+    private final String url;
+
+    private final Instant createdDate;
+
+    @JsonIgnore
+    private final String owner;
+
+    private volatile Status status = Status.QUEUED;
+
+    private volatile String stage;
+
+    private volatile Long fileId;
+
+    private volatile String error;
+
+    private volatile Instant lastModifiedDate;
+
+    public UploadJobDTO(String id, String filename, String sha256, String url, String owner) {
+        this.id = id;
+        this.filename = filename;
+        this.sha256 = sha256;
+        this.url = url;
+        this.owner = owner;
+        this.createdDate = Instant.now();
+        this.lastModifiedDate = createdDate;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getFilename() {
+        return filename;
+    }
+
+    public String getSha256() {
+        return sha256;
+    }
+
+    /**
+     * @return the signed download URL of the PDF, usable once the job has passed the {@code register} stage.
+     */
+    public String getUrl() {
+        return url;
+    }
+
+    public Instant getCreatedDate() {
+        return createdDate;
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    /**
+     * @return the stage being run or waited for.
+     */
+    public String getStage() {
+        return stage;
+    }
+
+    public Long getFileId() {
+        return fileId;
+    }
+
+    /**
+     * @return the error of the failed stage, when a stage failed.
+     */
+    public String getError() {
+        return error;
+    }
+
+    public Instant getLastModifiedDate() {
+        return lastModifiedDate;
+    }
+
+    public void stage(String stage, Status status) {
+        this.stage = stage;
+        this.status = status;
+        this.lastModifiedDate = Instant.now();
+    }
+
+    public void registered(Long fileId) {
+        this.fileId = fileId;
+    }
+
+    public void error(String error) {
+        this.error = error;
+    }
+
+    @Override
+    public String toString() {
+        return "UploadJobDTO{" +
+            "id='" + id + "'" +
+            ", filename='" + filename + "'" +
+            ", sha256='" + sha256 + "'" +
+            ", status=" + status +
+            ", stage='" + stage + "'" +
+            ", fileId=" + fileId +
+            "}";
+    }
+}
@@ -0,0 +1,27 @@
+package com.umsa.savepdf.service.ratelimit;
+
+/**
+ * Holds the token buckets of the rate limiter, as the generic cell rate algorithm (GCRA) does: a single number per
+ * bucket, the theoretical arrival time of the next request, stands for its tokens.
+ * <p>
+ * A bucket refilled with one token every {@code interval} and holding {@code burst} tokens accepts a request when its
+ * arrival time is at most {@code tolerance = (burst - 1) * interval} ahead of now, then pushes it one interval further.
+ * A full bucket needs no entry: the buckets whose arrival time has passed are full, and can be evicted.
+ */
+public interface BucketStore {
+
+    /**
+     * Take a token from a bucket.
+     *
+     * @param key the bucket.
+     * @param interval the nanoseconds between two tokens.
+     * @param tolerance the nanoseconds the arrival time may run ahead of now.
+     * @return {@code 0} if the token was taken, else the nanoseconds before the bucket holds one again.
+     */
+    long acquire(String key, long interval, long tolerance);
+
+    /**
+     * Drop the buckets which are full again.
+     */
+    void evict();
+}
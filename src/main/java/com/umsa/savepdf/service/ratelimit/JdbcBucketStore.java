@@ -0,0 +1,81 @@
+package com.umsa.savepdf.service.ratelimit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link BucketStore} in the {@code rate_limit_bucket} table of a PostgreSQL database, shared by all the instances.
+ * <p>
+ * A request takes its token with a single upsert, which the database runs atomically for the row of the bucket, and
+ * times are read from the clock of the database, so the instances need not have synchronized clocks. Arrival times
+ * are stored in microseconds. Should the database fail, the limits fall back to the buckets of the instance until it
+ * answers again, rather than rejecting every request.
+ */
+public class JdbcBucketStore implements BucketStore {
+
+    private final Logger log = LoggerFactory.getLogger(JdbcBucketStore.class);
+
+    private static final String CLOCK = "CAST(EXTRACT(EPOCH FROM clock_timestamp()) * 1000000 AS BIGINT)";
+
+    private static final String ACQUIRE = "WITH clock AS (SELECT " + CLOCK + " AS micros) " +
+        "INSERT INTO rate_limit_bucket AS bucket (bucket_key, arrival) SELECT ?, micros + ? FROM clock " +
+        "ON CONFLICT (bucket_key) DO UPDATE SET arrival = GREATEST(bucket.arrival, (SELECT micros FROM clock)) + ? " +
+        "WHERE GREATEST(bucket.arrival, (SELECT micros FROM clock)) - (SELECT micros FROM clock) <= ? " +
+        "RETURNING bucket.arrival";
+
+    private static final String WAIT = "SELECT arrival - " + CLOCK + " FROM rate_limit_bucket WHERE bucket_key = ?";
+
+    private static final String EVICT = "DELETE FROM rate_limit_bucket WHERE arrival < " + CLOCK;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final BucketStore fallback;
+
+    private volatile boolean failing;
+
+    public JdbcBucketStore(JdbcTemplate jdbcTemplate, BucketStore fallback) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.fallback = fallback;
+    }
+
+    @Override
+    public long acquire(String key, long interval, long tolerance) {
+        long intervalMicros = Math.max(1, TimeUnit.NANOSECONDS.toMicros(interval));
+        long toleranceMicros = TimeUnit.NANOSECONDS.toMicros(tolerance);
+        try {
+            List<Long> granted = jdbcTemplate.queryForList(ACQUIRE, Long.class, key, intervalMicros, intervalMicros, toleranceMicros);
+            long wait = 0;
+            if (granted.isEmpty()) {
+                List<Long> ahead = jdbcTemplate.queryForList(WAIT, Long.class, key);
+                wait = TimeUnit.MICROSECONDS.toNanos(Math.max(1, ahead.isEmpty() ? 1 : ahead.get(0) - toleranceMicros));
+            }
+            if (failing) {
+                failing = false;
+                log.info("The shared rate limits are back");
+            }
+            return wait;
+        } catch (DataAccessException e) {
+            if (!failing) {
+                failing = true;
+                log.warn("Could not read the shared rate limits, limiting on this instance only : {}", e.getMessage());
+            }
+            return fallback.acquire(key, interval, tolerance);
+        }
+    }
+
+    @Override
+    public void evict() {
+        fallback.evict();
+        try {
+            int evicted = jdbcTemplate.update(EVICT);
+            log.debug("Evicted {} shared rate limit buckets", evicted);
+        } catch (DataAccessException e) {
+            log.warn("Could not evict the shared rate limit buckets : {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.umsa.savepdf.service.ratelimit;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * {@link BucketStore} in the memory of the instance.
+ * <p>
+ * Each bucket is an {@link AtomicLong} updated with a compare-and-set loop, so requests never block each other, and
+ * a request costs a map lookup and one successful CAS. A bucket evicted while a request updates it loses that request,
+ * which finds a full bucket next time, as it would have once evicted.
+ */
+public class LocalBucketStore implements BucketStore {
+
+    private final ConcurrentMap<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+
+    private final LongSupplier nanoTime;
+
+    public LocalBucketStore() {
+        this(System::nanoTime);
+    }
+
+    LocalBucketStore(LongSupplier nanoTime) {
+        this.nanoTime = nanoTime;
+    }
+
+    @Override
+    public long acquire(String key, long interval, long tolerance) {
+        long now = nanoTime.getAsLong();
+        AtomicLong bucket = buckets.get(key);
+        if (bucket == null) {
+            bucket = buckets.computeIfAbsent(key, k -> new AtomicLong(now));
+        }
+        while (true) {
+            long arrival = bucket.get();
+            long start = arrival - now > 0 ? arrival : now;
+            long wait = start - now - tolerance;
+            if (wait > 0) {
+                return wait;
+            }
+            if (bucket.compareAndSet(arrival, start + interval)) {
+                return 0;
+            }
+        }
+    }
+
+    @Override
+    public void evict() {
+        long now = nanoTime.getAsLong();
+        buckets.values().removeIf(bucket -> bucket.get() - now <= 0);
+    }
+
+    /**
+     * Get the number of buckets held.
+     *
+     * @return the number of principals which are not allowed a full burst.
+     */
+    public int size() {
+        return buckets.size();
+    }
+}
@@ -0,0 +1,4 @@
+/**
+ * Token buckets limiting the request rate of each principal.
+ */
+package com.umsa.savepdf.service.ratelimit;
@@ -0,0 +1,690 @@
+package com.umsa.savepdf.service.storage;
+
+import com.umsa.savepdf.service.util.DigestUtil;
+import com.umsa.savepdf.service.util.MappedBufferUtil;
+
+import com.github.luben.zstd.ZstdInputStream;
+import com.github.luben.zstd.ZstdOutputStream;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.BoundedInputStream;
+import org.apache.commons.io.input.CloseShieldInputStream;
+import org.apache.commons.io.output.CloseShieldOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Append-only segment files holding the PDFs of the cold tier, with a memory-mapped hash index of their entries.
+ * <p>
+ * Each PDF is appended to the current segment ({@code segment-00000001.seg}...), raw or compressed with zstd, after a
+ * header repeating its index slot. A segment is never rewritten: once it exceeds the segment size, the next PDF starts
+ * a new one. The index ({@code index.idx}) is an open-addressing hash table of fixed-size slots keyed by the SHA-256 of
+ * the PDFs. Digests are uniformly distributed, so the home slot of a PDF is its first 8 bytes modulo the capacity, and
+ * a lookup reads one or a few slots of the mapping whatever the number of PDFs. The table doubles once three quarters of
+ * its slots are used.
+ * <p>
+ * A PDF is indexed once its segment is forced to disk, so the index never points at bytes a crash could lose. When the
+ * index itself is lost, it is rebuilt from the headers of the segments, which brings back the PDFs removed since they
+ * were appended. Appends are serialized, lookups and reads run concurrently.
+ */
+public class ColdSegmentStore implements Closeable {
+
+    private final Logger log = LoggerFactory.getLogger(ColdSegmentStore.class);
+
+    private static final String INDEX_FILE = "index.idx";
+
+    private static final Pattern SEGMENT_FILE = Pattern.compile("segment-(\\d{8})\\.seg");
+
+    private static final int INDEX_MAGIC = 0x50444649;
+
+    private static final int INDEX_VERSION = 1;
+
+    private static final int INDEX_HEADER_SIZE = 64;
+
+    private static final int SLOT_SIZE = 80;
+
+    private static final int MAX_CAPACITY = (Integer.MAX_VALUE - INDEX_HEADER_SIZE) / SLOT_SIZE;
+
+    private static final int ENTRY_MAGIC = 0x50444653;
+
+    private static final int ENTRY_HEADER_SIZE = 64;
+
+    private static final int DIGEST_SIZE = 32;
+
+    private static final byte EMPTY = 0;
+
+    private static final byte LIVE = 1;
+
+    private static final byte REMOVED = 2;
+
+    private static final int WALK_BATCH = 1024;
+
+    /**
+     * How the bytes of an entry are stored.
+     */
+    public enum Codec {
+        RAW, ZSTD
+    }
+
+    private final Path directory;
+
+    private final long segmentSize;
+
+    private final ReadWriteLock indexLock = new ReentrantReadWriteLock();
+
+    private final Object appendLock = new Object();
+
+    private FileChannel indexChannel;
+
+    private MappedByteBuffer index;
+
+    private int capacity;
+
+    private int segment;
+
+    private FileChannel segmentChannel;
+
+    /**
+     * Open the store in a directory, creating it if needed.
+     *
+     * @param directory the directory of the segments and the index.
+     * @param segmentSize the size past which a new segment is started, in bytes.
+     * @param initialCapacity the number of slots of a new index.
+     * @throws IOException if the directory cannot be read or the index cannot be mapped.
+     */
+    public ColdSegmentStore(Path directory, long segmentSize, int initialCapacity) throws IOException {
+        this.directory = directory.toAbsolutePath().normalize();
+        this.segmentSize = segmentSize;
+        Files.createDirectories(this.directory);
+        List<Integer> segments = segments();
+        segment = segments.isEmpty() ? 1 : segments.get(segments.size() - 1);
+        if (!segments.isEmpty()) {
+            recoverTail(segmentPath(segment));
+        }
+        Path indexPath = this.directory.resolve(INDEX_FILE);
+        if (Files.exists(indexPath)) {
+            map(indexPath);
+        } else {
+            createIndex(indexPath, Math.max(16, initialCapacity));
+            for (int id : segments) {
+                reindex(id);
+            }
+            index.force();
+        }
+        log.debug("Opened cold tier {} : {} PDFs in {} segments", this.directory, index.getLong(24), segments.size());
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Find the entry of a PDF.
+     *
+     * @param sha256 the digest of the PDF.
+     * @return the entry, or empty if the PDF is not in the store.
+     */
+    public Optional<Entry> find(String sha256) {
+        byte[] digest = DigestUtil.fromHex(sha256);
+        indexLock.readLock().lock();
+        try {
+            int slot = probe(index, capacity, digest);
+            if (index.get(slotOffset(slot) + 36) != LIVE) {
+                return Optional.empty();
+            }
+            return Optional.of(readSlot(sha256, slotOffset(slot)));
+        } finally {
+            indexLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Append a PDF to the current segment, and index it in place of any previous entry of the same digest.
+     *
+     * @param sha256 the digest of the PDF.
+     * @param source opens the content of the PDF, read a second time when its compressed form is not smaller.
+     * @param size the size of the content.
+     * @param lastModified the modification time of the PDF, kept as the validator of its downloads.
+     * @param codec how to store the content.
+     * @param level the zstd compression level.
+     * @return the new entry.
+     * @throws IOException if the content cannot be read, does not have the announced size, or cannot be written.
+     */
+    public Entry append(String sha256, Source source, long size, Instant lastModified, Codec codec, int level) throws IOException {
+        byte[] digest = DigestUtil.fromHex(sha256);
+        synchronized (appendLock) {
+            FileChannel channel = currentSegment();
+            long headerOffset = channel.size();
+            long offset = headerOffset + ENTRY_HEADER_SIZE;
+            Codec stored = codec;
+            try {
+                channel.position(offset);
+                long storedLength = codec == Codec.ZSTD ? writeCompressed(channel, source, level) : -1;
+                if (storedLength < 0 || storedLength >= size) {
+                    stored = Codec.RAW;
+                    channel.truncate(offset);
+                    channel.position(offset);
+                    storedLength = writeRaw(channel, source);
+                }
+                long read = stored == Codec.RAW ? storedLength : countDecompressed(channel, offset, storedLength);
+                if (read != size) {
+                    throw new IOException("PDF " + sha256 + " has " + read + " bytes instead of " + size);
+                }
+                Entry entry = new Entry(sha256, segment, stored, offset, storedLength, size, lastModified);
+                ByteBuffer header = ByteBuffer.allocate(ENTRY_HEADER_SIZE);
+                header.putInt(ENTRY_MAGIC).put((byte) stored.ordinal()).put(new byte[3]).put(digest)
+                    .putLong(storedLength).putLong(size).putLong(lastModified.toEpochMilli()).flip();
+                while (header.hasRemaining()) {
+                    channel.write(header, headerOffset + header.position());
+                }
+                channel.force(false);
+                put(digest, entry);
+                return entry;
+            } catch (IOException | RuntimeException e) {
+                channel.truncate(headerOffset);
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Remove a PDF from the index. Its bytes stay in their segment.
+     *
+     * @param sha256 the digest of the PDF.
+     * @return {@code true} if the PDF was in the store.
+     */
+    public boolean remove(String sha256) {
+        byte[] digest = DigestUtil.fromHex(sha256);
+        indexLock.writeLock().lock();
+        try {
+            int slot = probe(index, capacity, digest);
+            int slotOffset = slotOffset(slot);
+            if (index.get(slotOffset + 36) != LIVE) {
+                return false;
+            }
+            index.put(slotOffset + 36, REMOVED);
+            index.putLong(24, index.getLong(24) - 1);
+            index.force();
+            return true;
+        } finally {
+            indexLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Open the content of an entry.
+     *
+     * @param entry the entry.
+     * @return a stream of the PDF, decompressed, to be closed by the caller.
+     * @throws IOException if the segment cannot be read.
+     */
+    public InputStream open(Entry entry) throws IOException {
+        FileChannel channel = FileChannel.open(segmentPath(entry.getSegment()), StandardOpenOption.READ);
+        channel.position(entry.getOffset());
+        InputStream in = new BoundedInputStream(Channels.newInputStream(channel), entry.getStoredLength());
+        return entry.getCodec() == Codec.ZSTD ? new ZstdInputStream(new BufferedInputStream(in)) : in;
+    }
+
+    /**
+     * Open a region of the content of an entry. Compressed entries are decompressed from their start.
+     *
+     * @param entry the entry.
+     * @param position the position of the first byte to read.
+     * @param length the number of bytes to read.
+     * @return a stream of the region, to be closed by the caller.
+     * @throws IOException if the segment cannot be read.
+     */
+    public InputStream open(Entry entry, long position, long length) throws IOException {
+        if (entry.getCodec() == Codec.RAW) {
+            FileChannel channel = FileChannel.open(segmentPath(entry.getSegment()), StandardOpenOption.READ);
+            channel.position(entry.getOffset() + position);
+            return new BoundedInputStream(Channels.newInputStream(channel), Math.min(length, entry.getSize() - position));
+        }
+        InputStream in = open(entry);
+        try {
+            IOUtils.skipFully(in, position);
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+        return new BoundedInputStream(in, length);
+    }
+
+    /**
+     * Visit the PDFs of the store, in the order of their index slots. The index is read a batch of slots at a time and
+     * unlocked while the visitor runs, so it may append or remove PDFs: a PDF appended or removed during the walk may
+     * or may not be visited, and one may be visited twice when the index grows meanwhile.
+     *
+     * @param visitor called with the entry of each PDF.
+     * @throws IOException as thrown by the visitor.
+     */
+    public void walk(Visitor visitor) throws IOException {
+        List<Entry> batch = new ArrayList<>(WALK_BATCH);
+        byte[] digest = new byte[DIGEST_SIZE];
+        int slot = 0;
+        boolean more = true;
+        while (more) {
+            batch.clear();
+            indexLock.readLock().lock();
+            try {
+                int end = (int) Math.min((long) slot + WALK_BATCH, capacity);
+                for (; slot < end; slot++) {
+                    int slotOffset = slotOffset(slot);
+                    if (index.get(slotOffset + 36) == LIVE) {
+                        for (int i = 0; i < DIGEST_SIZE; i++) {
+                            digest[i] = index.get(slotOffset + i);
+                        }
+                        batch.add(readSlot(DigestUtil.toHex(digest), slotOffset));
+                    }
+                }
+                more = slot < capacity;
+            } finally {
+                indexLock.readLock().unlock();
+            }
+            for (Entry entry : batch) {
+                visitor.visit(entry);
+            }
+        }
+    }
+
+    /**
+     * @return the number of PDFs in the store.
+     */
+    public long count() {
+        indexLock.readLock().lock();
+        try {
+            return index.getLong(24);
+        } finally {
+            indexLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (appendLock) {
+            if (segmentChannel != null) {
+                segmentChannel.close();
+                segmentChannel = null;
+            }
+        }
+        indexLock.writeLock().lock();
+        try {
+            index.force();
+            MappedBufferUtil.unmap(index);
+            indexChannel.close();
+        } finally {
+            indexLock.writeLock().unlock();
+        }
+    }
+
+    private long writeCompressed(FileChannel channel, Source source, int level) throws IOException {
+        long start = channel.position();
+        try (InputStream in = source.open();
+             OutputStream out = new ZstdOutputStream(new BufferedOutputStream(new CloseShieldOutputStream(Channels.newOutputStream(channel))), level)) {
+            IOUtils.copyLarge(in, out);
+        }
+        return channel.position() - start;
+    }
+
+    private long writeRaw(FileChannel channel, Source source) throws IOException {
+        try (InputStream in = source.open()) {
+            OutputStream out = new BufferedOutputStream(Channels.newOutputStream(channel));
+            long written = IOUtils.copyLarge(in, out);
+            out.flush();
+            return written;
+        }
+    }
+
+    private long countDecompressed(FileChannel channel, long offset, long storedLength) throws IOException {
+        channel.position(offset);
+        try (InputStream in = new ZstdInputStream(new BufferedInputStream(
+            new BoundedInputStream(new CloseShieldInputStream(Channels.newInputStream(channel)), storedLength)))) {
+            return IOUtils.skip(in, Long.MAX_VALUE);
+        }
+    }
+
+    private FileChannel currentSegment() throws IOException {
+        if (segmentChannel != null && segmentChannel.size() >= segmentSize) {
+            segmentChannel.close();
+            segmentChannel = null;
+            segment++;
+        }
+        if (segmentChannel == null) {
+            segmentChannel = FileChannel.open(segmentPath(segment), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+            if (segmentChannel.size() >= segmentSize) {
+                return currentSegment();
+            }
+        }
+        return segmentChannel;
+    }
+
+    private Path segmentPath(int id) {
+        return directory.resolve(String.format("segment-%08d.seg", id));
+    }
+
+    private List<Integer> segments() throws IOException {
+        List<Integer> segments = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "segment-*.seg")) {
+            for (Path file : files) {
+                Matcher matcher = SEGMENT_FILE.matcher(file.getFileName().toString());
+                if (matcher.matches()) {
+                    segments.add(Integer.parseInt(matcher.group(1)));
+                }
+            }
+        }
+        Collections.sort(segments);
+        return segments;
+    }
+
+    /**
+     * Visit the entries of a segment, in the order they were appended.
+     *
+     * @return the end of the last complete entry.
+     */
+    private long scan(Path path, EntryVisitor visitor) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long position = 0;
+            ByteBuffer header = ByteBuffer.allocate(ENTRY_HEADER_SIZE);
+            while (position + ENTRY_HEADER_SIZE <= channel.size()) {
+                header.clear();
+                try {
+                    IOUtils.readFully(channel, header);
+                } catch (EOFException e) {
+                    break;
+                }
+                header.flip();
+                if (header.getInt() != ENTRY_MAGIC) {
+                    break;
+                }
+                int codec = header.get();
+                header.position(header.position() + 3);
+                byte[] digest = new byte[DIGEST_SIZE];
+                header.get(digest);
+                long storedLength = header.getLong();
+                long size = header.getLong();
+                long lastModified = header.getLong();
+                long end = position + ENTRY_HEADER_SIZE + storedLength;
+                if (codec < 0 || codec >= Codec.values().length || storedLength < 0 || end > channel.size()) {
+                    break;
+                }
+                visitor.visit(digest, new Entry(DigestUtil.toHex(digest), 0, Codec.values()[codec], position + ENTRY_HEADER_SIZE,
+                    storedLength, size, Instant.ofEpochMilli(lastModified)));
+                position = end;
+                channel.position(position);
+            }
+            return position;
+        }
+    }
+
+    /**
+     * Drop what an interrupted append left at the end of the last segment.
+     */
+    private void recoverTail(Path path) throws IOException {
+        long end = scan(path, (digest, entry) -> { });
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            if (channel.size() > end) {
+                log.warn("Dropping {} bytes of an interrupted append at the end of {}", channel.size() - end, path);
+                channel.truncate(end);
+            }
+        }
+    }
+
+    private void reindex(int id) throws IOException {
+        log.info("Rebuilding the index of the cold tier from {}", segmentPath(id));
+        scan(segmentPath(id), (digest, entry) -> put(digest, new Entry(entry.getSha256(), id, entry.getCodec(), entry.getOffset(),
+            entry.getStoredLength(), entry.getSize(), entry.getLastModified())));
+    }
+
+    private void put(byte[] digest, Entry entry) throws IOException {
+        indexLock.writeLock().lock();
+        try {
+            int slot = probe(index, capacity, digest);
+            int slotOffset = slotOffset(slot);
+            byte state = index.get(slotOffset + 36);
+            if (state == EMPTY && (index.getLong(16) + 1) * 4 > (long) capacity * 3) {
+                resize();
+                slot = probe(index, capacity, digest);
+                slotOffset = slotOffset(slot);
+                state = index.get(slotOffset + 36);
+            }
+            writeSlot(index, slotOffset, digest, entry);
+            if (state == EMPTY) {
+                index.putLong(16, index.getLong(16) + 1);
+            }
+            if (state != LIVE) {
+                index.putLong(24, index.getLong(24) + 1);
+            }
+            index.force();
+        } finally {
+            indexLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Find the slot of a digest: the slot holding it, live or removed, or the empty slot ending its probe sequence.
+     */
+    private static int probe(MappedByteBuffer index, int capacity, byte[] digest) {
+        int slot = (int) Math.floorMod(ByteBuffer.wrap(digest).getLong(), (long) capacity);
+        while (true) {
+            int slotOffset = slotOffset(slot);
+            if (index.get(slotOffset + 36) == EMPTY || matches(index, slotOffset, digest)) {
+                return slot;
+            }
+            slot = slot + 1 == capacity ? 0 : slot + 1;
+        }
+    }
+
+    private static boolean matches(MappedByteBuffer index, int slotOffset, byte[] digest) {
+        for (int i = 0; i < DIGEST_SIZE; i++) {
+            if (index.get(slotOffset + i) != digest[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int slotOffset(int slot) {
+        return INDEX_HEADER_SIZE + slot * SLOT_SIZE;
+    }
+
+    /**
+     * Write a slot, its state last so a concurrent crash never leaves a live slot half written.
+     */
+    private static void writeSlot(MappedByteBuffer index, int slotOffset, byte[] digest, Entry entry) {
+        for (int i = 0; i < DIGEST_SIZE; i++) {
+            index.put(slotOffset + i, digest[i]);
+        }
+        index.putInt(slotOffset + 32, entry.getSegment());
+        index.put(slotOffset + 37, (byte) entry.getCodec().ordinal());
+        index.putLong(slotOffset + 40, entry.getOffset());
+        index.putLong(slotOffset + 48, entry.getStoredLength());
+        index.putLong(slotOffset + 56, entry.getSize());
+        index.putLong(slotOffset + 64, entry.getLastModified().toEpochMilli());
+        index.put(slotOffset + 36, LIVE);
+    }
+
+    private Entry readSlot(String sha256, int slotOffset) {
+        return new Entry(sha256, index.getInt(slotOffset + 32), Codec.values()[index.get(slotOffset + 37)],
+            index.getLong(slotOffset + 40), index.getLong(slotOffset + 48), index.getLong(slotOffset + 56),
+            Instant.ofEpochMilli(index.getLong(slotOffset + 64)));
+    }
+
+    private void createIndex(Path path, int slots) throws IOException {
+        Path staging = path.resolveSibling(INDEX_FILE + ".tmp");
+        try (FileChannel channel = FileChannel.open(staging, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+            StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, INDEX_HEADER_SIZE + (long) slots * SLOT_SIZE);
+            buffer.putInt(0, INDEX_MAGIC);
+            buffer.putInt(4, INDEX_VERSION);
+            buffer.putLong(8, slots);
+            if (index != null) {
+                long live = 0;
+                byte[] digest = new byte[DIGEST_SIZE];
+                for (int slot = 0; slot < capacity; slot++) {
+                    int slotOffset = slotOffset(slot);
+                    if (index.get(slotOffset + 36) == LIVE) {
+                        for (int i = 0; i < DIGEST_SIZE; i++) {
+                            digest[i] = index.get(slotOffset + i);
+                        }
+                        writeSlot(buffer, slotOffset(probe(buffer, slots, digest)), digest, readSlot(null, slotOffset));
+                        live++;
+                    }
+                }
+                buffer.putLong(16, live);
+                buffer.putLong(24, live);
+            }
+            buffer.force();
+            MappedBufferUtil.unmap(buffer);
+        }
+        if (index != null) {
+            MappedBufferUtil.unmap(index);
+            indexChannel.close();
+        }
+        Files.move(staging, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        map(path);
+    }
+
+    private void resize() throws IOException {
+        if (capacity >= MAX_CAPACITY) {
+            throw new IOException("The index of the cold tier is full");
+        }
+        int slots = (int) Math.min((long) capacity * 2, MAX_CAPACITY);
+        log.info("Growing the index of the cold tier to {} slots", slots);
+        createIndex(directory.resolve(INDEX_FILE), slots);
+    }
+
+    private void map(Path path) throws IOException {
+        indexChannel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        index = indexChannel.map(FileChannel.MapMode.READ_WRITE, 0, indexChannel.size());
+        if (index.getInt(0) != INDEX_MAGIC || index.getInt(4) != INDEX_VERSION) {
+            throw new IOException("Not an index of the cold tier: " + path);
+        }
+        capacity = (int) index.getLong(8);
+    }
+
+    /**
+     * Callback of {@link #walk(Visitor)}.
+     */
+    @FunctionalInterface
+    public interface Visitor {
+
+        void visit(Entry entry) throws IOException;
+    }
+
+    /**
+     * Opens the content of a PDF being appended.
+     */
+    @FunctionalInterface
+    public interface Source {
+
+        InputStream open() throws IOException;
+    }
+
+    @FunctionalInterface
+    private interface EntryVisitor {
+
+        void visit(byte[] digest, Entry entry) throws IOException;
+    }
+
+    /**
+     * The location of a PDF in the segments.
+     */
+    public static final class Entry {
+
+        private final String sha256;
+
+        private final int segment;
+
+        private final Codec codec;
+
+        private final long offset;
+
+        private final long storedLength;
+
+        private final long size;
+
+        private final Instant lastModified;
+
+        Entry(String sha256, int segment, Codec codec, long offset, long storedLength, long size, Instant lastModified) {
+            this.sha256 = sha256;
+            this.segment = segment;
+            this.codec = codec;
+            this.offset = offset;
+            this.storedLength = storedLength;
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+
+        public String getSha256() {
+            return sha256;
+        }
+
+        public int getSegment() {
+            return segment;
+        }
+
+        public Codec getCodec() {
+            return codec;
+        }
+
+        public long getOffset() {
+            return offset;
+        }
+
+        /**
+         * @return the number of bytes the PDF takes in its segment.
+         */
+        public long getStoredLength() {
+            return storedLength;
+        }
+
+        /**
+         * @return the size of the PDF, decompressed.
+         */
+        public long getSize() {
+            return size;
+        }
+
+        public Instant getLastModified() {
+            return lastModified;
+        }
+
+        @Override
+        public String toString() {
+            return "Entry{" +
+                "sha256='" + sha256 + "'" +
+                ", segment=" + segment +
+                ", codec=" + codec +
+                ", offset=" + offset +
+                ", storedLength=" + storedLength +
+                ", size=" + size +
+                "}";
+        }
+    }
+}
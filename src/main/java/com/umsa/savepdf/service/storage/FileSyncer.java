@@ -0,0 +1,55 @@
+package com.umsa.savepdf.service.storage;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+
+/**
+ * Makes files, and the directory entries naming them, durable: once {@link #sync(Collection)} returns, they survive a
+ * crash of the node. {@link LocalFileSystemStorageBackend} syncs an object when its stream is closed, before it can be
+ * moved to its final key, and the directory of the key once it is moved there.
+ */
+@FunctionalInterface
+public interface FileSyncer {
+
+    /**
+     * Leaves durability to the operating system, which writes the page cache back within seconds.
+     */
+    FileSyncer NONE = paths -> { };
+
+    /**
+     * Syncs each file on the calling thread.
+     */
+    FileSyncer PER_FILE = paths -> {
+        for (Path path : paths) {
+            force(path);
+        }
+    };
+
+    /**
+     * Make files or directories durable.
+     *
+     * @param paths the files and directories, synced in this order.
+     * @throws IOException if one of them cannot be synced.
+     */
+    void sync(Collection<Path> paths) throws IOException;
+
+    /**
+     * Flush a file or a directory to the disk ({@code fsync}). Directories can only be opened, hence synced, on POSIX
+     * systems: elsewhere, such as on Windows, they are skipped and their entries left to the file system.
+     *
+     * @param path the file or directory.
+     * @throws IOException if it cannot be synced.
+     */
+    static void force(Path path) throws IOException {
+        if (!path.getFileSystem().supportedFileAttributeViews().contains("posix") && Files.isDirectory(path)) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            channel.force(true);
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package com.umsa.savepdf.service.storage;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link FileSyncer} sharing each {@code fsync} between the callers waiting for it.
+ * <p>
+ * Callers queue their paths and wait. A single thread takes the queue, optionally waiting for an interval after the
+ * first request, syncs every path once, however many callers asked for it (the directory of a shard, typically), then
+ * releases the whole batch. The paths of a batch are synced by a few threads at once, as journaling file systems such
+ * as ext4 or XFS commit concurrent syncs together, and the requests queued meanwhile make the next batch. Under load,
+ * each upload waits for about one batch plus the interval, and the number of concurrent flushes stays bounded whatever
+ * the number of uploads. An interval only pays off on disks whose flushes are slow enough to fill it.
+ */
+public class GroupCommitFileSyncer implements FileSyncer, Closeable {
+
+    private final Logger log = LoggerFactory.getLogger(GroupCommitFileSyncer.class);
+
+    private final long intervalNanos;
+
+    private final Object lock = new Object();
+
+    private List<Request> pending = new ArrayList<>();
+
+    private boolean closed;
+
+    private final Thread thread;
+
+    private final ExecutorService forcer;
+
+    /**
+     * Start the syncing threads.
+     *
+     * @param interval how long requests are collected after the first one before they are synced together, in
+     *                 milliseconds, or {@code 0} to sync them as soon as the previous batch is done.
+     * @param threads the number of files synced at once within a batch.
+     */
+    public GroupCommitFileSyncer(long interval, int threads) {
+        this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(interval);
+        this.forcer = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread forcerThread = new Thread(runnable, "file-syncer-force");
+            forcerThread.setDaemon(true);
+            return forcerThread;
+        });
+        this.thread = new Thread(this::run, "file-syncer");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    @Override
+    public void sync(Collection<Path> paths) throws IOException {
+        Request request = new Request(paths);
+        synchronized (lock) {
+            if (closed) {
+                throw new IOException("The file syncer is closed");
+            }
+            pending.add(request);
+            lock.notifyAll();
+        }
+        try {
+            request.done.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for " + paths + " to be synced");
+        } catch (ExecutionException e) {
+            throw (IOException) e.getCause();
+        }
+    }
+
+    /**
+     * Sync the requests already queued, then stop the thread.
+     */
+    @Override
+    public void close() {
+        synchronized (lock) {
+            closed = true;
+            lock.notifyAll();
+        }
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        forcer.shutdown();
+    }
+
+    private void run() {
+        while (true) {
+            List<Request> batch;
+            synchronized (lock) {
+                while (pending.isEmpty() && !closed) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        closed = true;
+                    }
+                }
+                if (pending.isEmpty()) {
+                    return;
+                }
+                if (!closed) {
+                    awaitBatch();
+                }
+                batch = pending;
+                pending = new ArrayList<>();
+            }
+            sync(batch);
+        }
+    }
+
+    /**
+     * Let the requests of the interval join the batch.
+     */
+    private void awaitBatch() {
+        long deadline = System.nanoTime() + intervalNanos;
+        long remaining;
+        while (!closed && (remaining = deadline - System.nanoTime()) > 0) {
+            try {
+                TimeUnit.NANOSECONDS.timedWait(lock, remaining);
+            } catch (InterruptedException e) {
+                closed = true;
+            }
+        }
+    }
+
+    private void sync(List<Request> batch) {
+        Set<Path> paths = new LinkedHashSet<>();
+        for (Request request : batch) {
+            paths.addAll(request.paths);
+        }
+        Map<Path, IOException> failures = new ConcurrentHashMap<>();
+        List<Future<?>> forces = new ArrayList<>(paths.size());
+        for (Path path : paths) {
+            forces.add(forcer.submit(() -> {
+                try {
+                    FileSyncer.force(path);
+                } catch (IOException e) {
+                    log.warn("Could not sync {} : {}", path, e.getMessage());
+                    failures.put(path, e);
+                }
+            }));
+        }
+        IOException interrupted = null;
+        for (Future<?> force : forces) {
+            try {
+                force.get();
+            } catch (InterruptedException e) {
+                interrupted = new InterruptedIOException("Interrupted while syncing");
+                break;
+            } catch (ExecutionException e) {
+                interrupted = new IOException(e.getCause());
+                break;
+            }
+        }
+        log.trace("Synced {} paths for {} requests", paths.size(), batch.size());
+        for (Request request : batch) {
+            IOException failure = interrupted != null ? interrupted
+                : request.paths.stream().map(failures::get).filter(e -> e != null).findFirst().orElse(null);
+            if (failure == null) {
+                request.done.complete(null);
+            } else {
+                request.done.completeExceptionally(failure);
+            }
+        }
+    }
+
+    private static final class Request {
+
+        private final Collection<Path> paths;
+
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        Request(Collection<Path> paths) {
+            this.paths = paths;
+        }
+    }
+}
@@ -0,0 +1,267 @@
+package com.umsa.savepdf.service.storage;
+
+import org.apache.commons.io.input.BoundedInputStream;
+import org.apache.commons.io.output.ProxyOutputStream;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.PriorityQueue;
+
+/**
+ * {@link StorageBackend} keeping the objects as files below a root directory.
+ * <p>
+ * Objects are made durable by a {@link FileSyncer}: a file is synced when its stream is closed after successful writes,
+ * and the directory of a key once an object is moved there, along with the directories created for it. Callers
+ * writing to a staging key then moving it never leave a truncated object under its final key, whatever the moment of
+ * a crash.
+ */
+public class LocalFileSystemStorageBackend implements StorageBackend {
+
+    private final Path root;
+
+    private final FileSyncer fileSyncer;
+
+    public LocalFileSystemStorageBackend(Path root) {
+        this(root, FileSyncer.NONE);
+    }
+
+    public LocalFileSystemStorageBackend(Path root, FileSyncer fileSyncer) {
+        this.root = root.toAbsolutePath().normalize();
+        this.fileSyncer = fileSyncer;
+    }
+
+    public Path getRoot() {
+        return root;
+    }
+
+    @Override
+    public Optional<StorageObject> stat(String key) throws IOException {
+        Path path = resolve(key);
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            if (!attributes.isRegularFile()) {
+                return Optional.empty();
+            }
+            return Optional.of(new StorageObject(key, attributes.size(), attributes.lastModifiedTime().toInstant()));
+        } catch (NoSuchFileException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * List a page of a directory. The directory is read in full, but only the objects of the page are held in memory,
+     * in a heap of {@code limit} objects.
+     */
+    @Override
+    public List<StorageObject> list(String directory, String startAfter, int limit) throws IOException {
+        Path path = resolve(directory);
+        if (!Files.isDirectory(path)) {
+            return new ArrayList<>();
+        }
+        String after = startAfter == null ? "" : startAfter;
+        Comparator<StorageObject> byKey = Comparator.comparing(StorageObject::getKey);
+        PriorityQueue<StorageObject> page = new PriorityQueue<>(byKey.reversed());
+        try (DirectoryStream<Path> children = Files.newDirectoryStream(path)) {
+            for (Path child : children) {
+                String key = directory + child.getFileName();
+                if (key.compareTo(after) <= 0 || page.size() == limit && key.compareTo(page.peek().getKey()) >= 0) {
+                    continue;
+                }
+                BasicFileAttributes attributes;
+                try {
+                    attributes = Files.readAttributes(child, BasicFileAttributes.class);
+                } catch (NoSuchFileException e) {
+                    continue;
+                }
+                if (attributes.isRegularFile()) {
+                    page.add(new StorageObject(key, attributes.size(), attributes.lastModifiedTime().toInstant()));
+                    if (page.size() > limit) {
+                        page.poll();
+                    }
+                }
+            }
+        }
+        List<StorageObject> objects = new ArrayList<>(page);
+        objects.sort(byKey);
+        return objects;
+    }
+
+    @Override
+    public void walk(String directory, Visitor visitor) throws IOException {
+        Path path = resolve(directory);
+        if (Files.isDirectory(path)) {
+            walk(path, directory, visitor);
+        }
+    }
+
+    /**
+     * Visit a directory with a {@link DirectoryStream}, its entries sorted as their keys would be: a subdirectory
+     * sorts as its name followed by {@code /}. Only the entries of the directories being visited are held in memory.
+     */
+    private void walk(Path path, String directory, Visitor visitor) throws IOException {
+        List<String> names = new ArrayList<>();
+        try (DirectoryStream<Path> children = Files.newDirectoryStream(path)) {
+            for (Path child : children) {
+                String name = child.getFileName().toString();
+                names.add(Files.isDirectory(child, LinkOption.NOFOLLOW_LINKS) ? name + "/" : name);
+            }
+        } catch (NoSuchFileException e) {
+            return;
+        }
+        Collections.sort(names);
+        for (String name : names) {
+            Path child = path.resolve(name);
+            if (name.endsWith("/")) {
+                walk(child, directory + name, visitor);
+                continue;
+            }
+            BasicFileAttributes attributes;
+            try {
+                attributes = Files.readAttributes(child, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+            } catch (NoSuchFileException e) {
+                continue;
+            }
+            if (attributes.isRegularFile()) {
+                visitor.visit(new StorageObject(directory + name, attributes.size(), attributes.lastModifiedTime().toInstant()));
+            }
+        }
+    }
+
+    @Override
+    public InputStream read(String key) throws IOException {
+        return Files.newInputStream(resolve(key));
+    }
+
+    @Override
+    public InputStream read(String key, long offset, long length) throws IOException {
+        FileChannel channel = FileChannel.open(resolve(key), StandardOpenOption.READ);
+        try {
+            channel.position(offset);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        return new BoundedInputStream(Channels.newInputStream(channel), length);
+    }
+
+    @Override
+    public OutputStream write(String key) throws IOException {
+        Path path = resolve(key);
+        List<Path> directories = createDirectories(path.getParent());
+        return new SyncedOutputStream(Files.newOutputStream(path), path, directories);
+    }
+
+    @Override
+    public void move(String source, String target) throws IOException {
+        Path targetPath = resolve(target);
+        List<Path> directories = createDirectories(targetPath.getParent());
+        Files.move(resolve(source), targetPath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        List<Path> paths = new ArrayList<>(directories.size() + 1);
+        paths.add(targetPath.getParent());
+        directories.stream().filter(directory -> !directory.equals(targetPath.getParent())).forEach(paths::add);
+        fileSyncer.sync(paths);
+    }
+
+    @Override
+    public boolean delete(String key) throws IOException {
+        return Files.deleteIfExists(resolve(key));
+    }
+
+    @Override
+    public Optional<Path> localPath(String key) {
+        return Optional.of(resolve(key));
+    }
+
+    /**
+     * Create a directory and its missing parents.
+     *
+     * @return the directories whose entries changed: the parents of those created, deepest first.
+     */
+    private List<Path> createDirectories(Path directory) throws IOException {
+        List<Path> changed = new ArrayList<>();
+        Path missing = directory;
+        while (missing != null && !Files.isDirectory(missing)) {
+            changed.add(missing.getParent());
+            missing = missing.getParent();
+        }
+        if (!changed.isEmpty()) {
+            Files.createDirectories(directory);
+        }
+        return changed;
+    }
+
+    /**
+     * Resolve a key below the root directory, rejecting keys which would escape it.
+     */
+    private Path resolve(String key) {
+        Path path = root.resolve(key).normalize();
+        if (!path.startsWith(root)) {
+            throw new IllegalArgumentException("Invalid storage key: " + key);
+        }
+        return path;
+    }
+
+    /**
+     * Stream of a file, synced with the directories created for it once closed after successful writes. A failed
+     * write or an abandoned stream leaves a partial file its caller discards, so it is not synced.
+     */
+    private class SyncedOutputStream extends ProxyOutputStream implements Abandonable {
+
+        private final Path path;
+
+        private final List<Path> directories;
+
+        private boolean closed;
+
+        private boolean abandoned;
+
+        SyncedOutputStream(OutputStream out, Path path, List<Path> directories) {
+            super(out);
+            this.path = path;
+            this.directories = directories;
+        }
+
+        @Override
+        protected void handleIOException(IOException e) throws IOException {
+            abandoned = true;
+            throw e;
+        }
+
+        @Override
+        public void abandon() {
+            abandoned = true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            super.close();
+            if (abandoned) {
+                return;
+            }
+            List<Path> paths = new ArrayList<>(directories.size() + 1);
+            paths.add(path);
+            paths.addAll(directories);
+            fileSyncer.sync(paths);
+        }
+    }
+}
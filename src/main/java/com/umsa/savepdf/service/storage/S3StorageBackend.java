@@ -0,0 +1,295 @@
+package com.umsa.savepdf.service.storage;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.SdkClientException;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.AbortMultipartUploadRequest;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadRequest;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadRequest;
+import com.amazonaws.services.s3.model.ListObjectsV2Request;
+import com.amazonaws.services.s3.model.ListObjectsV2Result;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PartETag;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+import com.amazonaws.services.s3.model.UploadPartRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.NoSuchFileException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * {@link StorageBackend} keeping the objects in a bucket of an S3-compatible service, such as AWS S3 or MinIO.
+ * <p>
+ * Writes are buffered one part at a time: objects smaller than a part are sent with a single PUT, larger ones with a
+ * multipart upload, so the memory used per write is bounded by the part size. Moves are a server-side copy followed
+ * by a delete, which S3 limits to objects of 5 GB.
+ */
+public class S3StorageBackend implements StorageBackend {
+
+    private final Logger log = LoggerFactory.getLogger(S3StorageBackend.class);
+
+    private static final String CONTENT_TYPE = "application/pdf";
+
+    private final AmazonS3 s3;
+
+    private final String bucket;
+
+    private final int partSize;
+
+    public S3StorageBackend(AmazonS3 s3, String bucket, int partSize) {
+        this.s3 = s3;
+        this.bucket = bucket;
+        this.partSize = partSize;
+    }
+
+    @Override
+    public Optional<StorageObject> stat(String key) throws IOException {
+        try {
+            ObjectMetadata metadata = s3.getObjectMetadata(bucket, key);
+            return Optional.of(new StorageObject(key, metadata.getContentLength(), metadata.getLastModified().toInstant()));
+        } catch (AmazonServiceException e) {
+            if (e.getStatusCode() == 404) {
+                return Optional.empty();
+            }
+            throw new IOException("Could not read metadata of " + key, e);
+        } catch (SdkClientException e) {
+            throw new IOException("Could not read metadata of " + key, e);
+        }
+    }
+
+    @Override
+    public List<StorageObject> list(String directory, String startAfter, int limit) throws IOException {
+        List<StorageObject> objects = new ArrayList<>();
+        ListObjectsV2Request request = new ListObjectsV2Request()
+            .withBucketName(bucket)
+            .withPrefix(directory)
+            .withStartAfter(startAfter)
+            .withDelimiter("/")
+            .withMaxKeys(Math.min(limit, 1000));
+        try {
+            ListObjectsV2Result result;
+            do {
+                result = s3.listObjectsV2(request);
+                for (S3ObjectSummary summary : result.getObjectSummaries()) {
+                    if (objects.size() == limit) {
+                        return objects;
+                    }
+                    objects.add(new StorageObject(summary.getKey(), summary.getSize(), summary.getLastModified().toInstant()));
+                }
+                request.setContinuationToken(result.getNextContinuationToken());
+            } while (result.isTruncated() && objects.size() < limit);
+        } catch (SdkClientException e) {
+            throw new IOException("Could not list " + directory, e);
+        }
+        return objects;
+    }
+
+    @Override
+    public void walk(String directory, Visitor visitor) throws IOException {
+        ListObjectsV2Request request = new ListObjectsV2Request()
+            .withBucketName(bucket)
+            .withPrefix(directory);
+        ListObjectsV2Result result;
+        do {
+            try {
+                result = s3.listObjectsV2(request);
+            } catch (SdkClientException e) {
+                throw new IOException("Could not list " + directory, e);
+            }
+            for (S3ObjectSummary summary : result.getObjectSummaries()) {
+                visitor.visit(new StorageObject(summary.getKey(), summary.getSize(), summary.getLastModified().toInstant()));
+            }
+            request.setContinuationToken(result.getNextContinuationToken());
+        } while (result.isTruncated());
+    }
+
+    @Override
+    public InputStream read(String key) throws IOException {
+        return get(new GetObjectRequest(bucket, key));
+    }
+
+    @Override
+    public InputStream read(String key, long offset, long length) throws IOException {
+        if (length <= 0) {
+            return new ByteArrayInputStream(new byte[0]);
+        }
+        return get(new GetObjectRequest(bucket, key).withRange(offset, offset + length - 1));
+    }
+
+    private InputStream get(GetObjectRequest request) throws IOException {
+        try {
+            return s3.getObject(request).getObjectContent();
+        } catch (AmazonServiceException e) {
+            if (e.getStatusCode() == 404) {
+                throw new NoSuchFileException(request.getKey());
+            }
+            throw new IOException("Could not read " + request.getKey(), e);
+        } catch (SdkClientException e) {
+            throw new IOException("Could not read " + request.getKey(), e);
+        }
+    }
+
+    @Override
+    public OutputStream write(String key) {
+        return new UploadOutputStream(key);
+    }
+
+    @Override
+    public void move(String source, String target) throws IOException {
+        try {
+            s3.copyObject(bucket, source, bucket, target);
+            s3.deleteObject(bucket, source);
+        } catch (AmazonServiceException e) {
+            if (e.getStatusCode() == 404) {
+                throw new NoSuchFileException(source);
+            }
+            throw new IOException("Could not move " + source + " to " + target, e);
+        } catch (SdkClientException e) {
+            throw new IOException("Could not move " + source + " to " + target, e);
+        }
+    }
+
+    @Override
+    public boolean delete(String key) throws IOException {
+        if (!stat(key).isPresent()) {
+            return false;
+        }
+        try {
+            s3.deleteObject(bucket, key);
+            return true;
+        } catch (SdkClientException e) {
+            throw new IOException("Could not delete " + key, e);
+        }
+    }
+
+    /**
+     * Stream sending the object once a part is full, and on close. A failed or abandoned write aborts its multipart
+     * upload, so the parts sent are not left billed in the bucket, and never creates the object.
+     */
+    private class UploadOutputStream extends OutputStream implements Abandonable {
+
+        private final String key;
+
+        private final byte[] buffer = new byte[partSize];
+
+        private final List<PartETag> parts = new ArrayList<>();
+
+        private int count;
+
+        private String uploadId;
+
+        private boolean closed;
+
+        private boolean abandoned;
+
+        UploadOutputStream(String key) {
+            this.key = key;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (count == buffer.length) {
+                flushPart();
+            }
+            buffer[count++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                if (count == buffer.length) {
+                    flushPart();
+                }
+                int chunk = Math.min(len, buffer.length - count);
+                System.arraycopy(b, off, buffer, count, chunk);
+                count += chunk;
+                off += chunk;
+                len -= chunk;
+            }
+        }
+
+        private void flushPart() throws IOException {
+            try {
+                if (uploadId == null) {
+                    uploadId = s3.initiateMultipartUpload(new InitiateMultipartUploadRequest(bucket, key, metadata(-1)))
+                        .getUploadId();
+                }
+                UploadPartRequest request = new UploadPartRequest()
+                    .withBucketName(bucket)
+                    .withKey(key)
+                    .withUploadId(uploadId)
+                    .withPartNumber(parts.size() + 1)
+                    .withInputStream(new ByteArrayInputStream(buffer, 0, count))
+                    .withPartSize(count);
+                parts.add(s3.uploadPart(request).getPartETag());
+                count = 0;
+            } catch (SdkClientException e) {
+                abort();
+                throw new IOException("Could not upload part of " + key, e);
+            }
+        }
+
+        @Override
+        public void abandon() {
+            abandoned = true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            if (abandoned) {
+                abort();
+                return;
+            }
+            closed = true;
+            if (uploadId == null) {
+                try {
+                    s3.putObject(bucket, key, new ByteArrayInputStream(buffer, 0, count), metadata(count));
+                } catch (SdkClientException e) {
+                    throw new IOException("Could not upload " + key, e);
+                }
+                return;
+            }
+            if (count > 0) {
+                flushPart();
+            }
+            try {
+                s3.completeMultipartUpload(new CompleteMultipartUploadRequest(bucket, key, uploadId, parts));
+            } catch (SdkClientException e) {
+                abort();
+                throw new IOException("Could not complete upload of " + key, e);
+            }
+        }
+
+        private void abort() {
+            closed = true;
+            if (uploadId == null) {
+                return;
+            }
+            try {
+                s3.abortMultipartUpload(new AbortMultipartUploadRequest(bucket, key, uploadId));
+            } catch (SdkClientException e) {
+                log.warn("Could not abort upload of {} : {}", key, e.getMessage());
+            }
+        }
+
+        private ObjectMetadata metadata(long length) {
+            ObjectMetadata metadata = new ObjectMetadata();
+            metadata.setContentType(CONTENT_TYPE);
+            if (length >= 0) {
+                metadata.setContentLength(length);
+            }
+            return metadata;
+        }
+    }
+}
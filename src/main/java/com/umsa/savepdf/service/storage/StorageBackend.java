@@ -0,0 +1,138 @@
+package com.umsa.savepdf.service.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * A place where the stored PDFs (and their derived files) live.
+ * <p>
+ * Objects are addressed by keys such as {@code sha256/<digest>.pdf}: slash-separated relative paths, which never
+ * contain {@code ..} segments. Every operation streams, so no implementation needs to hold a whole object in memory.
+ * Implementations must be safe for concurrent use.
+ */
+public interface StorageBackend {
+
+    /**
+     * Get the metadata of an object.
+     *
+     * @param key the key of the object.
+     * @return the metadata, or empty if there is no such object.
+     * @throws IOException if the storage cannot be reached.
+     */
+    Optional<StorageObject> stat(String key) throws IOException;
+
+    /**
+     * List the objects directly inside a directory, without descending into its subdirectories, in the lexicographic
+     * order of their keys.
+     *
+     * @param directory the key prefix of the directory, ending with {@code /}.
+     * @param startAfter the key the objects are listed after, or {@code null} to list from the start of the directory.
+     * @param limit the maximum number of objects to return.
+     * @return the objects, fewer than {@code limit} only once the end of the directory is reached.
+     * @throws IOException if the storage cannot be reached.
+     */
+    List<StorageObject> list(String directory, String startAfter, int limit) throws IOException;
+
+    /**
+     * Visit every object below a directory, descending into its subdirectories, in the lexicographic order of their
+     * keys. Objects are visited as they are listed, so a walk over the whole storage does not hold it in memory.
+     *
+     * @param directory the key prefix of the directory, ending with {@code /}.
+     * @param visitor called with each object.
+     * @throws IOException if the storage cannot be reached, or as thrown by the visitor.
+     */
+    void walk(String directory, Visitor visitor) throws IOException;
+
+    /**
+     * Open an object for reading.
+     *
+     * @param key the key of the object.
+     * @return a stream of the whole content, to be closed by the caller.
+     * @throws java.nio.file.NoSuchFileException if there is no such object.
+     * @throws IOException if the storage cannot be reached.
+     */
+    InputStream read(String key) throws IOException;
+
+    /**
+     * Open a region of an object for reading.
+     *
+     * @param key the key of the object.
+     * @param offset the position of the first byte to read.
+     * @param length the number of bytes to read.
+     * @return a stream of the region, to be closed by the caller.
+     * @throws java.nio.file.NoSuchFileException if there is no such object.
+     * @throws IOException if the storage cannot be reached.
+     */
+    InputStream read(String key, long offset, long length) throws IOException;
+
+    /**
+     * Open an object for writing, replacing any existing content. The object is complete once the stream is closed.
+     *
+     * @param key the key of the object.
+     * @return the stream to write the content to.
+     * @throws IOException if the storage cannot be reached.
+     */
+    OutputStream write(String key) throws IOException;
+
+    /**
+     * Give up on the content written to a stream of {@link #write(String)}, before closing it: closing it then leaves
+     * an incomplete object for the caller to delete, without making it durable or completing its upload.
+     *
+     * @param out the stream, as returned by {@link #write(String)}.
+     */
+    static void abandon(OutputStream out) {
+        if (out instanceof Abandonable) {
+            ((Abandonable) out).abandon();
+        }
+    }
+
+    /**
+     * Move an object to another key, replacing any object already there.
+     *
+     * @param source the key of the object to move.
+     * @param target its new key.
+     * @throws IOException if the object cannot be moved.
+     */
+    void move(String source, String target) throws IOException;
+
+    /**
+     * Delete an object.
+     *
+     * @param key the key of the object.
+     * @return {@code true} if the object existed.
+     * @throws IOException if the object cannot be deleted.
+     */
+    boolean delete(String key) throws IOException;
+
+    /**
+     * Get the local file of an object, for backends keeping their objects on a local file system. Callers use it to
+     * serve the content with zero-copy transfers.
+     *
+     * @param key the key of the object.
+     * @return the path of the object, or empty if the backend is not local.
+     */
+    default Optional<Path> localPath(String key) {
+        return Optional.empty();
+    }
+
+    /**
+     * A stream of {@link #write(String)} whose content can be given up on, see {@link #abandon(OutputStream)}.
+     */
+    interface Abandonable {
+
+        void abandon();
+    }
+
+    /**
+     * Callback of {@link #walk(String, Visitor)}.
+     */
+    @FunctionalInterface
+    interface Visitor {
+
+        void visit(StorageObject object) throws IOException;
+    }
+}
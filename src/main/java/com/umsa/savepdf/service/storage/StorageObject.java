@@ -0,0 +1,42 @@
+package com.umsa.savepdf.service.storage;
+
+import java.time.Instant;
+
+/**
+ * Metadata of an object held by a {@link StorageBackend}.
+ */
+public class StorageObject {
+
+    private final String key;
+
+    private final long size;
+
+    private final Instant lastModified;
+
+    public StorageObject(String key, long size, Instant lastModified) {
+        this.key = key;
+        this.size = size;
+        this.lastModified = lastModified;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public Instant getLastModified() {
+        return lastModified;
+    }
+
+    @Override
+    public String toString() {
+        return "StorageObject{" +
+            "key='" + key + "'" +
+            ", size=" + size +
+            ", lastModified='" + lastModified + "'" +
+            "}";
+    }
+}
@@ -0,0 +1,158 @@
+package com.umsa.savepdf.service.storage;
+
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A {@link StorageBackend} serving the content-addressed PDFs from a {@link ColdSegmentStore} once they have left the
+ * backend holding the rest of the storage.
+ * <p>
+ * Every object lives in the hot backend, except the PDFs moved to the cold tier: a PDF key missing from the hot
+ * backend is looked up in the cold segments, by the digest in its name, and read from there. Callers see a single
+ * storage, so the downloads, the scrubber and the exports need not know where a PDF lives. A cold PDF has no local
+ * file, so it is streamed rather than sent with zero-copy transfers. Listings and walks only cover the hot backend:
+ * the cold PDFs are walked with {@link ColdSegmentStore#walk(ColdSegmentStore.Visitor)}.
+ */
+public class TieredStorageBackend implements StorageBackend, Closeable {
+
+    private final Logger log = LoggerFactory.getLogger(TieredStorageBackend.class);
+
+    private static final Pattern PDF_KEY = Pattern.compile("sha256/(?:[0-9a-f]{2}/[0-9a-f]{2}/)?([0-9a-f]{64})\\.pdf");
+
+    private final StorageBackend hot;
+
+    private final ColdSegmentStore cold;
+
+    public TieredStorageBackend(StorageBackend hot, ColdSegmentStore cold) {
+        this.hot = hot;
+        this.cold = cold;
+    }
+
+    public StorageBackend getHot() {
+        return hot;
+    }
+
+    public ColdSegmentStore getCold() {
+        return cold;
+    }
+
+    @Override
+    public Optional<StorageObject> stat(String key) throws IOException {
+        Optional<StorageObject> object = hot.stat(key);
+        if (object.isPresent()) {
+            return object;
+        }
+        return coldEntry(key).map(entry -> new StorageObject(key, entry.getSize(), entry.getLastModified()));
+    }
+
+    @Override
+    public List<StorageObject> list(String directory, String startAfter, int limit) throws IOException {
+        return hot.list(directory, startAfter, limit);
+    }
+
+    @Override
+    public void walk(String directory, Visitor visitor) throws IOException {
+        hot.walk(directory, visitor);
+    }
+
+    @Override
+    public InputStream read(String key) throws IOException {
+        try {
+            return hot.read(key);
+        } catch (NoSuchFileException e) {
+            Optional<ColdSegmentStore.Entry> entry = coldEntry(key);
+            if (!entry.isPresent()) {
+                throw e;
+            }
+            return cold.open(entry.get());
+        }
+    }
+
+    @Override
+    public InputStream read(String key, long offset, long length) throws IOException {
+        try {
+            return hot.read(key, offset, length);
+        } catch (NoSuchFileException e) {
+            Optional<ColdSegmentStore.Entry> entry = coldEntry(key);
+            if (!entry.isPresent()) {
+                throw e;
+            }
+            return cold.open(entry.get(), offset, length);
+        }
+    }
+
+    /**
+     * Write an object to the hot backend. A PDF written there supersedes its cold copy, which is removed.
+     */
+    @Override
+    public OutputStream write(String key) throws IOException {
+        removeCold(key);
+        return hot.write(key);
+    }
+
+    /**
+     * Move an object within the hot backend. A cold PDF is copied to the hot backend under its new key.
+     */
+    @Override
+    public void move(String source, String target) throws IOException {
+        Optional<ColdSegmentStore.Entry> entry = hot.stat(source).isPresent() ? Optional.empty() : coldEntry(source);
+        if (entry.isPresent()) {
+            try (InputStream in = cold.open(entry.get()); OutputStream out = hot.write(target)) {
+                IOUtils.copyLarge(in, out);
+            }
+            cold.remove(entry.get().getSha256());
+            return;
+        }
+        hot.move(source, target);
+        removeCold(target);
+    }
+
+    @Override
+    public boolean delete(String key) throws IOException {
+        boolean deleted = hot.delete(key);
+        Matcher matcher = PDF_KEY.matcher(key);
+        return (matcher.matches() && cold.remove(matcher.group(1))) || deleted;
+    }
+
+    /**
+     * Get the local file of an object, unless it is a PDF held by the cold tier only.
+     */
+    @Override
+    public Optional<Path> localPath(String key) {
+        Optional<Path> path = hot.localPath(key);
+        if (path.isPresent() && !Files.exists(path.get()) && coldEntry(key).isPresent()) {
+            return Optional.empty();
+        }
+        return path;
+    }
+
+    @Override
+    public void close() throws IOException {
+        cold.close();
+    }
+
+    private Optional<ColdSegmentStore.Entry> coldEntry(String key) {
+        Matcher matcher = PDF_KEY.matcher(key);
+        return matcher.matches() ? cold.find(matcher.group(1)) : Optional.empty();
+    }
+
+    private void removeCold(String key) {
+        Matcher matcher = PDF_KEY.matcher(key);
+        if (matcher.matches() && cold.remove(matcher.group(1))) {
+            log.debug("PDF {} is hot again, removed from the cold tier", key);
+        }
+    }
+}
@@ -0,0 +1,4 @@
+/**
+ * Storage backends holding the PDF content.
+ */
+package com.umsa.savepdf.service.storage;
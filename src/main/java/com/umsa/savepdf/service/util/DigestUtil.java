@@ -0,0 +1,71 @@
+package com.umsa.savepdf.service.util;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Utility class for computing content digests.
+ */
+public final class DigestUtil {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private DigestUtil() {
+    }
+
+    /**
+     * Create a SHA-256 message digest.
+     *
+     * @return a new SHA-256 digest.
+     */
+    public static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Encode bytes as lowercase hexadecimal.
+     *
+     * @param bytes the bytes to encode.
+     * @return the hexadecimal string.
+     */
+    public static String toHex(byte[] bytes) {
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i * 2] = HEX[(bytes[i] >> 4) & 0xF];
+            chars[i * 2 + 1] = HEX[bytes[i] & 0xF];
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Decode lowercase hexadecimal.
+     *
+     * @param hex the hexadecimal string, of an even length.
+     * @return the bytes.
+     * @throws IllegalArgumentException if the string is not lowercase hexadecimal.
+     */
+    public static byte[] fromHex(String hex) {
+        if (hex.length() % 2 != 0) {
+            throw new IllegalArgumentException("Odd length hexadecimal: " + hex);
+        }
+        byte[] bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) ((digit(hex.charAt(i * 2)) << 4) | digit(hex.charAt(i * 2 + 1)));
+        }
+        return bytes;
+    }
+
+    private static int digit(char c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        }
+        if (c >= 'a' && c <= 'f') {
+            return c - 'a' + 10;
+        }
+        throw new IllegalArgumentException("Not a lowercase hexadecimal digit: " + c);
+    }
+}
@@ -0,0 +1,81 @@
+package com.umsa.savepdf.service.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+
+/**
+ * Utility class for releasing memory mappings and direct buffers before the garbage collector does.
+ * <p>
+ * The JDK only unmaps a {@link MappedByteBuffer}, or frees a direct buffer, once it is collected, which can keep large
+ * files mapped or off-heap memory allocated for a long time. Java 9+ exposes {@code Unsafe.invokeCleaner} for this,
+ * Java 8 the cleaner of the buffer itself. When neither is accessible, the memory is left to the garbage collector.
+ */
+public final class MappedBufferUtil {
+
+    private static final Logger log = LoggerFactory.getLogger(MappedBufferUtil.class);
+
+    private static final Unmapper UNMAPPER = unmapper();
+
+    private MappedBufferUtil() {
+    }
+
+    /**
+     * Unmap a buffer. It, and every buffer derived from it, must not be used anymore.
+     *
+     * @param buffer the mapped buffer.
+     */
+    public static void unmap(MappedByteBuffer buffer) {
+        clean(buffer);
+    }
+
+    /**
+     * Free the memory of a direct buffer. It, and every buffer derived from it, must not be used anymore.
+     *
+     * @param buffer the buffer returned by {@link ByteBuffer#allocateDirect(int)}.
+     */
+    public static void free(ByteBuffer buffer) {
+        if (buffer.isDirect()) {
+            clean(buffer);
+        }
+    }
+
+    private static void clean(ByteBuffer buffer) {
+        try {
+            UNMAPPER.unmap(buffer);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            log.debug("Could not unmap buffer, leaving it to the garbage collector : {}", e.getMessage());
+        }
+    }
+
+    private static Unmapper unmapper() {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            Object unsafe = theUnsafe.get(null);
+            return buffer -> invokeCleaner.invoke(unsafe, buffer);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            log.trace("Unsafe.invokeCleaner not available : {}", e.getMessage());
+        }
+        return buffer -> {
+            Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+            cleanerMethod.setAccessible(true);
+            Object cleaner = cleanerMethod.invoke(buffer);
+            if (cleaner != null) {
+                cleaner.getClass().getMethod("clean").invoke(cleaner);
+            }
+        };
+    }
+
+    @FunctionalInterface
+    private interface Unmapper {
+
+        void unmap(ByteBuffer buffer) throws ReflectiveOperationException;
+    }
+}
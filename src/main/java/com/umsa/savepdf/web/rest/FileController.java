@@ -1,95 +1,397 @@
 package com.umsa.savepdf.web.rest;
 
-import com.umsa.savepdf.service.FileService;
+import com.umsa.savepdf.config.ApplicationProperties;
+import com.umsa.savepdf.domain.enumeration.FormType;
+import com.umsa.savepdf.service.DownloadUrlSigner;
+import com.umsa.savepdf.service.PdfStorageService;
+import com.umsa.savepdf.service.PdfValidationService;
+import com.umsa.savepdf.service.ResumableUpload;
+import com.umsa.savepdf.service.ResumableUploadService;
+import com.umsa.savepdf.service.StoredPdf;
+import com.umsa.savepdf.service.UploadPipelineService;
 import com.umsa.savepdf.service.dto.FileDTO;
+import com.umsa.savepdf.service.dto.SignedUrlDTO;
+import com.umsa.savepdf.service.dto.UploadJobDTO;
 import com.umsa.savepdf.web.rest.errors.BadRequestAlertException;
+import com.umsa.savepdf.web.rest.vm.UploadResultVM;
 
-import org.springframework.http.MediaType;
-
-import io.github.jhipster.web.util.HeaderUtil;
-import io.github.jhipster.web.util.ResponseUtil;
-import java.io.OutputStream;
-
+import org.apache.commons.fileupload.FileItemIterator;
+import org.apache.commons.fileupload.FileItemStream;
+import org.apache.commons.fileupload.FileUploadException;
+import org.apache.commons.fileupload.servlet.ServletFileUpload;
+import org.apache.commons.fileupload.util.Streams;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.core.io.InputStreamResource;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.Pageable;
+import org.springframework.beans.factory.annotation.Qualifier;
+import io.github.jhipster.web.util.ResponseUtil;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.security.concurrent.DelegatingSecurityContextExecutor;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.multipart.MultipartHttpServletRequest;
 
-import java.io.ByteArrayOutputStream;
-import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.security.GeneralSecurityException;
-import java.sql.Timestamp;
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
-import java.util.stream.StreamSupport;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 import javax.servlet.http.HttpServletRequest;
 
-import java.io.FileInputStream;
-
 
 /**
- * REST controller for managing Video.
+ * REST controller for uploading PDFs.
  */
 @RestController
 @RequestMapping("/api")
 public class FileController {
-    
+
+    private final Logger log = LoggerFactory.getLogger(FileController.class);
+
     private static final String ENTITY_NAME = "file";
-    
-    private final FileService fileService;
-
-    public FileController(FileService fileService) {
-        this.fileService = fileService;
-    }
-    @PostMapping("/files/upload")
-    public ResponseEntity<String> uploadPdf(@RequestParam("pdfFile") MultipartFile pdfFile,
-            @RequestParam("type") String type, HttpServletRequest request) throws IOException, URISyntaxException {
-        String home = System.getProperty("user.home");
-        String dirLocation = "/.umsa/forms/";
-        if(type.equals("STUDENT")){
-            dirLocation += "students/";
+
+    private static final String UPLOAD_OFFSET = "Upload-Offset";
+
+    private static final String UPLOAD_LENGTH = "Upload-Length";
+
+    private final UploadPipelineService uploadPipelineService;
+
+    private final PdfStorageService pdfStorageService;
+
+    private final PdfValidationService pdfValidationService;
+
+    private final ResumableUploadService resumableUploadService;
+
+    private final DownloadUrlSigner downloadUrlSigner;
+
+    private final ApplicationProperties applicationProperties;
+
+    private final Executor uploadExecutor;
+
+    public FileController(UploadPipelineService uploadPipelineService, PdfStorageService pdfStorageService,
+                          PdfValidationService pdfValidationService, ResumableUploadService resumableUploadService,
+                          DownloadUrlSigner downloadUrlSigner, ApplicationProperties applicationProperties, @Qualifier("uploadExecutor") ThreadPoolTaskExecutor uploadExecutor) {
+        this.uploadPipelineService = uploadPipelineService;
+        this.pdfStorageService = pdfStorageService;
+        this.pdfValidationService = pdfValidationService;
+        this.resumableUploadService = resumableUploadService;
+        this.downloadUrlSigner = downloadUrlSigner;
+        this.applicationProperties = applicationProperties;
+        this.uploadExecutor = new DelegatingSecurityContextExecutor(uploadExecutor);
+    }
+
+    /**
+     * {@code POST  /files/upload} : Upload a PDF. The PDF is staged and registered before the response, then
+     * post-processed by the {@link UploadPipelineService}, whose progress is followed with {@link #getUploadJob}.
+     * <p>
+     * The multipart request is resolved lazily, so an upload refused for lack of capacity is answered before its
+     * parts are read.
+     *
+     * @param request the multipart request, with the PDF as {@code pdfFile} and its form type as {@code type}.
+     * @return the {@link ResponseEntity} with status {@code 202 (Accepted)}, the location of the upload job and with body the job, or with status {@code 400 (Bad Request)} if it is not a complete PDF, or with status {@code 429 (Too Many Requests)} if the upload pipeline is full.
+     * @throws IOException if the PDF cannot be read or stored.
+     * @throws URISyntaxException if the Location URI syntax is incorrect.
+     */
+    @PostMapping(value = "/files/upload", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<UploadJobDTO> uploadPdf(MultipartHttpServletRequest request) throws IOException, URISyntaxException {
+        if (!uploadPipelineService.hasCapacity()) {
+            return tooManyRequests();
         }
-        if(type.equals("TEACHER")) {
-            dirLocation += "teacher/";
+        MultipartFile pdfFile = request.getFile("pdfFile");
+        String type = request.getParameter("type");
+        if (pdfFile == null || type == null) {
+            throw new BadRequestAlertException("Se requiere un archivo y su tipo", ENTITY_NAME, "missingPart");
         }
-        if(type.equals("PROFESSIONAL")) {
-            dirLocation += "professional/";
+        try (InputStream in = pdfFile.getInputStream()) {
+            return accepted(stage(in), pdfFile.getOriginalFilename(), formType(type));
         }
-        String dir1 = dirLocation;
-        String dir =  home + dirLocation;
-        String typeImage = pdfFile.getOriginalFilename().substring(
-                pdfFile.getOriginalFilename().lastIndexOf(".") + 1, pdfFile.getOriginalFilename().length());
-        SimpleDateFormat sdf = new SimpleDateFormat("yyyyMMdd_HHmmss");
-        Timestamp timestamp = new Timestamp(System.currentTimeMillis());
-        String imgName = "";
-        if (typeImage.equalsIgnoreCase("pdf")) {
-            imgName = sdf.format(new Date()) + timestamp.getTime() + ".pdf";
-        } else {
-            throw new BadRequestAlertException("El archivo tiene un formato incorrecto", "fileContorller", "invalidFormat");
+    }
+
+    /**
+     * {@code POST  /files/upload/stream} : Upload a PDF sent as the raw request body.
+     * <p>
+     * Unlike {@link #uploadPdf}, the body is not buffered by the multipart resolver: it is written to the storage as
+     * it arrives.
+     *
+     * @param type the form type of the PDF.
+     * @param filename the original file name.
+     * @param request the request whose body is the PDF.
+     * @return the {@link ResponseEntity} with status {@code 202 (Accepted)}, the location of the upload job and with body the job, or with status {@code 400 (Bad Request)} if it is not a complete PDF, or with status {@code 429 (Too Many Requests)} if the upload pipeline is full.
+     * @throws IOException if the body cannot be read or stored.
+     * @throws URISyntaxException if the Location URI syntax is incorrect.
+     */
+    @PostMapping(value = "/files/upload/stream", consumes = { MediaType.APPLICATION_PDF_VALUE, MediaType.APPLICATION_OCTET_STREAM_VALUE })
+    public ResponseEntity<UploadJobDTO> uploadPdfStream(@RequestParam("type") FormType type,
+            @RequestParam(value = "filename", required = false) String filename, HttpServletRequest request) throws IOException, URISyntaxException {
+        log.debug("REST request to stream upload PDF {} of type {}", filename, type);
+        if (!uploadPipelineService.hasCapacity()) {
+            return tooManyRequests();
         }
-        File dirLoc = new File(dir);
-        if (!dirLoc.exists()) {
-            dirLoc.mkdirs();
+        return accepted(stage(request.getInputStream()), filename, type);
+    }
+
+    /**
+     * {@code GET  /files/upload/jobs/:id} : Get the progress of an upload accepted by {@link #uploadPdf} or
+     * {@link #uploadPdfStream}.
+     *
+     * @param id the id of the upload job.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the job, or with status {@code 404 (Not Found)}.
+     */
+    @GetMapping("/files/upload/jobs/{id}")
+    public ResponseEntity<UploadJobDTO> getUploadJob(@PathVariable String id) {
+        log.debug("REST request to get upload job {}", id);
+        Optional<UploadJobDTO> job = uploadPipelineService.getJob(id);
+        return ResponseUtil.wrapOrNotFound(job, noStore());
+    }
+
+    /**
+     * {@code POST  /files/upload/batch} : Upload many PDFs in one multipart request.
+     * <p>
+     * The parts are not spooled to disk by the multipart resolver: each {@code pdfFile} part is staged from the
+     * request as it arrives, then all of them are registered on the upload executor, in parallel. The {@code type}
+     * fields give the form type of each PDF, in the same order, or a single type for all of them. A PDF failing does
+     * not affect the others: its result carries the error instead.
+     *
+     * @param request the multipart request.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the result of each PDF, in the order of the parts, or with status {@code 429 (Too Many Requests)} if the upload pipeline is full.
+     * @throws IOException if the request cannot be read.
+     */
+    @PostMapping(value = "/files/upload/batch", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<List<UploadResultVM>> uploadPdfBatch(HttpServletRequest request) throws IOException {
+        log.debug("REST request to upload a batch of PDFs");
+        if (!uploadPipelineService.hasCapacity()) {
+            return tooManyRequests();
         }
-        File file = new File(dirLoc.getAbsolutePath() + "/" + imgName);
-        pdfFile.transferTo(file);
-        String server = "http://localhost:8080" + "/pdf/";
+        int batchMaxFiles = applicationProperties.getUpload().getBatchMaxFiles();
+        List<UploadResultVM> results = new ArrayList<>();
+        List<StoredPdf> storedPdfs = new ArrayList<>();
+        List<FormType> types = new ArrayList<>();
+        try {
+            FileItemIterator parts = new ServletFileUpload().getItemIterator(request);
+            while (parts.hasNext()) {
+                FileItemStream part = parts.next();
+                if (part.isFormField() && "type".equals(part.getFieldName())) {
+                    try (InputStream in = part.openStream()) {
+                        types.add(formType(Streams.asString(in, StandardCharsets.UTF_8.name())));
+                    }
+                } else if ("pdfFile".equals(part.getFieldName())) {
+                    if (results.size() == batchMaxFiles) {
+                        throw new BadRequestAlertException("Demasiados archivos en un lote", ENTITY_NAME, "tooManyFiles");
+                    }
+                    UploadResultVM result = new UploadResultVM();
+                    result.setIndex(results.size());
+                    result.setFilename(part.getName());
+                    results.add(result);
+                    storedPdfs.add(stageBatchItem(part, result));
+                }
+            }
+            if (types.size() != 1 && types.size() != results.size()) {
+                throw new BadRequestAlertException("Se requiere un tipo por archivo", ENTITY_NAME, "typeMismatch");
+            }
+        } catch (FileUploadException e) {
+            storedPdfs.stream().filter(Objects::nonNull).forEach(pdfStorageService::discard);
+            throw new BadRequestAlertException("Solicitud multipart inválida", ENTITY_NAME, "invalidMultipart");
+        } catch (IOException | RuntimeException e) {
+            storedPdfs.stream().filter(Objects::nonNull).forEach(pdfStorageService::discard);
+            throw e;
+        }
+        List<CompletableFuture<Void>> registrations = new ArrayList<>(results.size());
+        for (int i = 0; i < results.size(); i++) {
+            StoredPdf storedPdf = storedPdfs.get(i);
+            if (storedPdf != null) {
+                UploadResultVM result = results.get(i);
+                FormType type = types.get(types.size() == 1 ? 0 : i);
+                registrations.add(CompletableFuture.runAsync(() -> registerBatchItem(storedPdf, type, result), uploadExecutor));
+            }
+        }
+        registrations.forEach(CompletableFuture::join);
+        return ResponseEntity.ok(results);
+    }
+
+    /**
+     * Stage a PDF of a batch, read until the end of its part.
+     *
+     * @return the staged PDF, or {@code null} if the result carries the error.
+     */
+    private StoredPdf stageBatchItem(FileItemStream part, UploadResultVM result) throws IOException {
+        try (InputStream in = part.openStream()) {
+            return stage(in);
+        } catch (BadRequestAlertException e) {
+            result.setStatus(HttpStatus.BAD_REQUEST.value());
+            result.setMessage(e.getTitle());
+            return null;
+        }
+    }
+
+    private void registerBatchItem(StoredPdf storedPdf, FormType type, UploadResultVM result) {
+        try {
+            FileDTO file = uploadPipelineService.register(storedPdf, result.getFilename(), type);
+            result.setStatus(HttpStatus.CREATED.value());
+            result.setId(file.getId());
+            result.setUrl(downloadUrlSigner.sign(file.getUrl()).map(SignedUrlDTO::getUrl).orElse(file.getUrl()));
+            result.setSha256(storedPdf.getSha256());
+        } catch (RuntimeException e) {
+            log.warn("Could not upload PDF {} of a batch : {}", result.getFilename(), e.getMessage());
+            result.setStatus(HttpStatus.INTERNAL_SERVER_ERROR.value());
+            result.setMessage("No se pudo guardar el archivo");
+        }
+    }
+
+    private static FormType formType(String value) {
+        try {
+            return FormType.valueOf(value.trim());
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestAlertException("Tipo de formulario inválido", ENTITY_NAME, "invalidType");
+        }
+    }
+
+    /**
+     * {@code POST  /files/upload/resumable} : Start a resumable upload, whose chunks are sent with
+     * {@link #appendResumableUpload}. The protocol follows tus (https://tus.io): the offsets are exchanged in the
+     * {@code Upload-Offset} header.
+     *
+     * @param length the size of the whole PDF, in the {@code Upload-Length} header.
+     * @param type the form type of the PDF.
+     * @param filename the original file name.
+     * @return the {@link ResponseEntity} with status {@code 201 (Created)} and the location of the upload.
+     * @throws IOException if the upload cannot be created.
+     * @throws URISyntaxException if the Location URI syntax is incorrect.
+     */
+    @PostMapping("/files/upload/resumable")
+    public ResponseEntity<Void> createResumableUpload(@RequestHeader(UPLOAD_LENGTH) long length, @RequestParam("type") FormType type,
+            @RequestParam("filename") String filename) throws IOException, URISyntaxException {
+        log.debug("REST request to start a resumable upload of PDF {} of type {}", filename, type);
+        ResumableUpload upload = resumableUploadService.create(length, filename, type);
+        return ResponseEntity.created(new URI("/api/files/upload/resumable/" + upload.getId()))
+            .header(UPLOAD_OFFSET, "0")
+            .build();
+    }
+
+    /**
+     * {@code HEAD  /files/upload/resumable/:id} : Get the offset a resumable upload continues from.
+     *
+     * @param id the id of the upload.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the {@code Upload-Offset} and {@code Upload-Length} headers, or with status {@code 404 (Not Found)}.
+     * @throws IOException if the upload cannot be read.
+     */
+    @RequestMapping(value = "/files/upload/resumable/{id}", method = RequestMethod.HEAD)
+    public ResponseEntity<Void> getResumableUpload(@PathVariable String id) throws IOException {
+        ResumableUpload upload = resumableUploadService.get(id);
+        return ResponseEntity.ok()
+            .cacheControl(CacheControl.noStore())
+            .header(UPLOAD_OFFSET, Long.toString(upload.getOffset()))
+            .header(UPLOAD_LENGTH, Long.toString(upload.getLength()))
+            .build();
+    }
+
+    /**
+     * {@code PATCH  /files/upload/resumable/:id} : Append a chunk to a resumable upload. When the connection fails,
+     * the bytes received are kept and the client resumes from the offset returned by {@link #getResumableUpload}.
+     *
+     * @param id the id of the upload.
+     * @param offset the offset of the chunk, in the {@code Upload-Offset} header.
+     * @param request the request whose body is the chunk.
+     * @return the {@link ResponseEntity} with status {@code 204 (No Content)} and the new {@code Upload-Offset}, or with status {@code 409 (Conflict)} if the offset is not the one of the upload.
+     * @throws IOException if the chunk cannot be read or written.
+     */
+    @PatchMapping(value = "/files/upload/resumable/{id}", consumes = { "application/offset+octet-stream", MediaType.APPLICATION_OCTET_STREAM_VALUE })
+    public ResponseEntity<Void> appendResumableUpload(@PathVariable String id, @RequestHeader(UPLOAD_OFFSET) long offset,
+            HttpServletRequest request) throws IOException {
+        long received = resumableUploadService.append(id, offset, request.getInputStream());
+        return ResponseEntity.noContent()
+            .header(UPLOAD_OFFSET, Long.toString(received))
+            .build();
+    }
+
+    /**
+     * {@code POST  /files/upload/resumable/:id/complete} : Store a complete resumable upload, like {@link #uploadPdf}.
+     *
+     * @param id the id of the upload.
+     * @return the {@link ResponseEntity} with status {@code 201 (Created)}, the location of the new file and with body the download URL of the PDF, or with status {@code 409 (Conflict)} if bytes are missing.
+     * @throws IOException if the upload cannot be read or stored.
+     * @throws URISyntaxException if the Location URI syntax is incorrect.
+     */
+    @PostMapping("/files/upload/resumable/{id}/complete")
+    public ResponseEntity<String> completeResumableUpload(@PathVariable String id) throws IOException, URISyntaxException {
+        log.debug("REST request to complete resumable upload {}", id);
+        ResumableUpload upload = resumableUploadService.get(id);
+        StoredPdf storedPdf;
+        try (InputStream in = resumableUploadService.open(upload)) {
+            storedPdf = stage(in);
+        }
+        ResponseEntity<String> response = created(storedPdf, upload.getFilename(), upload.getType());
+        resumableUploadService.delete(id);
+        return response;
+    }
+
+    /**
+     * {@code DELETE  /files/upload/resumable/:id} : Abort a resumable upload.
+     *
+     * @param id the id of the upload.
+     * @return the {@link ResponseEntity} with status {@code 204 (NO_CONTENT)}.
+     * @throws IOException if the upload cannot be removed.
+     */
+    @DeleteMapping("/files/upload/resumable/{id}")
+    public ResponseEntity<Void> deleteResumableUpload(@PathVariable String id) throws IOException {
+        log.debug("REST request to abort resumable upload {}", id);
+        resumableUploadService.delete(resumableUploadService.get(id).getId());
+        return ResponseEntity.noContent().build();
+    }
+
+    /**
+     * Stage an uploaded PDF, rejecting it with {@code 400 (Bad Request)} if it is not a complete and valid PDF.
+     */
+    private StoredPdf stage(InputStream in) throws IOException {
+        StoredPdf storedPdf = pdfStorageService.write(in);
+        pdfValidationService.validate(storedPdf);
+        return storedPdf;
+    }
+
+    /**
+     * Register the uploaded PDF as a {@link com.umsa.savepdf.domain.File} and queue its post-processing, identical
+     * uploads share the same stored content and download URL.
+     */
+    private ResponseEntity<UploadJobDTO> accepted(StoredPdf storedPdf, String filename, FormType type) throws URISyntaxException {
+        Optional<UploadJobDTO> job = uploadPipelineService.submit(storedPdf, filename, type);
+        if (!job.isPresent()) {
+            return tooManyRequests();
+        }
+        return ResponseEntity.accepted()
+            .location(new URI("/api/files/upload/jobs/" + job.get().getId()))
+            .header("X-Content-Sha256", storedPdf.getSha256())
+            .body(job.get());
+    }
+
+    /**
+     * Register the uploaded PDF as a {@link com.umsa.savepdf.domain.File} before responding.
+     */
+    private ResponseEntity<String> created(StoredPdf storedPdf, String filename, FormType type) throws URISyntaxException {
+        FileDTO result = uploadPipelineService.register(storedPdf, filename, type);
+        return ResponseEntity.created(new URI("/api/files/" + result.getId()))
+            .header("X-Content-Sha256", storedPdf.getSha256())
+            .body(result.getUrl());
+    }
+
+    private <T> ResponseEntity<T> tooManyRequests() {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+            .header(HttpHeaders.RETRY_AFTER, Long.toString(applicationProperties.getUpload().getRetryAfter()))
+            .build();
+    }
 
-        String imageUrl = server + "file" + "/get-pdf/" + imgName + "?homeEntity=" + "user.home" + "&url="
-                + dir1;
-        return ResponseEntity.created(new URI("/api/file/" + "pdf-form")).body(imageUrl);
+    private static HttpHeaders noStore() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setCacheControl(CacheControl.noStore());
+        return headers;
     }
-}
\ No newline at end of file
+}
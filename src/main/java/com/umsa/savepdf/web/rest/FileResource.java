@@ -1,8 +1,10 @@
 package com.umsa.savepdf.web.rest;
 
+import com.umsa.savepdf.config.ApplicationProperties;
 import com.umsa.savepdf.service.FileService;
 import com.umsa.savepdf.web.rest.errors.BadRequestAlertException;
 import com.umsa.savepdf.service.dto.FileDTO;
+import com.umsa.savepdf.service.dto.SignedUrlDTO;
 
 import io.github.jhipster.web.util.HeaderUtil;
 import io.github.jhipster.web.util.PaginationUtil;
@@ -41,8 +43,11 @@ public class FileResource {
 
     private final FileService fileService;
 
-    public FileResource(FileService fileService) {
+    private final ApplicationProperties applicationProperties;
+
+    public FileResource(FileService fileService, ApplicationProperties applicationProperties) {
         this.fileService = fileService;
+        this.applicationProperties = applicationProperties;
     }
 
     /**
@@ -101,6 +106,23 @@ public class FileResource {
         return ResponseEntity.ok().headers(headers).body(page.getContent());
     }
 
+    /**
+     * {@code POST  /files/download-urls} : sign the download URLs of files, for instance of a page of a list view.
+     *
+     * @param ids the ids of the files.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the signed URLs of the files found in body,
+     * or with status {@code 400 (Bad Request)} if more than {@code application.download.signing.max-urls} are asked.
+     */
+    @PostMapping("/files/download-urls")
+    public ResponseEntity<List<SignedUrlDTO>> signDownloadUrls(@RequestBody List<Long> ids) {
+        log.debug("REST request to sign the download URLs of {} Files", ids.size());
+        int maxUrls = applicationProperties.getDownload().getSigning().getMaxUrls();
+        if (ids.size() > maxUrls) {
+            throw new BadRequestAlertException("At most " + maxUrls + " download URLs can be signed at once", ENTITY_NAME, "tooManyUrls");
+        }
+        return ResponseEntity.ok(fileService.signDownloadUrls(ids));
+    }
+
     /**
      * {@code GET  /files/:id} : get the "id" file.
      *
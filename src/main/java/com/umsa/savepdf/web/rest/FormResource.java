@@ -1,5 +1,10 @@
 package com.umsa.savepdf.web.rest;
 
+import com.umsa.savepdf.domain.enumeration.FormType;
+import com.umsa.savepdf.security.AuthoritiesConstants;
+import com.umsa.savepdf.service.FormExportService;
+import com.umsa.savepdf.service.FormMergeService;
+import com.umsa.savepdf.service.FormSearchService;
 import com.umsa.savepdf.service.FormService;
 import com.umsa.savepdf.web.rest.errors.BadRequestAlertException;
 import com.umsa.savepdf.service.dto.FormDTO;
@@ -12,15 +17,21 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.ContentDisposition;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.util.MultiValueMap;
 import org.springframework.web.util.UriComponentsBuilder;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.time.Instant;
 
 import java.util.List;
 import java.util.Optional;
@@ -41,8 +52,18 @@ public class FormResource {
 
     private final FormService formService;
 
-    public FormResource(FormService formService) {
+    private final FormSearchService formSearchService;
+
+    private final FormMergeService formMergeService;
+
+    private final FormExportService formExportService;
+
+    public FormResource(FormService formService, FormSearchService formSearchService, FormMergeService formMergeService,
+                        FormExportService formExportService) {
         this.formService = formService;
+        this.formSearchService = formSearchService;
+        this.formMergeService = formMergeService;
+        this.formExportService = formExportService;
     }
 
     /**
@@ -101,6 +122,90 @@ public class FormResource {
         return ResponseEntity.ok().headers(headers).body(page.getContent());
     }
 
+    /**
+     * {@code GET  /forms/_search} : search the forms by the text of their name and PDF.
+     *
+     * @param query the words to find, in the Lucene query syntax; every form matches when missing.
+     * @param type the type of the forms.
+     * @param typeId the type id of the forms.
+     * @param from the earliest created date.
+     * @param to the latest created date.
+     * @param pageable the pagination information.
+     * @param queryParams a {@link MultiValueMap} query parameters.
+     * @param uriBuilder a {@link UriComponentsBuilder} URI builder.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of forms in body, by relevance or by created date without query.
+     * @throws IOException if the search index cannot be read.
+     */
+    @GetMapping("/forms/_search")
+    public ResponseEntity<List<FormDTO>> searchForms(@RequestParam(value = "query", required = false) String query,
+            @RequestParam(value = "type", required = false) FormType type, @RequestParam(value = "typeId", required = false) Integer typeId,
+            @RequestParam(value = "from", required = false) Instant from, @RequestParam(value = "to", required = false) Instant to,
+            Pageable pageable, @RequestParam MultiValueMap<String, String> queryParams, UriComponentsBuilder uriBuilder) throws IOException {
+        log.debug("REST request to search for a page of Forms for query {}", query);
+        Page<FormDTO> page = formService.search(query, type, typeId, from, to, pageable);
+        HttpHeaders headers = PaginationUtil.generatePaginationHttpHeaders(uriBuilder.queryParams(queryParams), page);
+        return ResponseEntity.ok().headers(headers).body(page.getContent());
+    }
+
+    /**
+     * {@code POST  /forms/_search/rebuild} : Re-index the text of every form, in the background.
+     *
+     * @return the {@link ResponseEntity} with status {@code 202 (Accepted)}.
+     */
+    @PostMapping("/forms/_search/rebuild")
+    @PreAuthorize("hasRole(\"" + AuthoritiesConstants.ADMIN + "\")")
+    public ResponseEntity<Void> rebuildFormSearchIndex() {
+        log.debug("REST request to rebuild the Form search index");
+        formSearchService.rebuild();
+        return ResponseEntity.accepted().build();
+    }
+
+    /**
+     * {@code GET  /forms/_merge} : merge the PDFs of a set of forms into one PDF, streamed once every PDF is merged.
+     *
+     * @param ids the ids of the forms, in the order of their pages.
+     * @param type the type of the forms, when no id is given.
+     * @param typeId the type id of the forms, when no id is given; their pages are in created date order.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the merged PDF in body,
+     * or with status {@code 400 (Bad Request)} if the selection is missing or has too many forms,
+     * or with status {@code 404 (Not Found)} if none of the forms has a PDF,
+     * or with status {@code 503 (Service Unavailable)} if too many merges are already running.
+     */
+    @GetMapping("/forms/_merge")
+    @PreAuthorize("hasRole(\"" + AuthoritiesConstants.ADMIN + "\")")
+    public ResponseEntity<StreamingResponseBody> mergeForms(@RequestParam(value = "ids", required = false) List<Long> ids,
+            @RequestParam(value = "type", required = false) FormType type, @RequestParam(value = "typeId", required = false) Integer typeId) {
+        log.debug("REST request to merge the Forms {} or of type {} {}", ids, type, typeId);
+        List<String> pdfs = formMergeService.select(ids, type, typeId);
+        String filename = ids == null || ids.isEmpty() ? "forms-" + type.name().toLowerCase() + "-" + typeId + ".pdf" : "forms.pdf";
+        return ResponseEntity.ok()
+            .contentType(MediaType.APPLICATION_PDF)
+            .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.builder("attachment").filename(filename).build().toString())
+            .body(out -> formMergeService.merge(pdfs, out));
+    }
+
+    /**
+     * {@code GET  /forms/_export} : export the PDFs of the forms as a ZIP archive, with a {@code manifest.csv} of the
+     * forms and their files, streamed as it is written.
+     *
+     * @param type the type of the forms, every type when missing.
+     * @param from the earliest created date.
+     * @param to the latest created date.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the archive in body,
+     * or with status {@code 503 (Service Unavailable)} if too many exports are already running.
+     */
+    @GetMapping("/forms/_export")
+    @PreAuthorize("hasRole(\"" + AuthoritiesConstants.ADMIN + "\")")
+    public ResponseEntity<StreamingResponseBody> exportForms(@RequestParam(value = "type", required = false) FormType type,
+            @RequestParam(value = "from", required = false) Instant from, @RequestParam(value = "to", required = false) Instant to) {
+        log.debug("REST request to export the Forms of type {} from {} to {}", type, from, to);
+        String filename = "forms" + (type == null ? "" : "-" + type.name().toLowerCase()) + ".zip";
+        return ResponseEntity.ok()
+            .contentType(MediaType.valueOf("application/zip"))
+            .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.builder("attachment").filename(filename).build().toString())
+            .body(out -> formExportService.export(type, from, to, out));
+    }
+
     /**
      * {@code GET  /forms/:id} : get the "id" form.
      *
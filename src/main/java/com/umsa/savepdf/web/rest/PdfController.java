@@ -1,69 +1,28 @@
 package com.umsa.savepdf.web.rest;
 
-import io.github.jhipster.web.util.ResponseUtil;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.Pageable;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.HttpStatus;
-import org.springframework.http.ResponseEntity;
-import org.springframework.web.bind.annotation.*;
+import com.umsa.savepdf.service.ColdTierService;
+import com.umsa.savepdf.service.DownloadUrlSigner;
+import com.umsa.savepdf.service.PdfDownloadService;
+import com.umsa.savepdf.service.PdfStorageService;
+import com.umsa.savepdf.service.ThumbnailService;
+import com.umsa.savepdf.service.storage.StorageObject;
 
-import javax.servlet.http.HttpServletRequest;
-import javax.servlet.http.HttpServletResponse;
-import javax.validation.Valid;
-
-import java.io.IOException;
-import java.io.InputStream;
-import java.net.URI;
-import java.net.URISyntaxException;
-
-import java.util.List;
-import java.util.Optional;
-import java.util.stream.StreamSupport;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.Pageable;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
-import org.springframework.http.HttpStatus;
-import org.springframework.http.ResponseEntity;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
-import org.springframework.web.multipart.MultipartFile;
 
-import java.awt.image.BufferedImage;
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.IOException;
-import java.io.OutputStream;
-import java.net.URI;
-import java.net.URISyntaxException;
-import java.text.NumberFormat;
-import java.text.SimpleDateFormat;
-import java.time.format.DateTimeFormatter;
-import java.util.Date;
-import java.util.List;
-import java.util.Locale;
-import java.util.Optional;
-import java.util.Random;
-import java.util.stream.StreamSupport;
-
-import javax.imageio.ImageIO;
 import javax.servlet.ServletContext;
-import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import java.nio.file.Files;
-import java.sql.Timestamp;
-
-import org.apache.commons.io.IOUtils;
-
-import org.springframework.http.*;
+import java.io.IOException;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 
 /**
- * REST controller for managing Curso.
+ * REST controller for downloading stored PDFs.
  */
 @RestController
 @RequestMapping("/pdf")
@@ -73,26 +32,94 @@ public class PdfController {
 
     private static final String ENTITY_NAME = "image";
 
-    public PdfController () {
+    /**
+     * Content-addressed PDFs never change, so caches may keep them without revalidating, unless their URL is signed,
+     * see {@link DownloadUrlSigner#cacheControl(String)}.
+     */
+    public static final String IMMUTABLE_CACHE_CONTROL = CacheControl.maxAge(365, TimeUnit.DAYS).cachePublic().getHeaderValue() + ", immutable";
+
+    private final PdfDownloadService pdfDownloadService;
+
+    private final PdfStorageService pdfStorageService;
+
+    private final ThumbnailService thumbnailService;
+
+    private final DownloadUrlSigner downloadUrlSigner;
+
+    private final ColdTierService coldTierService;
+
+    public PdfController(PdfDownloadService pdfDownloadService, PdfStorageService pdfStorageService, ThumbnailService thumbnailService,
+                         DownloadUrlSigner downloadUrlSigner, ColdTierService coldTierService) {
+        this.pdfDownloadService = pdfDownloadService;
+        this.pdfStorageService = pdfStorageService;
+        this.thumbnailService = thumbnailService;
+        this.downloadUrlSigner = downloadUrlSigner;
+        this.coldTierService = coldTierService;
     }
 
+    /**
+     * {@code GET  /:entity/get-pdf/:filename} : get a stored PDF. The signature of the URL, if any, is checked before
+     * the storage is reached, see {@link DownloadUrlSigner}.
+     */
     @GetMapping("/{entity}/get-pdf/{filename:.+}")
     public void getImageFile(@PathVariable String entity, @PathVariable String filename, HttpServletResponse response, HttpServletRequest request,
-        String homeEntity, String url) throws IOException {
-        String home = System.getProperty(homeEntity);
-        String dirLocation = home + url;
-        System.out.println(dirLocation);
+        String homeEntity, String url, String expires, String signature) throws IOException {
+        log.debug("Request to get PDF {} from {}", filename, url);
+        if (!downloadUrlSigner.verify(filename, homeEntity, url, expires, signature)) {
+            response.setStatus(HttpServletResponse.SC_FORBIDDEN);
+            return;
+        }
+        Optional<StorageObject> pdf = pdfStorageService.find(homeEntity, url, filename);
+        if (!pdf.isPresent()) {
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
         ServletContext cntx = request.getServletContext();
         String mime = cntx.getMimeType(filename);
         if (mime == null) {
             response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
         }
         response.setContentType(mime);
-        String dir = dirLocation;
-        File file = new File(dir + "/" + filename);
-        response.setContentLength((int)file.length());
-        FileInputStream in = new FileInputStream(file);
-        System.out.println(mime);
-        IOUtils.copy(in, response.getOutputStream());
+        if (pdfStorageService.isContentAddressed(homeEntity, url)) {
+            response.setHeader(HttpHeaders.CACHE_CONTROL, downloadUrlSigner.cacheControl(expires).orElse(IMMUTABLE_CACHE_CONTROL));
+            coldTierService.accessed(filename.substring(0, filename.indexOf('.')));
+        }
+        pdfDownloadService.send(pdf.get(), request, response);
+    }
+
+    /**
+     * {@code GET  /thumbnails/:sha256.png} : get the PNG thumbnail of the first page of a stored PDF. The thumbnail
+     * is signed by the {@code expires} and {@code signature} of the download URL of the PDF or of its web rendition,
+     * whichever the file points to, so whoever may download the PDF may get its thumbnail, and nobody else while
+     * signatures are required.
+     *
+     * @param sha256 the digest of the PDF.
+     * @param width the wanted width in pixels, served with the closest rendered width.
+     * @param expires the {@code expires} parameter of the signed download URL of the PDF, if any.
+     * @param signature the {@code signature} parameter of the signed download URL of the PDF, if any.
+     * @param request the current request.
+     * @param response the response, with status {@code 403 (Forbidden)} if the signature is invalid, or with status
+     * {@code 404 (Not Found)} while the thumbnail is not rendered.
+     * @throws IOException if the thumbnail cannot be read.
+     */
+    @GetMapping("/thumbnails/{sha256:[0-9a-f]+}.png")
+    public void getThumbnail(@PathVariable String sha256, @RequestParam(defaultValue = "240") int width, String expires, String signature,
+        HttpServletRequest request, HttpServletResponse response) throws IOException {
+        log.debug("Request to get thumbnail of PDF {} at width {}", sha256, width);
+        if (!downloadUrlSigner.verify(sha256 + PdfStorageService.EXTENSION, PdfStorageService.HOME_ENTITY,
+            PdfStorageService.CONTENT_ADDRESSED_LOCATION, expires, signature)
+            && !downloadUrlSigner.verify(sha256 + PdfStorageService.WEB_EXTENSION, PdfStorageService.HOME_ENTITY,
+            PdfStorageService.CONTENT_ADDRESSED_LOCATION, expires, signature)) {
+            response.setStatus(HttpServletResponse.SC_FORBIDDEN);
+            return;
+        }
+        Optional<StorageObject> thumbnail = sha256.length() == 64 ? thumbnailService.find(sha256, width) : Optional.empty();
+        if (!thumbnail.isPresent()) {
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        response.setContentType(MediaType.IMAGE_PNG_VALUE);
+        response.setHeader(HttpHeaders.CACHE_CONTROL, downloadUrlSigner.cacheControl(expires).orElse(IMMUTABLE_CACHE_CONTROL));
+        pdfDownloadService.send(thumbnail.get(), request, response);
     }
 }
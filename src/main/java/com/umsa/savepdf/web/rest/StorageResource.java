@@ -0,0 +1,81 @@
+package com.umsa.savepdf.web.rest;
+
+import com.umsa.savepdf.security.AuthoritiesConstants;
+import com.umsa.savepdf.service.ContentAddressMigrationService;
+import com.umsa.savepdf.service.StorageReconciliationService;
+import com.umsa.savepdf.service.ThumbnailService;
+import com.umsa.savepdf.service.dto.StorageMigrationReportDTO;
+import com.umsa.savepdf.service.dto.StorageReconciliationReportDTO;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+
+/**
+ * REST controller for administering the PDF storage.
+ */
+@RestController
+@RequestMapping("/api")
+public class StorageResource {
+
+    private final Logger log = LoggerFactory.getLogger(StorageResource.class);
+
+    private final ContentAddressMigrationService contentAddressMigrationService;
+
+    private final ThumbnailService thumbnailService;
+
+    private final StorageReconciliationService storageReconciliationService;
+
+    public StorageResource(ContentAddressMigrationService contentAddressMigrationService, ThumbnailService thumbnailService,
+                           StorageReconciliationService storageReconciliationService) {
+        this.contentAddressMigrationService = contentAddressMigrationService;
+        this.thumbnailService = thumbnailService;
+        this.storageReconciliationService = storageReconciliationService;
+    }
+
+    /**
+     * {@code POST  /storage/content-addressed-migration} : Move the legacy PDFs to the content-addressed storage,
+     * collapsing duplicates.
+     *
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the migration report.
+     * @throws IOException if the legacy directories cannot be listed.
+     * @throws InterruptedException if interrupted while the migration runs.
+     */
+    @PostMapping("/storage/content-addressed-migration")
+    @PreAuthorize("hasRole(\"" + AuthoritiesConstants.ADMIN + "\")")
+    public ResponseEntity<StorageMigrationReportDTO> migrateToContentAddressed() throws IOException, InterruptedException {
+        log.debug("REST request to migrate the legacy PDFs to the content-addressed storage");
+        return ResponseEntity.ok(contentAddressMigrationService.migrate());
+    }
+
+    /**
+     * {@code POST  /storage/thumbnails/backfill} : Render the missing thumbnails of the stored PDFs, in the background.
+     *
+     * @return the {@link ResponseEntity} with status {@code 202 (Accepted)}.
+     */
+    @PostMapping("/storage/thumbnails/backfill")
+    @PreAuthorize("hasRole(\"" + AuthoritiesConstants.ADMIN + "\")")
+    public ResponseEntity<Void> backfillThumbnails() {
+        log.debug("REST request to backfill the PDF thumbnails");
+        thumbnailService.backfill();
+        return ResponseEntity.accepted().build();
+    }
+
+    /**
+     * {@code GET  /storage/orphans} : Report the stored PDFs and staged uploads no file needs anymore, and the PDFs
+     * missing from the storage, without touching them.
+     *
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the dry-run report.
+     * @throws IOException if the storage cannot be walked.
+     */
+    @GetMapping("/storage/orphans")
+    @PreAuthorize("hasRole(\"" + AuthoritiesConstants.ADMIN + "\")")
+    public ResponseEntity<StorageReconciliationReportDTO> getOrphans() throws IOException {
+        log.debug("REST request to report the orphans of the storage");
+        return ResponseEntity.ok(storageReconciliationService.reconcile(true));
+    }
+}
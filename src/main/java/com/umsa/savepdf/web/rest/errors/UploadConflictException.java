@@ -0,0 +1,13 @@
+package com.umsa.savepdf.web.rest.errors;
+
+import org.zalando.problem.AbstractThrowableProblem;
+import org.zalando.problem.Status;
+
+public class UploadConflictException extends AbstractThrowableProblem {
+
+    private static final long serialVersionUID = 1L;
+
+    public UploadConflictException(String detail) {
+        super(ErrorConstants.UPLOAD_CONFLICT_TYPE, "Upload conflict", Status.CONFLICT, detail);
+    }
+}
@@ -0,0 +1,88 @@
+package com.umsa.savepdf.web.rest.vm;
+
+/**
+ * View Model object for the outcome of one PDF of a batch upload.
+ */
+public class UploadResultVM {
+
+    private int index;
+
+    private String filename;
+
+    private int status;
+
+    private Long id;
+
+    private String url;
+
+    private String sha256;
+
+    private String message;
+
+    public int getIndex() {
+        return index;
+    }
+
+    public void setIndex(int index) {
+        this.index = index;
+    }
+
+    public String getFilename() {
+        return filename;
+    }
+
+    public void setFilename(String filename) {
+        this.filename = filename;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public void setStatus(int status) {
+        this.status = status;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public void setUrl(String url) {
+        this.url = url;
+    }
+
+    public String getSha256() {
+        return sha256;
+    }
+
+    public void setSha256(String sha256) {
+        this.sha256 = sha256;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public void setMessage(String message) {
+        this.message = message;
+    }
+
+    @Override
+    public String toString() {
+        return "UploadResultVM{" +
+            "index=" + index +
+            ", filename='" + filename + '\'' +
+            ", status=" + status +
+            ", id=" + id +
+            ", message='" + message + '\'' +
+            '}';
+    }
+}
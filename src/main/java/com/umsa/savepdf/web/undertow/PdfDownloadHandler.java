@@ -0,0 +1,135 @@
+package com.umsa.savepdf.web.undertow;
+
+import com.umsa.savepdf.service.ColdTierService;
+import com.umsa.savepdf.service.DownloadUrlSigner;
+import com.umsa.savepdf.service.PdfStorageService;
+import com.umsa.savepdf.service.storage.LocalFileSystemStorageBackend;
+import com.umsa.savepdf.service.storage.StorageObject;
+import com.umsa.savepdf.web.rest.PdfController;
+
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.server.handlers.resource.PathResourceManager;
+import io.undertow.server.handlers.resource.Resource;
+import io.undertow.server.handlers.resource.ResourceHandler;
+import io.undertow.server.handlers.resource.ResourceManager;
+import io.undertow.util.ETag;
+import io.undertow.util.Headers;
+import io.undertow.util.Methods;
+import io.undertow.util.StatusCodes;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Deque;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Undertow handler serving the stored PDFs of a {@link LocalFileSystemStorageBackend} ahead of the servlet container.
+ * <p>
+ * Downloads ({@code GET /pdf/:entity/get-pdf/:filename}) skip the security filters, the {@code DispatcherServlet} and
+ * {@link PdfController}: the signature of the URL is checked on the IO thread, then the PDF is looked up on an Undertow
+ * worker, as file lookups block, and sent with sendfile by a {@link ResourceHandler}, which answers the conditional and
+ * range requests itself with the same validators as {@link com.umsa.savepdf.service.PdfDownloadService}. Downloads of
+ * PDFs the storage does not hold, or holds in its cold tier only, and every other request, go on to the servlet
+ * container, so they get the answers of the controller.
+ */
+public class PdfDownloadHandler implements HttpHandler {
+
+    private final Logger log = LoggerFactory.getLogger(PdfDownloadHandler.class);
+
+    private static final Pattern DOWNLOAD_PATH = Pattern.compile("/pdf/[^/]+/get-pdf/([^/]+)");
+
+    private final PdfStorageService pdfStorageService;
+
+    private final DownloadUrlSigner downloadUrlSigner;
+
+    private final ColdTierService coldTierService;
+
+    private final ResourceManager resourceManager;
+
+    private final ResourceHandler resourceHandler;
+
+    private final HttpHandler next;
+
+    public PdfDownloadHandler(PdfStorageService pdfStorageService, LocalFileSystemStorageBackend storageBackend,
+                              DownloadUrlSigner downloadUrlSigner, ColdTierService coldTierService, HttpHandler next) {
+        this.pdfStorageService = pdfStorageService;
+        this.downloadUrlSigner = downloadUrlSigner;
+        this.coldTierService = coldTierService;
+        this.next = next;
+        this.resourceManager = PathResourceManager.builder()
+            .setBase(storageBackend.getRoot())
+            .setFollowLinks(false)
+            .setETagFunction(PdfDownloadHandler::etag)
+            .build();
+        this.resourceHandler = new ResourceHandler(this::getResource, next);
+    }
+
+    @Override
+    public void handleRequest(HttpServerExchange exchange) throws Exception {
+        String filename = filename(exchange);
+        if (filename == null || !(Methods.GET.equals(exchange.getRequestMethod()) || Methods.HEAD.equals(exchange.getRequestMethod()))) {
+            next.handleRequest(exchange);
+            return;
+        }
+        if (!downloadUrlSigner.verify(filename, param(exchange, "homeEntity"), param(exchange, "url"),
+            param(exchange, DownloadUrlSigner.EXPIRES_PARAM), param(exchange, DownloadUrlSigner.SIGNATURE_PARAM))) {
+            exchange.setStatusCode(StatusCodes.FORBIDDEN);
+            exchange.endExchange();
+            return;
+        }
+        resourceHandler.handleRequest(exchange);
+    }
+
+    /**
+     * Find the file of the requested PDF, on a worker thread.
+     *
+     * @return the file, or {@code null} to let the servlet container answer.
+     */
+    private Resource getResource(HttpServerExchange exchange, String path) throws IOException {
+        String homeEntity = param(exchange, "homeEntity");
+        String url = param(exchange, "url");
+        Optional<StorageObject> pdf = pdfStorageService.find(homeEntity, url, filename(exchange));
+        if (!pdf.isPresent()) {
+            return null;
+        }
+        Resource resource = resourceManager.getResource(pdf.get().getKey());
+        if (resource != null && pdfStorageService.isContentAddressed(homeEntity, url)) {
+            exchange.getResponseHeaders().put(Headers.CACHE_CONTROL, downloadUrlSigner.cacheControl(param(exchange, DownloadUrlSigner.EXPIRES_PARAM))
+                .orElse(PdfController.IMMUTABLE_CACHE_CONTROL));
+            String filename = filename(exchange);
+            coldTierService.accessed(filename.substring(0, filename.indexOf('.')));
+        }
+        log.debug("Serving PDF {} from {}", pdf.get().getKey(), resource == null ? "the servlet container" : "Undertow");
+        return resource;
+    }
+
+    private static String filename(HttpServerExchange exchange) {
+        Matcher matcher = DOWNLOAD_PATH.matcher(exchange.getRelativePath());
+        return matcher.matches() ? matcher.group(1) : null;
+    }
+
+    private static String param(HttpServerExchange exchange, String name) {
+        Deque<String> values = exchange.getQueryParameters().get(name);
+        return values == null ? null : values.peekFirst();
+    }
+
+    /**
+     * The entity tag {@link com.umsa.savepdf.service.PdfDownloadService} gives the same file, so caches revalidate
+     * whichever of the two paths served them.
+     */
+    private static ETag etag(Path path) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            return new ETag(false, Long.toHexString(attributes.size()) + "-" + Long.toHexString(attributes.lastModifiedTime().toMillis()));
+        } catch (IOException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.umsa.savepdf.web.undertow;
+
+import com.umsa.savepdf.security.jwt.JWTFilter;
+import com.umsa.savepdf.security.jwt.TokenProvider;
+import com.umsa.savepdf.service.RateLimitService;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.Headers;
+import io.undertow.util.Methods;
+import io.undertow.util.StatusCodes;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Undertow handler applying the limits of the {@link RateLimitService} to the uploads and downloads, ahead of the
+ * servlet container and of {@link PdfDownloadHandler}.
+ * <p>
+ * Requests beyond the limits of their principal are answered {@code 429 (Too Many Requests)} with a
+ * {@code Retry-After} header, before they reach a worker thread, and the others release their permit once their
+ * response is complete, whether it was sent by the servlet container, asynchronously, or by a native handler. The
+ * principal is the subject of the bearer token, which is verified once and remembered for a minute, else the address
+ * of the TCP peer: {@code X-Forwarded-For} and {@code Forwarded} are not trusted, so behind a reverse proxy the
+ * anonymous clients share the bucket of the proxy.
+ */
+public class RateLimitHandler implements HttpHandler {
+
+    private static final String UPLOAD_PATH = "/api/files/upload";
+
+    private static final String DOWNLOAD_PATH = "/pdf/";
+
+    private static final String BEARER = "Bearer ";
+
+    private final RateLimitService rateLimitService;
+
+    private final TokenProvider tokenProvider;
+
+    private final HttpHandler next;
+
+    private final Cache<String, String> logins = Caffeine.newBuilder()
+        .maximumSize(10_000)
+        .expireAfterWrite(1, TimeUnit.MINUTES)
+        .build();
+
+    public RateLimitHandler(RateLimitService rateLimitService, TokenProvider tokenProvider, HttpHandler next) {
+        this.rateLimitService = rateLimitService;
+        this.tokenProvider = tokenProvider;
+        this.next = next;
+    }
+
+    @Override
+    public void handleRequest(HttpServerExchange exchange) throws Exception {
+        RateLimitService.Endpoint endpoint = endpoint(exchange);
+        if (endpoint == null) {
+            next.handleRequest(exchange);
+            return;
+        }
+        if (exchange.isInIoThread() && rateLimitService.isBlocking()) {
+            exchange.dispatch(this);
+            return;
+        }
+        InetSocketAddress source = exchange.getSourceAddress();
+        String address = source == null ? "unknown" : source.getAddress().getHostAddress();
+        RateLimitService.Permit permit = rateLimitService.acquire(endpoint, login(exchange), address);
+        if (!permit.isGranted()) {
+            exchange.getResponseHeaders().put(Headers.RETRY_AFTER, Long.toString(permit.getRetryAfter()));
+            exchange.setStatusCode(StatusCodes.TOO_MANY_REQUESTS);
+            exchange.endExchange();
+            return;
+        }
+        exchange.addExchangeCompleteListener((completed, nextListener) -> {
+            permit.release();
+            nextListener.proceed();
+        });
+        next.handleRequest(exchange);
+    }
+
+    private static RateLimitService.Endpoint endpoint(HttpServerExchange exchange) {
+        String path = exchange.getRelativePath();
+        boolean read = Methods.GET.equals(exchange.getRequestMethod()) || Methods.HEAD.equals(exchange.getRequestMethod());
+        if (path.startsWith(DOWNLOAD_PATH)) {
+            return read ? RateLimitService.Endpoint.DOWNLOAD : null;
+        }
+        if (path.startsWith(UPLOAD_PATH) && !read && !Methods.OPTIONS.equals(exchange.getRequestMethod())) {
+            return RateLimitService.Endpoint.UPLOAD;
+        }
+        return null;
+    }
+
+    /**
+     * Get the subject of the bearer token of the request.
+     *
+     * @return the login, or {@code null} if the request bears no valid token.
+     */
+    private String login(HttpServerExchange exchange) {
+        String authorization = exchange.getRequestHeaders().getFirst(JWTFilter.AUTHORIZATION_HEADER);
+        if (authorization == null || !authorization.startsWith(BEARER)) {
+            return null;
+        }
+        String login = logins.get(authorization.substring(BEARER.length()),
+            jwt -> tokenProvider.validateToken(jwt) ? tokenProvider.getAuthentication(jwt).getName() : "");
+        return login.isEmpty() ? null : login;
+    }
+}
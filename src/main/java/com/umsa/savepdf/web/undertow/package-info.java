@@ -0,0 +1,4 @@
+/**
+ * Native Undertow handlers, answering some requests before the servlet container.
+ */
+package com.umsa.savepdf.web.undertow;
@@ -0,0 +1,143 @@
+package com.umsa.savepdf.benchmark;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.NullOutputStream;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Load test of the PDF downloads of a running instance, comparing the Spring MVC path ({@code PdfController}) with the
+ * native Undertow handler ({@code application.download.native-handler}).
+ * <p>
+ * Run it with the number of concurrent clients, the seconds each URL is measured and the download URLs:
+ * {@code PdfDownloadLoadTest 32 30 <url>...}, for example the same signed URL on an instance started with the native
+ * handler and on one started without it. Every URL is first requested for a fifth of the duration to warm up, then the
+ * requests per second, throughput and latency percentiles are printed. The clients keep their connections alive, and
+ * run on the same machine as the server unless given a remote URL, so compare runs made in the same conditions.
+ */
+public final class PdfDownloadLoadTest {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private PdfDownloadLoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 3) {
+            System.err.println("Usage: PdfDownloadLoadTest <clients> <seconds> <url>...");
+            System.exit(1);
+        }
+        int clients = Integer.parseInt(args[0]);
+        long seconds = Long.parseLong(args[1]);
+        ExecutorService executor = Executors.newFixedThreadPool(clients);
+        try {
+            for (String url : Arrays.copyOfRange(args, 2, args.length)) {
+                run(executor, clients, new URL(url), Math.max(1, seconds / 5));
+                Result result = run(executor, clients, new URL(url), seconds);
+                System.out.printf("%s%n  %8.0f req/s %8.1f MB/s  p50 %6.2f ms  p99 %6.2f ms  max %7.2f ms  %d errors%n", url,
+                    result.count() / (double) seconds, result.bytes / (1024.0 * 1024.0) / seconds,
+                    result.percentile(0.50), result.percentile(0.99), result.percentile(1.0), result.errors);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static Result run(ExecutorService executor, int clients, URL url, long seconds) throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        List<Future<Result>> futures = new ArrayList<>(clients);
+        for (int i = 0; i < clients; i++) {
+            futures.add(executor.submit(() -> {
+                Result result = new Result();
+                byte[] buffer = new byte[BUFFER_SIZE];
+                while (System.nanoTime() < deadline) {
+                    long start = System.nanoTime();
+                    try {
+                        result.bytes += download(url, buffer);
+                        result.add(System.nanoTime() - start);
+                    } catch (IOException e) {
+                        result.errors++;
+                    }
+                }
+                return result;
+            }));
+        }
+        Result total = new Result();
+        for (Future<Result> future : futures) {
+            total.merge(future.get());
+        }
+        return total;
+    }
+
+    /**
+     * Download the whole response, reading it to the end so the connection goes back to the keep-alive pool.
+     */
+    private static long download(URL url, byte[] buffer) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        int status = connection.getResponseCode();
+        if (status != HttpURLConnection.HTTP_OK) {
+            try (InputStream error = connection.getErrorStream()) {
+                if (error != null) {
+                    IOUtils.copyLarge(error, NullOutputStream.NULL_OUTPUT_STREAM, buffer);
+                }
+            }
+            throw new IOException("Status " + status);
+        }
+        try (InputStream in = connection.getInputStream()) {
+            return IOUtils.copyLarge(in, NullOutputStream.NULL_OUTPUT_STREAM, buffer);
+        }
+    }
+
+    /**
+     * Latencies, in nanoseconds, and volume of the downloads of a client.
+     */
+    private static class Result {
+
+        private long[] latencies = new long[1024];
+
+        private int count;
+
+        private long bytes;
+
+        private long errors;
+
+        void add(long latency) {
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = latency;
+        }
+
+        void merge(Result other) {
+            for (int i = 0; i < other.count; i++) {
+                add(other.latencies[i]);
+            }
+            bytes += other.bytes;
+            errors += other.errors;
+        }
+
+        int count() {
+            return count;
+        }
+
+        double percentile(double percentile) {
+            if (count == 0) {
+                return Double.NaN;
+            }
+            long[] sorted = Arrays.copyOf(latencies, count);
+            Arrays.sort(sorted);
+            int index = (int) Math.ceil(percentile * count) - 1;
+            return sorted[Math.max(0, index)] / 1e6;
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.umsa.savepdf.benchmark;
+
+import com.umsa.savepdf.service.MappedFileService;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.NullOutputStream;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+/**
+ * Compares the ways {@link com.umsa.savepdf.service.PdfDownloadService} can read a stored PDF: a stream copy through a
+ * heap buffer, a {@link FileChannel#transferTo} and slices of a shared memory mapping.
+ * <p>
+ * Each strategy sends the whole file, then random 64 KB ranges (as a PDF viewer fetching pages), to a sink. Run it
+ * with an optional file and size in MB: {@code PdfReadBenchmark [file] [size]}. Without a file, a random one is
+ * created in the temporary directory. Results depend heavily on the page cache, so run it a few times. The sink is not
+ * a socket, so {@code transferTo} falls back to a copy here: the benchmark compares reads, not sendfile.
+ */
+public final class PdfReadBenchmark {
+
+    private static final int ITERATIONS = 20;
+
+    private static final int RANGES = 2000;
+
+    private static final int RANGE_SIZE = 64 * 1024;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private PdfReadBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int sizeInMb = args.length > 1 ? Integer.parseInt(args[1]) : 256;
+        Path file = args.length > 0 ? Paths.get(args[0]) : createFile(sizeInMb);
+        long size = Files.size(file);
+        long lastModified = Files.getLastModifiedTime(file).toMillis();
+        MappedFileService mappedFileService = new MappedFileService(new SimpleMeterRegistry());
+        System.out.printf("File %s, %d MB%n", file, size / (1024 * 1024));
+
+        for (int round = 0; round < 2; round++) {
+            System.out.printf("Round %d%n", round + 1);
+            report("stream   whole", size * ITERATIONS, () -> {
+                for (int i = 0; i < ITERATIONS; i++) {
+                    try (InputStream in = Files.newInputStream(file)) {
+                        IOUtils.copyLarge(in, NullOutputStream.NULL_OUTPUT_STREAM, new byte[BUFFER_SIZE]);
+                    }
+                }
+            });
+            report("transfer whole", size * ITERATIONS, () -> {
+                WritableByteChannel sink = Channels.newChannel(NullOutputStream.NULL_OUTPUT_STREAM);
+                for (int i = 0; i < ITERATIONS; i++) {
+                    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                        transfer(channel, 0, size, sink);
+                    }
+                }
+            });
+            report("mmap     whole", size * ITERATIONS, () -> {
+                WritableByteChannel sink = Channels.newChannel(NullOutputStream.NULL_OUTPUT_STREAM);
+                for (int i = 0; i < ITERATIONS; i++) {
+                    try (MappedFileService.Mapping mapping = mappedFileService.acquire(file, size, lastModified)) {
+                        write(mapping.buffer(), 0, size, sink);
+                    }
+                }
+            });
+
+            long[] offsets = offsets(size);
+            report("stream   ranges", (long) RANGES * RANGE_SIZE, () -> {
+                OutputStream sink = NullOutputStream.NULL_OUTPUT_STREAM;
+                byte[] buffer = new byte[BUFFER_SIZE];
+                try (RandomAccessFile in = new RandomAccessFile(file.toFile(), "r")) {
+                    for (long offset : offsets) {
+                        in.seek(offset);
+                        int read = in.read(buffer, 0, RANGE_SIZE);
+                        sink.write(buffer, 0, read);
+                    }
+                }
+            });
+            report("transfer ranges", (long) RANGES * RANGE_SIZE, () -> {
+                WritableByteChannel sink = Channels.newChannel(NullOutputStream.NULL_OUTPUT_STREAM);
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                    for (long offset : offsets) {
+                        transfer(channel, offset, RANGE_SIZE, sink);
+                    }
+                }
+            });
+            report("mmap     ranges", (long) RANGES * RANGE_SIZE, () -> {
+                WritableByteChannel sink = Channels.newChannel(NullOutputStream.NULL_OUTPUT_STREAM);
+                try (MappedFileService.Mapping mapping = mappedFileService.acquire(file, size, lastModified)) {
+                    for (long offset : offsets) {
+                        write(mapping.buffer(), offset, RANGE_SIZE, sink);
+                    }
+                }
+            });
+        }
+        if (args.length == 0) {
+            Files.delete(file);
+        }
+    }
+
+    private static Path createFile(int sizeInMb) throws IOException {
+        Path file = Files.createTempFile("savepdf-benchmark", ".pdf");
+        byte[] chunk = new byte[1024 * 1024];
+        Random random = new Random(42);
+        try (OutputStream out = Files.newOutputStream(file)) {
+            for (int i = 0; i < sizeInMb; i++) {
+                random.nextBytes(chunk);
+                out.write(chunk);
+            }
+        }
+        return file;
+    }
+
+    private static long[] offsets(long size) {
+        Random random = new Random(7);
+        long[] offsets = new long[RANGES];
+        for (int i = 0; i < RANGES; i++) {
+            offsets[i] = (long) (random.nextDouble() * (size - RANGE_SIZE));
+        }
+        return offsets;
+    }
+
+    private static void transfer(FileChannel channel, long position, long count, WritableByteChannel sink) throws IOException {
+        long written = 0;
+        while (written < count) {
+            written += channel.transferTo(position + written, count - written, sink);
+        }
+    }
+
+    private static void write(ByteBuffer buffer, long position, long count, WritableByteChannel sink) throws IOException {
+        ByteBuffer slice = buffer.duplicate();
+        slice.position((int) position).limit((int) (position + count));
+        while (slice.hasRemaining()) {
+            sink.write(slice);
+        }
+    }
+
+    private static void report(String name, long bytes, Task task) throws Exception {
+        long start = System.nanoTime();
+        task.run();
+        long elapsed = System.nanoTime() - start;
+        System.out.printf("  %-16s %8.1f ms %10.1f MB/s%n", name, elapsed / 1e6, bytes / (1024.0 * 1024.0) / (elapsed / 1e9));
+    }
+
+    @FunctionalInterface
+    private interface Task {
+
+        void run() throws Exception;
+    }
+}
@@ -0,0 +1,94 @@
+package com.umsa.savepdf.benchmark;
+
+import com.umsa.savepdf.service.storage.FileSyncer;
+import com.umsa.savepdf.service.storage.GroupCommitFileSyncer;
+import com.umsa.savepdf.service.storage.LocalFileSystemStorageBackend;
+import com.umsa.savepdf.service.util.DigestUtil;
+
+import org.apache.commons.io.FileUtils;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Compares the upload throughput of the durability modes of {@link LocalFileSystemStorageBackend}: no sync, a sync
+ * per file on the uploading thread, and syncs shared by the uploads of a {@link GroupCommitFileSyncer} interval.
+ * <p>
+ * Each upload is written to a staging key then moved to its content-addressed key, as
+ * {@link com.umsa.savepdf.service.PdfStorageService} does, by concurrent threads. Run it with optional thread count,
+ * upload count, upload size in KB, group commit interval in ms and directory:
+ * {@code UploadDurabilityBenchmark [threads] [uploads] [size] [interval] [directory]}. Without a directory, one is
+ * created in the temporary directory, which must be on the disk to measure (not a tmpfs). Results depend on the disk
+ * cache of the drive: a drive acknowledging flushes from a volatile cache shows little difference between the modes.
+ */
+public final class UploadDurabilityBenchmark {
+
+    private UploadDurabilityBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 32;
+        int uploads = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+        int sizeInKb = args.length > 2 ? Integer.parseInt(args[2]) : 256;
+        long interval = args.length > 3 ? Long.parseLong(args[3]) : 0;
+        Path directory = args.length > 4 ? Paths.get(args[4]) : Files.createTempDirectory("savepdf-benchmark");
+        byte[] content = new byte[sizeInKb * 1024];
+        new Random(42).nextBytes(content);
+        System.out.printf("%d uploads of %d KB on %d threads in %s%n", uploads, sizeInKb, threads, directory);
+
+        for (int round = 0; round < 2; round++) {
+            System.out.printf("Round %d%n", round + 1);
+            report("none    ", uploads, content, threads, directory, FileSyncer.NONE);
+            report("per-file", uploads, content, threads, directory, FileSyncer.PER_FILE);
+            try (GroupCommitFileSyncer fileSyncer = new GroupCommitFileSyncer(interval, 4)) {
+                report("group   ", uploads, content, threads, directory, fileSyncer);
+            }
+        }
+        if (args.length <= 4) {
+            FileUtils.deleteDirectory(directory.toFile());
+        }
+    }
+
+    private static void report(String name, int uploads, byte[] content, int threads, Path directory, FileSyncer fileSyncer)
+        throws Exception {
+        Path root = directory.resolve(name.trim());
+        LocalFileSystemStorageBackend storageBackend = new LocalFileSystemStorageBackend(root, fileSyncer);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        long start = System.nanoTime();
+        try {
+            List<Future<?>> results = new ArrayList<>(uploads);
+            for (int i = 0; i < uploads; i++) {
+                String digest = DigestUtil.toHex(DigestUtil.sha256().digest(Integer.toString(i).getBytes(StandardCharsets.US_ASCII)));
+                results.add(executor.submit(() -> {
+                    String staging = "sha256/.upload-" + UUID.randomUUID();
+                    try (OutputStream out = storageBackend.write(staging)) {
+                        out.write(content);
+                    }
+                    storageBackend.move(staging, "sha256/" + digest.substring(0, 2) + "/" + digest.substring(2, 4) + "/"
+                        + digest + ".pdf");
+                    return null;
+                }));
+            }
+            for (Future<?> result : results) {
+                result.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        long elapsed = System.nanoTime() - start;
+        double seconds = elapsed / 1e9;
+        System.out.printf("  %s %8.1f ms %8.1f uploads/s %8.1f MB/s%n", name, elapsed / 1e6, uploads / seconds,
+            (double) uploads * content.length / (1024.0 * 1024.0) / seconds);
+        FileUtils.deleteDirectory(root.toFile());
+    }
+}
@@ -0,0 +1,188 @@
+package com.umsa.savepdf.service;
+
+import com.umsa.savepdf.config.ApplicationProperties;
+import com.umsa.savepdf.repository.FileRepository;
+import com.umsa.savepdf.service.storage.ColdSegmentStore;
+import com.umsa.savepdf.service.storage.LocalFileSystemStorageBackend;
+import com.umsa.savepdf.service.storage.StorageObject;
+import com.umsa.savepdf.service.storage.TieredStorageBackend;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test class for the {@link ColdTierService}, over a {@link TieredStorageBackend}.
+ */
+public class ColdTierServiceTest {
+
+    private static final String COLD_SHA256 = "ab12000000000000000000000000000000000000000000000000000000000000";
+
+    private static final String FLAT_SHA256 = "cd34000000000000000000000000000000000000000000000000000000000000";
+
+    private static final String ACCESSED_SHA256 = "ef56000000000000000000000000000000000000000000000000000000000000";
+
+    private static final Instant NOW = Instant.parse("2019-06-30T12:00:00Z");
+
+    private static final Instant LAST_MODIFIED = NOW.minusSeconds(90 * 24 * 60 * 60);
+
+    private Path root;
+
+    private Path coldDirectory;
+
+    private ApplicationProperties applicationProperties;
+
+    private TieredStorageBackend storageBackend;
+
+    private PdfStorageService pdfStorageService;
+
+    private FileRepository fileRepository;
+
+    private ColdTierService coldTierService;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        root = Files.createTempDirectory("savepdf-hot");
+        coldDirectory = Files.createTempDirectory("savepdf-cold");
+        applicationProperties = new ApplicationProperties();
+        applicationProperties.getStorage().getCold().setEnabled(true);
+        storageBackend = new TieredStorageBackend(new LocalFileSystemStorageBackend(root), new ColdSegmentStore(coldDirectory, 1024 * 1024, 16));
+        pdfStorageService = new PdfStorageService(applicationProperties, storageBackend);
+        fileRepository = mock(FileRepository.class);
+        coldTierService = new ColdTierService(pdfStorageService, fileRepository, applicationProperties,
+            mock(PlatformTransactionManager.class), Runnable::run, new SimpleMeterRegistry(), Clock.fixed(NOW, ZoneOffset.UTC));
+
+        store(pdfStorageService.key(COLD_SHA256));
+        store(pdfStorageService.thumbnailKey(COLD_SHA256, 120));
+        store(pdfStorageService.flatKey(FLAT_SHA256));
+        store(pdfStorageService.key(ACCESSED_SHA256));
+    }
+
+    @AfterEach
+    public void cleanup() throws Exception {
+        storageBackend.close();
+        FileUtils.deleteQuietly(root.toFile());
+        FileUtils.deleteQuietly(coldDirectory.toFile());
+    }
+
+    private static byte[] pdf(String key) {
+        StringBuilder pdf = new StringBuilder("%PDF-1.4\n");
+        for (int i = 0; i < 100; i++) {
+            pdf.append(key).append('\n');
+        }
+        return pdf.append("%%EOF\n").toString().getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private void store(String key) throws Exception {
+        try (OutputStream out = storageBackend.getHot().write(key)) {
+            out.write(pdf(key));
+        }
+        Files.setLastModifiedTime(root.resolve(key), FileTime.from(LAST_MODIFIED));
+    }
+
+    private byte[] read(String key) throws Exception {
+        try (InputStream in = storageBackend.read(key)) {
+            return IOUtils.toByteArray(in);
+        }
+    }
+
+    @Test
+    public void testColdPdfsAreServedFromTheSegments() throws Exception {
+        when(fileRepository.findSha256NotAccessedSince(eq(NOW.minusSeconds(30 * 24 * 60 * 60)), eq(""), any(Pageable.class)))
+            .thenReturn(Arrays.asList(COLD_SHA256, FLAT_SHA256));
+
+        assertThat(coldTierService.demote()).isEqualTo(2);
+
+        String key = pdfStorageService.key(COLD_SHA256);
+        assertThat(Files.exists(root.resolve(key))).isFalse();
+        assertThat(Files.exists(root.resolve(pdfStorageService.flatKey(FLAT_SHA256)))).isFalse();
+        assertThat(Files.exists(root.resolve(pdfStorageService.thumbnailKey(COLD_SHA256, 120)))).isTrue();
+        assertThat(Files.exists(root.resolve(pdfStorageService.key(ACCESSED_SHA256)))).isTrue();
+        assertThat(pdfStorageService.find(COLD_SHA256)).hasValueSatisfying(object -> {
+            assertThat(object.getKey()).isEqualTo(key);
+            assertThat(object.getSize()).isEqualTo(pdf(key).length);
+            assertThat(object.getLastModified()).isEqualTo(LAST_MODIFIED);
+        });
+        assertThat(read(key)).isEqualTo(pdf(key));
+        assertThat(read(pdfStorageService.key(FLAT_SHA256))).isEqualTo(pdf(pdfStorageService.flatKey(FLAT_SHA256)));
+        try (InputStream in = storageBackend.read(key, 9, 10)) {
+            assertThat(IOUtils.toByteArray(in)).isEqualTo(Arrays.copyOfRange(pdf(key), 9, 19));
+        }
+        assertThat(storageBackend.localPath(key)).isEmpty();
+    }
+
+    @Test
+    public void testDownloadsAreRecordedAndKeepPdfsHot() throws Exception {
+        coldTierService.accessed(ACCESSED_SHA256);
+
+        assertThat(coldTierService.demote(ACCESSED_SHA256)).isFalse();
+        coldTierService.flushAccesses();
+
+        verify(fileRepository).updateLastAccessedDateBySha256In(Collections.singletonList(ACCESSED_SHA256), NOW);
+        assertThat(coldTierService.demote(ACCESSED_SHA256)).isTrue();
+    }
+
+    @Test
+    public void testColdPdfsArePromotedOnRead() throws Exception {
+        applicationProperties.getStorage().getCold().setPromoteOnRead(true);
+        coldTierService.demote(COLD_SHA256);
+
+        coldTierService.accessed(COLD_SHA256);
+
+        String key = pdfStorageService.key(COLD_SHA256);
+        assertThat(Files.exists(root.resolve(key))).isTrue();
+        assertThat(read(key)).isEqualTo(pdf(key));
+        assertThat(storageBackend.getCold().find(COLD_SHA256)).isEmpty();
+    }
+
+    @Test
+    public void testReleaseRemovesTheColdCopy() throws Exception {
+        coldTierService.demote(COLD_SHA256);
+
+        assertThat(pdfStorageService.release(COLD_SHA256, () -> true)).isTrue();
+
+        assertThat(pdfStorageService.find(COLD_SHA256)).isEmpty();
+        assertThat(storageBackend.getCold().find(COLD_SHA256)).isEmpty();
+        assertThat(Files.exists(root.resolve(pdfStorageService.thumbnailKey(COLD_SHA256, 120)))).isFalse();
+    }
+
+    @Test
+    public void testColdTierIsIgnoredWhenDisabled() throws Exception {
+        PdfStorageService hotOnly = new PdfStorageService(applicationProperties, storageBackend.getHot());
+        ColdTierService disabled = new ColdTierService(hotOnly, fileRepository, applicationProperties,
+            mock(PlatformTransactionManager.class), Runnable::run, new SimpleMeterRegistry(), Clock.fixed(NOW, ZoneOffset.UTC));
+
+        disabled.accessed(ACCESSED_SHA256);
+        disabled.flushAccesses();
+        disabled.demoteScheduled();
+
+        verify(fileRepository, never()).updateLastAccessedDateBySha256In(anyCollection(), any(Instant.class));
+        assertThat(hotOnly.find(COLD_SHA256).map(StorageObject::getKey)).hasValue(pdfStorageService.key(COLD_SHA256));
+    }
+}
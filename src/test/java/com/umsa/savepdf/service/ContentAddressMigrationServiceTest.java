@@ -0,0 +1,144 @@
+package com.umsa.savepdf.service;
+
+import com.umsa.savepdf.config.ApplicationProperties;
+import com.umsa.savepdf.domain.File;
+import com.umsa.savepdf.domain.enumeration.FormType;
+import com.umsa.savepdf.repository.FileRepository;
+import com.umsa.savepdf.service.dto.StorageMigrationReportDTO;
+import com.umsa.savepdf.service.storage.LocalFileSystemStorageBackend;
+import com.umsa.savepdf.service.util.DigestUtil;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test class for the {@link ContentAddressMigrationService}.
+ */
+public class ContentAddressMigrationServiceTest {
+
+    private static final byte[] FORM = "%PDF-1.4\nform\n%%EOF\n".getBytes(StandardCharsets.US_ASCII);
+
+    private static final byte[] OTHER_FORM = "%PDF-1.4\nother form\n%%EOF\n".getBytes(StandardCharsets.US_ASCII);
+
+    private Path root;
+
+    private PdfStorageService pdfStorageService;
+
+    private FileRepository fileRepository;
+
+    private ContentAddressMigrationService migrationService;
+
+    private File student;
+
+    private File teacher;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        root = Files.createTempDirectory("savepdf-migration");
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        pdfStorageService = new PdfStorageService(applicationProperties, new LocalFileSystemStorageBackend(root));
+        fileRepository = mock(FileRepository.class);
+        migrationService = new ContentAddressMigrationService(pdfStorageService, fileRepository, applicationProperties,
+            mock(PlatformTransactionManager.class));
+
+        write("students/form.pdf", FORM);
+        write("teacher/copy.pdf", FORM);
+        write("professional/other.pdf", OTHER_FORM);
+        student = new File().name("form.pdf").url(legacyUrl("form.pdf", "students/"));
+        student.setId(1L);
+        teacher = new File().name("copy.pdf").url(legacyUrl("copy.pdf", "teacher/")).type(FormType.STUDENT);
+        teacher.setId(2L);
+        when(fileRepository.findLegacyIdAndUrl()).thenReturn(Arrays.asList(
+            new Object[] {student.getId(), student.getUrl()},
+            new Object[] {teacher.getId(), teacher.getUrl()}));
+        when(fileRepository.findAllById(anyIterable())).thenAnswer(invocation -> {
+            List<File> files = new ArrayList<>();
+            for (Long id : invocation.<Iterable<Long>>getArgument(0)) {
+                files.add(id.equals(student.getId()) ? student : teacher);
+            }
+            return files;
+        });
+    }
+
+    @AfterEach
+    public void cleanup() {
+        FileUtils.deleteQuietly(root.toFile());
+    }
+
+    private void write(String key, byte[] content) throws Exception {
+        Path path = root.resolve(key);
+        Files.createDirectories(path.getParent());
+        Files.write(path, content);
+    }
+
+    private static String legacyUrl(String name, String directory) {
+        return "http://localhost:8080/pdf/file/get-pdf/" + name + "?homeEntity=" + PdfStorageService.HOME_ENTITY
+            + "&url=" + PdfStorageService.FORMS_LOCATION + directory;
+    }
+
+    private static String sha256(byte[] content) {
+        return DigestUtil.toHex(DigestUtil.sha256().digest(content));
+    }
+
+    @Test
+    public void testIdenticalPdfsAreStoredOnce() throws Exception {
+        StorageMigrationReportDTO report = migrationService.migrate();
+
+        assertThat(report.getScanned()).isEqualTo(3);
+        assertThat(report.getStored()).isEqualTo(2);
+        assertThat(report.getDeduplicated()).isEqualTo(1);
+        assertThat(report.getReclaimedBytes()).isEqualTo(FORM.length);
+        assertThat(report.getFailed()).isEqualTo(0);
+        Path stored = root.resolve(pdfStorageService.key(sha256(FORM)));
+        assertThat(Files.readAllBytes(stored)).isEqualTo(FORM);
+        assertThat(Files.isSameFile(stored, root.resolve("students/form.pdf"))).isTrue();
+        assertThat(Files.isSameFile(stored, root.resolve("teacher/copy.pdf"))).isTrue();
+        assertThat(Files.readAllBytes(root.resolve(pdfStorageService.key(sha256(OTHER_FORM))))).isEqualTo(OTHER_FORM);
+    }
+
+    @Test
+    public void testLegacyUrlsAreRewritten() throws Exception {
+        StorageMigrationReportDTO report = migrationService.migrate();
+
+        assertThat(report.getUpdatedFiles()).isEqualTo(2);
+        String sha256 = sha256(FORM);
+        assertThat(student.getUrl()).isEqualTo(pdfStorageService.downloadUrl(sha256));
+        assertThat(student.getSha256()).isEqualTo(sha256);
+        assertThat(student.getSize()).isEqualTo(FORM.length);
+        assertThat(student.getType()).isEqualTo(FormType.STUDENT);
+        assertThat(teacher.getUrl()).isEqualTo(pdfStorageService.downloadUrl(sha256));
+        // A type already set is kept.
+        assertThat(teacher.getType()).isEqualTo(FormType.STUDENT);
+    }
+
+    @Test
+    public void testMigrationCanRunAgain() throws Exception {
+        migrationService.migrate();
+        when(fileRepository.findLegacyIdAndUrl()).thenReturn(Collections.emptyList());
+
+        StorageMigrationReportDTO report = migrationService.migrate();
+
+        assertThat(report.getScanned()).isEqualTo(3);
+        assertThat(report.getStored()).isEqualTo(0);
+        assertThat(report.getDeduplicated()).isEqualTo(0);
+        assertThat(report.getUpdatedFiles()).isEqualTo(0);
+        assertThat(report.getFailed()).isEqualTo(0);
+        assertThat(Files.readAllBytes(root.resolve("teacher/copy.pdf"))).isEqualTo(FORM);
+    }
+}
@@ -0,0 +1,89 @@
+package com.umsa.savepdf.service;
+
+import com.umsa.savepdf.config.ApplicationProperties;
+import com.umsa.savepdf.service.dto.SignedUrlDTO;
+
+import io.github.jhipster.config.JHipsterProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the {@link DownloadUrlSigner}.
+ */
+public class DownloadUrlSignerTest {
+
+    private static final String URL = "http://localhost:8080/pdf/file/get-pdf/kardex%20final.pdf?homeEntity=user.home&url=/.umsa/forms/student/";
+
+    private static final Instant NOW = Instant.parse("2019-06-30T12:00:10Z");
+
+    private ApplicationProperties applicationProperties;
+
+    private JHipsterProperties jHipsterProperties;
+
+    @BeforeEach
+    public void setup() {
+        applicationProperties = new ApplicationProperties();
+        jHipsterProperties = new JHipsterProperties();
+        jHipsterProperties.getSecurity().getAuthentication().getJwt().setBase64Secret("c2VjcmV0LWtleS1vZi1hdC1sZWFzdC0yNTYtYml0cy1mb3ItdGhlLXRlc3Rz");
+    }
+
+    private DownloadUrlSigner signer(Instant now) {
+        return new DownloadUrlSigner(applicationProperties, jHipsterProperties, new SimpleMeterRegistry(), Clock.fixed(now, ZoneOffset.UTC));
+    }
+
+    private static boolean verify(DownloadUrlSigner signer, String signedUrl) {
+        Map<String, String> params = UriComponentsBuilder.fromUriString(signedUrl).build().getQueryParams().toSingleValueMap();
+        return signer.verify("kardex final.pdf", params.get("homeEntity"), params.get("url"),
+            params.get(DownloadUrlSigner.EXPIRES_PARAM), params.get(DownloadUrlSigner.SIGNATURE_PARAM));
+    }
+
+    @Test
+    public void testSignedUrlIsValidUntilItExpires() {
+        SignedUrlDTO signed = signer(NOW).sign(URL).get();
+
+        assertThat(signed.getUrl()).startsWith(URL + "&expires=");
+        assertThat(signed.getExpires()).isEqualTo(Instant.parse("2019-06-30T13:01:00Z"));
+        assertThat(signer(NOW.plusSeconds(40)).sign(URL).get().getUrl()).isEqualTo(signed.getUrl());
+        assertThat(verify(signer(NOW), signed.getUrl())).isTrue();
+        assertThat(verify(signer(signed.getExpires()), signed.getUrl())).isTrue();
+        assertThat(verify(signer(signed.getExpires().plusSeconds(1)), signed.getUrl())).isFalse();
+    }
+
+    @Test
+    public void testTamperedUrlIsRejected() {
+        DownloadUrlSigner signer = signer(NOW);
+        String signed = signer.sign(URL).get().getUrl();
+
+        assertThat(verify(signer, signed.replace("student", "teacher"))).isFalse();
+        assertThat(verify(signer, signed.replaceFirst("expires=\\d+", "expires=9999999999"))).isFalse();
+        assertThat(verify(signer, signed.replaceFirst("signature=", "signature=AAAA"))).isFalse();
+        assertThat(signer.verify("kardex final.pdf", "user.home", "/.umsa/forms/student/", "soon", "c2lnbmF0dXJl")).isFalse();
+        assertThat(signer.verify("kardex final.pdf", "user.home", "/.umsa/forms/student/", "1561900000", null)).isFalse();
+    }
+
+    @Test
+    public void testUnsignedUrlIsRejectedWhenRequired() {
+        assertThat(signer(NOW).verify("kardex final.pdf", "user.home", "/.umsa/forms/student/", null, null)).isTrue();
+
+        applicationProperties.getDownload().getSigning().setRequired(true);
+        assertThat(signer(NOW).verify("kardex final.pdf", "user.home", "/.umsa/forms/student/", null, null)).isFalse();
+    }
+
+    @Test
+    public void testKeyIsConfigurable() {
+        String signed = signer(NOW).sign(URL).get().getUrl();
+
+        applicationProperties.getDownload().getSigning().setBase64Secret("YW5vdGhlci1zZWNyZXQta2V5LWZvci10aGUtZG93bmxvYWQtdXJscw==");
+        assertThat(verify(signer(NOW), signed)).isFalse();
+        assertThat(signer(NOW).sign("not a download url")).isEmpty();
+    }
+}
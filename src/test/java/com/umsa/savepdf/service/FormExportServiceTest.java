@@ -0,0 +1,147 @@
+package com.umsa.savepdf.service;
+
+import com.umsa.savepdf.config.ApplicationProperties;
+import com.umsa.savepdf.domain.File;
+import com.umsa.savepdf.domain.Form;
+import com.umsa.savepdf.domain.enumeration.FormType;
+import com.umsa.savepdf.repository.FormRepository;
+import com.umsa.savepdf.service.storage.LocalFileSystemStorageBackend;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test class for the {@link FormExportService}.
+ */
+public class FormExportServiceTest {
+
+    private static final String SHA256 = "ab12000000000000000000000000000000000000000000000000000000000000";
+
+    private static final String MISSING_SHA256 = "cd34000000000000000000000000000000000000000000000000000000000000";
+
+    private static final byte[] PDF = "%PDF-1.4\nkardex\n%%EOF\n".getBytes(StandardCharsets.US_ASCII);
+
+    private Path root;
+
+    private PdfStorageService pdfStorageService;
+
+    private FormRepository formRepository;
+
+    private FormExportService formExportService;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        root = Files.createTempDirectory("savepdf-export");
+        pdfStorageService = new PdfStorageService(new ApplicationProperties(), new LocalFileSystemStorageBackend(root));
+        formRepository = mock(FormRepository.class);
+        formExportService = new FormExportService(formRepository, pdfStorageService, new SimpleMeterRegistry());
+    }
+
+    @AfterEach
+    public void cleanup() {
+        FileUtils.deleteQuietly(root.toFile());
+    }
+
+    private static Form form(long id, String name, File file) {
+        Form form = new Form().name(name).type(FormType.STUDENT).typeId(7).createdDate(Instant.parse("2019-06-30T12:00:00Z")).file(file);
+        form.setId(id);
+        return form;
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testPdfsAreStoredWithTheirManifest() throws Exception {
+        try (OutputStream out = pdfStorageService.getStorageBackend().write(pdfStorageService.key(SHA256))) {
+            out.write(PDF);
+        }
+        File file = new File().name("kardex 2019.pdf").sha256(SHA256).size((long) PDF.length);
+        file.setId(10L);
+        when(formRepository.findAll(any(Specification.class), any(Pageable.class))).thenReturn(new PageImpl<>(Arrays.asList(
+            form(1L, "Kardex, 1st term", file), form(2L, "Lost \"kardex\"", new File().sha256(MISSING_SHA256)), form(3L, "Draft", null))));
+
+        ByteArrayOutputStream archive = new ByteArrayOutputStream();
+        formExportService.export(FormType.STUDENT, null, null, archive);
+
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(archive.toByteArray()))) {
+            ZipEntry entry = zip.getNextEntry();
+            assertThat(entry.getName()).isEqualTo("student/1-kardex_2019.pdf");
+            assertThat(entry.getMethod()).isEqualTo(ZipEntry.STORED);
+            assertThat(IOUtils.toByteArray(zip)).isEqualTo(PDF);
+
+            assertThat(zip.getNextEntry().getName()).isEqualTo(FormExportService.MANIFEST);
+            assertThat(new String(IOUtils.toByteArray(zip), StandardCharsets.UTF_8).split("\r\n")).containsExactly(
+                "form_id,form_name,type,type_id,created_by,created_date,file_id,file_name,sha256,size,entry",
+                "1,\"Kardex, 1st term\",STUDENT,7,,2019-06-30T12:00:00Z,10,kardex 2019.pdf," + SHA256 + "," + PDF.length + ",student/1-kardex_2019.pdf",
+                "2,\"Lost \"\"kardex\"\"\",STUDENT,7,,2019-06-30T12:00:00Z,,," + MISSING_SHA256 + ",,",
+                "3,Draft,STUDENT,7,,2019-06-30T12:00:00Z,,,,,");
+            assertThat(zip.getNextEntry()).isNull();
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testRecordedCrcIsUsedAndFormulasAreEscaped() throws Exception {
+        LocalFileSystemStorageBackend storageBackend = spy(new LocalFileSystemStorageBackend(root));
+        pdfStorageService = new PdfStorageService(new ApplicationProperties(), storageBackend);
+        formExportService = new FormExportService(formRepository, pdfStorageService, new SimpleMeterRegistry());
+        try (OutputStream out = storageBackend.write(pdfStorageService.key(SHA256))) {
+            out.write(PDF);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(PDF);
+        File file = new File().name("=HYPERLINK(\"http://evil\")").sha256(SHA256).size((long) PDF.length).crc32(crc.getValue());
+        file.setId(10L);
+        when(formRepository.findAll(any(Specification.class), any(Pageable.class))).thenReturn(new PageImpl<>(Arrays.asList(
+            form(1L, "@SUM(A1)", file), form(2L, "-1+1", null))));
+
+        ByteArrayOutputStream archive = new ByteArrayOutputStream();
+        formExportService.export(FormType.STUDENT, null, null, archive);
+
+        verify(storageBackend, times(1)).read(pdfStorageService.key(SHA256));
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(archive.toByteArray()))) {
+            ZipEntry entry = zip.getNextEntry();
+            assertThat(IOUtils.toByteArray(zip)).isEqualTo(PDF);
+            assertThat(entry.getCrc()).isEqualTo(crc.getValue());
+
+            assertThat(zip.getNextEntry().getName()).isEqualTo(FormExportService.MANIFEST);
+            assertThat(new String(IOUtils.toByteArray(zip), StandardCharsets.UTF_8).split("\r\n")).containsExactly(
+                "form_id,form_name,type,type_id,created_by,created_date,file_id,file_name,sha256,size,entry",
+                "1,'@SUM(A1),STUDENT,7,,2019-06-30T12:00:00Z,10,\"'=HYPERLINK(\"\"http://evil\"\")\"," + SHA256 + "," + PDF.length
+                    + ",student/1-_HYPERLINK__http___evil__.pdf",
+                "2,'-1+1,STUDENT,7,,2019-06-30T12:00:00Z,,,,,");
+        }
+    }
+
+    @Test
+    public void testEntryNamesAreSafe() {
+        assertThat(FormExportService.entryName(form(5L, "x", new File().name("../../etc/passwd")))).isEqualTo("student/5-.._.._etc_passwd.pdf");
+        assertThat(FormExportService.entryName(form(6L, "x", null))).isEqualTo("student/6-form.pdf");
+    }
+}
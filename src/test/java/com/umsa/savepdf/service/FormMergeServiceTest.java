@@ -0,0 +1,159 @@
+package com.umsa.savepdf.service;
+
+import com.umsa.savepdf.config.ApplicationProperties;
+import com.umsa.savepdf.domain.File;
+import com.umsa.savepdf.domain.Form;
+import com.umsa.savepdf.domain.enumeration.FormType;
+import com.umsa.savepdf.repository.FormRepository;
+import com.umsa.savepdf.service.storage.LocalFileSystemStorageBackend;
+import com.umsa.savepdf.service.storage.StorageObject;
+import com.umsa.savepdf.web.rest.errors.BadRequestAlertException;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.commons.io.FileUtils;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.NoSuchElementException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test class for the {@link FormMergeService}.
+ */
+public class FormMergeServiceTest {
+
+    private static final String FIRST_SHA256 = "ab12000000000000000000000000000000000000000000000000000000000000";
+
+    private static final String SECOND_SHA256 = "cd34000000000000000000000000000000000000000000000000000000000000";
+
+    private static final String CORRUPT_SHA256 = "ef56000000000000000000000000000000000000000000000000000000000000";
+
+    private static final String MISSING_SHA256 = "0078000000000000000000000000000000000000000000000000000000000000";
+
+    private Path root;
+
+    private ApplicationProperties applicationProperties;
+
+    private PdfStorageService pdfStorageService;
+
+    private FormRepository formRepository;
+
+    private FormMergeService formMergeService;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        root = Files.createTempDirectory("savepdf-merge");
+        applicationProperties = new ApplicationProperties();
+        pdfStorageService = new PdfStorageService(applicationProperties, new LocalFileSystemStorageBackend(root));
+        formRepository = mock(FormRepository.class);
+        formMergeService = new FormMergeService(formRepository, pdfStorageService, applicationProperties, new SimpleMeterRegistry());
+    }
+
+    @AfterEach
+    public void cleanup() {
+        FileUtils.deleteQuietly(root.toFile());
+    }
+
+    private void storePdf(String sha256, int pages) throws Exception {
+        try (PDDocument document = new PDDocument();
+             OutputStream out = pdfStorageService.getStorageBackend().write(pdfStorageService.key(sha256))) {
+            for (int i = 0; i < pages; i++) {
+                document.addPage(new PDPage());
+            }
+            document.save(out);
+        }
+    }
+
+    private static Form form(long id, String sha256) {
+        Form form = new Form().type(FormType.STUDENT).typeId(1).file(sha256 == null ? null : new File().sha256(sha256));
+        form.setId(id);
+        return form;
+    }
+
+    @Test
+    public void testPdfsAreMergedInOrder() throws Exception {
+        storePdf(FIRST_SHA256, 2);
+        storePdf(SECOND_SHA256, 3);
+        try (OutputStream out = pdfStorageService.getStorageBackend().write(pdfStorageService.key(CORRUPT_SHA256))) {
+            out.write("not a pdf".getBytes());
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        formMergeService.merge(Arrays.asList(SECOND_SHA256, CORRUPT_SHA256, MISSING_SHA256, FIRST_SHA256), out);
+
+        try (PDDocument merged = PDDocument.load(out.toByteArray())) {
+            assertThat(merged.getNumberOfPages()).isEqualTo(5);
+        }
+    }
+
+    @Test
+    public void testMergeIsAbortedWhenAPdfCannotBeAppended() throws Exception {
+        storePdf(FIRST_SHA256, 2);
+        storePdf(SECOND_SHA256, 3);
+        PdfStorageService closingStorageService = spy(pdfStorageService);
+        doAnswer(invocation -> {
+            PDDocument document = (PDDocument) invocation.callRealMethod();
+            if (invocation.<StorageObject>getArgument(0).getKey().contains(SECOND_SHA256)) {
+                document.close();
+            }
+            return document;
+        }).when(closingStorageService).load(any(StorageObject.class));
+        formMergeService = new FormMergeService(formRepository, closingStorageService, applicationProperties, new SimpleMeterRegistry());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertThatThrownBy(() -> formMergeService.merge(Arrays.asList(FIRST_SHA256, SECOND_SHA256), out))
+            .isInstanceOf(IOException.class)
+            .hasMessageContaining(SECOND_SHA256);
+        assertThat(out.size()).isZero();
+    }
+
+    @Test
+    public void testNothingToMerge() {
+        assertThatThrownBy(() -> formMergeService.merge(Collections.singletonList(FIRST_SHA256), new ByteArrayOutputStream()))
+            .isInstanceOf(IOException.class);
+    }
+
+    @Test
+    public void testFormsAreSelectedById() {
+        when(formRepository.findAllById(any())).thenReturn(Arrays.asList(form(1L, FIRST_SHA256), form(2L, null), form(3L, SECOND_SHA256)));
+
+        assertThat(formMergeService.select(Arrays.asList(3L, 2L, 4L, 1L), null, null)).containsExactly(SECOND_SHA256, FIRST_SHA256);
+    }
+
+    @Test
+    public void testFormsAreSelectedByTypeId() {
+        when(formRepository.countByTypeAndTypeId(FormType.STUDENT, 1)).thenReturn(2L);
+        when(formRepository.findAllByTypeAndTypeIdOrderByCreatedDateAscIdAsc(FormType.STUDENT, 1))
+            .thenReturn(Arrays.asList(form(1L, FIRST_SHA256), form(2L, SECOND_SHA256)));
+
+        assertThat(formMergeService.select(null, FormType.STUDENT, 1)).containsExactly(FIRST_SHA256, SECOND_SHA256);
+        assertThatThrownBy(() -> formMergeService.select(null, FormType.STUDENT, null)).isInstanceOf(BadRequestAlertException.class);
+        assertThatThrownBy(() -> formMergeService.select(null, FormType.TEACHER, 1)).isInstanceOf(NoSuchElementException.class);
+    }
+
+    @Test
+    public void testSelectionIsCapped() {
+        applicationProperties.getDownload().getMerge().setMaxForms(2);
+        when(formRepository.countByTypeAndTypeId(FormType.STUDENT, 1)).thenReturn(3L);
+
+        assertThatThrownBy(() -> formMergeService.select(Arrays.asList(1L, 2L, 3L), null, null)).isInstanceOf(BadRequestAlertException.class);
+        assertThatThrownBy(() -> formMergeService.select(null, FormType.STUDENT, 1)).isInstanceOf(BadRequestAlertException.class);
+    }
+}
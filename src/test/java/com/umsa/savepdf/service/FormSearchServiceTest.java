@@ -0,0 +1,158 @@
+package com.umsa.savepdf.service;
+
+import com.umsa.savepdf.config.ApplicationProperties;
+import com.umsa.savepdf.domain.File;
+import com.umsa.savepdf.domain.Form;
+import com.umsa.savepdf.domain.enumeration.FormType;
+import com.umsa.savepdf.repository.FormRepository;
+import com.umsa.savepdf.service.dto.FormDTO;
+import com.umsa.savepdf.service.mapper.FormMapper;
+import com.umsa.savepdf.service.storage.LocalFileSystemStorageBackend;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.commons.io.FileUtils;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test class for the {@link FormSearchService}.
+ */
+public class FormSearchServiceTest {
+
+    private static final String SHA256 = "ab12000000000000000000000000000000000000000000000000000000000000";
+
+    private Path root;
+
+    private PdfStorageService pdfStorageService;
+
+    private final Map<Long, Form> forms = new HashMap<>();
+
+    private FormSearchService formSearchService;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setup() throws Exception {
+        root = Files.createTempDirectory("savepdf-search");
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        applicationProperties.getSearch().setDirectory(root.resolve("index").toString());
+        pdfStorageService = new PdfStorageService(applicationProperties, new LocalFileSystemStorageBackend(root.resolve("forms")));
+        FormRepository formRepository = mock(FormRepository.class);
+        when(formRepository.findById(anyLong())).thenAnswer(invocation -> Optional.ofNullable(forms.get(invocation.<Long>getArgument(0))));
+        when(formRepository.existsById(anyLong())).thenAnswer(invocation -> forms.containsKey(invocation.<Long>getArgument(0)));
+        when(formRepository.findAllById(any())).thenAnswer(invocation -> ((Collection<Long>) invocation.getArgument(0)).stream()
+            .filter(forms::containsKey).map(forms::get).collect(Collectors.toList()));
+        FormMapper formMapper = mock(FormMapper.class);
+        when(formMapper.toDto(any(Form.class))).thenAnswer(invocation -> {
+            FormDTO formDTO = new FormDTO();
+            formDTO.setId(invocation.<Form>getArgument(0).getId());
+            return formDTO;
+        });
+        formSearchService = new FormSearchService(formRepository, formMapper, pdfStorageService, applicationProperties,
+            new ThreadPoolTaskExecutor(), new SimpleMeterRegistry());
+    }
+
+    @AfterEach
+    public void cleanup() throws Exception {
+        formSearchService.close();
+        FileUtils.deleteQuietly(root.toFile());
+    }
+
+    private void storePdf(String text) throws Exception {
+        try (PDDocument document = new PDDocument();
+             OutputStream out = pdfStorageService.getStorageBackend().write(pdfStorageService.key(SHA256))) {
+            PDPage page = new PDPage();
+            document.addPage(page);
+            try (PDPageContentStream content = new PDPageContentStream(document, page)) {
+                content.beginText();
+                content.setFont(PDType1Font.HELVETICA, 12);
+                content.newLineAtOffset(72, 700);
+                content.showText(text);
+                content.endText();
+            }
+            document.save(out);
+        }
+    }
+
+    private Form saveForm(long id, String name, FormType type, Instant createdDate, File file) {
+        Form form = new Form().name(name).type(type).typeId(1).createdDate(createdDate).file(file);
+        form.setId(id);
+        forms.put(id, form);
+        return form;
+    }
+
+    private static Long[] ids(Page<FormDTO> page) {
+        return page.getContent().stream().map(FormDTO::getId).toArray(Long[]::new);
+    }
+
+    @Test
+    public void testFormIsFoundByTheTextOfItsPdf() throws Exception {
+        storePdf("Kardex of Juan Mamani, CI 4851236");
+        saveForm(1L, "kardex.pdf", FormType.STUDENT, Instant.parse("2019-03-01T00:00:00Z"), new File().sha256(SHA256));
+        saveForm(2L, "Teaching contract", FormType.TEACHER, Instant.parse("2019-04-01T00:00:00Z"), null);
+        formSearchService.index(1L);
+        formSearchService.index(2L);
+
+        assertThat(ids(formSearchService.search("mamani", null, null, null, null, PageRequest.of(0, 20)))).containsExactly(1L);
+        assertThat(ids(formSearchService.search("4851236", null, null, null, null, PageRequest.of(0, 20)))).containsExactly(1L);
+        assertThat(ids(formSearchService.search("contract", null, null, null, null, PageRequest.of(0, 20)))).containsExactly(2L);
+        assertThat(ids(formSearchService.search("mamani", FormType.TEACHER, null, null, null, PageRequest.of(0, 20)))).isEmpty();
+        assertThat(ids(formSearchService.search("\"unbalanced", null, null, null, null, PageRequest.of(0, 20)))).isEmpty();
+    }
+
+    @Test
+    public void testFormsAreFilteredAndPaged() throws Exception {
+        for (long id = 1; id <= 5; id++) {
+            saveForm(id, "form-" + id, id % 2 == 0 ? FormType.TEACHER : FormType.STUDENT,
+                Instant.parse("2019-01-01T00:00:00Z").plusSeconds(id * 86400), null);
+            formSearchService.index(id);
+        }
+
+        Page<FormDTO> page = formSearchService.search(null, FormType.STUDENT, 1, null, null, PageRequest.of(0, 2));
+        assertThat(page.getTotalElements()).isEqualTo(3);
+        assertThat(ids(page)).containsExactly(5L, 3L);
+        assertThat(ids(formSearchService.search(null, FormType.STUDENT, 1, null, null, PageRequest.of(1, 2)))).containsExactly(1L);
+        assertThat(ids(formSearchService.search(null, null, null, Instant.parse("2019-01-03T00:00:00Z"),
+            Instant.parse("2019-01-04T00:00:00Z"), PageRequest.of(0, 20)))).containsExactly(3L, 2L);
+        assertThat(formSearchService.search(null, null, 2, null, null, PageRequest.of(0, 20)).getTotalElements()).isZero();
+    }
+
+    @Test
+    public void testDeletedFormIsRemoved() throws Exception {
+        saveForm(1L, "Kardex 2019", FormType.STUDENT, Instant.now(), null);
+        formSearchService.index(1L);
+        forms.remove(1L);
+
+        formSearchService.delete(1L);
+        assertThat(formSearchService.search("kardex", null, null, null, null, PageRequest.of(0, 20)).getTotalElements()).isZero();
+
+        saveForm(2L, "Kardex 2020", FormType.STUDENT, Instant.now(), null);
+        formSearchService.index(2L);
+        forms.remove(2L);
+        formSearchService.index(2L);
+        assertThat(formSearchService.search("kardex", null, null, null, null, PageRequest.of(0, 20)).getTotalElements()).isZero();
+    }
+}
@@ -0,0 +1,211 @@
+package com.umsa.savepdf.service;
+
+import com.umsa.savepdf.config.ApplicationProperties;
+import com.umsa.savepdf.repository.FileRepository;
+import com.umsa.savepdf.service.storage.LocalFileSystemStorageBackend;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.boot.actuate.audit.AuditEvent;
+import org.springframework.boot.actuate.audit.AuditEventRepository;
+import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.zip.CRC32;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test class for the {@link IntegrityScrubService}.
+ */
+public class IntegrityScrubServiceTest {
+
+    private static final String SOUND_SHA256 = "ab12000000000000000000000000000000000000000000000000000000000000";
+
+    private static final String CORRUPTED_SHA256 = "cd34000000000000000000000000000000000000000000000000000000000000";
+
+    private static final String LEGACY_SHA256 = "ef56000000000000000000000000000000000000000000000000000000000000";
+
+    private static final String MISSING_SHA256 = "0078000000000000000000000000000000000000000000000000000000000000";
+
+    private static final Instant NOW = Instant.parse("2019-06-30T12:00:00Z");
+
+    private static final Instant CREATED = NOW.minusSeconds(3600);
+
+    private Path root;
+
+    private ApplicationProperties applicationProperties;
+
+    private PdfStorageService pdfStorageService;
+
+    private FileRepository fileRepository;
+
+    private AuditEventRepository auditEventRepository;
+
+    private ThreadPoolTaskExecutor scrubExecutor;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        root = Files.createTempDirectory("savepdf-scrub");
+        applicationProperties = new ApplicationProperties();
+        applicationProperties.getStorage().getScrub().setRate(0);
+        pdfStorageService = new PdfStorageService(applicationProperties, new LocalFileSystemStorageBackend(root));
+        fileRepository = mock(FileRepository.class);
+        auditEventRepository = mock(AuditEventRepository.class);
+        scrubExecutor = new ThreadPoolTaskExecutor();
+        scrubExecutor.setCorePoolSize(2);
+        scrubExecutor.initialize();
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @AfterEach
+    public void cleanup() {
+        scrubExecutor.shutdown();
+        FileUtils.deleteQuietly(root.toFile());
+    }
+
+    private IntegrityScrubService scrubService(Instant now) {
+        return new IntegrityScrubService(pdfStorageService, fileRepository, auditEventRepository, applicationProperties, scrubExecutor,
+            mock(PlatformTransactionManager.class), meterRegistry, Clock.fixed(now, ZoneOffset.UTC));
+    }
+
+    private long store(String sha256, String content) throws Exception {
+        byte[] bytes = content.getBytes(StandardCharsets.US_ASCII);
+        try (OutputStream out = pdfStorageService.getStorageBackend().write(pdfStorageService.key(sha256))) {
+            out.write(bytes);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        return crc.getValue();
+    }
+
+    private double count(String result) {
+        return meterRegistry.get("savepdf.scrub.pdfs").tag("result", result).counter().count();
+    }
+
+    @Test
+    public void testPdfsAreCheckedAgainstTheirChecksum() throws Exception {
+        long sound = store(SOUND_SHA256, "%PDF-1.4\nsound\n%%EOF\n");
+        long corrupted = store(CORRUPTED_SHA256, "%PDF-1.4\ncorrupted\n%%EOF\n");
+        long legacy = store(LEGACY_SHA256, "%PDF-1.4\nlegacy\n%%EOF\n");
+        when(fileRepository.findDistinctSha256After(eq(""), any(Pageable.class))).thenReturn(Arrays.asList(
+            MISSING_SHA256, SOUND_SHA256, CORRUPTED_SHA256, LEGACY_SHA256));
+        when(fileRepository.findDistinctCrc32BySha256(SOUND_SHA256)).thenReturn(Collections.singletonList(sound));
+        when(fileRepository.findDistinctCrc32BySha256(CORRUPTED_SHA256)).thenReturn(Collections.singletonList(corrupted ^ 1));
+        when(fileRepository.findDistinctCrc32BySha256(LEGACY_SHA256)).thenReturn(Collections.emptyList());
+        when(fileRepository.findDistinctCrc32BySha256(MISSING_SHA256)).thenReturn(Collections.singletonList(42L));
+        when(fileRepository.countBySha256(MISSING_SHA256)).thenReturn(1L);
+        when(fileRepository.findFirstCreatedDateBySha256(MISSING_SHA256)).thenReturn(CREATED);
+
+        assertThat(scrubService(NOW).scrubBatch()).isEqualTo(4);
+
+        assertThat(count("verified")).isEqualTo(1);
+        assertThat(count("corrupted")).isEqualTo(1);
+        assertThat(count("recorded")).isEqualTo(1);
+        assertThat(count("missing")).isEqualTo(1);
+        verify(fileRepository).updateCrc32BySha256(LEGACY_SHA256, legacy);
+        verify(fileRepository, never()).updateCrc32BySha256(eq(CORRUPTED_SHA256), anyLong());
+        ArgumentCaptor<AuditEvent> events = ArgumentCaptor.forClass(AuditEvent.class);
+        verify(auditEventRepository, times(2)).add(events.capture());
+        assertThat(events.getAllValues()).extracting(AuditEvent::getType)
+            .containsExactlyInAnyOrder(IntegrityScrubService.CORRUPTED_EVENT, IntegrityScrubService.MISSING_EVENT);
+        AuditEvent event = events.getAllValues().stream()
+            .filter(e -> IntegrityScrubService.CORRUPTED_EVENT.equals(e.getType())).findFirst().get();
+        assertThat(event.getData()).containsEntry("sha256", CORRUPTED_SHA256).containsEntry("actual", Long.toHexString(corrupted));
+    }
+
+    @Test
+    public void testPdfUploadedAgainIsNotReported() throws Exception {
+        long uploaded = store(SOUND_SHA256, "%PDF-1.4\nagain\n%%EOF\n");
+        when(fileRepository.findDistinctCrc32BySha256(SOUND_SHA256))
+            .thenReturn(Collections.singletonList(uploaded ^ 1))
+            .thenReturn(Arrays.asList(uploaded ^ 1, uploaded));
+
+        assertThat(scrubService(NOW).scrub(SOUND_SHA256)).isEqualTo(IntegrityScrubService.Result.VERIFIED);
+
+        verify(fileRepository).updateCrc32BySha256(SOUND_SHA256, uploaded);
+        verify(auditEventRepository, never()).add(any());
+    }
+
+    @Test
+    public void testWebRenditionIsChecked() throws Exception {
+        long sound = store(SOUND_SHA256, "%PDF-1.4\nsound\n%%EOF\n");
+        byte[] rendition = "%PDF-1.4\nrendition\n%%EOF\n".getBytes(StandardCharsets.US_ASCII);
+        try (OutputStream out = pdfStorageService.getStorageBackend().write(pdfStorageService.webRenditionKey(SOUND_SHA256))) {
+            out.write(rendition);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(rendition);
+        when(fileRepository.findDistinctCrc32BySha256(SOUND_SHA256)).thenReturn(Collections.singletonList(sound));
+        when(fileRepository.findDistinctWebCrc32BySha256(SOUND_SHA256))
+            .thenReturn(Collections.emptyList())
+            .thenReturn(Collections.singletonList(crc.getValue() ^ 1));
+        when(fileRepository.updateMissingWebCrc32BySha256(SOUND_SHA256, crc.getValue())).thenReturn(2);
+        IntegrityScrubService scrubService = scrubService(NOW);
+
+        assertThat(scrubService.scrub(SOUND_SHA256)).isEqualTo(IntegrityScrubService.Result.RECORDED);
+        assertThat(scrubService.scrub(SOUND_SHA256)).isEqualTo(IntegrityScrubService.Result.CORRUPTED);
+
+        ArgumentCaptor<AuditEvent> event = ArgumentCaptor.forClass(AuditEvent.class);
+        verify(auditEventRepository).add(event.capture());
+        assertThat(event.getValue().getData()).containsEntry("key", pdfStorageService.webRenditionKey(SOUND_SHA256));
+    }
+
+    @Test
+    public void testNewFileIsNotReportedMissing() {
+        when(fileRepository.findDistinctCrc32BySha256(MISSING_SHA256)).thenReturn(Collections.singletonList(42L));
+        when(fileRepository.countBySha256(MISSING_SHA256)).thenReturn(1L);
+        when(fileRepository.findFirstCreatedDateBySha256(MISSING_SHA256)).thenReturn(NOW.minusSeconds(5));
+
+        assertThat(scrubService(NOW).scrub(MISSING_SHA256)).isEqualTo(IntegrityScrubService.Result.VERIFIED);
+
+        verify(auditEventRepository, never()).add(any());
+    }
+
+    @Test
+    public void testPassResumesFromItsCursor() throws Exception {
+        applicationProperties.getStorage().getScrub().setBatchSize(2);
+        long sound = store(SOUND_SHA256, "%PDF-1.4\nsound\n%%EOF\n");
+        when(fileRepository.findDistinctCrc32BySha256(SOUND_SHA256)).thenReturn(Collections.singletonList(sound));
+        when(fileRepository.findDistinctSha256After(eq(""), any(Pageable.class))).thenReturn(Arrays.asList(MISSING_SHA256, SOUND_SHA256));
+        when(fileRepository.findDistinctSha256After(eq(SOUND_SHA256), any(Pageable.class)))
+            .thenReturn(Collections.singletonList(CORRUPTED_SHA256));
+
+        assertThat(scrubService(NOW).scrubBatch()).isEqualTo(2);
+        assertThat(Files.exists(root.resolve(IntegrityScrubService.CURSOR_KEY))).isTrue();
+
+        // A restarted scrubber resumes after the last PDF scrubbed, then waits for the next pass.
+        assertThat(scrubService(NOW.plusSeconds(60)).scrubBatch()).isEqualTo(1);
+        verify(fileRepository).findDistinctSha256After(eq(SOUND_SHA256), any(Pageable.class));
+        assertThat(scrubService(NOW.plusSeconds(120)).scrubBatch()).isEqualTo(0);
+        verify(fileRepository, times(1)).findDistinctSha256After(eq(""), any(Pageable.class));
+
+        long passInterval = applicationProperties.getStorage().getScrub().getPassInterval();
+        assertThat(scrubService(NOW.plusSeconds(passInterval)).scrubBatch()).isEqualTo(2);
+        verify(fileRepository, times(2)).findDistinctSha256After(eq(""), any(Pageable.class));
+    }
+}
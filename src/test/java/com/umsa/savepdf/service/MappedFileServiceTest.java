@@ -0,0 +1,73 @@
+package com.umsa.savepdf.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the {@link MappedFileService}.
+ */
+public class MappedFileServiceTest {
+
+    private static final String CONTENT = "%PDF-1.4 0123456789 %%EOF";
+
+    private Path file;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private MappedFileService mappedFileService;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        file = Files.createTempFile("savepdf-mapped", ".pdf");
+        Files.write(file, CONTENT.getBytes(StandardCharsets.US_ASCII));
+        meterRegistry = new SimpleMeterRegistry();
+        mappedFileService = new MappedFileService(meterRegistry);
+    }
+
+    @AfterEach
+    public void cleanup() throws Exception {
+        Files.deleteIfExists(file);
+    }
+
+    private double mappedBytes() {
+        return meterRegistry.get("savepdf.download.mapped.bytes").gauge().value();
+    }
+
+    @Test
+    public void testMappingIsSharedAndReleasedByLastReader() throws Exception {
+        MappedFileService.Mapping first = mappedFileService.acquire(file, CONTENT.length(), 1000);
+        MappedFileService.Mapping second = mappedFileService.acquire(file, CONTENT.length(), 1000);
+
+        assertThat(mappedBytes()).isEqualTo(CONTENT.length());
+        ByteBuffer slice = second.buffer().duplicate();
+        slice.position(9).limit(19);
+        byte[] bytes = new byte[slice.remaining()];
+        slice.get(bytes);
+        assertThat(new String(bytes, StandardCharsets.US_ASCII)).isEqualTo("0123456789");
+
+        first.close();
+        assertThat(mappedBytes()).isEqualTo(CONTENT.length());
+        second.close();
+        second.close();
+        assertThat(mappedBytes()).isEqualTo(0);
+    }
+
+    @Test
+    public void testModifiedFileGetsNewMapping() throws Exception {
+        try (MappedFileService.Mapping first = mappedFileService.acquire(file, CONTENT.length(), 1000);
+             MappedFileService.Mapping second = mappedFileService.acquire(file, CONTENT.length(), 2000)) {
+            assertThat(mappedBytes()).isEqualTo(2 * CONTENT.length());
+            assertThat(second.buffer()).isNotSameAs(first.buffer());
+        }
+        assertThat(mappedBytes()).isEqualTo(0);
+    }
+}
@@ -0,0 +1,112 @@
+package com.umsa.savepdf.service;
+
+import com.umsa.savepdf.config.ApplicationProperties;
+import com.umsa.savepdf.service.storage.LocalFileSystemStorageBackend;
+import com.umsa.savepdf.service.storage.StorageObject;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the {@link PdfCacheService}.
+ */
+public class PdfCacheServiceTest {
+
+    private Path root;
+
+    private LocalFileSystemStorageBackend storageBackend;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private PdfCacheService pdfCacheService;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        root = Files.createTempDirectory("savepdf-cache");
+        storageBackend = new LocalFileSystemStorageBackend(root);
+        meterRegistry = new SimpleMeterRegistry();
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        applicationProperties.getDownload().getCache().setMaxBytes(1024);
+        applicationProperties.getDownload().getCache().setMaxObjectSize(100);
+        pdfCacheService = new PdfCacheService(applicationProperties, storageBackend, meterRegistry);
+    }
+
+    @AfterEach
+    public void cleanup() throws Exception {
+        FileUtils.deleteDirectory(root.toFile());
+    }
+
+    private StorageObject write(String key, String content, long lastModified) throws Exception {
+        Path path = root.resolve(key);
+        Files.write(path, content.getBytes(StandardCharsets.US_ASCII));
+        Files.setLastModifiedTime(path, FileTime.fromMillis(lastModified));
+        return storageBackend.stat(key).get();
+    }
+
+    private static String toString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.US_ASCII);
+    }
+
+    @Test
+    public void testContentIsCached() throws Exception {
+        StorageObject object = write("a.pdf", "%PDF-1.4 first %%EOF", 1000);
+
+        try (PdfCacheService.Lease first = pdfCacheService.get(object).get();
+             PdfCacheService.Lease second = pdfCacheService.get(object).get()) {
+            assertThat(first.buffer().isDirect()).isTrue();
+            assertThat(first.buffer().isReadOnly()).isTrue();
+            assertThat(toString(second.buffer())).isEqualTo("%PDF-1.4 first %%EOF");
+        }
+        assertThat(meterRegistry.get("cache.gets").tag("cache", "pdf").tag("result", "hit").functionCounter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("savepdf.download.cache.bytes").gauge().value()).isEqualTo(20);
+    }
+
+    @Test
+    public void testModifiedContentIsReloaded() throws Exception {
+        pdfCacheService.get(write("a.pdf", "%PDF-1.4 first %%EOF", 1000)).get().close();
+
+        StorageObject modified = write("a.pdf", "%PDF-1.4 second %%EOF", 2000);
+
+        try (PdfCacheService.Lease lease = pdfCacheService.get(modified).get()) {
+            assertThat(toString(lease.buffer())).isEqualTo("%PDF-1.4 second %%EOF");
+        }
+    }
+
+    @Test
+    public void testEvictedContentIsKeptUntilReleased() throws Exception {
+        StorageObject object = write("a.pdf", "%PDF-1.4 first %%EOF", 1000);
+
+        try (PdfCacheService.Lease lease = pdfCacheService.get(object).get()) {
+            pdfCacheService.evict("a.pdf");
+
+            assertThat(meterRegistry.get("savepdf.download.cache.bytes").gauge().value()).isEqualTo(0);
+            assertThat(toString(lease.buffer())).isEqualTo("%PDF-1.4 first %%EOF");
+        }
+        try (PdfCacheService.Lease lease = pdfCacheService.get(object).get()) {
+            assertThat(toString(lease.buffer())).isEqualTo("%PDF-1.4 first %%EOF");
+        }
+    }
+
+    @Test
+    public void testLargeContentIsNotCached() throws Exception {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 20; i++) {
+            content.append("0123456789");
+        }
+
+        assertThat(pdfCacheService.get(write("large.pdf", content.toString(), 1000))).isEmpty();
+    }
+}
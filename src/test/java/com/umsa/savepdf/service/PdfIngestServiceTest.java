@@ -0,0 +1,168 @@
+package com.umsa.savepdf.service;
+
+import com.umsa.savepdf.config.ApplicationProperties;
+import com.umsa.savepdf.repository.FileRepository;
+import com.umsa.savepdf.service.storage.LocalFileSystemStorageBackend;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.commons.io.FileUtils;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.graphics.image.JPEGFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Test class for the {@link PdfIngestService}.
+ */
+public class PdfIngestServiceTest {
+
+    private static final String SHA256 = "ef56000000000000000000000000000000000000000000000000000000000000";
+
+    private static final String LINEARIZED = "%PDF-1.4\n%âãÏÓ\n"
+        + "1 0 obj\n<< /Linearized 1 /L 1024 /H [ 500 100 ] /O 3 /E 900 /N 1 /T 1000 >>\nendobj\n%%EOF";
+
+    private static final String NOT_LINEARIZED = "%PDF-1.4\n1 0 obj\n<< /Type /Catalog /Pages 2 0 R >>\nendobj\n%%EOF";
+
+    private Path root;
+
+    private PdfStorageService pdfStorageService;
+
+    private FileRepository fileRepository;
+
+    private ApplicationProperties applicationProperties;
+
+    private PdfIngestService pdfIngestService;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        root = Files.createTempDirectory("savepdf-ingest");
+        applicationProperties = new ApplicationProperties();
+        applicationProperties.getIngest().getQpdf().setPath(root.resolve("missing-qpdf").toString());
+        pdfStorageService = new PdfStorageService(applicationProperties, new LocalFileSystemStorageBackend(root));
+        fileRepository = mock(FileRepository.class);
+        pdfIngestService = new PdfIngestService(pdfStorageService, new QpdfService(applicationProperties), fileRepository,
+            applicationProperties, mock(PlatformTransactionManager.class), new SimpleMeterRegistry());
+    }
+
+    @AfterEach
+    public void cleanup() {
+        FileUtils.deleteQuietly(root.toFile());
+    }
+
+    private void store(String content) throws Exception {
+        try (OutputStream out = pdfStorageService.getStorageBackend().write(pdfStorageService.key(SHA256))) {
+            out.write(content.getBytes(StandardCharsets.ISO_8859_1));
+        }
+    }
+
+    /**
+     * Store a 2 x 2 inches page showing a 600 x 600 pixels scan.
+     */
+    private byte[] storeScan() throws Exception {
+        BufferedImage scan = new BufferedImage(600, 600, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < scan.getHeight(); y++) {
+            for (int x = 0; x < scan.getWidth(); x++) {
+                scan.setRGB(x, y, (x * 255 / scan.getWidth()) << 16 | (y * 255 / scan.getHeight()) << 8);
+            }
+        }
+        Path path = root.resolve(pdfStorageService.key(SHA256));
+        Files.createDirectories(path.getParent());
+        try (PDDocument document = new PDDocument()) {
+            PDPage page = new PDPage(new PDRectangle(144, 144));
+            document.addPage(page);
+            try (PDPageContentStream content = new PDPageContentStream(document, page)) {
+                content.drawImage(JPEGFactory.createFromImage(document, scan, 0.9f), 0, 0, 144, 144);
+            }
+            document.save(path.toFile());
+        }
+        return Files.readAllBytes(path);
+    }
+
+    @Test
+    public void testLinearizationIsDetected() throws Exception {
+        assertThat(PdfIngestService.isLinearized(new ByteArrayInputStream(LINEARIZED.getBytes(StandardCharsets.ISO_8859_1)))).isTrue();
+        assertThat(PdfIngestService.isLinearized(new ByteArrayInputStream(NOT_LINEARIZED.getBytes(StandardCharsets.ISO_8859_1)))).isFalse();
+    }
+
+    @Test
+    public void testLinearizedPdfIsSkipped() throws Exception {
+        store(LINEARIZED);
+
+        assertThat(pdfIngestService.linearize(SHA256)).isFalse();
+
+        verify(fileRepository).updateLinearizedBySha256(SHA256, true);
+    }
+
+    @Test
+    public void testPdfIsKeptWithoutQpdf() throws Exception {
+        store(NOT_LINEARIZED);
+
+        assertThat(pdfIngestService.linearize(SHA256)).isFalse();
+
+        verify(fileRepository).updateLinearizedBySha256(SHA256, false);
+        assertThat(new String(Files.readAllBytes(root.resolve(pdfStorageService.key(SHA256))), StandardCharsets.ISO_8859_1))
+            .isEqualTo(NOT_LINEARIZED);
+    }
+
+    @Test
+    public void testReuploadIsMovedToTheExistingRendition() throws Exception {
+        store(NOT_LINEARIZED);
+        String staging = pdfStorageService.stagingKey();
+        try (OutputStream out = pdfStorageService.getStorageBackend().write(staging)) {
+            out.write(LINEARIZED.getBytes(StandardCharsets.ISO_8859_1));
+        }
+        assertThat(pdfStorageService.publishWebRendition(SHA256, staging)).isTrue();
+
+        assertThat(pdfIngestService.linearize(SHA256)).isFalse();
+
+        verify(fileRepository).updateUrlBySha256(SHA256, pdfStorageService.webRenditionUrl(SHA256));
+        verify(fileRepository).updateLinearizedBySha256(SHA256, true);
+    }
+
+    @Test
+    public void testOptimizedPdfIsStoredBesideTheUpload() throws Exception {
+        applicationProperties.getIngest().getOptimize().setMaxDpi(75);
+        byte[] uploaded = storeScan();
+
+        assertThat(pdfIngestService.optimize(SHA256)).isTrue();
+
+        assertThat(Files.readAllBytes(root.resolve(pdfStorageService.key(SHA256)))).isEqualTo(uploaded);
+        assertThat(pdfStorageService.findWebRendition(SHA256))
+            .hasValueSatisfying(rendition -> assertThat(rendition.getSize()).isLessThan(uploaded.length));
+        verify(fileRepository).updateUrlBySha256(SHA256, pdfStorageService.webRenditionUrl(SHA256));
+        verify(fileRepository).updateOptimizedSizeBySha256(eq(SHA256), anyLong());
+        verify(fileRepository).updateWebCrc32BySha256(eq(SHA256), anyLong());
+    }
+
+    @Test
+    public void testOptimizedReuploadIsMovedToTheExistingRendition() throws Exception {
+        applicationProperties.getIngest().getOptimize().setMaxDpi(75);
+        storeScan();
+        assertThat(pdfIngestService.optimize(SHA256)).isTrue();
+        long renditionSize = pdfStorageService.findWebRendition(SHA256).get().getSize();
+
+        assertThat(pdfIngestService.optimize(SHA256)).isFalse();
+
+        verify(fileRepository, times(2)).updateUrlBySha256(SHA256, pdfStorageService.webRenditionUrl(SHA256));
+        verify(fileRepository, times(2)).updateOptimizedSizeBySha256(SHA256, renditionSize);
+    }
+}
@@ -0,0 +1,101 @@
+package com.umsa.savepdf.service;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.PDResources;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.graphics.image.JPEGFactory;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the {@link PdfOptimizer}.
+ */
+public class PdfOptimizerTest {
+
+    private Path directory;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        directory = Files.createTempDirectory("savepdf-optimizer");
+    }
+
+    @AfterEach
+    public void cleanup() {
+        FileUtils.deleteQuietly(directory.toFile());
+    }
+
+    /**
+     * Create a 2 x 2 inches page showing twice the same 1200 x 1200 pixels scan, embedded twice.
+     */
+    private Path createScan() throws Exception {
+        BufferedImage scan = new BufferedImage(1200, 1200, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < scan.getHeight(); y++) {
+            for (int x = 0; x < scan.getWidth(); x++) {
+                scan.setRGB(x, y, (x * 255 / scan.getWidth()) << 16 | (y * 255 / scan.getHeight()) << 8);
+            }
+        }
+        Path path = directory.resolve("scan.pdf");
+        try (PDDocument document = new PDDocument()) {
+            PDPage page = new PDPage(new PDRectangle(144, 144));
+            document.addPage(page);
+            try (PDPageContentStream content = new PDPageContentStream(document, page)) {
+                content.drawImage(JPEGFactory.createFromImage(document, scan, 0.9f), 0, 0, 144, 144);
+                content.drawImage(JPEGFactory.createFromImage(document, scan, 0.9f), 0, 0, 72, 72);
+            }
+            document.save(path.toFile());
+        }
+        return path;
+    }
+
+    private static List<PDImageXObject> images(PDResources resources) throws Exception {
+        List<PDImageXObject> images = new ArrayList<>();
+        for (COSName name : resources.getXObjectNames()) {
+            images.add((PDImageXObject) resources.getXObject(name));
+        }
+        return images;
+    }
+
+    @Test
+    public void testScanIsDownsampledAndDeduplicated() throws Exception {
+        Path scan = createScan();
+        Path optimized = directory.resolve("optimized.pdf");
+
+        assertThat(PdfOptimizer.optimize(scan, optimized, 150, 0.8f)).isTrue();
+
+        assertThat(Files.size(optimized)).isLessThan(Files.size(scan));
+        try (PDDocument document = PDDocument.load(optimized.toFile())) {
+            assertThat(document.getNumberOfPages()).isEqualTo(1);
+            List<PDImageXObject> images = images(document.getPage(0).getResources());
+            assertThat(images).hasSize(2);
+            assertThat(images.get(0).getCOSObject()).isSameAs(images.get(1).getCOSObject());
+            assertThat(images.get(0).getWidth()).isEqualTo(300);
+            assertThat(images.get(0).getCOSObject().getCOSName(COSName.FILTER)).isEqualTo(COSName.DCT_DECODE);
+        }
+    }
+
+    @Test
+    public void testSmallImagesAreKept() throws Exception {
+        Path scan = createScan();
+        Path optimized = directory.resolve("optimized.pdf");
+
+        assertThat(PdfOptimizer.optimize(scan, optimized, 1200, 0.8f)).isTrue();
+
+        try (PDDocument document = PDDocument.load(optimized.toFile())) {
+            assertThat(images(document.getPage(0).getResources())).allSatisfy(image -> assertThat(image.getWidth()).isEqualTo(1200));
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.umsa.savepdf.service;
+
+import com.umsa.savepdf.web.rest.errors.BadRequestAlertException;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Test class for the {@link PdfStreamValidator}.
+ */
+public class PdfStreamValidatorTest {
+
+    private static final String PDF = "%PDF-1.4\n1 0 obj\n<< /Type /Catalog >>\nendobj\nxref\n0 1\n0000000000 65535 f \n"
+        + "trailer\n<< /Size 1 /Root 1 0 R >>\nstartxref\n45\n%%EOF\n";
+
+    private static void validate(byte[] content, int chunkSize) {
+        PdfStreamValidator validator = new PdfStreamValidator();
+        for (int offset = 0; offset < content.length; offset += chunkSize) {
+            validator.update(content, offset, Math.min(chunkSize, content.length - offset));
+        }
+        validator.finish();
+    }
+
+    private static String errorKey(Runnable validation) {
+        try {
+            validation.run();
+        } catch (BadRequestAlertException e) {
+            return e.getErrorKey();
+        }
+        return null;
+    }
+
+    @Test
+    public void testCompletePdfIsAccepted() {
+        byte[] content = PDF.getBytes(StandardCharsets.US_ASCII);
+
+        validate(content, 1);
+        validate(content, 7);
+        validate(content, content.length);
+    }
+
+    @Test
+    public void testHeaderAfterJunkIsAccepted() {
+        byte[] junk = new byte[500];
+        Arrays.fill(junk, (byte) ' ');
+        byte[] pdf = PDF.getBytes(StandardCharsets.US_ASCII);
+        byte[] content = Arrays.copyOf(junk, junk.length + pdf.length);
+        System.arraycopy(pdf, 0, content, junk.length, pdf.length);
+
+        validate(content, 64);
+    }
+
+    @Test
+    public void testRenamedImageIsRejectedAfterTheFirstKilobyte() {
+        byte[] jpeg = new byte[PdfStreamValidator.WINDOW + 1];
+        jpeg[0] = (byte) 0xFF;
+        jpeg[1] = (byte) 0xD8;
+        PdfStreamValidator validator = new PdfStreamValidator();
+        validator.update(jpeg, 0, PdfStreamValidator.WINDOW - 1);
+
+        assertThatThrownBy(() -> validator.update(jpeg, PdfStreamValidator.WINDOW - 1, 2))
+            .isInstanceOf(BadRequestAlertException.class);
+        assertThat(errorKey(() -> validate(new byte[] {(byte) 0xFF, (byte) 0xD8}, 2))).isEqualTo("invalidPdf");
+    }
+
+    @Test
+    public void testTruncatedPdfIsRejected() {
+        byte[] content = PDF.getBytes(StandardCharsets.US_ASCII);
+
+        assertThat(errorKey(() -> validate(Arrays.copyOf(content, content.length - 8), 16))).isEqualTo("truncatedPdf");
+        assertThat(errorKey(() -> validate(Arrays.copyOf(content, 40), 16))).isEqualTo("truncatedPdf");
+        assertThat(errorKey(() -> validate(PDF.replace("startxref\n45", "startxref\n4500").getBytes(StandardCharsets.US_ASCII), 16)))
+            .isEqualTo("truncatedPdf");
+    }
+}
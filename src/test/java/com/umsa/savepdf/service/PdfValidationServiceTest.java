@@ -0,0 +1,79 @@
+package com.umsa.savepdf.service;
+
+import com.umsa.savepdf.config.ApplicationProperties;
+import com.umsa.savepdf.service.storage.LocalFileSystemStorageBackend;
+import com.umsa.savepdf.web.rest.errors.BadRequestAlertException;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.commons.io.FileUtils;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Test class for the {@link PdfValidationService}.
+ */
+public class PdfValidationServiceTest {
+
+    private Path root;
+
+    private ThreadPoolTaskExecutor executor;
+
+    private PdfStorageService pdfStorageService;
+
+    private PdfValidationService pdfValidationService;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        root = Files.createTempDirectory("savepdf-validation");
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        applicationProperties.getUpload().getValidation().setDeep(true);
+        pdfStorageService = new PdfStorageService(applicationProperties, new LocalFileSystemStorageBackend(root));
+        executor = new ThreadPoolTaskExecutor();
+        executor.initialize();
+        pdfValidationService = new PdfValidationService(pdfStorageService, applicationProperties, executor, new SimpleMeterRegistry());
+    }
+
+    @AfterEach
+    public void cleanup() {
+        executor.shutdown();
+        FileUtils.deleteQuietly(root.toFile());
+    }
+
+    @Test
+    public void testPdfIsAccepted() throws Exception {
+        ByteArrayOutputStream pdf = new ByteArrayOutputStream();
+        try (PDDocument document = new PDDocument()) {
+            document.addPage(new PDPage());
+            document.save(pdf);
+        }
+        StoredPdf storedPdf = pdfStorageService.write(new ByteArrayInputStream(pdf.toByteArray()));
+
+        pdfValidationService.validate(storedPdf);
+
+        assertThat(Files.exists(root.resolve(storedPdf.getStaging()))).isTrue();
+    }
+
+    @Test
+    public void testPdfWithoutPageIsRejected() throws Exception {
+        StoredPdf storedPdf = pdfStorageService.write(new ByteArrayInputStream(
+            "%PDF-1.4\nnot a body\nstartxref\n9\n%%EOF\n".getBytes(StandardCharsets.US_ASCII)));
+
+        assertThatThrownBy(() -> pdfValidationService.validate(storedPdf))
+            .isInstanceOf(BadRequestAlertException.class)
+            .hasFieldOrPropertyWithValue("errorKey", "corruptPdf");
+        assertThat(Files.exists(root.resolve(storedPdf.getStaging()))).isFalse();
+    }
+}
@@ -0,0 +1,120 @@
+package com.umsa.savepdf.service;
+
+import com.umsa.savepdf.config.ApplicationProperties;
+import com.umsa.savepdf.service.ratelimit.BucketStore;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test class for the {@link RateLimitService}.
+ */
+public class RateLimitServiceTest {
+
+    private ApplicationProperties applicationProperties;
+
+    private BucketStore bucketStore;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private RateLimitService rateLimitService;
+
+    @BeforeEach
+    public void setup() {
+        applicationProperties = new ApplicationProperties();
+        applicationProperties.getRateLimit().setEnabled(true);
+        applicationProperties.getRateLimit().getUpload().setRate(4);
+        applicationProperties.getRateLimit().getUpload().setBurst(10);
+        applicationProperties.getRateLimit().getUpload().setMaxConcurrent(2);
+        bucketStore = mock(BucketStore.class);
+        meterRegistry = new SimpleMeterRegistry();
+        rateLimitService = new RateLimitService(applicationProperties, bucketStore, meterRegistry);
+    }
+
+    private double throttled(String endpoint, String reason, String principal) {
+        return meterRegistry.get("savepdf.ratelimit.throttled")
+            .tag("endpoint", endpoint).tag("reason", reason).tag("principal", principal).counter().count();
+    }
+
+    @Test
+    public void testBucketsAreKeyedByPrincipal() {
+        long interval = TimeUnit.MILLISECONDS.toNanos(250);
+
+        assertThat(rateLimitService.acquire(RateLimitService.Endpoint.UPLOAD, "user", "127.0.0.1").isGranted()).isTrue();
+        assertThat(rateLimitService.acquire(RateLimitService.Endpoint.UPLOAD, null, "127.0.0.1").isGranted()).isTrue();
+
+        verify(bucketStore).acquire("upload:user:user", interval, 9 * interval);
+        verify(bucketStore).acquire("upload:ip:127.0.0.1", interval, 9 * interval);
+    }
+
+    @Test
+    public void testRateRejectionsAreCountedPerPrincipal() {
+        when(bucketStore.acquire(eq("upload:user:user"), anyLong(), anyLong())).thenReturn(TimeUnit.MILLISECONDS.toNanos(1500));
+        when(bucketStore.acquire(eq("upload:ip:127.0.0.1"), anyLong(), anyLong())).thenReturn(1L);
+
+        RateLimitService.Permit permit = rateLimitService.acquire(RateLimitService.Endpoint.UPLOAD, "user", "127.0.0.1");
+        rateLimitService.acquire(RateLimitService.Endpoint.UPLOAD, null, "127.0.0.1");
+
+        assertThat(permit.isGranted()).isFalse();
+        assertThat(permit.getRetryAfter()).isEqualTo(2);
+        assertThat(throttled("upload", "rate", "user")).isEqualTo(1);
+        assertThat(throttled("upload", "rate", "anonymous")).isEqualTo(1);
+    }
+
+    @Test
+    public void testRejectionTagsAreBounded() {
+        applicationProperties.getRateLimit().setMaxTaggedPrincipals(1);
+        when(bucketStore.acquire(anyString(), anyLong(), anyLong())).thenReturn(TimeUnit.SECONDS.toNanos(1));
+
+        rateLimitService.acquire(RateLimitService.Endpoint.UPLOAD, "user", "127.0.0.1");
+        rateLimitService.acquire(RateLimitService.Endpoint.UPLOAD, "admin", "127.0.0.1");
+        rateLimitService.acquire(RateLimitService.Endpoint.UPLOAD, "system", "127.0.0.1");
+        rateLimitService.acquire(RateLimitService.Endpoint.UPLOAD, "user", "127.0.0.1");
+
+        assertThat(throttled("upload", "rate", "user")).isEqualTo(2);
+        assertThat(throttled("upload", "rate", "other")).isEqualTo(2);
+        assertThat(meterRegistry.find("savepdf.ratelimit.throttled").tag("principal", "admin").counter()).isNull();
+    }
+
+    @Test
+    public void testConcurrentRequestsAreCapped() {
+        RateLimitService.Permit first = rateLimitService.acquire(RateLimitService.Endpoint.UPLOAD, "user", "127.0.0.1");
+        RateLimitService.Permit second = rateLimitService.acquire(RateLimitService.Endpoint.UPLOAD, "user", "127.0.0.1");
+        RateLimitService.Permit third = rateLimitService.acquire(RateLimitService.Endpoint.UPLOAD, "user", "127.0.0.1");
+
+        assertThat(first.isGranted()).isTrue();
+        assertThat(second.isGranted()).isTrue();
+        assertThat(third.isGranted()).isFalse();
+        assertThat(third.getRetryAfter()).isEqualTo(1);
+        assertThat(throttled("upload", "concurrency", "user")).isEqualTo(1);
+        assertThat(rateLimitService.acquire(RateLimitService.Endpoint.UPLOAD, "admin", "127.0.0.1").isGranted()).isTrue();
+
+        first.release();
+        assertThat(rateLimitService.acquire(RateLimitService.Endpoint.UPLOAD, "user", "127.0.0.1").isGranted()).isTrue();
+    }
+
+    @Test
+    public void testEverythingIsLetInWhenDisabled() {
+        applicationProperties.getRateLimit().setEnabled(false);
+        when(bucketStore.acquire(anyString(), anyLong(), anyLong())).thenReturn(1L);
+
+        for (int i = 0; i < 5; i++) {
+            assertThat(rateLimitService.acquire(RateLimitService.Endpoint.UPLOAD, "user", "127.0.0.1").isGranted()).isTrue();
+        }
+        rateLimitService.evict();
+
+        verifyZeroInteractions(bucketStore);
+    }
+}
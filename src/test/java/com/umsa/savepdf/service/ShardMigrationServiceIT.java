@@ -0,0 +1,97 @@
+package com.umsa.savepdf.service;
+
+import com.umsa.savepdf.SavePdfApp;
+import com.umsa.savepdf.config.ApplicationProperties;
+import com.umsa.savepdf.service.storage.StorageBackend;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Integration tests for {@link ShardMigrationService}.
+ */
+@SpringBootTest(classes = SavePdfApp.class)
+public class ShardMigrationServiceIT {
+
+    private static final String SHA256 = "ab12000000000000000000000000000000000000000000000000000000000000";
+
+    private static final String NAME = SHA256 + ".pdf";
+
+    private static final String OTHER_KEY = PdfStorageService.CONTENT_ADDRESSED_PREFIX + "00-readme.txt";
+
+    @Autowired
+    private ShardMigrationService shardMigrationService;
+
+    @Autowired
+    private PdfStorageService pdfStorageService;
+
+    @Autowired
+    private StorageBackend storageBackend;
+
+    @Autowired
+    private ApplicationProperties applicationProperties;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        ReflectionTestUtils.setField(pdfStorageService, "sharded", false);
+        try (OutputStream out = storageBackend.write(pdfStorageService.flatKey(SHA256))) {
+            out.write("%PDF-1.4 %%EOF".getBytes(StandardCharsets.US_ASCII));
+        }
+    }
+
+    @AfterEach
+    public void cleanup() throws Exception {
+        storageBackend.delete(pdfStorageService.flatKey(SHA256));
+        storageBackend.delete(pdfStorageService.key(SHA256));
+        storageBackend.delete(OTHER_KEY);
+    }
+
+    @Test
+    public void assertThatPdfIsServedFromBothLocationsDuringMigration() throws Exception {
+        assertThat(pdfStorageService.key(SHA256)).isEqualTo("sha256/ab/12/" + NAME);
+        assertThat(pdfStorageService.find(PdfStorageService.HOME_ENTITY, PdfStorageService.CONTENT_ADDRESSED_LOCATION, NAME))
+            .hasValueSatisfying(object -> assertThat(object.getKey()).isEqualTo(pdfStorageService.flatKey(SHA256)));
+
+        assertThat(shardMigrationService.migrateBatch()).isEqualTo(1);
+
+        assertThat(storageBackend.stat(pdfStorageService.flatKey(SHA256))).isEmpty();
+        assertThat(pdfStorageService.find(PdfStorageService.HOME_ENTITY, PdfStorageService.CONTENT_ADDRESSED_LOCATION, NAME))
+            .hasValueSatisfying(object -> assertThat(object.getKey()).isEqualTo(pdfStorageService.key(SHA256)));
+        assertThat(pdfStorageService.isSharded()).isFalse();
+
+        assertThat(shardMigrationService.migrateBatch()).isEqualTo(0);
+        assertThat(pdfStorageService.isSharded()).isTrue();
+    }
+
+    @Test
+    public void assertThatOtherFilesDoNotStallMigration() throws Exception {
+        try (OutputStream out = storageBackend.write(OTHER_KEY)) {
+            out.write("not a PDF".getBytes(StandardCharsets.US_ASCII));
+        }
+        int batchSize = applicationProperties.getStorage().getSharding().getBatchSize();
+        applicationProperties.getStorage().getSharding().setBatchSize(1);
+        try {
+            assertThat(shardMigrationService.migrateBatch()).isEqualTo(0);
+            assertThat(shardMigrationService.migrateBatch()).isEqualTo(1);
+            assertThat(storageBackend.stat(pdfStorageService.key(SHA256))).isPresent();
+
+            assertThat(shardMigrationService.migrateBatch()).isEqualTo(0);
+            assertThat(pdfStorageService.isSharded()).isFalse();
+            shardMigrationService.migrateBatch();
+            shardMigrationService.migrateBatch();
+            assertThat(pdfStorageService.isSharded()).isTrue();
+            assertThat(storageBackend.stat(OTHER_KEY)).isPresent();
+        } finally {
+            applicationProperties.getStorage().getSharding().setBatchSize(batchSize);
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package com.umsa.savepdf.service;
+
+import com.umsa.savepdf.config.ApplicationProperties;
+import com.umsa.savepdf.repository.FileRepository;
+import com.umsa.savepdf.service.dto.StorageReconciliationReportDTO;
+import com.umsa.savepdf.service.storage.ColdSegmentStore;
+import com.umsa.savepdf.service.storage.LocalFileSystemStorageBackend;
+import com.umsa.savepdf.service.storage.TieredStorageBackend;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.ByteArrayInputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test class for the {@link StorageReconciliationService}.
+ */
+public class StorageReconciliationServiceTest {
+
+    private static final String REFERENCED_SHA256 = "aa00000000000000000000000000000000000000000000000000000000000000";
+
+    private static final String ORPHAN_SHA256 = "bb00000000000000000000000000000000000000000000000000000000000000";
+
+    private static final String RECENT_SHA256 = "cc00000000000000000000000000000000000000000000000000000000000000";
+
+    private static final String MISSING_SHA256 = "dd00000000000000000000000000000000000000000000000000000000000000";
+
+    private static final String FLAT_SHA256 = "ee00000000000000000000000000000000000000000000000000000000000000";
+
+    private static final String FLAT_ORPHAN_SHA256 = "ff00000000000000000000000000000000000000000000000000000000000000";
+
+    private static final String COLD_SHA256 = "a100000000000000000000000000000000000000000000000000000000000000";
+
+    private static final String COLD_ORPHAN_SHA256 = "b100000000000000000000000000000000000000000000000000000000000000";
+
+    private static final String STALE_UPLOAD = "sha256/.upload-stale";
+
+    private static final String UPLOAD = "sha256/.upload-running";
+
+    private static final Instant NOW = Instant.parse("2019-06-30T12:00:00Z");
+
+    private Path root;
+
+    private ApplicationProperties applicationProperties;
+
+    private PdfStorageService pdfStorageService;
+
+    private FileRepository fileRepository;
+
+    private StorageReconciliationService storageReconciliationService;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        root = Files.createTempDirectory("savepdf-reconcile");
+        applicationProperties = new ApplicationProperties();
+        pdfStorageService = new PdfStorageService(applicationProperties, new LocalFileSystemStorageBackend(root));
+        fileRepository = mock(FileRepository.class);
+        storageReconciliationService = new StorageReconciliationService(pdfStorageService, fileRepository, applicationProperties,
+            mock(PlatformTransactionManager.class), Clock.fixed(NOW, ZoneOffset.UTC));
+
+        Instant old = NOW.minusSeconds(applicationProperties.getStorage().getReconcile().getGracePeriod() + 1);
+        store(pdfStorageService.key(REFERENCED_SHA256), old);
+        store(pdfStorageService.thumbnailKey(REFERENCED_SHA256, 120), old);
+        store(pdfStorageService.key(ORPHAN_SHA256), old);
+        store(pdfStorageService.thumbnailKey(ORPHAN_SHA256, 120), old);
+        store(pdfStorageService.key(RECENT_SHA256), NOW.minusSeconds(60));
+        store(pdfStorageService.flatKey(FLAT_SHA256), old);
+        store(pdfStorageService.flatKey(FLAT_ORPHAN_SHA256), old);
+        store(STALE_UPLOAD, old);
+        store(UPLOAD, NOW.minusSeconds(60));
+        when(fileRepository.streamDistinctSha256()).thenReturn(Stream.of(REFERENCED_SHA256, MISSING_SHA256, FLAT_SHA256));
+        when(fileRepository.countBySha256(FLAT_SHA256)).thenReturn(1L);
+    }
+
+    @AfterEach
+    public void cleanup() {
+        FileUtils.deleteQuietly(root.toFile());
+    }
+
+    private void store(String key, Instant lastModified) throws Exception {
+        try (OutputStream out = pdfStorageService.getStorageBackend().write(key)) {
+            out.write("%PDF-1.4\n%%EOF\n".getBytes(StandardCharsets.US_ASCII));
+        }
+        Files.setLastModifiedTime(root.resolve(key), FileTime.from(lastModified));
+    }
+
+    private boolean exists(String key) {
+        return Files.exists(root.resolve(key));
+    }
+
+    @Test
+    public void testDryRunReportsWithoutTouching() throws Exception {
+        StorageReconciliationReportDTO report = storageReconciliationService.reconcile(true);
+
+        assertThat(report.isDryRun()).isTrue();
+        assertThat(report.getScannedObjects()).isEqualTo(9);
+        assertThat(report.getReferencedPdfs()).isEqualTo(2);
+        assertThat(report.getOrphanPdfs()).isEqualTo(2);
+        assertThat(report.getRecentOrphans()).isEqualTo(1);
+        assertThat(report.getStaleUploads()).isEqualTo(1);
+        assertThat(report.getOrphanBytes()).isEqualTo(4 * 15);
+        assertThat(report.getOrphanKeys()).containsExactly(STALE_UPLOAD, pdfStorageService.key(ORPHAN_SHA256),
+            pdfStorageService.thumbnailKey(ORPHAN_SHA256, 120), pdfStorageService.flatKey(FLAT_ORPHAN_SHA256));
+        assertThat(report.getMissingSha256()).containsExactly(MISSING_SHA256);
+        assertThat(report.getRemoved()).isZero();
+        assertThat(exists(pdfStorageService.key(ORPHAN_SHA256))).isTrue();
+        assertThat(exists(STALE_UPLOAD)).isTrue();
+    }
+
+    @Test
+    public void testOrphansAreQuarantined() throws Exception {
+        StorageReconciliationReportDTO report = storageReconciliationService.reconcile(false);
+
+        assertThat(report.getRemoved()).isEqualTo(3);
+        assertThat(exists(pdfStorageService.key(ORPHAN_SHA256))).isFalse();
+        assertThat(exists(pdfStorageService.quarantineKey(pdfStorageService.key(ORPHAN_SHA256)))).isTrue();
+        assertThat(exists(pdfStorageService.thumbnailKey(ORPHAN_SHA256, 120))).isFalse();
+        assertThat(exists(pdfStorageService.quarantineKey(pdfStorageService.flatKey(FLAT_ORPHAN_SHA256)))).isTrue();
+        assertThat(exists(pdfStorageService.quarantineKey(STALE_UPLOAD))).isTrue();
+        assertThat(exists(pdfStorageService.key(REFERENCED_SHA256))).isTrue();
+        assertThat(exists(pdfStorageService.thumbnailKey(REFERENCED_SHA256, 120))).isTrue();
+        assertThat(exists(pdfStorageService.key(RECENT_SHA256))).isTrue();
+        assertThat(exists(pdfStorageService.flatKey(FLAT_SHA256))).isTrue();
+        assertThat(exists(UPLOAD)).isTrue();
+        assertThat(pdfStorageService.key(PdfStorageService.HOME_ENTITY, PdfStorageService.FORMS_LOCATION + ".quarantine/sha256/bb/00/",
+            ORPHAN_SHA256 + ".pdf")).isEmpty();
+    }
+
+    @Test
+    public void testOrphansAreDeletedUnlessReferencedMeanwhile() throws Exception {
+        applicationProperties.getStorage().getReconcile().setAction(ApplicationProperties.Storage.Reconcile.Action.DELETE);
+        when(fileRepository.countBySha256(ORPHAN_SHA256)).thenReturn(1L);
+
+        StorageReconciliationReportDTO report = storageReconciliationService.reconcile(false);
+
+        assertThat(report.getOrphanPdfs()).isEqualTo(2);
+        assertThat(report.getRemoved()).isEqualTo(2);
+        assertThat(exists(pdfStorageService.key(ORPHAN_SHA256))).isTrue();
+        assertThat(exists(pdfStorageService.flatKey(FLAT_ORPHAN_SHA256))).isFalse();
+        assertThat(exists(STALE_UPLOAD)).isFalse();
+        assertThat(exists(PdfStorageService.QUARANTINE_PREFIX)).isFalse();
+    }
+
+    @Test
+    public void testColdOrphansAreQuarantined() throws Exception {
+        Path coldDirectory = Files.createTempDirectory("savepdf-reconcile-cold");
+        Instant old = NOW.minusSeconds(applicationProperties.getStorage().getReconcile().getGracePeriod() + 1);
+        byte[] content = "%PDF-1.4\n%%EOF\n".getBytes(StandardCharsets.US_ASCII);
+        try (TieredStorageBackend tiered = new TieredStorageBackend(pdfStorageService.getStorageBackend(),
+            new ColdSegmentStore(coldDirectory, 1024 * 1024, 16))) {
+            for (String sha256 : Arrays.asList(COLD_SHA256, COLD_ORPHAN_SHA256)) {
+                tiered.getCold().append(sha256, () -> new ByteArrayInputStream(content), content.length, old,
+                    ColdSegmentStore.Codec.RAW, 0);
+            }
+            pdfStorageService = new PdfStorageService(applicationProperties, tiered);
+            storageReconciliationService = new StorageReconciliationService(pdfStorageService, fileRepository, applicationProperties,
+                mock(PlatformTransactionManager.class), Clock.fixed(NOW, ZoneOffset.UTC));
+            when(fileRepository.streamDistinctSha256())
+                .thenReturn(Stream.of(COLD_SHA256, REFERENCED_SHA256, MISSING_SHA256, FLAT_SHA256));
+            when(fileRepository.findDistinctSha256In(anyCollection())).thenReturn(Collections.singletonList(COLD_SHA256));
+
+            StorageReconciliationReportDTO report = storageReconciliationService.reconcile(false);
+
+            assertThat(report.getScannedObjects()).isEqualTo(11);
+            assertThat(report.getReferencedPdfs()).isEqualTo(3);
+            assertThat(report.getOrphanPdfs()).isEqualTo(3);
+            assertThat(report.getMissingSha256()).containsExactly(MISSING_SHA256);
+            assertThat(tiered.getCold().find(COLD_SHA256)).isPresent();
+            assertThat(tiered.getCold().find(COLD_ORPHAN_SHA256)).isNotPresent();
+            assertThat(exists(pdfStorageService.quarantineKey(pdfStorageService.key(COLD_ORPHAN_SHA256)))).isTrue();
+        } finally {
+            FileUtils.deleteQuietly(coldDirectory.toFile());
+        }
+    }
+}
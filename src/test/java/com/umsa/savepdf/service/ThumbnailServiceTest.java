@@ -0,0 +1,129 @@
+package com.umsa.savepdf.service;
+
+import com.umsa.savepdf.config.ApplicationProperties;
+import com.umsa.savepdf.repository.FileRepository;
+import com.umsa.savepdf.service.storage.LocalFileSystemStorageBackend;
+import com.umsa.savepdf.service.storage.StorageObject;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.commons.io.FileUtils;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Test class for the {@link ThumbnailService}.
+ */
+public class ThumbnailServiceTest {
+
+    private static final String SHA256 = "9a78000000000000000000000000000000000000000000000000000000000000";
+
+    private Path root;
+
+    private PdfStorageService pdfStorageService;
+
+    private ThumbnailService thumbnailService;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        root = Files.createTempDirectory("savepdf-thumbnail");
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        applicationProperties.getThumbnail().setWidths(Arrays.asList(60, 120));
+        pdfStorageService = new PdfStorageService(applicationProperties, new LocalFileSystemStorageBackend(root));
+        thumbnailService = new ThumbnailService(pdfStorageService, mock(FileRepository.class), applicationProperties,
+            mock(ThreadPoolTaskExecutor.class), new SimpleMeterRegistry());
+    }
+
+    @AfterEach
+    public void cleanup() {
+        FileUtils.deleteQuietly(root.toFile());
+    }
+
+    /**
+     * Store a PDF whose first page is 2 inches wide and 1 inch high.
+     */
+    private void storePdf() throws Exception {
+        Path path = root.resolve(pdfStorageService.key(SHA256));
+        Files.createDirectories(path.getParent());
+        try (PDDocument document = new PDDocument()) {
+            document.addPage(new PDPage(new PDRectangle(144, 72)));
+            document.save(path.toFile());
+        }
+    }
+
+    private BufferedImage thumbnail(int width) throws IOException {
+        return ImageIO.read(root.resolve(pdfStorageService.thumbnailKey(SHA256, width)).toFile());
+    }
+
+    private long stagedObjects() throws IOException {
+        try (Stream<Path> paths = Files.walk(root)) {
+            return paths.filter(path -> path.getFileName().toString().startsWith(PdfStorageService.STAGING_PREFIX)).count();
+        }
+    }
+
+    @Test
+    public void testThumbnailsAreRendered() throws Exception {
+        storePdf();
+
+        assertThat(thumbnailService.render(SHA256)).isTrue();
+
+        assertThat(thumbnail(60).getWidth()).isEqualTo(60);
+        assertThat(thumbnail(60).getHeight()).isEqualTo(30);
+        assertThat(thumbnail(120).getWidth()).isEqualTo(120);
+        assertThat(stagedObjects()).isEqualTo(0);
+    }
+
+    @Test
+    public void testRenderedThumbnailsAreKept() throws Exception {
+        storePdf();
+        thumbnailService.render(SHA256);
+        Path rendered = root.resolve(pdfStorageService.thumbnailKey(SHA256, 60));
+        FileTime renderedTime = FileTime.fromMillis(0);
+        Files.setLastModifiedTime(rendered, renderedTime);
+
+        assertThat(thumbnailService.render(SHA256)).isFalse();
+
+        assertThat(Files.getLastModifiedTime(rendered)).isEqualTo(renderedTime);
+        assertThat(thumbnailService.find(SHA256, 100)).map(StorageObject::getKey).hasValue(pdfStorageService.thumbnailKey(SHA256, 120));
+        assertThat(thumbnailService.find(SHA256, 1000)).map(StorageObject::getKey).hasValue(pdfStorageService.thumbnailKey(SHA256, 120));
+        assertThat(thumbnailService.find(SHA256, 10)).map(StorageObject::getKey).hasValue(pdfStorageService.thumbnailKey(SHA256, 60));
+    }
+
+    @Test
+    public void testBadPdfLeavesNoThumbnail() throws Exception {
+        try (OutputStream out = pdfStorageService.getStorageBackend().write(pdfStorageService.key(SHA256))) {
+            out.write("%PDF-1.4\nnot a pdf\n%%EOF\n".getBytes(StandardCharsets.US_ASCII));
+        }
+
+        assertThatThrownBy(() -> thumbnailService.render(SHA256)).isInstanceOf(IOException.class);
+
+        assertThat(thumbnailService.find(SHA256, 60)).isEmpty();
+        assertThat(stagedObjects()).isEqualTo(0);
+    }
+
+    @Test
+    public void testMissingPdfIsSkipped() throws Exception {
+        assertThat(thumbnailService.render(SHA256)).isFalse();
+
+        assertThat(thumbnailService.find(SHA256, 60)).isEmpty();
+    }
+}
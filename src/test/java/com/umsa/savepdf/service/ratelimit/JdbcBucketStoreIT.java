@@ -0,0 +1,131 @@
+package com.umsa.savepdf.service.ratelimit;
+
+import liquibase.Contexts;
+import liquibase.Liquibase;
+import liquibase.database.jvm.JdbcConnection;
+import liquibase.resource.ClassLoaderResourceAccessor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Integration tests for the {@link JdbcBucketStore}, run against the PostgreSQL of
+ * {@code src/main/docker/postgresql.yml} when {@code SAVEPDF_POSTGRES_URL} is set (for example to
+ * {@code jdbc:postgresql://localhost:5432/savePDF}). The upsert relies on PostgreSQL, which the H2 database of the
+ * other tests does not emulate.
+ */
+@EnabledIfEnvironmentVariable(named = "SAVEPDF_POSTGRES_URL", matches = ".+")
+public class JdbcBucketStoreIT {
+
+    private static final String CHANGELOG = "config/liquibase/changelog/20261018140000_added_table_rate_limit_bucket.xml";
+
+    private static final long INTERVAL = TimeUnit.MINUTES.toNanos(1);
+
+    private static final long TOLERANCE = 4 * INTERVAL;
+
+    private JdbcTemplate jdbcTemplate;
+
+    private AtomicInteger fallbacks;
+
+    private JdbcBucketStore bucketStore;
+
+    private String prefix;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(System.getenv("SAVEPDF_POSTGRES_URL"), "savePDF", "");
+        try (Connection connection = dataSource.getConnection()) {
+            new Liquibase(CHANGELOG, new ClassLoaderResourceAccessor(), new JdbcConnection(connection)).update(new Contexts());
+        }
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        fallbacks = new AtomicInteger();
+        // Any request answered by the buckets of the instance means the database failed it.
+        bucketStore = new JdbcBucketStore(jdbcTemplate, new BucketStore() {
+
+            @Override
+            public long acquire(String key, long interval, long tolerance) {
+                fallbacks.incrementAndGet();
+                return 0;
+            }
+
+            @Override
+            public void evict() {
+            }
+        });
+        prefix = "it-" + UUID.randomUUID() + ":";
+    }
+
+    @AfterEach
+    public void cleanup() {
+        jdbcTemplate.update("DELETE FROM rate_limit_bucket WHERE bucket_key LIKE ?", prefix + "%");
+    }
+
+    @Test
+    public void testBurstThenWait() {
+        for (int i = 0; i < 5; i++) {
+            assertThat(bucketStore.acquire(prefix + "upload", INTERVAL, TOLERANCE)).isZero();
+        }
+        long wait = bucketStore.acquire(prefix + "upload", INTERVAL, TOLERANCE);
+        assertThat(wait).isBetween(INTERVAL - TimeUnit.SECONDS.toNanos(10), INTERVAL);
+        assertThat(bucketStore.acquire(prefix + "download", INTERVAL, TOLERANCE)).isZero();
+
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM rate_limit_bucket WHERE bucket_key LIKE ?", Long.class,
+            prefix + "%")).isEqualTo(2);
+        assertThat(fallbacks.get()).isZero();
+    }
+
+    @Test
+    public void testConcurrentRequestsTakeTheBurstOnce() throws Exception {
+        AtomicInteger granted = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Callable<Void>> tasks = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                tasks.add(() -> {
+                    for (int j = 0; j < 25; j++) {
+                        if (bucketStore.acquire(prefix + "upload", INTERVAL, 9 * INTERVAL) == 0) {
+                            granted.incrementAndGet();
+                        }
+                    }
+                    return null;
+                });
+            }
+            for (Future<Void> result : executor.invokeAll(tasks)) {
+                result.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertThat(granted.get()).isEqualTo(10);
+        assertThat(fallbacks.get()).isZero();
+    }
+
+    @Test
+    public void testFullBucketsAreEvicted() throws Exception {
+        bucketStore.acquire(prefix + "upload", TimeUnit.MILLISECONDS.toNanos(1), 0);
+        bucketStore.acquire(prefix + "download", INTERVAL, TOLERANCE);
+
+        Thread.sleep(50);
+        bucketStore.evict();
+
+        assertThat(jdbcTemplate.queryForList("SELECT bucket_key FROM rate_limit_bucket WHERE bucket_key LIKE ?", String.class,
+            prefix + "%")).containsExactly(prefix + "download");
+    }
+}
@@ -0,0 +1,75 @@
+package com.umsa.savepdf.service.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the {@link LocalBucketStore}.
+ */
+public class LocalBucketStoreTest {
+
+    private static final long INTERVAL = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private static final long TOLERANCE = 4 * INTERVAL;
+
+    private final AtomicLong now = new AtomicLong(-TimeUnit.HOURS.toNanos(1));
+
+    private final LocalBucketStore bucketStore = new LocalBucketStore(now::get);
+
+    @Test
+    public void testBurstThenRefill() {
+        for (int i = 0; i < 5; i++) {
+            assertThat(bucketStore.acquire("upload:ip:127.0.0.1", INTERVAL, TOLERANCE)).isZero();
+        }
+        assertThat(bucketStore.acquire("upload:ip:127.0.0.1", INTERVAL, TOLERANCE)).isEqualTo(INTERVAL);
+        assertThat(bucketStore.acquire("upload:ip:10.0.0.1", INTERVAL, TOLERANCE)).isZero();
+
+        now.addAndGet(INTERVAL / 2);
+        assertThat(bucketStore.acquire("upload:ip:127.0.0.1", INTERVAL, TOLERANCE)).isEqualTo(INTERVAL / 2);
+        now.addAndGet(INTERVAL / 2);
+        assertThat(bucketStore.acquire("upload:ip:127.0.0.1", INTERVAL, TOLERANCE)).isZero();
+        assertThat(bucketStore.acquire("upload:ip:127.0.0.1", INTERVAL, TOLERANCE)).isEqualTo(INTERVAL);
+    }
+
+    @Test
+    public void testFullBucketsAreEvicted() {
+        bucketStore.acquire("download:user:admin", INTERVAL, TOLERANCE);
+        bucketStore.acquire("download:user:user", INTERVAL, TOLERANCE);
+        bucketStore.acquire("download:user:user", INTERVAL, TOLERANCE);
+
+        now.addAndGet(INTERVAL);
+        bucketStore.evict();
+
+        assertThat(bucketStore.size()).isEqualTo(1);
+        now.addAndGet(INTERVAL);
+        bucketStore.evict();
+        assertThat(bucketStore.size()).isZero();
+    }
+
+    @Test
+    public void testConcurrentRequestsTakeTheBurstOnce() throws Exception {
+        AtomicInteger granted = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            for (int i = 0; i < 1000; i++) {
+                executor.execute(() -> {
+                    if (bucketStore.acquire("download:ip:127.0.0.1", INTERVAL, 99 * INTERVAL) == 0) {
+                        granted.incrementAndGet();
+                    }
+                });
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertThat(executor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(granted.get()).isEqualTo(100);
+    }
+}
@@ -0,0 +1,197 @@
+package com.umsa.savepdf.service.storage;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Test class for the {@link ColdSegmentStore}.
+ */
+public class ColdSegmentStoreTest {
+
+    private static final Instant LAST_MODIFIED = Instant.parse("2019-06-30T12:00:00Z");
+
+    private Path directory;
+
+    private ColdSegmentStore store;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        directory = Files.createTempDirectory("savepdf-cold");
+        store = new ColdSegmentStore(directory, 1024 * 1024, 16);
+    }
+
+    @AfterEach
+    public void cleanup() throws Exception {
+        store.close();
+        FileUtils.deleteDirectory(directory.toFile());
+    }
+
+    private static String sha256(int i) {
+        return String.format("%08x", i) + "00000000000000000000000000000000000000000000000000000000";
+    }
+
+    private static byte[] compressible(int i) {
+        StringBuilder pdf = new StringBuilder("%PDF-1.4\n");
+        for (int line = 0; line < 200; line++) {
+            pdf.append(i).append(" 0 obj << /Type /Page >> endobj\n");
+        }
+        return pdf.append("%%EOF\n").toString().getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private ColdSegmentStore.Entry append(String sha256, byte[] content, ColdSegmentStore.Codec codec) throws IOException {
+        return store.append(sha256, () -> new ByteArrayInputStream(content), content.length, LAST_MODIFIED, codec, 3);
+    }
+
+    private byte[] read(ColdSegmentStore.Entry entry) throws IOException {
+        try (InputStream in = store.open(entry)) {
+            return IOUtils.toByteArray(in);
+        }
+    }
+
+    @Test
+    public void testAppendAndFind() throws Exception {
+        byte[] content = compressible(1);
+
+        ColdSegmentStore.Entry entry = append(sha256(1), content, ColdSegmentStore.Codec.ZSTD);
+
+        assertThat(entry.getCodec()).isEqualTo(ColdSegmentStore.Codec.ZSTD);
+        assertThat(entry.getStoredLength()).isLessThan(content.length);
+        assertThat(store.find(sha256(1))).hasValueSatisfying(found -> {
+            assertThat(found.getSize()).isEqualTo(content.length);
+            assertThat(found.getLastModified()).isEqualTo(LAST_MODIFIED);
+        });
+        assertThat(read(store.find(sha256(1)).get())).isEqualTo(content);
+        assertThat(store.find(sha256(2))).isEmpty();
+        assertThat(store.count()).isEqualTo(1);
+    }
+
+    @Test
+    public void testIncompressibleContentIsStoredRaw() throws Exception {
+        byte[] content = new byte[4096];
+        new Random(42).nextBytes(content);
+
+        ColdSegmentStore.Entry entry = append(sha256(1), content, ColdSegmentStore.Codec.ZSTD);
+
+        assertThat(entry.getCodec()).isEqualTo(ColdSegmentStore.Codec.RAW);
+        assertThat(entry.getStoredLength()).isEqualTo(content.length);
+        assertThat(read(entry)).isEqualTo(content);
+    }
+
+    @Test
+    public void testReadRange() throws Exception {
+        byte[] content = compressible(1);
+        ColdSegmentStore.Entry compressed = append(sha256(1), content, ColdSegmentStore.Codec.ZSTD);
+        ColdSegmentStore.Entry raw = append(sha256(2), content, ColdSegmentStore.Codec.RAW);
+
+        for (ColdSegmentStore.Entry entry : new ColdSegmentStore.Entry[] { compressed, raw }) {
+            try (InputStream in = store.open(entry, 100, 50)) {
+                assertThat(IOUtils.toByteArray(in)).isEqualTo(Arrays.copyOfRange(content, 100, 150));
+            }
+        }
+    }
+
+    @Test
+    public void testAppendChecksTheSize() throws Exception {
+        byte[] content = compressible(1);
+
+        assertThatThrownBy(() -> store.append(sha256(1), () -> new ByteArrayInputStream(content), content.length + 1,
+            LAST_MODIFIED, ColdSegmentStore.Codec.ZSTD, 3)).isInstanceOf(IOException.class);
+
+        assertThat(store.find(sha256(1))).isEmpty();
+        assertThat(Files.size(directory.resolve("segment-00000001.seg"))).isZero();
+    }
+
+    @Test
+    public void testRemove() throws Exception {
+        append(sha256(1), compressible(1), ColdSegmentStore.Codec.ZSTD);
+
+        assertThat(store.remove(sha256(1))).isTrue();
+        assertThat(store.remove(sha256(1))).isFalse();
+        assertThat(store.find(sha256(1))).isEmpty();
+        assertThat(store.count()).isZero();
+
+        append(sha256(1), compressible(1), ColdSegmentStore.Codec.ZSTD);
+        assertThat(store.find(sha256(1))).isPresent();
+        assertThat(store.count()).isEqualTo(1);
+    }
+
+    @Test
+    public void testWalkVisitsTheLivePdfs() throws Exception {
+        for (int i = 0; i < 2000; i++) {
+            append(sha256(i), compressible(i), ColdSegmentStore.Codec.RAW);
+        }
+        store.remove(sha256(7));
+
+        List<String> visited = new ArrayList<>();
+        store.walk(entry -> visited.add(entry.getSha256()));
+
+        assertThat(visited).hasSize(1999).doesNotHaveDuplicates().doesNotContain(sha256(7)).contains(sha256(0), sha256(1999));
+    }
+
+    @Test
+    public void testIndexGrowsAndSegmentsRollOver() throws Exception {
+        store.close();
+        store = new ColdSegmentStore(directory, 4096, 16);
+
+        for (int i = 0; i < 100; i++) {
+            append(sha256(i), compressible(i), ColdSegmentStore.Codec.RAW);
+        }
+
+        assertThat(store.count()).isEqualTo(100);
+        for (int i = 0; i < 100; i++) {
+            assertThat(read(store.find(sha256(i)).get())).isEqualTo(compressible(i));
+        }
+        assertThat(Files.exists(directory.resolve("segment-00000002.seg"))).isTrue();
+    }
+
+    @Test
+    public void testIndexIsRebuiltFromTheSegments() throws Exception {
+        for (int i = 0; i < 20; i++) {
+            append(sha256(i), compressible(i), ColdSegmentStore.Codec.ZSTD);
+        }
+        store.close();
+        Files.delete(directory.resolve("index.idx"));
+        Files.write(directory.resolve("segment-00000001.seg"), new byte[] { 'P', 'D', 'F' }, StandardOpenOption.APPEND);
+
+        store = new ColdSegmentStore(directory, 1024 * 1024, 16);
+
+        assertThat(store.count()).isEqualTo(20);
+        for (int i = 0; i < 20; i++) {
+            assertThat(read(store.find(sha256(i)).get())).isEqualTo(compressible(i));
+        }
+        append(sha256(20), compressible(20), ColdSegmentStore.Codec.ZSTD);
+        assertThat(read(store.find(sha256(20)).get())).isEqualTo(compressible(20));
+    }
+
+    @Test
+    public void testIndexSurvivesReopening() throws Exception {
+        append(sha256(1), compressible(1), ColdSegmentStore.Codec.ZSTD);
+        append(sha256(2), compressible(2), ColdSegmentStore.Codec.ZSTD);
+        store.remove(sha256(2));
+        store.close();
+
+        store = new ColdSegmentStore(directory, 1024 * 1024, 16);
+
+        assertThat(read(store.find(sha256(1)).get())).isEqualTo(compressible(1));
+        assertThat(store.find(sha256(2))).isEmpty();
+    }
+}
@@ -0,0 +1,78 @@
+package com.umsa.savepdf.service.storage;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Test class for the {@link GroupCommitFileSyncer}.
+ */
+public class GroupCommitFileSyncerTest {
+
+    private Path directory;
+
+    private GroupCommitFileSyncer fileSyncer;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        directory = Files.createTempDirectory("savepdf-sync");
+        fileSyncer = new GroupCommitFileSyncer(5, 2);
+    }
+
+    @AfterEach
+    public void cleanup() throws Exception {
+        fileSyncer.close();
+        FileUtils.deleteDirectory(directory.toFile());
+    }
+
+    @Test
+    public void testConcurrentSyncsComplete() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> syncs = new ArrayList<>();
+            for (int i = 0; i < 64; i++) {
+                Path file = Files.write(directory.resolve("file-" + i), new byte[] { (byte) i });
+                syncs.add(executor.submit(() -> {
+                    fileSyncer.sync(Arrays.asList(file, directory));
+                    return null;
+                }));
+            }
+            for (Future<?> sync : syncs) {
+                sync.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testFailureIsReportedToItsCallerOnly() throws Exception {
+        Path file = Files.write(directory.resolve("file"), new byte[] { 1 });
+
+        assertThatThrownBy(() -> fileSyncer.sync(Collections.singletonList(directory.resolve("missing"))))
+            .isInstanceOf(IOException.class);
+        fileSyncer.sync(Collections.singletonList(file));
+    }
+
+    @Test
+    public void testSyncAfterCloseFails() {
+        fileSyncer.close();
+
+        assertThatThrownBy(() -> fileSyncer.sync(Collections.singletonList(directory))).isInstanceOf(IOException.class);
+    }
+}
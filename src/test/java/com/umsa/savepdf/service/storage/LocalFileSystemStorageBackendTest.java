@@ -0,0 +1,134 @@
+package com.umsa.savepdf.service.storage;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Test class for the {@link LocalFileSystemStorageBackend}.
+ */
+public class LocalFileSystemStorageBackendTest {
+
+    private static final String CONTENT = "%PDF-1.4 0123456789 %%EOF";
+
+    private Path root;
+
+    private LocalFileSystemStorageBackend storageBackend;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        root = Files.createTempDirectory("savepdf-storage");
+        storageBackend = new LocalFileSystemStorageBackend(root);
+    }
+
+    @AfterEach
+    public void cleanup() throws Exception {
+        FileUtils.deleteDirectory(root.toFile());
+    }
+
+    private void write(String key) throws Exception {
+        try (OutputStream out = storageBackend.write(key)) {
+            out.write(CONTENT.getBytes(StandardCharsets.US_ASCII));
+        }
+    }
+
+    @Test
+    public void testWriteAndStat() throws Exception {
+        write("sha256/a.pdf");
+
+        assertThat(Files.exists(root.resolve("sha256/a.pdf"))).isTrue();
+        assertThat(storageBackend.stat("sha256/a.pdf")).hasValueSatisfying(object -> {
+            assertThat(object.getKey()).isEqualTo("sha256/a.pdf");
+            assertThat(object.getSize()).isEqualTo(CONTENT.length());
+            assertThat(object.getLastModified()).isNotNull();
+        });
+        assertThat(storageBackend.stat("sha256/missing.pdf")).isEmpty();
+        assertThat(storageBackend.stat("sha256")).isEmpty();
+    }
+
+    @Test
+    public void testReadRange() throws Exception {
+        write("a.pdf");
+
+        try (InputStream in = storageBackend.read("a.pdf")) {
+            assertThat(IOUtils.toString(in, StandardCharsets.US_ASCII)).isEqualTo(CONTENT);
+        }
+        try (InputStream in = storageBackend.read("a.pdf", 9, 10)) {
+            assertThat(IOUtils.toString(in, StandardCharsets.US_ASCII)).isEqualTo(CONTENT.substring(9, 19));
+        }
+    }
+
+    @Test
+    public void testMoveAndDelete() throws Exception {
+        write("staging");
+
+        storageBackend.move("staging", "sha256/b.pdf");
+
+        assertThat(storageBackend.stat("staging")).isEmpty();
+        assertThat(storageBackend.stat("sha256/b.pdf")).isPresent();
+        assertThat(storageBackend.delete("sha256/b.pdf")).isTrue();
+        assertThat(storageBackend.delete("sha256/b.pdf")).isFalse();
+    }
+
+    @Test
+    public void testWrittenAndMovedObjectsAreSynced() throws Exception {
+        List<Path> synced = new ArrayList<>();
+        storageBackend = new LocalFileSystemStorageBackend(root, synced::addAll);
+        write("sha256/.upload-1");
+
+        assertThat(synced).containsExactly(root.resolve("sha256/.upload-1"), root);
+
+        synced.clear();
+        storageBackend.move("sha256/.upload-1", "sha256/ab/cd/abcd.pdf");
+
+        assertThat(synced).containsExactly(root.resolve("sha256/ab/cd"), root.resolve("sha256/ab"), root.resolve("sha256"));
+        synced.clear();
+        write("sha256/ab/cd/abcd.w120.png");
+        assertThat(synced).containsExactly(root.resolve("sha256/ab/cd/abcd.w120.png"));
+
+        synced.clear();
+        try (OutputStream out = storageBackend.write("sha256/.upload-2")) {
+            out.write(1);
+            StorageBackend.abandon(out);
+        }
+        assertThat(synced).isEmpty();
+    }
+
+    @Test
+    public void testWalkVisitsObjectsInKeyOrder() throws Exception {
+        write("sha256/ab/cd/abcd.pdf");
+        write("sha256/ab/cd/abcd.w120.png");
+        write("sha256/ab0.pdf");
+        write("sha256/.upload-1");
+        write("sha256/0a/00/0a00.pdf");
+        write("other/c.pdf");
+        List<String> keys = new ArrayList<>();
+
+        storageBackend.walk("sha256/", object -> keys.add(object.getKey()));
+
+        assertThat(keys).containsExactly("sha256/.upload-1", "sha256/0a/00/0a00.pdf", "sha256/ab/cd/abcd.pdf",
+            "sha256/ab/cd/abcd.w120.png", "sha256/ab0.pdf");
+        assertThat(keys).isSorted();
+        storageBackend.walk("missing/", object -> keys.add(object.getKey()));
+        assertThat(keys).hasSize(5);
+    }
+
+    @Test
+    public void testKeyOutsideRootIsRejected() {
+        assertThatThrownBy(() -> storageBackend.read("../outside.pdf")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> storageBackend.localPath("sha256/../../outside.pdf")).isInstanceOf(IllegalArgumentException.class);
+    }
+}
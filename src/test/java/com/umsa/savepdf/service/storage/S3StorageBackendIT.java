@@ -0,0 +1,103 @@
+package com.umsa.savepdf.service.storage;
+
+import com.amazonaws.auth.AWSStaticCredentialsProvider;
+import com.amazonaws.auth.BasicAWSCredentials;
+import com.amazonaws.client.builder.AwsClientBuilder;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.AmazonS3ClientBuilder;
+import com.amazonaws.services.s3.model.ListMultipartUploadsRequest;
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.NoSuchFileException;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Integration tests for the {@link S3StorageBackend}, run against the MinIO of {@code src/main/docker/minio.yml}
+ * when {@code SAVEPDF_S3_ENDPOINT} is set (for example to {@code http://localhost:9000}).
+ */
+@EnabledIfEnvironmentVariable(named = "SAVEPDF_S3_ENDPOINT", matches = ".+")
+public class S3StorageBackendIT {
+
+    private static final int PART_SIZE = 5 * 1024 * 1024;
+
+    private AmazonS3 s3;
+
+    private S3StorageBackend storageBackend;
+
+    private String prefix;
+
+    @BeforeEach
+    public void setup() {
+        s3 = AmazonS3ClientBuilder.standard()
+            .withEndpointConfiguration(new AwsClientBuilder.EndpointConfiguration(System.getenv("SAVEPDF_S3_ENDPOINT"), "us-east-1"))
+            .withCredentials(new AWSStaticCredentialsProvider(new BasicAWSCredentials("savepdf", "savepdf-secret")))
+            .withPathStyleAccessEnabled(true)
+            .build();
+        if (!s3.doesBucketExistV2("savepdf")) {
+            s3.createBucket("savepdf");
+        }
+        storageBackend = new S3StorageBackend(s3, "savepdf", PART_SIZE);
+        prefix = "it-" + UUID.randomUUID() + "/";
+    }
+
+    @AfterEach
+    public void cleanup() throws Exception {
+        storageBackend.delete(prefix + "small.pdf");
+        storageBackend.delete(prefix + "large.pdf");
+        storageBackend.delete(prefix + "moved.pdf");
+        s3.shutdown();
+    }
+
+    @Test
+    public void testSmallObject() throws Exception {
+        try (OutputStream out = storageBackend.write(prefix + "small.pdf")) {
+            out.write("%PDF-1.4 %%EOF".getBytes());
+        }
+
+        assertThat(storageBackend.stat(prefix + "small.pdf")).hasValueSatisfying(object -> assertThat(object.getSize()).isEqualTo(14));
+        try (InputStream in = storageBackend.read(prefix + "small.pdf", 9, 5)) {
+            assertThat(IOUtils.toByteArray(in)).isEqualTo("%%EOF".getBytes());
+        }
+        storageBackend.move(prefix + "small.pdf", prefix + "moved.pdf");
+        assertThat(storageBackend.stat(prefix + "small.pdf")).isEmpty();
+        assertThat(storageBackend.delete(prefix + "moved.pdf")).isTrue();
+        assertThatThrownBy(() -> storageBackend.read(prefix + "moved.pdf")).isInstanceOf(NoSuchFileException.class);
+    }
+
+    @Test
+    public void testMultipartObject() throws Exception {
+        byte[] content = new byte[PART_SIZE * 2 + 1234];
+        new Random(42).nextBytes(content);
+        try (OutputStream out = storageBackend.write(prefix + "large.pdf")) {
+            out.write(content);
+        }
+
+        assertThat(storageBackend.stat(prefix + "large.pdf")).hasValueSatisfying(object -> assertThat(object.getSize()).isEqualTo(content.length));
+        try (InputStream in = storageBackend.read(prefix + "large.pdf")) {
+            assertThat(IOUtils.toByteArray(in)).isEqualTo(content);
+        }
+    }
+
+    @Test
+    public void testAbandonedUploadIsAborted() throws Exception {
+        byte[] content = new byte[PART_SIZE + 1234];
+        new Random(42).nextBytes(content);
+        try (OutputStream out = storageBackend.write(prefix + "large.pdf")) {
+            out.write(content);
+            StorageBackend.abandon(out);
+        }
+
+        assertThat(storageBackend.stat(prefix + "large.pdf")).isEmpty();
+        assertThat(s3.listMultipartUploads(new ListMultipartUploadsRequest("savepdf").withPrefix(prefix)).getMultipartUploads()).isEmpty();
+    }
+}
@@ -0,0 +1,303 @@
+package com.umsa.savepdf.web.rest;
+
+import com.umsa.savepdf.SavePdfApp;
+import com.umsa.savepdf.config.ApplicationProperties;
+import com.umsa.savepdf.domain.File;
+import com.umsa.savepdf.domain.enumeration.FormType;
+import com.umsa.savepdf.repository.FileRepository;
+import com.umsa.savepdf.service.DownloadUrlSigner;
+import com.umsa.savepdf.service.PdfStorageService;
+import com.umsa.savepdf.service.PdfValidationService;
+import com.umsa.savepdf.service.ResumableUploadService;
+import com.umsa.savepdf.service.UploadPipelineService;
+import com.umsa.savepdf.service.dto.UploadJobDTO;
+import com.umsa.savepdf.service.util.DigestUtil;
+import com.umsa.savepdf.web.rest.errors.ExceptionTranslator;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.startsWith;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.head;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Integration tests for the {@link FileController} REST controller.
+ */
+@SpringBootTest(classes = SavePdfApp.class)
+public class FileControllerIT {
+
+    private static final byte[] CONTENT = "%PDF-1.4\nbatch upload\nstartxref\n9\n%%EOF\n".getBytes(StandardCharsets.US_ASCII);
+
+    private static final String SHA256 = DigestUtil.toHex(DigestUtil.sha256().digest(CONTENT));
+
+    private static final String BOUNDARY = "batch-boundary";
+
+    @Autowired
+    private UploadPipelineService uploadPipelineService;
+
+    @Autowired
+    private FileRepository fileRepository;
+
+    @Autowired
+    private PdfStorageService pdfStorageService;
+
+    @Autowired
+    private PdfValidationService pdfValidationService;
+
+    @Autowired
+    private ResumableUploadService resumableUploadService;
+
+    @Autowired
+    private DownloadUrlSigner downloadUrlSigner;
+
+    @Autowired
+    private ApplicationProperties applicationProperties;
+
+    @Autowired
+    @Qualifier("uploadExecutor")
+    private ThreadPoolTaskExecutor uploadExecutor;
+
+    @Autowired
+    private ExceptionTranslator exceptionTranslator;
+
+    private MockMvc restFileMockMvc;
+
+    @BeforeEach
+    public void setup() {
+        FileController fileController = new FileController(uploadPipelineService, pdfStorageService, pdfValidationService, resumableUploadService,
+            downloadUrlSigner, applicationProperties, uploadExecutor);
+        this.restFileMockMvc = MockMvcBuilders.standaloneSetup(fileController)
+            .setControllerAdvice(exceptionTranslator)
+            .build();
+    }
+
+    @AfterEach
+    public void cleanup() throws Exception {
+        fileRepository.findAll().stream()
+            .filter(file -> SHA256.equals(file.getSha256()))
+            .forEach(fileRepository::delete);
+        pdfStorageService.release(SHA256, () -> true);
+    }
+
+    @Test
+    @WithMockUser("upload-job-user")
+    public void uploadPdf() throws Exception {
+        String location = restFileMockMvc.perform(multipart("/api/files/upload")
+            .file(new MockMultipartFile("pdfFile", "scan.pdf", "application/pdf", CONTENT))
+            .param("type", "STUDENT"))
+            .andExpect(status().isAccepted())
+            .andExpect(header().string("X-Content-Sha256", SHA256))
+            .andExpect(jsonPath("$.sha256").value(SHA256))
+            .andExpect(jsonPath("$.url").value(startsWith(pdfStorageService.downloadUrl(SHA256) + "&expires=")))
+            .andExpect(jsonPath("$.owner").doesNotExist())
+            .andReturn().getResponse().getHeader(HttpHeaders.LOCATION);
+        String id = location.substring(location.lastIndexOf('/') + 1);
+        assertThat(fileRepository.countBySha256(SHA256)).isEqualTo(1);
+
+        long deadline = System.currentTimeMillis() + 10_000;
+        UploadJobDTO job = uploadPipelineService.getJob(id).get();
+        while (job.getStatus() != UploadJobDTO.Status.COMPLETED && job.getStatus() != UploadJobDTO.Status.FAILED
+            && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertThat(job.getStatus()).isEqualTo(UploadJobDTO.Status.COMPLETED);
+        assertThat(job.getFileId()).isNotNull();
+        assertThat(fileRepository.countBySha256(SHA256)).isEqualTo(1);
+
+        restFileMockMvc.perform(get(location))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.status").value("COMPLETED"))
+            .andExpect(jsonPath("$.fileId").value(job.getFileId().intValue()));
+        SecurityContextHolder.getContext().setAuthentication(
+            new UsernamePasswordAuthenticationToken("another-user", "password"));
+        restFileMockMvc.perform(get(location))
+            .andExpect(status().isNotFound());
+    }
+
+    @Test
+    public void uploadTruncatedPdf() throws Exception {
+        restFileMockMvc.perform(post("/api/files/upload/stream")
+            .contentType(MediaType.APPLICATION_PDF)
+            .param("type", "STUDENT")
+            .content(Arrays.copyOf(CONTENT, CONTENT.length - 8)))
+            .andExpect(status().isBadRequest());
+
+        assertThat(pdfStorageService.find(SHA256)).isNotPresent();
+    }
+
+    @Test
+    public void uploadPdfRefusedBeforeItsBodyIsRead() throws Exception {
+        UploadPipelineService fullPipeline = mock(UploadPipelineService.class);
+        PdfStorageService storage = mock(PdfStorageService.class);
+        MockMvc fullMockMvc = MockMvcBuilders.standaloneSetup(new FileController(fullPipeline, storage, pdfValidationService,
+            resumableUploadService, downloadUrlSigner, applicationProperties, uploadExecutor)).build();
+
+        fullMockMvc.perform(post("/api/files/upload/stream")
+            .contentType(MediaType.APPLICATION_PDF)
+            .param("type", "STUDENT")
+            .content(CONTENT))
+            .andExpect(status().isTooManyRequests())
+            .andExpect(header().string(HttpHeaders.RETRY_AFTER, Long.toString(applicationProperties.getUpload().getRetryAfter())));
+        fullMockMvc.perform(multipart("/api/files/upload")
+            .file(new MockMultipartFile("pdfFile", "scan.pdf", "application/pdf", CONTENT))
+            .param("type", "STUDENT"))
+            .andExpect(status().isTooManyRequests());
+        fullMockMvc.perform(post("/api/files/upload/batch")
+            .contentType("multipart/form-data; boundary=" + BOUNDARY)
+            .content(multipartBody(field("type", "STUDENT"), file("first.pdf", CONTENT))))
+            .andExpect(status().isTooManyRequests());
+
+        verify(storage, never()).write(any());
+    }
+
+    @Test
+    public void uploadPdfBatch() throws Exception {
+        restFileMockMvc.perform(post("/api/files/upload/batch")
+            .contentType("multipart/form-data; boundary=" + BOUNDARY)
+            .content(multipartBody(
+                field("type", "STUDENT"), field("type", "TEACHER"), field("type", "PROFESSIONAL"),
+                file("first.pdf", CONTENT),
+                file("photo.jpg", new byte[] {(byte) 0xFF, (byte) 0xD8}),
+                file("second.pdf", CONTENT))))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$", hasSize(3)))
+            .andExpect(jsonPath("$[0].index").value(0))
+            .andExpect(jsonPath("$[0].status").value(201))
+            .andExpect(jsonPath("$[0].sha256").value(SHA256))
+            .andExpect(jsonPath("$[1].filename").value("photo.jpg"))
+            .andExpect(jsonPath("$[1].status").value(400))
+            .andExpect(jsonPath("$[2].status").value(201))
+            .andExpect(jsonPath("$[2].url").value(startsWith(pdfStorageService.downloadUrl(SHA256) + "&expires=")));
+
+        assertThat(fileRepository.countBySha256(SHA256)).isEqualTo(2);
+        assertThat(fileRepository.findAll()).filteredOn(file -> SHA256.equals(file.getSha256()))
+            .extracting(File::getType).containsExactlyInAnyOrder(FormType.STUDENT, FormType.PROFESSIONAL);
+        assertThat(pdfStorageService.find(SHA256)).isPresent();
+    }
+
+    @Test
+    public void uploadPdfBatchWithMismatchedTypes() throws Exception {
+        restFileMockMvc.perform(post("/api/files/upload/batch")
+            .contentType("multipart/form-data; boundary=" + BOUNDARY)
+            .content(multipartBody(
+                file("first.pdf", CONTENT), file("second.pdf", CONTENT), file("third.pdf", CONTENT),
+                field("type", "STUDENT"), field("type", "TEACHER"))))
+            .andExpect(status().isBadRequest());
+
+        assertThat(fileRepository.countBySha256(SHA256)).isEqualTo(0);
+        assertThat(pdfStorageService.find(SHA256)).isNotPresent();
+    }
+
+    private static byte[] multipartBody(byte[]... parts) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            body.write(("--" + BOUNDARY + "\r\n").getBytes(StandardCharsets.US_ASCII));
+            body.write(part);
+            body.write("\r\n".getBytes(StandardCharsets.US_ASCII));
+        }
+        body.write(("--" + BOUNDARY + "--\r\n").getBytes(StandardCharsets.US_ASCII));
+        return body.toByteArray();
+    }
+
+    private static byte[] field(String name, String value) {
+        return ("Content-Disposition: form-data; name=\"" + name + "\"\r\n\r\n" + value).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] file(String filename, byte[] content) throws IOException {
+        ByteArrayOutputStream part = new ByteArrayOutputStream();
+        part.write(("Content-Disposition: form-data; name=\"pdfFile\"; filename=\"" + filename + "\"\r\n"
+            + "Content-Type: application/octet-stream\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+        part.write(content);
+        return part.toByteArray();
+    }
+
+    @Test
+    @WithMockUser("resumable-upload-user")
+    public void uploadPdfResumable() throws Exception {
+        String location = restFileMockMvc.perform(post("/api/files/upload/resumable")
+            .header("Upload-Length", CONTENT.length)
+            .param("type", "STUDENT")
+            .param("filename", "scan.pdf"))
+            .andExpect(status().isCreated())
+            .andExpect(header().string("Upload-Offset", "0"))
+            .andReturn().getResponse().getHeader(HttpHeaders.LOCATION);
+
+        restFileMockMvc.perform(patch(location)
+            .contentType("application/offset+octet-stream")
+            .header("Upload-Offset", 0)
+            .content(Arrays.copyOfRange(CONTENT, 0, 10)))
+            .andExpect(status().isNoContent())
+            .andExpect(header().string("Upload-Offset", "10"));
+
+        restFileMockMvc.perform(post(location + "/complete"))
+            .andExpect(status().isConflict());
+        restFileMockMvc.perform(patch(location)
+            .contentType("application/offset+octet-stream")
+            .header("Upload-Offset", 4)
+            .content(Arrays.copyOfRange(CONTENT, 4, CONTENT.length)))
+            .andExpect(status().isConflict());
+        restFileMockMvc.perform(head(location))
+            .andExpect(status().isOk())
+            .andExpect(header().string("Upload-Offset", "10"))
+            .andExpect(header().string("Upload-Length", String.valueOf(CONTENT.length)));
+
+        restFileMockMvc.perform(patch(location)
+            .contentType("application/offset+octet-stream")
+            .header("Upload-Offset", 10)
+            .content(Arrays.copyOfRange(CONTENT, 10, CONTENT.length)))
+            .andExpect(status().isNoContent())
+            .andExpect(header().string("Upload-Offset", String.valueOf(CONTENT.length)));
+        restFileMockMvc.perform(post(location + "/complete"))
+            .andExpect(status().isCreated())
+            .andExpect(header().string("X-Content-Sha256", SHA256));
+
+        assertThat(fileRepository.countBySha256(SHA256)).isEqualTo(1);
+        restFileMockMvc.perform(head(location))
+            .andExpect(status().isNotFound());
+    }
+
+    @Test
+    @WithMockUser("resumable-upload-user")
+    public void getResumableUploadOfAnotherUser() throws Exception {
+        String id = resumableUploadService.create(CONTENT.length, "scan.pdf", FormType.STUDENT).getId();
+
+        SecurityContextHolder.getContext().setAuthentication(
+            new UsernamePasswordAuthenticationToken("another-user", "password"));
+        try {
+            restFileMockMvc.perform(head("/api/files/upload/resumable/" + id))
+                .andExpect(status().isNotFound());
+        } finally {
+            SecurityContextHolder.clearContext();
+            resumableUploadService.delete(id);
+        }
+    }
+}
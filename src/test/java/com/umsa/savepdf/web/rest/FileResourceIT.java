@@ -1,9 +1,11 @@
 package com.umsa.savepdf.web.rest;
 
 import com.umsa.savepdf.SavePdfApp;
+import com.umsa.savepdf.config.ApplicationProperties;
 import com.umsa.savepdf.domain.File;
 import com.umsa.savepdf.repository.FileRepository;
 import com.umsa.savepdf.service.FileService;
+import com.umsa.savepdf.service.PdfStorageService;
 import com.umsa.savepdf.service.dto.FileDTO;
 import com.umsa.savepdf.service.mapper.FileMapper;
 import com.umsa.savepdf.web.rest.errors.ExceptionTranslator;
@@ -28,7 +30,9 @@ import java.util.List;
 
 import static com.umsa.savepdf.web.rest.TestUtil.createFormattingConversionService;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.startsWith;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -65,6 +69,12 @@ public class FileResourceIT {
     @Autowired
     private FileService fileService;
 
+    @Autowired
+    private PdfStorageService pdfStorageService;
+
+    @Autowired
+    private ApplicationProperties applicationProperties;
+
     @Autowired
     private MappingJackson2HttpMessageConverter jacksonMessageConverter;
 
@@ -87,7 +97,7 @@ public class FileResourceIT {
     @BeforeEach
     public void setup() {
         MockitoAnnotations.initMocks(this);
-        final FileResource fileResource = new FileResource(fileService);
+        final FileResource fileResource = new FileResource(fileService, applicationProperties);
         this.restFileMockMvc = MockMvcBuilders.standaloneSetup(fileResource)
             .setCustomArgumentResolvers(pageableArgumentResolver)
             .setControllerAdvice(exceptionTranslator)
@@ -217,6 +227,24 @@ public class FileResourceIT {
             .andExpect(jsonPath("$.lastModifiedDate").value(DEFAULT_LAST_MODIFIED_DATE.toString()));
     }
 
+    @Test
+    @Transactional
+    public void signDownloadUrls() throws Exception {
+        // Initialize the database
+        String url = pdfStorageService.downloadUrl("ab12000000000000000000000000000000000000000000000000000000000000");
+        fileRepository.saveAndFlush(file.url(url));
+
+        restFileMockMvc.perform(post("/api/files/download-urls")
+            .contentType(TestUtil.APPLICATION_JSON_UTF8)
+            .content("[" + file.getId() + "," + Long.MAX_VALUE + "]"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.length()").value(1))
+            .andExpect(jsonPath("$.[0].fileId").value(file.getId().intValue()))
+            .andExpect(jsonPath("$.[0].url").value(startsWith(url + "&expires=")))
+            .andExpect(jsonPath("$.[0].url").value(containsString("&signature=")))
+            .andExpect(jsonPath("$.[0].expires").exists());
+    }
+
     @Test
     @Transactional
     public void getNonExistingFile() throws Exception {
@@ -282,6 +310,34 @@ public class FileResourceIT {
         assertThat(fileList).hasSize(databaseSizeBeforeUpdate);
     }
 
+    @Test
+    @Transactional
+    public void updateFileKeepsItsStoredPdf() throws Exception {
+        String sha256 = "ab12000000000000000000000000000000000000000000000000000000000000";
+        String url = pdfStorageService.downloadUrl(sha256);
+        fileRepository.saveAndFlush(file.url(url).sha256(sha256).size(100L).crc32(42L));
+
+        FileDTO fileDTO = fileMapper.toDto(fileRepository.findById(file.getId()).get());
+        em.detach(file);
+        fileDTO.setName(UPDATED_NAME);
+        fileDTO.setUrl(pdfStorageService.downloadUrl(sha256.replace("ab12", "cd34")));
+        fileDTO.setSha256(sha256.replace("ab12", "cd34"));
+        fileDTO.setSize(1L);
+        fileDTO.setCrc32(1L);
+
+        restFileMockMvc.perform(put("/api/files")
+            .contentType(TestUtil.APPLICATION_JSON_UTF8)
+            .content(TestUtil.convertObjectToJsonBytes(fileDTO)))
+            .andExpect(status().isOk());
+
+        File testFile = fileRepository.findById(file.getId()).get();
+        assertThat(testFile.getName()).isEqualTo(UPDATED_NAME);
+        assertThat(testFile.getUrl()).isEqualTo(url);
+        assertThat(testFile.getSha256()).isEqualTo(sha256);
+        assertThat(testFile.getSize()).isEqualTo(100L);
+        assertThat(testFile.getCrc32()).isEqualTo(42L);
+    }
+
     @Test
     @Transactional
     public void deleteFile() throws Exception {
@@ -3,6 +3,9 @@ package com.umsa.savepdf.web.rest;
 import com.umsa.savepdf.SavePdfApp;
 import com.umsa.savepdf.domain.Form;
 import com.umsa.savepdf.repository.FormRepository;
+import com.umsa.savepdf.service.FormExportService;
+import com.umsa.savepdf.service.FormMergeService;
+import com.umsa.savepdf.service.FormSearchService;
 import com.umsa.savepdf.service.FormService;
 import com.umsa.savepdf.service.dto.FormDTO;
 import com.umsa.savepdf.service.mapper.FormMapper;
@@ -14,17 +17,21 @@ import org.mockito.MockitoAnnotations;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.data.web.PageableHandlerMethodArgumentResolver;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.validation.Validator;
 
 import javax.persistence.EntityManager;
+import java.io.ByteArrayInputStream;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.List;
+import java.util.zip.ZipInputStream;
 
 import static com.umsa.savepdf.web.rest.TestUtil.createFormattingConversionService;
 import static org.assertj.core.api.Assertions.assertThat;
@@ -69,6 +76,15 @@ public class FormResourceIT {
     @Autowired
     private FormService formService;
 
+    @Autowired
+    private FormSearchService formSearchService;
+
+    @Autowired
+    private FormMergeService formMergeService;
+
+    @Autowired
+    private FormExportService formExportService;
+
     @Autowired
     private MappingJackson2HttpMessageConverter jacksonMessageConverter;
 
@@ -91,7 +107,7 @@ public class FormResourceIT {
     @BeforeEach
     public void setup() {
         MockitoAnnotations.initMocks(this);
-        final FormResource formResource = new FormResource(formService);
+        final FormResource formResource = new FormResource(formService, formSearchService, formMergeService, formExportService);
         this.restFormMockMvc = MockMvcBuilders.standaloneSetup(formResource)
             .setCustomArgumentResolvers(pageableArgumentResolver)
             .setControllerAdvice(exceptionTranslator)
@@ -226,6 +242,64 @@ public class FormResourceIT {
             .andExpect(jsonPath("$.lastModifiedDate").value(DEFAULT_LAST_MODIFIED_DATE.toString()));
     }
 
+    @Test
+    @Transactional
+    public void searchForms() throws Exception {
+        // Initialize the database
+        formRepository.saveAndFlush(form);
+        formSearchService.index(form.getId());
+
+        try {
+            restFormMockMvc.perform(get("/api/forms/_search?query=" + DEFAULT_NAME + "&type=" + DEFAULT_TYPE
+                + "&from=" + DEFAULT_CREATED_DATE))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON_UTF8_VALUE))
+                .andExpect(header().string("X-Total-Count", "1"))
+                .andExpect(jsonPath("$.[*].id").value(hasItem(form.getId().intValue())));
+            restFormMockMvc.perform(get("/api/forms/_search?query=" + DEFAULT_NAME + "&type=" + UPDATED_TYPE))
+                .andExpect(status().isOk())
+                .andExpect(header().string("X-Total-Count", "0"));
+        } finally {
+            formSearchService.delete(form.getId());
+        }
+    }
+
+    @Test
+    @Transactional
+    public void mergeFormsWithoutPdf() throws Exception {
+        // Initialize the database
+        formRepository.saveAndFlush(form);
+
+        restFormMockMvc.perform(get("/api/forms/_merge?type=" + DEFAULT_TYPE + "&typeId=" + DEFAULT_TYPE_ID))
+            .andExpect(status().isNotFound());
+        restFormMockMvc.perform(get("/api/forms/_merge?ids=" + form.getId()))
+            .andExpect(status().isNotFound());
+    }
+
+    @Test
+    @Transactional
+    public void mergeFormsWithoutSelection() throws Exception {
+        restFormMockMvc.perform(get("/api/forms/_merge?type=" + DEFAULT_TYPE))
+            .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void exportForms() throws Exception {
+        MvcResult result = restFormMockMvc.perform(get("/api/forms/_export?type=" + UPDATED_TYPE + "&from=" + UPDATED_CREATED_DATE.plusSeconds(86400)))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+
+        byte[] archive = restFormMockMvc.perform(asyncDispatch(result))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType("application/zip"))
+            .andExpect(header().string(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"forms-teacher.zip\""))
+            .andReturn().getResponse().getContentAsByteArray();
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(archive))) {
+            assertThat(zip.getNextEntry().getName()).isEqualTo(FormExportService.MANIFEST);
+            assertThat(zip.getNextEntry()).isNull();
+        }
+    }
+
     @Test
     @Transactional
     public void getNonExistingForm() throws Exception {
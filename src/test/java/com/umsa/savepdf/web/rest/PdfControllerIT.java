@@ -0,0 +1,263 @@
+package com.umsa.savepdf.web.rest;
+
+import com.umsa.savepdf.SavePdfApp;
+import com.umsa.savepdf.config.ApplicationProperties;
+import com.umsa.savepdf.service.ColdTierService;
+import com.umsa.savepdf.service.DownloadUrlSigner;
+import com.umsa.savepdf.service.PdfDownloadService;
+import com.umsa.savepdf.service.PdfStorageService;
+import com.umsa.savepdf.service.ThumbnailService;
+import com.umsa.savepdf.service.storage.StorageBackend;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.allOf;
+import static org.hamcrest.Matchers.endsWith;
+import static org.hamcrest.Matchers.startsWith;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Integration tests for the {@link PdfController} REST controller.
+ */
+@SpringBootTest(classes = SavePdfApp.class)
+public class PdfControllerIT {
+
+    private static final String CONTENT = "%PDF-1.4 0123456789abcdefghijklmnopqrstuvwxyz %%EOF";
+
+    private static final String DIR = "savepdf-it/";
+
+    private static final String FILENAME = "range.pdf";
+
+    private static final String SHA256 = "cd34000000000000000000000000000000000000000000000000000000000000";
+
+    @Autowired
+    private PdfDownloadService pdfDownloadService;
+
+    @Autowired
+    private PdfStorageService pdfStorageService;
+
+    @Autowired
+    private ThumbnailService thumbnailService;
+
+    @Autowired
+    private StorageBackend storageBackend;
+
+    @Autowired
+    private DownloadUrlSigner downloadUrlSigner;
+
+    @Autowired
+    private ColdTierService coldTierService;
+
+    @Autowired
+    private ApplicationProperties applicationProperties;
+
+    private MockMvc restPdfMockMvc;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        PdfController pdfController = new PdfController(pdfDownloadService, pdfStorageService, thumbnailService, downloadUrlSigner,
+            coldTierService);
+        this.restPdfMockMvc = MockMvcBuilders.standaloneSetup(pdfController).build();
+        try (OutputStream out = storageBackend.write(DIR + FILENAME)) {
+            out.write(CONTENT.getBytes(StandardCharsets.US_ASCII));
+        }
+    }
+
+    @AfterEach
+    public void cleanup() throws Exception {
+        storageBackend.delete(DIR + FILENAME);
+        pdfStorageService.release(SHA256, () -> true);
+    }
+
+    private static String pdfUrl() {
+        return "/pdf/file/get-pdf/" + FILENAME + "?homeEntity=" + PdfStorageService.HOME_ENTITY
+            + "&url=" + PdfStorageService.FORMS_LOCATION + DIR;
+    }
+
+    @Test
+    public void getWholePdf() throws Exception {
+        restPdfMockMvc.perform(get(pdfUrl()))
+            .andExpect(status().isOk())
+            .andExpect(header().string(HttpHeaders.ACCEPT_RANGES, "bytes"))
+            .andExpect(header().exists(HttpHeaders.ETAG))
+            .andExpect(header().exists(HttpHeaders.LAST_MODIFIED))
+            .andExpect(content().string(CONTENT));
+    }
+
+    @Test
+    public void getPdfNotModified() throws Exception {
+        MvcResult first = restPdfMockMvc.perform(get(pdfUrl())).andReturn();
+        String etag = first.getResponse().getHeader(HttpHeaders.ETAG);
+
+        restPdfMockMvc.perform(get(pdfUrl()).header(HttpHeaders.IF_NONE_MATCH, etag))
+            .andExpect(status().isNotModified())
+            .andExpect(content().string(""));
+    }
+
+    @Test
+    public void getSingleRange() throws Exception {
+        restPdfMockMvc.perform(get(pdfUrl()).header(HttpHeaders.RANGE, "bytes=9-18"))
+            .andExpect(status().isPartialContent())
+            .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 9-18/" + CONTENT.length()))
+            .andExpect(content().string(CONTENT.substring(9, 19)));
+    }
+
+    @Test
+    public void getSuffixRange() throws Exception {
+        restPdfMockMvc.perform(get(pdfUrl()).header(HttpHeaders.RANGE, "bytes=-5"))
+            .andExpect(status().isPartialContent())
+            .andExpect(content().string("%%EOF"));
+    }
+
+    @Test
+    public void getMultipleRanges() throws Exception {
+        MvcResult result = restPdfMockMvc.perform(get(pdfUrl()).header(HttpHeaders.RANGE, "bytes=0-4,9-18"))
+            .andExpect(status().isPartialContent())
+            .andExpect(header().string(HttpHeaders.CONTENT_TYPE, startsWith("multipart/byteranges; boundary=")))
+            .andReturn();
+
+        String body = result.getResponse().getContentAsString();
+        assertThat(body).contains("Content-Range: bytes 0-4/" + CONTENT.length() + "\r\n\r\n%PDF-");
+        assertThat(body).contains("Content-Range: bytes 9-18/" + CONTENT.length() + "\r\n\r\n" + CONTENT.substring(9, 19));
+        assertThat(result.getResponse().getContentLengthLong()).isEqualTo(result.getResponse().getContentAsByteArray().length);
+    }
+
+    @Test
+    public void getOverlappingRangesMerged() throws Exception {
+        restPdfMockMvc.perform(get(pdfUrl()).header(HttpHeaders.RANGE, "bytes=9-18,0-,0-,5-8"))
+            .andExpect(status().isPartialContent())
+            .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 0-" + (CONTENT.length() - 1) + "/" + CONTENT.length()))
+            .andExpect(content().string(CONTENT));
+    }
+
+    @Test
+    public void getTooManyRangesIgnored() throws Exception {
+        StringBuilder range = new StringBuilder("bytes=0-0");
+        for (int i = 1; i <= 16; i++) {
+            range.append(',').append(2 * i).append('-').append(2 * i);
+        }
+        restPdfMockMvc.perform(get(pdfUrl()).header(HttpHeaders.RANGE, range.toString()))
+            .andExpect(status().isOk())
+            .andExpect(content().string(CONTENT));
+    }
+
+    @Test
+    public void getUnsatisfiableRange() throws Exception {
+        restPdfMockMvc.perform(get(pdfUrl()).header(HttpHeaders.RANGE, "bytes=1000-2000"))
+            .andExpect(status().isRequestedRangeNotSatisfiable())
+            .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes */" + CONTENT.length()));
+    }
+
+    @Test
+    public void getRangeIgnoredWhenIfRangeDoesNotMatch() throws Exception {
+        restPdfMockMvc.perform(get(pdfUrl()).header(HttpHeaders.RANGE, "bytes=0-4").header(HttpHeaders.IF_RANGE, "\"stale\""))
+            .andExpect(status().isOk())
+            .andExpect(content().string(CONTENT));
+    }
+
+    @Test
+    public void getMissingPdf() throws Exception {
+        restPdfMockMvc.perform(get("/pdf/file/get-pdf/missing.pdf?homeEntity=" + PdfStorageService.HOME_ENTITY
+            + "&url=" + PdfStorageService.FORMS_LOCATION + DIR))
+            .andExpect(status().isNotFound());
+    }
+
+    @Test
+    public void getPdfOutsideStorage() throws Exception {
+        restPdfMockMvc.perform(get("/pdf/file/get-pdf/" + FILENAME + "?homeEntity=java.io.tmpdir&url=/" + DIR))
+            .andExpect(status().isNotFound());
+        restPdfMockMvc.perform(get("/pdf/file/get-pdf/" + FILENAME + "?homeEntity=" + PdfStorageService.HOME_ENTITY
+            + "&url=" + PdfStorageService.FORMS_LOCATION + "../" + DIR))
+            .andExpect(status().isNotFound());
+    }
+
+    @Test
+    public void getPdfWithSignedUrl() throws Exception {
+        String signed = downloadUrlSigner.sign("http://localhost:8080" + pdfUrl()).get().getUrl();
+        applicationProperties.getDownload().getSigning().setRequired(true);
+        try {
+            restPdfMockMvc.perform(get(pdfUrl()))
+                .andExpect(status().isForbidden());
+            restPdfMockMvc.perform(get(signed))
+                .andExpect(status().isOk())
+                .andExpect(content().string(CONTENT));
+            restPdfMockMvc.perform(get(signed.replace(FILENAME, "other.pdf")))
+                .andExpect(status().isForbidden());
+            restPdfMockMvc.perform(get(signed.replaceFirst("expires=\\d+", "expires=9999999999")))
+                .andExpect(status().isForbidden());
+        } finally {
+            applicationProperties.getDownload().getSigning().setRequired(false);
+        }
+    }
+
+    @Test
+    public void getThumbnail() throws Exception {
+        try (PDDocument document = new PDDocument(); OutputStream out = storageBackend.write(pdfStorageService.key(SHA256))) {
+            document.addPage(new PDPage(PDRectangle.A4));
+            document.save(out);
+        }
+        restPdfMockMvc.perform(get("/pdf/thumbnails/" + SHA256 + ".png"))
+            .andExpect(status().isNotFound());
+
+        assertThat(thumbnailService.render(SHA256)).isTrue();
+
+        MvcResult result = restPdfMockMvc.perform(get("/pdf/thumbnails/" + SHA256 + ".png?width=100"))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(MediaType.IMAGE_PNG))
+            .andExpect(header().string(HttpHeaders.CACHE_CONTROL, PdfController.IMMUTABLE_CACHE_CONTROL))
+            .andReturn();
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(result.getResponse().getContentAsByteArray()));
+        assertThat(image.getWidth()).isEqualTo(120);
+        assertThat(thumbnailService.render(SHA256)).isFalse();
+    }
+
+    @Test
+    public void getContentAddressedPdfAndThumbnailWithSignedUrl() throws Exception {
+        try (PDDocument document = new PDDocument(); OutputStream out = storageBackend.write(pdfStorageService.key(SHA256))) {
+            document.addPage(new PDPage(PDRectangle.A4));
+            document.save(out);
+        }
+        assertThat(thumbnailService.render(SHA256)).isTrue();
+        String signed = downloadUrlSigner.sign(pdfStorageService.downloadUrl(SHA256)).get().getUrl();
+        String query = signed.substring(signed.indexOf("&expires="));
+        applicationProperties.getDownload().getSigning().setRequired(true);
+        try {
+            restPdfMockMvc.perform(get(signed))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, allOf(startsWith("max-age="), endsWith(", private"))));
+            restPdfMockMvc.perform(get("/pdf/thumbnails/" + SHA256 + ".png"))
+                .andExpect(status().isForbidden());
+            restPdfMockMvc.perform(get("/pdf/thumbnails/" + SHA256 + ".png?width=100" + query))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, allOf(startsWith("max-age="), endsWith(", private"))));
+            restPdfMockMvc.perform(get("/pdf/thumbnails/" + SHA256.replace("cd34", "cd35") + ".png?width=100" + query))
+                .andExpect(status().isForbidden());
+            String signedRendition = downloadUrlSigner.sign(pdfStorageService.webRenditionUrl(SHA256)).get().getUrl();
+            restPdfMockMvc.perform(get("/pdf/thumbnails/" + SHA256 + ".png?width=100"
+                + signedRendition.substring(signedRendition.indexOf("&expires="))))
+                .andExpect(status().isOk());
+        } finally {
+            applicationProperties.getDownload().getSigning().setRequired(false);
+        }
+    }
+}
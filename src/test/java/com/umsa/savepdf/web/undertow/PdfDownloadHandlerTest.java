@@ -0,0 +1,151 @@
+package com.umsa.savepdf.web.undertow;
+
+import com.umsa.savepdf.config.ApplicationProperties;
+import com.umsa.savepdf.service.ColdTierService;
+import com.umsa.savepdf.service.DownloadUrlSigner;
+import com.umsa.savepdf.service.PdfStorageService;
+import com.umsa.savepdf.service.storage.LocalFileSystemStorageBackend;
+
+import io.github.jhipster.config.JHipsterProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.undertow.Undertow;
+import io.undertow.util.HttpString;
+import io.undertow.util.StatusCodes;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Test class for the {@link PdfDownloadHandler}, served by an embedded Undertow.
+ */
+public class PdfDownloadHandlerTest {
+
+    private static final String SHA256 = "ab12000000000000000000000000000000000000000000000000000000000000";
+
+    private static final String MISSING_SHA256 = "cd34000000000000000000000000000000000000000000000000000000000000";
+
+    private static final byte[] PDF = "%PDF-1.4\nnative download\n%%EOF\n".getBytes(StandardCharsets.US_ASCII);
+
+    private static final String SERVLET_HEADER = "X-Servlet";
+
+    private Path root;
+
+    private ApplicationProperties applicationProperties;
+
+    private PdfStorageService pdfStorageService;
+
+    private DownloadUrlSigner downloadUrlSigner;
+
+    private Undertow server;
+
+    private String origin;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        root = Files.createTempDirectory("savepdf-native");
+        applicationProperties = new ApplicationProperties();
+        LocalFileSystemStorageBackend storageBackend = new LocalFileSystemStorageBackend(root);
+        pdfStorageService = new PdfStorageService(applicationProperties, storageBackend);
+        JHipsterProperties jHipsterProperties = new JHipsterProperties();
+        jHipsterProperties.getSecurity().getAuthentication().getJwt().setBase64Secret("c2VjcmV0LWtleS1vZi1hdC1sZWFzdC0yNTYtYml0cy1mb3ItdGhlLXRlc3Rz");
+        downloadUrlSigner = new DownloadUrlSigner(applicationProperties, jHipsterProperties, new SimpleMeterRegistry());
+        try (OutputStream out = storageBackend.write(pdfStorageService.key(SHA256))) {
+            out.write(PDF);
+        }
+
+        server = Undertow.builder()
+            .addHttpListener(0, "localhost")
+            .setHandler(new PdfDownloadHandler(pdfStorageService, storageBackend, downloadUrlSigner, mock(ColdTierService.class), exchange -> {
+                exchange.getResponseHeaders().put(HttpString.tryFromString(SERVLET_HEADER), "true");
+                exchange.setStatusCode(StatusCodes.NOT_FOUND);
+            }))
+            .build();
+        server.start();
+        InetSocketAddress address = (InetSocketAddress) server.getListenerInfo().get(0).getAddress();
+        origin = "http://localhost:" + address.getPort();
+    }
+
+    @AfterEach
+    public void cleanup() {
+        server.stop();
+        FileUtils.deleteQuietly(root.toFile());
+    }
+
+    private HttpURLConnection open(String downloadUrl) throws Exception {
+        return (HttpURLConnection) new URL(downloadUrl.replace("http://localhost:8080", origin)).openConnection();
+    }
+
+    private String signedUrl(String sha256) {
+        return downloadUrlSigner.sign(pdfStorageService.downloadUrl(sha256)).get().getUrl();
+    }
+
+    @Test
+    public void testPdfIsServedByUndertow() throws Exception {
+        HttpURLConnection connection = open(signedUrl(SHA256));
+
+        assertThat(connection.getResponseCode()).isEqualTo(StatusCodes.OK);
+        assertThat(connection.getHeaderField(SERVLET_HEADER)).isNull();
+        assertThat(connection.getContentType()).isEqualTo("application/pdf");
+        assertThat(connection.getHeaderField("Cache-Control")).startsWith("max-age=").endsWith(", private");
+        assertThat(connection.getHeaderField("ETag")).startsWith("\"" + Long.toHexString(PDF.length) + "-");
+        try (InputStream in = connection.getInputStream()) {
+            assertThat(IOUtils.toByteArray(in)).isEqualTo(PDF);
+        }
+    }
+
+    @Test
+    public void testRangesAndConditionalRequests() throws Exception {
+        HttpURLConnection connection = open(signedUrl(SHA256));
+        connection.setRequestProperty("Range", "bytes=0-7");
+        assertThat(connection.getResponseCode()).isEqualTo(StatusCodes.PARTIAL_CONTENT);
+        assertThat(connection.getHeaderField("Content-Range")).isEqualTo("bytes 0-7/" + PDF.length);
+        try (InputStream in = connection.getInputStream()) {
+            assertThat(new String(IOUtils.toByteArray(in), StandardCharsets.US_ASCII)).isEqualTo("%PDF-1.4");
+        }
+
+        String etag = connection.getHeaderField("ETag");
+        connection = open(signedUrl(SHA256));
+        connection.setRequestProperty("If-None-Match", etag);
+        assertThat(connection.getResponseCode()).isEqualTo(StatusCodes.NOT_MODIFIED);
+    }
+
+    @Test
+    public void testSignatureIsChecked() throws Exception {
+        assertThat(open(signedUrl(SHA256).replaceFirst("signature=", "signature=AAAA")).getResponseCode()).isEqualTo(StatusCodes.FORBIDDEN);
+
+        assertThat(open(pdfStorageService.downloadUrl(SHA256)).getResponseCode()).isEqualTo(StatusCodes.OK);
+        applicationProperties.getDownload().getSigning().setRequired(true);
+        assertThat(open(pdfStorageService.downloadUrl(SHA256)).getResponseCode()).isEqualTo(StatusCodes.FORBIDDEN);
+    }
+
+    @Test
+    public void testOtherRequestsGoToTheServletContainer() throws Exception {
+        HttpURLConnection missing = open(signedUrl(MISSING_SHA256));
+        assertThat(missing.getResponseCode()).isEqualTo(StatusCodes.NOT_FOUND);
+        assertThat(missing.getHeaderField(SERVLET_HEADER)).isEqualTo("true");
+        assertThat(missing.getHeaderField("Cache-Control")).isNull();
+
+        HttpURLConnection other = open(origin + "/api/files");
+        assertThat(other.getResponseCode()).isEqualTo(StatusCodes.NOT_FOUND);
+        assertThat(other.getHeaderField(SERVLET_HEADER)).isEqualTo("true");
+
+        HttpURLConnection delete = open(signedUrl(SHA256));
+        delete.setRequestMethod("DELETE");
+        assertThat(delete.getResponseCode()).isEqualTo(StatusCodes.NOT_FOUND);
+        assertThat(delete.getHeaderField(SERVLET_HEADER)).isEqualTo("true");
+    }
+}
@@ -0,0 +1,140 @@
+package com.umsa.savepdf.web.undertow;
+
+import com.umsa.savepdf.config.ApplicationProperties;
+import com.umsa.savepdf.security.AuthoritiesConstants;
+import com.umsa.savepdf.security.jwt.TokenProvider;
+import com.umsa.savepdf.service.RateLimitService;
+import com.umsa.savepdf.service.ratelimit.LocalBucketStore;
+
+import io.github.jhipster.config.JHipsterProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.undertow.Undertow;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.StatusCodes;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the {@link RateLimitHandler}, served by an embedded Undertow.
+ */
+public class RateLimitHandlerTest {
+
+    private ApplicationProperties applicationProperties;
+
+    private TokenProvider tokenProvider;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private CountDownLatch entered;
+
+    private CountDownLatch release;
+
+    private Undertow server;
+
+    private String origin;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        applicationProperties = new ApplicationProperties();
+        applicationProperties.getRateLimit().setEnabled(true);
+        applicationProperties.getRateLimit().getDownload().setRate(0.5);
+        applicationProperties.getRateLimit().getDownload().setBurst(2);
+        applicationProperties.getRateLimit().getUpload().setMaxConcurrent(1);
+        JHipsterProperties jHipsterProperties = new JHipsterProperties();
+        jHipsterProperties.getSecurity().getAuthentication().getJwt().setBase64Secret("c2VjcmV0LWtleS1vZi1hdC1sZWFzdC01MTItYml0cy1mb3ItdGhlLXJhdGUtbGltaXQtaGFuZGxlci10ZXN0cyEh");
+        tokenProvider = new TokenProvider(jHipsterProperties);
+        tokenProvider.afterPropertiesSet();
+        meterRegistry = new SimpleMeterRegistry();
+        RateLimitService rateLimitService = new RateLimitService(applicationProperties, new LocalBucketStore(), meterRegistry);
+        entered = new CountDownLatch(1);
+        release = new CountDownLatch(0);
+
+        server = Undertow.builder()
+            .addHttpListener(0, "localhost")
+            .setHandler(new RateLimitHandler(rateLimitService, tokenProvider, exchange -> exchange.dispatch(this::answer)))
+            .build();
+        server.start();
+        InetSocketAddress address = (InetSocketAddress) server.getListenerInfo().get(0).getAddress();
+        origin = "http://localhost:" + address.getPort();
+    }
+
+    @AfterEach
+    public void cleanup() {
+        release.countDown();
+        server.stop();
+    }
+
+    private void answer(HttpServerExchange exchange) throws InterruptedException {
+        entered.countDown();
+        release.await(10, TimeUnit.SECONDS);
+        exchange.setStatusCode(StatusCodes.OK);
+    }
+
+    private HttpURLConnection request(String method, String path, String login) throws Exception {
+        HttpURLConnection connection = (HttpURLConnection) new URL(origin + path).openConnection();
+        connection.setRequestMethod(method);
+        if (login != null) {
+            String token = tokenProvider.createToken(new UsernamePasswordAuthenticationToken(login, null,
+                Collections.singletonList(new SimpleGrantedAuthority(AuthoritiesConstants.USER))), false);
+            connection.setRequestProperty("Authorization", "Bearer " + token);
+        }
+        return connection;
+    }
+
+    private double throttled(String endpoint, String reason, String principal) {
+        return meterRegistry.get("savepdf.ratelimit.throttled")
+            .tag("endpoint", endpoint).tag("reason", reason).tag("principal", principal).counter().count();
+    }
+
+    @Test
+    public void testDownloadsBeyondTheBurstAreRejected() throws Exception {
+        assertThat(request("GET", "/pdf/file/get-pdf/a.pdf", "user").getResponseCode()).isEqualTo(StatusCodes.OK);
+        assertThat(request("GET", "/pdf/file/get-pdf/a.pdf", "user").getResponseCode()).isEqualTo(StatusCodes.OK);
+
+        HttpURLConnection rejected = request("GET", "/pdf/file/get-pdf/a.pdf", "user");
+        assertThat(rejected.getResponseCode()).isEqualTo(StatusCodes.TOO_MANY_REQUESTS);
+        assertThat(rejected.getHeaderField("Retry-After")).isEqualTo("2");
+        assertThat(throttled("download", "rate", "user")).isEqualTo(1);
+
+        assertThat(request("GET", "/pdf/file/get-pdf/a.pdf", "admin").getResponseCode()).isEqualTo(StatusCodes.OK);
+        assertThat(request("GET", "/pdf/file/get-pdf/a.pdf", null).getResponseCode()).isEqualTo(StatusCodes.OK);
+        assertThat(request("GET", "/api/files", "user").getResponseCode()).isEqualTo(StatusCodes.OK);
+    }
+
+    @Test
+    public void testRunningUploadsAreCapped() throws Exception {
+        release = new CountDownLatch(1);
+        HttpURLConnection running = request("POST", "/api/files/upload/stream", "user");
+        Thread upload = new Thread(() -> {
+            try {
+                running.getResponseCode();
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        upload.start();
+        assertThat(entered.await(10, TimeUnit.SECONDS)).isTrue();
+
+        HttpURLConnection rejected = request("POST", "/api/files/upload/stream", "user");
+        assertThat(rejected.getResponseCode()).isEqualTo(StatusCodes.TOO_MANY_REQUESTS);
+        assertThat(rejected.getHeaderField("Retry-After")).isEqualTo("1");
+
+        release.countDown();
+        upload.join();
+        assertThat(running.getResponseCode()).isEqualTo(StatusCodes.OK);
+        assertThat(request("POST", "/api/files/upload/stream", "user").getResponseCode()).isEqualTo(StatusCodes.OK);
+        assertThat(throttled("upload", "concurrency", "user")).isEqualTo(1);
+    }
+}